@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.bloomfilter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A split block Bloom filter. Each key hashes to a single 256 bit block, which fits in one cache
+ * line, and sets one bit in each of the eight 32 bit words of that block. A membership test
+ * therefore touches one cache line per row instead of one per hash function, at the cost of a
+ * slightly higher false positive rate than a standard Bloom filter of the same size.
+ * <p>
+ * Like {@link DynamicBloomFilter}, the filter is a list of rows, each sized for a fixed number of
+ * keys. A new row is started when the active row is full. When serialized, the last row is folded
+ * down to the smallest power of two number of blocks that still holds the keys it recorded at the
+ * configured density, so files with few keys do not carry a full size filter.
+ */
+public class BlockedBloomFilter extends Filter {
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private static final int WORDS_PER_BLOCK = 8;
+  private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Integer.SIZE;
+
+  // odd constants used to derive one bit position per word from a 32 bit hash
+  private static final int[] SALT = {0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d, 0x705495c7,
+      0x2df1424b, 0x9efc4947, 0x5c6bfb31};
+
+  /**
+   * Threshold for the maximum number of keys to record in a row.
+   */
+  private int nr;
+
+  /**
+   * The number of keys recorded in the active row.
+   */
+  private int currentNbRecord;
+
+  /**
+   * The rows of the filter. Every row has a power of two number of blocks.
+   */
+  private int[][] rows;
+
+  /**
+   * Zero-args constructor for the serialization.
+   */
+  public BlockedBloomFilter() {}
+
+  /**
+   * Builds an empty blocked Bloom filter.
+   *
+   * @param vectorSize
+   *          The number of bits wanted in a row, rounded up to a power of two number of blocks.
+   * @param nr
+   *          The threshold for the maximum number of keys to record in a row.
+   */
+  public BlockedBloomFilter(final int vectorSize, final int nr) {
+    if (nr <= 0) {
+      throw new IllegalArgumentException("nr must be positive : " + nr);
+    }
+    this.nbHash = WORDS_PER_BLOCK;
+    this.hashType = Hash.MURMUR_HASH;
+    this.vectorSize = blocksFor(vectorSize) * BITS_PER_BLOCK;
+    this.nr = nr;
+    this.currentNbRecord = 0;
+
+    rows = new int[1][];
+    rows[0] = new int[this.vectorSize / Integer.SIZE];
+  }
+
+  private static int blocksFor(long bits) {
+    long blocks = Math.max(1, (bits + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK);
+    if (blocks > (1 << 22)) {
+      throw new IllegalArgumentException("Blocked bloom filter too large : " + bits + " bits");
+    }
+    int b = (int) blocks;
+    return b == 1 ? 1 : Integer.highestOneBit(b - 1) << 1;
+  }
+
+  private static long hash(Key key) {
+    return HASH.hashBytes(key.getBytes()).asLong();
+  }
+
+  private static int blockOffset(long hash, int[] row) {
+    int numBlocks = row.length / WORDS_PER_BLOCK;
+    return ((int) (hash >>> 32) & (numBlocks - 1)) * WORDS_PER_BLOCK;
+  }
+
+  private static int mask(long hash, int word) {
+    return 1 << (((int) hash * SALT[word]) >>> 27);
+  }
+
+  @Override
+  public boolean add(final Key key) {
+    if (key == null) {
+      throw new NullPointerException("Key can not be null");
+    }
+
+    if (currentNbRecord >= nr) {
+      rows = Arrays.copyOf(rows, rows.length + 1);
+      rows[rows.length - 1] = new int[vectorSize / Integer.SIZE];
+      currentNbRecord = 0;
+    }
+
+    long h = hash(key);
+    int[] row = rows[rows.length - 1];
+    int offset = blockOffset(h, row);
+    boolean added = false;
+    for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+      int mask = mask(h, i);
+      added |= (row[offset + i] & mask) == 0;
+      row[offset + i] |= mask;
+    }
+
+    if (added)
+      currentNbRecord++;
+
+    return added;
+  }
+
+  @Override
+  public boolean membershipTest(final Key key) {
+    if (key == null) {
+      return true;
+    }
+
+    long h = hash(key);
+    for (int[] row : rows) {
+      if (contains(row, h)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(int[] row, long h) {
+    int offset = blockOffset(h, row);
+    for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+      int mask = mask(h, i);
+      if ((row[offset + i] & mask) != mask) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private BlockedBloomFilter checkCompatible(Filter filter, String op) {
+    if (!(filter instanceof BlockedBloomFilter) || filter.vectorSize != this.vectorSize) {
+      throw new IllegalArgumentException("filters cannot be " + op);
+    }
+    BlockedBloomFilter bbf = (BlockedBloomFilter) filter;
+    if (bbf.rows.length != rows.length || bbf.nr != nr) {
+      throw new IllegalArgumentException("filters cannot be " + op);
+    }
+    for (int i = 0; i < rows.length; i++) {
+      if (bbf.rows[i].length != rows[i].length) {
+        throw new IllegalArgumentException("filters cannot be " + op);
+      }
+    }
+    return bbf;
+  }
+
+  @Override
+  public void and(final Filter filter) {
+    BlockedBloomFilter bbf = checkCompatible(filter, "and-ed");
+    for (int i = 0; i < rows.length; i++) {
+      for (int j = 0; j < rows[i].length; j++) {
+        rows[i][j] &= bbf.rows[i][j];
+      }
+    }
+  }
+
+  @Override
+  public void or(final Filter filter) {
+    BlockedBloomFilter bbf = checkCompatible(filter, "or-ed");
+    for (int i = 0; i < rows.length; i++) {
+      for (int j = 0; j < rows[i].length; j++) {
+        rows[i][j] |= bbf.rows[i][j];
+      }
+    }
+  }
+
+  @Override
+  public void xor(final Filter filter) {
+    BlockedBloomFilter bbf = checkCompatible(filter, "xor-ed");
+    for (int i = 0; i < rows.length; i++) {
+      for (int j = 0; j < rows[i].length; j++) {
+        rows[i][j] ^= bbf.rows[i][j];
+      }
+    }
+  }
+
+  @Override
+  public void not() {
+    for (int[] row : rows) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] = ~row[j];
+      }
+    }
+  }
+
+  /**
+   * Folds a row in half until it is as small as the number of keys it holds allows. Block {@code i}
+   * of the folded row is the union of blocks {@code i} and {@code i + half}, which is where every
+   * key of either block hashes to once the block index loses its top bit.
+   */
+  private int[] fold(int[] row, int numRecords) {
+    int fullBlocks = vectorSize / BITS_PER_BLOCK;
+    int numBlocks = row.length / WORDS_PER_BLOCK;
+    int[] folded = row;
+    while (numBlocks > 1 && (long) numRecords * fullBlocks <= (long) nr * (numBlocks / 2)) {
+      int half = folded.length / 2;
+      int[] tmp = Arrays.copyOf(folded, half);
+      for (int j = 0; j < half; j++) {
+        tmp[j] |= folded[half + j];
+      }
+      folded = tmp;
+      numBlocks /= 2;
+    }
+    return folded;
+  }
+
+  // Writable
+
+  @Override
+  public void write(final DataOutput out) throws IOException {
+    super.write(out);
+    out.writeInt(nr);
+    out.writeInt(currentNbRecord);
+    out.writeInt(rows.length);
+    for (int i = 0; i < rows.length; i++) {
+      int[] row = i == rows.length - 1 ? fold(rows[i], currentNbRecord) : rows[i];
+      out.writeInt(row.length);
+      for (int word : row) {
+        out.writeInt(word);
+      }
+    }
+  }
+
+  @Override
+  public void readFields(final DataInput in) throws IOException {
+    super.readFields(in);
+
+    nr = in.readInt();
+    currentNbRecord = in.readInt();
+    int len = in.readInt();
+    rows = new int[len][];
+    for (int i = 0; i < len; i++) {
+      int words = in.readInt();
+      if (words < WORDS_PER_BLOCK || Integer.bitCount(words / WORDS_PER_BLOCK) != 1
+          || words % WORDS_PER_BLOCK != 0) {
+        throw new IOException("Invalid blocked bloom filter row size : " + words);
+      }
+      rows[i] = new int[words];
+      for (int j = 0; j < words; j++) {
+        rows[i][j] = in.readInt();
+      }
+    }
+  }
+}
@@ -228,6 +228,13 @@ public enum Property {
   GENERAL_MAX_SCANNER_RETRY_PERIOD("general.max.scanner.retry.period", "5s",
       PropertyType.TIMEDURATION,
       "The maximum amount of time that a Scanner should wait before retrying a failed RPC"),
+  GENERAL_FILE_POSITIONAL_READ_SCHEMES("general.file.positional.read.schemes", "file,hdfs",
+      PropertyType.STRING,
+      "A comma separated list of file system schemes, such as hdfs, whose files are read with"
+          + " positional reads. Positional reads allow threads reading the same file to read"
+          + " concurrently instead of taking turns seeking and reading a shared stream. Set to"
+          + " an empty string to disable positional reads. Positional reads are never used for"
+          + " checksummed local file systems, only for the raw local file system."),
 
   // properties that are specific to master server behavior
   MASTER_PREFIX("master.", null, PropertyType.PREFIX,
@@ -293,8 +300,11 @@ public enum Property {
   TSERV_CACHE_MANAGER_IMPL("tserver.cache.manager.class",
       "org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager", PropertyType.STRING,
       "Specifies the class name of the block cache factory implementation."
-          + " Alternative implementation is"
-          + " org.apache.accumulo.core.file.blockfile.cache.tinylfu.TinyLfuBlockCacheManager"),
+          + " Alternative implementations are"
+          + " org.apache.accumulo.core.file.blockfile.cache.tinylfu.TinyLfuBlockCacheManager"
+          + " and org.apache.accumulo.core.file.blockfile.cache.offheap.OffHeapBlockCacheManager."
+          + " The off heap cache stores blocks in direct memory, so"
+          + " -XX:MaxDirectMemorySize must be at least the sum of the cache sizes."),
   TSERV_DATACACHE_SIZE("tserver.cache.data.size", "10%", PropertyType.MEMORY,
       "Specifies the size of the cache for RFile data blocks."),
   TSERV_INDEXCACHE_SIZE("tserver.cache.index.size", "25%", PropertyType.MEMORY,
@@ -338,6 +348,11 @@ public enum Property {
       PropertyType.COUNT, "Max number of RFiles a major compaction thread can open at once. "),
   TSERV_SCAN_MAX_OPENFILES("tserver.scan.files.open.max", "100", PropertyType.COUNT,
       "Maximum total RFiles that all tablets in a tablet server can open for scans. "),
+  TSERV_SCAN_BATCH_ENTRIES("tserver.scan.iterators.batch.entries", "64", PropertyType.COUNT,
+      "The number of entries a scan asks its iterators for at a time. Iterators that"
+          + " support it, including the system iterators and the versioning iterator,"
+          + " pass that many entries to the iterator above them in one call. Set to 1"
+          + " to read one entry at a time."),
   TSERV_MAX_IDLE("tserver.files.open.idle", "1m", PropertyType.TIMEDURATION,
       "Tablet servers leave previously used RFiles open for future queries."
           + " This setting determines how much time an unused RFile should be kept open"
@@ -345,6 +360,22 @@ public enum Property {
   TSERV_NATIVEMAP_ENABLED("tserver.memory.maps.native.enabled", "true", PropertyType.BOOLEAN,
       "An in-memory data store for accumulo implemented in c++ that increases"
           + " the amount of data accumulo can hold in memory and avoids Java GC" + " pauses."),
+  TSERV_OFFHEAPMAP_ENABLED("tserver.memory.maps.offheap.enabled", "false", PropertyType.BOOLEAN,
+      "An in-memory data store implemented in Java that keeps its data in direct"
+          + " memory, outside of the Java heap, and so avoids Java GC pauses without"
+          + " needing the native library. It is only used when "
+          + TSERV_NATIVEMAP_ENABLED.getKey() + " is false. The JVM's"
+          + " -XX:MaxDirectMemorySize must be large enough for "
+          + "tserver.memory.maps.max and any off heap block caches."),
+  TSERV_CONCURRENT_WRITES_ENABLED("tserver.memory.maps.concurrent.writes.enabled", "false",
+      PropertyType.BOOLEAN,
+      "When true and the Java in-memory map is used, threads writing to the same"
+          + " tablet insert into its in-memory map in parallel and only wait for"
+          + " earlier writes when making their own visible to scans. Only the Java"
+          + " map scales this way, so this is ignored when the native or off heap"
+          + " map is used (see " + TSERV_NATIVEMAP_ENABLED.getKey() + " and "
+          + TSERV_OFFHEAPMAP_ENABLED.getKey() + "). When false, writes to a"
+          + " tablet's in-memory map are done one at a time."),
   TSERV_MAXMEM("tserver.memory.maps.max", "33%", PropertyType.MEMORY,
       "Maximum amount of memory that can be used to buffer data written to a"
           + " tablet server. There are two other properties that can effectively limit"
@@ -385,6 +416,11 @@ public enum Property {
       "The maximum number of concurrent tablet migrations for a tablet server"),
   TSERV_MAJC_MAXCONCURRENT("tserver.compaction.major.concurrent.max", "3", PropertyType.COUNT,
       "The maximum number of concurrent major compactions for a tablet server"),
+  TSERV_MAJC_COMPRESSION_THREADS("tserver.compaction.major.compression.threads", "0",
+      PropertyType.COUNT,
+      "The number of threads on each tablet server that compress the data blocks written by major"
+          + " compactions. This allows a single compaction to use more than one core. When set"
+          + " to 0, each compaction compresses its own blocks as it writes them."),
   TSERV_MAJC_THROUGHPUT("tserver.compaction.major.throughput", "0B", PropertyType.BYTES,
       "Maximum number of bytes to read or write per second over all major"
           + " compactions on a TabletServer, or 0B for unlimited."),
@@ -481,6 +517,30 @@ public enum Property {
   TSERV_SUMMARY_RETRIEVAL_THREADS("tserver.summary.retrieval.threads", "10", PropertyType.COUNT,
       "The number of threads on each tablet server available to retrieve"
           + " summary data, that is not currently in cache, from RFiles."),
+  TSERV_BLOCK_READ_AHEAD_THREADS("tserver.file.readahead.threads", "8", PropertyType.COUNT,
+      "The number of threads on each tablet server available to read data blocks into the data"
+          + " cache ahead of sequential scans. Read ahead requests that can not be queued are"
+          + " dropped. See table.file.readahead.blocks."),
+  TSERV_CACHE_WARMUP_THREADS("tserver.cache.warmup.threads", "2", PropertyType.COUNT,
+      "The number of threads on each tablet server available to read the files of newly loaded"
+          + " tablets into the block caches. Warm up requests that can not be queued are dropped."
+          + " See table.cache.warmup and tserver.cache.snapshot.dir."),
+  TSERV_CACHE_SNAPSHOT_DIR("tserver.cache.snapshot.dir", "", PropertyType.PATH,
+      "A local directory where the tablet server periodically saves the names of the hottest"
+          + " blocks in its index and data caches. When the tablet server restarts, the blocks of"
+          + " the snapshot that belong to the files of the tablets it loads are read back into the"
+          + " caches in the background. Tablet servers on the same host must use different"
+          + " directories. When empty, no snapshots are taken."),
+  TSERV_CACHE_SNAPSHOT_INTERVAL("tserver.cache.snapshot.interval", "5m",
+      PropertyType.TIMEDURATION,
+      "How often the names of the hottest cached blocks are saved to tserver.cache.snapshot.dir."),
+  TSERV_CACHE_SNAPSHOT_MAX_BLOCKS("tserver.cache.snapshot.max.blocks", "100000",
+      PropertyType.COUNT,
+      "The maximum number of block names saved from each of the index and data caches when a"
+          + " snapshot is taken. See tserver.cache.snapshot.dir."),
+  TSERV_CACHE_RESTORE_THROUGHPUT("tserver.cache.restore.throughput", "32M", PropertyType.BYTES,
+      "Maximum number of bytes per second read from files to restore the blocks of a cache"
+          + " snapshot after a restart, or 0B for unlimited. See tserver.cache.snapshot.dir."),
 
   // accumulo garbage collector properties
   GC_PREFIX("gc.", null, PropertyType.PREFIX,
@@ -607,6 +667,18 @@ public enum Property {
       PropertyType.BYTES,
       "The max RFile size used for a merging minor compaction. The default"
           + " value of 0 disables a max file size."),
+  TABLE_MINC_INSERT_COMBINE("table.compaction.minor.insert.combine", "false",
+      PropertyType.BOOLEAN,
+      "When true, values with the same row, column, visibility and timestamp are combined as"
+          + " they are written to the in-memory map, using the first minor compaction iterator of"
+          + " the table, which must be a Combiner. Only enable this when that combiner is"
+          + " associative and commutative, like the SummingCombiner, so that combining on insert"
+          + " gives the same result as combining during the minor compaction. Combined values"
+          + " are held aside and written to the in-memory map when a scan of the tablet starts,"
+          + " which briefly holds up writes to the tablet. Each scan that finds combined values"
+          + " adds an entry per key it writes, so this saves the most memory on tables that are"
+          + " written much more often than they are scanned. A change takes effect when a tablet"
+          + " starts a new in-memory map."),
   TABLE_SCAN_DISPATCHER("table.scan.dispatcher", SimpleScanDispatcher.class.getName(),
       PropertyType.CLASSNAME,
       "This class is used to dynamically dispatch scans to configured scan executors.  Configured "
@@ -633,6 +705,22 @@ public enum Property {
   TABLE_FILE_COMPRESSED_BLOCK_SIZE_INDEX("table.file.compress.blocksize.index", "128K",
       PropertyType.BYTES,
       "The maximum size of index blocks in RFiles before they are compressed and written."),
+  TABLE_FILE_RESTART_INTERVAL("table.file.restart.interval", "16", PropertyType.COUNT,
+      "The number of keys between restart points in RFile data blocks. A key at a restart point"
+          + " is written in full instead of relative to the previous key, which allows seeks"
+          + " within a cached data block to binary search to a nearby key instead of decoding"
+          + " every key in the block. Setting this to 0 disables restart points."),
+  TABLE_FILE_FAMILY_SUMMARY_SIZE("table.file.family.summary.size", "32", PropertyType.COUNT,
+      "The size in bytes of the summary of column families stored in the RFile index entry of"
+          + " each data block. Scans that fetch column families skip data blocks whose summary"
+          + " shows they contain none of the families. The summary is a bloom filter, so larger"
+          + " summaries let scans skip more blocks when blocks hold many families. Setting this to"
+          + " 0 disables the summaries."),
+  TABLE_FILE_READAHEAD_BLOCKS("table.file.readahead.blocks", "0", PropertyType.COUNT,
+      "The number of data blocks to asynchronously read into the data cache ahead of a scan once"
+          + " it has moved sequentially from one block of an RFile to the next. Read ahead only"
+          + " happens when the data cache is enabled for the table. Setting this to 0 disables"
+          + " read ahead."),
   TABLE_FILE_BLOCK_SIZE("table.file.blocksize", "0B", PropertyType.BYTES,
       "The HDFS block size used when writing RFiles. When set to 0B, the"
           + " value/defaults of HDFS property 'dfs.block.size' will be used."),
@@ -672,6 +760,12 @@ public enum Property {
           + " perform specialized parsing of the key. "),
   TABLE_BLOOM_HASHTYPE("table.bloom.hash.type", "murmur", PropertyType.STRING,
       "The bloom filter hash type"),
+  TABLE_BLOOM_TYPE("table.bloom.type", "dynamic", PropertyType.STRING,
+      "The bloom filter format written to new files. Legal values are: dynamic,"
+          + " a dynamic bloom filter, and blocked, a split block bloom filter that"
+          + " answers each lookup from a single cache line and ignores"
+          + " table.bloom.hash.type. Files are read with whichever format they were"
+          + " written with."),
   TABLE_DURABILITY("table.durability", "sync", PropertyType.DURABILITY,
       "The durability used to write to the write-ahead log. Legal values are:"
           + " none, which skips the write-ahead log; log, which sends the data to the"
@@ -708,6 +802,39 @@ public enum Property {
       "Determines whether index block cache is enabled for a table."),
   TABLE_BLOCKCACHE_ENABLED("table.cache.block.enable", "false", PropertyType.BOOLEAN,
       "Determines whether data block cache is enabled for a table."),
+  TABLE_BLOCKCACHE_COMPRESSED("table.cache.block.compressed", "false", PropertyType.BOOLEAN,
+      "Determines whether data blocks are cached as they are stored in the file, compressed,"
+          + " instead of decompressed. This fits more data in the data cache at the cost of"
+          + " decompressing a block each time it is read. Blocks that are read often also keep a"
+          + " decompressed copy in the cache."),
+  TABLE_CACHE_WARMUP("table.cache.warmup", "none", PropertyType.STRING,
+      "Determines what is read into the block caches in the background when a tablet is loaded"
+          + " by a tablet server, so that the first scans of a migrated tablet do not all miss the"
+          + " cache. Legal values are: none; index, which reads the index of each of the tablet's"
+          + " files into the index cache; and data, which also reads the tablet's data blocks"
+          + " into the data cache, up to table.cache.warmup.data.max per file. See"
+          + " tserver.cache.warmup.threads."),
+  TABLE_CACHE_WARMUP_DATA_MAX("table.cache.warmup.data.max", "16M", PropertyType.BYTES,
+      "The maximum amount of data read from each file of a tablet into the data cache when the"
+          + " tablet is loaded and table.cache.warmup is set to data. Blocks are read in order"
+          + " starting at the beginning of the tablet."),
+  TABLE_CACHE_WRITE_MINC("table.cache.write.minc", "none", PropertyType.STRING,
+      "Determines which blocks of the files written by minor compactions are put in the block"
+          + " caches as they are written, so that the first scans of a new file do not have to"
+          + " read it. Legal values are: none; index, which caches index blocks; and data, which"
+          + " caches index and data blocks. Blocks are only put in caches the table uses, see"
+          + " table.cache.index.enable and table.cache.block.enable. Data blocks are not"
+          + " cached when table.cache.block.compressed is set."),
+  TABLE_CACHE_WRITE_MAJC("table.cache.write.majc", "none", PropertyType.STRING,
+      "Determines which blocks of the files written by major compactions are put in the block"
+          + " caches as they are written. Takes the same values as table.cache.write.minc."),
+  TABLE_CACHE_PARTITION("table.cache.partition", "", PropertyType.STRING,
+      "The name of the block cache partition this table's blocks are cached in. Tables that set"
+          + " the same name share a partition, so setting it on a namespace gives the namespace"
+          + " its own partition. When empty, blocks go to the shared part of the cache. With the"
+          + " LRU cache the share of a partition is configured with"
+          + " tserver.cache.config.lru.<type>.partition.<name>.min.factor and"
+          + " tserver.cache.config.lru.<type>.partition.<name>.max.factor."),
   TABLE_ITERATOR_PREFIX("table.iterator.", null, PropertyType.PREFIX,
       "Properties in this category specify iterators that are applied at"
           + " various stages (scopes) of interaction with a table. These properties"
@@ -1199,7 +1326,8 @@ public enum Property {
       Property.TABLE_SCAN_MAXMEM, Property.INSTANCE_CRYPTO_SERVICE, Property.TABLE_DELETE_BEHAVIOR);
 
   private static final EnumSet<Property> fixedProperties = EnumSet.of(Property.TSERV_CLIENTPORT,
-      Property.TSERV_NATIVEMAP_ENABLED, Property.TSERV_SCAN_MAX_OPENFILES,
+      Property.TSERV_NATIVEMAP_ENABLED, Property.TSERV_OFFHEAPMAP_ENABLED,
+      Property.TSERV_SCAN_MAX_OPENFILES, Property.TSERV_MAJC_COMPRESSION_THREADS,
       Property.MASTER_CLIENTPORT, Property.GC_PORT);
 
   /**
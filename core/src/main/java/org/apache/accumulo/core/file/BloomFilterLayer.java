@@ -38,7 +38,9 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.accumulo.core.bloomfilter.BlockedBloomFilter;
 import org.apache.accumulo.core.bloomfilter.DynamicBloomFilter;
+import org.apache.accumulo.core.bloomfilter.Filter;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
@@ -55,6 +57,7 @@ import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.util.CachedConfiguration;
 import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.accumulo.core.util.ratelimit.RateLimiter;
 import org.apache.accumulo.fate.util.LoggingRunnable;
 import org.apache.accumulo.start.classloader.vfs.AccumuloVFSClassLoader;
 import org.apache.hadoop.conf.Configuration;
@@ -72,6 +75,7 @@ import org.slf4j.LoggerFactory;
 public class BloomFilterLayer {
   private static final Logger LOG = LoggerFactory.getLogger(BloomFilterLayer.class);
   public static final String BLOOM_FILE_NAME = "acu_bloom";
+  public static final String BLOCKED_BLOOM_FILE_NAME = "acu_bloom_blocked";
   public static final int HASH_COUNT = 5;
 
   private static ExecutorService loadThreadPool = null;
@@ -91,7 +95,8 @@ public class BloomFilterLayer {
   }
 
   public static class Writer implements FileSKVWriter {
-    private DynamicBloomFilter bloomFilter;
+    private Filter bloomFilter;
+    private String bloomFileName;
     private int numKeys;
     private int vectorSize;
 
@@ -117,8 +122,19 @@ public class BloomFilterLayer {
       double errorRate = acuconf.getFraction(Property.TABLE_BLOOM_ERRORRATE);
       vectorSize = (int) Math
           .ceil(-HASH_COUNT * numKeys / Math.log(1.0 - Math.pow(errorRate, 1.0 / HASH_COUNT)));
-      bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT,
-          Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE)), numKeys);
+      String type = acuconf.get(Property.TABLE_BLOOM_TYPE);
+      if (type.equals("dynamic")) {
+        bloomFilter = new DynamicBloomFilter(vectorSize, HASH_COUNT,
+            Hash.parseHashType(acuconf.get(Property.TABLE_BLOOM_HASHTYPE)), numKeys);
+        bloomFileName = BLOOM_FILE_NAME;
+      } else if (type.equals("blocked")) {
+        // blocked filters use a distinct meta block, so older readers just see no bloom filter
+        bloomFilter = new BlockedBloomFilter(vectorSize, numKeys);
+        bloomFileName = BLOCKED_BLOOM_FILE_NAME;
+      } else {
+        throw new IllegalArgumentException(
+            "Unknown " + Property.TABLE_BLOOM_TYPE.getKey() + " : " + type);
+      }
 
       /**
        * load KeyFunctor
@@ -161,7 +177,7 @@ public class BloomFilterLayer {
       if (closed)
         return;
 
-      DataOutputStream out = writer.createMetaStore(BLOOM_FILE_NAME);
+      DataOutputStream out = writer.createMetaStore(bloomFileName);
       out.writeUTF(transformer.getClass().getName());
       bloomFilter.write(out);
       out.flush();
@@ -204,7 +220,7 @@ public class BloomFilterLayer {
 
   static class BloomFilterLoader {
 
-    private volatile DynamicBloomFilter bloomFilter;
+    private volatile Filter bloomFilter;
     private int loadRequest = 0;
     private int loadThreshold = 1;
     private int maxLoadThreads;
@@ -228,8 +244,14 @@ public class BloomFilterLayer {
         DataInputStream in = null;
 
         try {
-          in = reader.getMetaStore(BLOOM_FILE_NAME);
-          DynamicBloomFilter tmpBloomFilter = new DynamicBloomFilter();
+          Filter tmpBloomFilter;
+          try {
+            in = reader.getMetaStore(BLOCKED_BLOOM_FILE_NAME);
+            tmpBloomFilter = new BlockedBloomFilter();
+          } catch (NoSuchMetaStoreException nsme) {
+            in = reader.getMetaStore(BLOOM_FILE_NAME);
+            tmpBloomFilter = new DynamicBloomFilter();
+          }
 
           // check for closed again after open but before reading the bloom filter in
           if (closed)
@@ -401,6 +423,16 @@ public class BloomFilterLayer {
       return reader.getLastKey();
     }
 
+    @Override
+    public long getMinTimestamp() throws IOException {
+      return reader.getMinTimestamp();
+    }
+
+    @Override
+    public long getMaxTimestamp() throws IOException {
+      return reader.getMaxTimestamp();
+    }
+
     @Override
     public SortedKeyValueIterator<org.apache.accumulo.core.data.Key,Value> deepCopy(
         IteratorEnvironment env) {
@@ -439,6 +471,23 @@ public class BloomFilterLayer {
       reader.closeDeepCopies();
     }
 
+    @Override
+    public long prefetch(Collection<Range> ranges, Collection<ByteSequence> columnFamilies,
+        boolean inclusive, long maxBytes) throws IOException {
+      return reader.prefetch(ranges, columnFamilies, inclusive, maxBytes);
+    }
+
+    @Override
+    public void warmUp(Range range, long maxDataBytes) throws IOException {
+      reader.warmUp(range, maxDataBytes);
+    }
+
+    @Override
+    public void restoreCachedBlocks(boolean index, Set<Long> dataBlockOffsets,
+        RateLimiter readLimiter) throws IOException {
+      reader.restoreCachedBlocks(index, dataBlockOffsets, readLimiter);
+    }
+
     @Override
     public void setInterruptFlag(AtomicBoolean flag) {
       reader.setInterruptFlag(flag);
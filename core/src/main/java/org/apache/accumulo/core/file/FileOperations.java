@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
@@ -159,10 +160,13 @@ public abstract class FileOperations {
     public final String compression;
     public final FSDataOutputStream outputStream;
     public final boolean enableAccumuloStart;
-    // reader only objects
+    public final Executor compressionExecutor;
+    public final String cacheFilename;
+    // reader objects, also used by writers that cache the blocks they write
     public final BlockCache dataCache;
     public final BlockCache indexCache;
     public final Cache<String,Long> fileLenCache;
+    public final Executor readAheadExecutor;
     public final boolean seekToBeginning;
     public final CryptoService cryptoService;
     // scan reader only objects
@@ -172,8 +176,9 @@ public abstract class FileOperations {
 
     public FileOptions(AccumuloConfiguration tableConfiguration, String filename, FileSystem fs,
         Configuration fsConf, RateLimiter rateLimiter, String compression,
-        FSDataOutputStream outputStream, boolean enableAccumuloStart, BlockCache dataCache,
-        BlockCache indexCache, Cache<String,Long> fileLenCache, boolean seekToBeginning,
+        FSDataOutputStream outputStream, boolean enableAccumuloStart, Executor compressionExecutor,
+        String cacheFilename, BlockCache dataCache, BlockCache indexCache,
+        Cache<String,Long> fileLenCache, Executor readAheadExecutor, boolean seekToBeginning,
         CryptoService cryptoService, Range range, Set<ByteSequence> columnFamilies,
         boolean inclusive) {
       this.tableConfiguration = tableConfiguration;
@@ -184,9 +189,12 @@ public abstract class FileOperations {
       this.compression = compression;
       this.outputStream = outputStream;
       this.enableAccumuloStart = enableAccumuloStart;
+      this.compressionExecutor = compressionExecutor;
+      this.cacheFilename = cacheFilename;
       this.dataCache = dataCache;
       this.indexCache = indexCache;
       this.fileLenCache = fileLenCache;
+      this.readAheadExecutor = readAheadExecutor;
       this.seekToBeginning = seekToBeginning;
       this.cryptoService = Objects.requireNonNull(cryptoService);
       this.range = range;
@@ -226,6 +234,14 @@ public abstract class FileOperations {
       return enableAccumuloStart;
     }
 
+    public Executor getCompressionExecutor() {
+      return compressionExecutor;
+    }
+
+    public String getCacheFilename() {
+      return cacheFilename;
+    }
+
     public BlockCache getDataCache() {
       return dataCache;
     }
@@ -238,6 +254,10 @@ public abstract class FileOperations {
       return fileLenCache;
     }
 
+    public Executor getReadAheadExecutor() {
+      return readAheadExecutor;
+    }
+
     public boolean isSeekToBeginning() {
       return seekToBeginning;
     }
@@ -301,27 +321,31 @@ public abstract class FileOperations {
     }
 
     protected FileOptions toWriterBuilderOptions(String compression,
-        FSDataOutputStream outputStream, boolean startEnabled) {
+        FSDataOutputStream outputStream, boolean startEnabled, Executor compressionExecutor,
+        String cacheFilename, BlockCache dataCache, BlockCache indexCache) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, compression,
-          outputStream, startEnabled, null, null, null, false, cryptoService, null, null, true);
+          outputStream, startEnabled, compressionExecutor, cacheFilename, dataCache, indexCache,
+          null, null, false, cryptoService, null, null, true);
     }
 
     protected FileOptions toReaderBuilderOptions(BlockCache dataCache, BlockCache indexCache,
-        Cache<String,Long> fileLenCache, boolean seekToBeginning) {
+        Cache<String,Long> fileLenCache, Executor readAheadExecutor, boolean seekToBeginning) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, dataCache, indexCache, fileLenCache, seekToBeginning, cryptoService, null, null,
-          true);
+          false, null, null, dataCache, indexCache, fileLenCache, readAheadExecutor,
+          seekToBeginning, cryptoService, null, null, true);
     }
 
     protected FileOptions toIndexReaderBuilderOptions(Cache<String,Long> fileLenCache) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, null, null, fileLenCache, false, cryptoService, null, null, true);
+          false, null, null, null, null, fileLenCache, null, false, cryptoService, null, null,
+          true);
     }
 
     protected FileOptions toScanReaderBuilderOptions(Range range, Set<ByteSequence> columnFamilies,
         boolean inclusive) {
       return new FileOptions(tableConfiguration, filename, fs, fsConf, rateLimiter, null, null,
-          false, null, null, null, false, cryptoService, range, columnFamilies, inclusive);
+          false, null, null, null, null, null, null, false, cryptoService, range, columnFamilies,
+          inclusive);
     }
 
     protected AccumuloConfiguration getTableConfiguration() {
@@ -336,6 +360,10 @@ public abstract class FileOperations {
     private String compression;
     private FSDataOutputStream outputStream;
     private boolean enableAccumuloStart = true;
+    private Executor compressionExecutor;
+    private String cacheFilename;
+    private BlockCache dataCache;
+    private BlockCache indexCache;
 
     public WriterTableConfiguration forOutputStream(String extension,
         FSDataOutputStream outputStream, Configuration fsConf, CryptoService cs) {
@@ -371,8 +399,31 @@ public abstract class FileOperations {
       return this;
     }
 
+    /**
+     * (Optional) set the executor used to compress data blocks, allowing the constructed writer to
+     * move on to the next block while earlier blocks are compressed.
+     */
+    public WriterBuilder withCompressionExecutor(Executor compressionExecutor) {
+      this.compressionExecutor = compressionExecutor;
+      return this;
+    }
+
+    /**
+     * (Optional) put the blocks written by the constructed writer into the given caches, as they
+     * would be if they were read from the file {@code cacheFilename}. Either cache may be null.
+     * Allows a file that is written under a temporary name to be cached under its final name.
+     */
+    public WriterBuilder withBlockCache(String cacheFilename, BlockCache dataCache,
+        BlockCache indexCache) {
+      this.cacheFilename = cacheFilename;
+      this.dataCache = dataCache;
+      this.indexCache = indexCache;
+      return this;
+    }
+
     public FileSKVWriter build() throws IOException {
-      return openWriter(toWriterBuilderOptions(compression, outputStream, enableAccumuloStart));
+      return openWriter(toWriterBuilderOptions(compression, outputStream, enableAccumuloStart,
+          compressionExecutor, cacheFilename, dataCache, indexCache));
     }
   }
 
@@ -387,6 +438,7 @@ public abstract class FileOperations {
     private BlockCache dataCache;
     private BlockCache indexCache;
     private Cache<String,Long> fileLenCache;
+    private Executor readAheadExecutor;
     private boolean seekToBeginning = false;
 
     public ReaderTableConfiguration forFile(String filename, FileSystem fs, Configuration fsConf,
@@ -435,6 +487,16 @@ public abstract class FileOperations {
       return this;
     }
 
+    /**
+     * (Optional) set the executor used to read data blocks into the data cache ahead of sequential
+     * scans. Read ahead also requires a data cache and {@code table.file.readahead.blocks} to be
+     * set.
+     */
+    public ReaderBuilder withReadAheadExecutor(Executor readAheadExecutor) {
+      this.readAheadExecutor = readAheadExecutor;
+      return this;
+    }
+
     /**
      * Seek the constructed iterator to the beginning of its domain before returning. Equivalent to
      * {@code seekToBeginning(true)}.
@@ -462,8 +524,8 @@ public abstract class FileOperations {
       if (!getTableConfiguration().getBoolean(Property.TABLE_BLOCKCACHE_ENABLED)) {
         withDataCache(null);
       }
-      return openReader(
-          toReaderBuilderOptions(dataCache, indexCache, fileLenCache, seekToBeginning));
+      return openReader(toReaderBuilderOptions(dataCache, indexCache, fileLenCache,
+          readAheadExecutor, seekToBeginning));
     }
   }
 
@@ -18,10 +18,15 @@ package org.apache.accumulo.core.file;
 
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
 
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
+import org.apache.accumulo.core.util.ratelimit.RateLimiter;
 
 public interface FileSKVIterator extends InterruptibleIterator, AutoCloseable {
   Key getFirstKey() throws IOException;
@@ -34,6 +39,53 @@ public interface FileSKVIterator extends InterruptibleIterator, AutoCloseable {
 
   void closeDeepCopies() throws IOException;
 
+  /**
+   * Informs the file that the given ranges are about to be read, so that the data needed by all of
+   * them can be fetched together instead of one piece at a time as each range is seeked. This is
+   * only a hint, by default it does nothing.
+   *
+   * @param ranges
+   *          sorted ranges that do not overlap
+   * @param maxBytes
+   *          stop once the blocks to fetch for the leading ranges hold this much data
+   * @return the amount of data the blocks to fetch hold
+   */
+  default long prefetch(Collection<Range> ranges, Collection<ByteSequence> columnFamilies,
+      boolean inclusive, long maxBytes) throws IOException {
+    return 0;
+  }
+
+  /**
+   * Reads the file's index into the index cache, and then the data blocks that overlap the given
+   * range into the data cache, in order, until {@code maxDataBytes} of data has been read. Used to
+   * warm the caches before a file is scanned. This is only a hint, by default it does nothing.
+   */
+  default void warmUp(Range range, long maxDataBytes) throws IOException {}
+
+  /**
+   * Reads blocks that were cached before a restart back into the caches: the whole index when
+   * {@code index} is true, and the data blocks that start at the given offsets. Reads of data
+   * blocks are throttled by {@code readLimiter}. This is only a hint, by default it does nothing.
+   */
+  default void restoreCachedBlocks(boolean index, Set<Long> dataBlockOffsets,
+      RateLimiter readLimiter) throws IOException {}
+
+  /**
+   * @return the smallest timestamp of the keys in the file, or {@link Long#MIN_VALUE} when the file
+   *         does not record it
+   */
+  default long getMinTimestamp() throws IOException {
+    return Long.MIN_VALUE;
+  }
+
+  /**
+   * @return the largest timestamp of the keys in the file, or {@link Long#MAX_VALUE} when the file
+   *         does not record it
+   */
+  default long getMaxTimestamp() throws IOException {
+    return Long.MAX_VALUE;
+  }
+
   @Override
   void close() throws IOException;
 }
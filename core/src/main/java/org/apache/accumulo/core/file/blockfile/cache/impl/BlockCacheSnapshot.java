@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.impl;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+
+/**
+ * The names of the hot blocks in a tablet server's index and data caches, saved to local disk so
+ * that the same blocks can be read back into the caches after the tablet server restarts. Block
+ * names are those used by {@link CachableBlockFile}, the cache id of the file followed by a letter
+ * for the kind of block and its offset in the file.
+ */
+public class BlockCacheSnapshot {
+
+  private static final CacheType[] TYPES = {CacheType.INDEX, CacheType.DATA};
+
+  // the letters that follow the cache id in the names of the different kinds of block
+  private static final String BLOCK_KINDS = "RCMO!";
+
+  /**
+   * The blocks of one file that were cached when the snapshot was taken.
+   */
+  public static class FileBlocks {
+    private boolean index = false;
+    private final Set<Long> dataBlockOffsets = new TreeSet<>();
+
+    /**
+     * @return true if any of the file's index blocks were cached
+     */
+    public boolean hasIndexBlocks() {
+      return index;
+    }
+
+    /**
+     * @return the offsets of the file's cached data blocks
+     */
+    public Set<Long> getDataBlockOffsets() {
+      return dataBlockOffsets;
+    }
+  }
+
+  private final Map<CacheType,TreeSet<String>> blocks = new EnumMap<>(CacheType.class);
+
+  private BlockCacheSnapshot() {
+    for (CacheType type : TYPES) {
+      blocks.put(type, new TreeSet<>());
+    }
+  }
+
+  /**
+   * Writes the names of up to {@code maxBlocks} of the hottest blocks of each of the manager's
+   * index and data caches to the given file. The file is replaced atomically, so a reader never
+   * sees a partly written snapshot.
+   */
+  public static void write(BlockCacheManager manager, int maxBlocks, File file) throws IOException {
+    File tmp = new File(file.getParentFile(), file.getName() + "_tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), UTF_8)) {
+      for (CacheType type : TYPES) {
+        BlockCache cache = manager.getBlockCache(type);
+        if (cache == null) {
+          continue;
+        }
+        for (String blockName : cache.getHotBlockNames(maxBlocks)) {
+          writer.write(type.name());
+          writer.write('\t');
+          writer.write(blockName);
+          writer.newLine();
+        }
+      }
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a snapshot written by {@link #write(BlockCacheManager, int, File)}. Lines that can not be
+   * parsed are skipped.
+   *
+   * @return the snapshot, empty if the file does not exist
+   */
+  public static BlockCacheSnapshot read(File file) throws IOException {
+    BlockCacheSnapshot snapshot = new BlockCacheSnapshot();
+    if (!file.exists()) {
+      return snapshot;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        if (tab < 0) {
+          continue;
+        }
+        TreeSet<String> names;
+        try {
+          names = snapshot.blocks.get(CacheType.valueOf(line.substring(0, tab)));
+        } catch (IllegalArgumentException e) {
+          continue;
+        }
+        if (names != null) {
+          names.add(line.substring(tab + 1));
+        }
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * @return the offset of a block named by kind and offset, otherwise -1
+   */
+  private static long parseOffset(String suffix) {
+    try {
+      return Long.parseLong(suffix.substring(1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Removes the blocks of the file with the given cache id from the snapshot and returns them.
+   *
+   * @return the file's blocks, or null if the snapshot had none
+   */
+  public synchronized FileBlocks remove(String cacheId) {
+    FileBlocks fileBlocks = null;
+    for (CacheType type : TYPES) {
+      Iterator<String> iter = blocks.get(type).tailSet(cacheId).iterator();
+      while (iter.hasNext()) {
+        String name = iter.next();
+        if (!name.startsWith(cacheId)) {
+          break;
+        }
+        String suffix = name.substring(cacheId.length());
+        if (suffix.isEmpty() || BLOCK_KINDS.indexOf(suffix.charAt(0)) < 0) {
+          // a block of another file whose name starts with this file's name
+          continue;
+        }
+        iter.remove();
+
+        // uncompressed index and data blocks are named R<offset>, compressed data blocks C<offset>.
+        // The root and meta blocks are read when the file is opened.
+        char kind = suffix.charAt(0);
+        long offset = parseOffset(suffix);
+        if (offset < 0 || (kind != 'R' && (kind != 'C' || type != CacheType.DATA))) {
+          continue;
+        }
+        if (fileBlocks == null) {
+          fileBlocks = new FileBlocks();
+        }
+        if (type == CacheType.INDEX) {
+          fileBlocks.index = true;
+        } else {
+          fileBlocks.dataBlockOffsets.add(offset);
+        }
+      }
+    }
+    return fileBlocks;
+  }
+
+  /**
+   * @return true once all of the blocks in the snapshot have been removed
+   */
+  public synchronized boolean isEmpty() {
+    return blocks.values().stream().allMatch(Set::isEmpty);
+  }
+}
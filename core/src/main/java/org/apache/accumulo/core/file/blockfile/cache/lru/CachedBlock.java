@@ -36,7 +36,7 @@ import org.apache.accumulo.core.spi.cache.CacheEntry.Weighable;
 public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
 
   public static final long PER_BLOCK_OVERHEAD = ClassSize
-      .align(ClassSize.OBJECT + (3 * ClassSize.REFERENCE) + (2 * SizeConstants.SIZEOF_LONG)
+      .align(ClassSize.OBJECT + (4 * ClassSize.REFERENCE) + (2 * SizeConstants.SIZEOF_LONG)
           + ClassSize.STRING + ClassSize.BYTE_BUFFER + ClassSize.REFERENCE);
 
   public static enum BlockPriority {
@@ -60,8 +60,15 @@ public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
   private volatile long recordedSize;
   private BlockPriority priority;
   private Weighable index;
+  private final LruBlockCache.Partition partition;
 
   public CachedBlock(String blockName, byte buf[], long accessTime, boolean inMemory) {
+    this(blockName, buf, accessTime, inMemory, null);
+  }
+
+  CachedBlock(String blockName, byte buf[], long accessTime, boolean inMemory,
+      LruBlockCache.Partition partition) {
+    this.partition = partition;
     this.buffer = buf;
     this.blockName = blockName;
     this.accessTime = accessTime;
@@ -112,6 +119,10 @@ public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
     return this.blockName;
   }
 
+  long getAccessTime() {
+    return accessTime;
+  }
+
   public BlockPriority getPriority() {
     return this.priority;
   }
@@ -120,6 +131,13 @@ public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
     return buffer;
   }
 
+  /**
+   * @return the cache partition this block is charged to, or null if it is in the shared pool
+   */
+  LruBlockCache.Partition getPartition() {
+    return partition;
+  }
+
   @SuppressWarnings("unchecked")
   public synchronized <T extends Weighable> T getIndex(Supplier<T> supplier) {
     if (index == null && recordedSize >= 0) {
@@ -135,6 +153,9 @@ public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
         + PER_BLOCK_OVERHEAD + indexSize;
     long delta = newSize - recordedSize;
     recordedSize = newSize;
+    if (partition != null) {
+      partition.addSize(delta);
+    }
     return totalSize.addAndGet(delta);
   }
 
@@ -162,6 +183,9 @@ public class CachedBlock implements HeapSize, Comparable<CachedBlock> {
   public synchronized long evicted(AtomicLong totalSize) {
     if (recordedSize >= 0) {
       totalSize.addAndGet(recordedSize * -1);
+      if (partition != null) {
+        partition.addSize(recordedSize * -1);
+      }
       long tmp = recordedSize;
       recordedSize = -1;
       index = null;
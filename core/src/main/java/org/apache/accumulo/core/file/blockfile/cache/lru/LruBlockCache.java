@@ -18,6 +18,13 @@
 package org.apache.accumulo.core.file.blockfile.cache.lru;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
@@ -26,6 +33,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 import org.apache.accumulo.core.file.blockfile.cache.impl.ClassSize;
@@ -33,6 +41,7 @@ import org.apache.accumulo.core.file.blockfile.cache.impl.SizeConstants;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.CacheEntry;
 import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.accumulo.core.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +84,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * fewest least-recently-used blocks necessary from each of the three priorities (would be 3 times
  * bytes to free). It then uses the priority chunk sizes to evict fairly according to the relative
  * sizes and usage.
+ *
+ * <p>
+ * Blocks may also be cached through a named {@link Partition} obtained from
+ * {@link #getPartition(String)}. Blocks are charged to the partition that first cached them. Before
+ * the priority buckets are considered, eviction brings any partition above its maximum share back
+ * under it, and blocks of a partition that is at or below its minimum share are never evicted to
+ * make room for others. Each partition keeps its own hit, miss and eviction counts.
  */
 public class LruBlockCache extends SynchronousLoadingBlockCache implements BlockCache, HeapSize {
 
@@ -95,6 +111,9 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
   /** Eviction thread */
   private final EvictionThread evictionThread;
 
+  /** Passed blocks as they are evicted */
+  private volatile BiConsumer<String,byte[]> evictionListener;
+
   /** Statistics thread schedule pool (for heavy debugging, could remove) */
   private final ScheduledExecutorService scheduleThreadPool = Executors.newScheduledThreadPool(1,
       new NamingThreadFactory("LRUBlockCacheStats"));
@@ -116,6 +135,9 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
 
   private final LruBlockCacheConfiguration conf;
 
+  /** Named partitions of this cache */
+  private final ConcurrentHashMap<String,Partition> partitions = new ConcurrentHashMap<>();
+
   /**
    * Default constructor. Specify maximum size and expected average block size (approximation is
    * fine).
@@ -218,12 +240,17 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
    *          if block is in-memory
    */
   public CacheEntry cacheBlock(String blockName, byte buf[], boolean inMemory) {
+    return cacheBlock(blockName, buf, inMemory, null);
+  }
+
+  private CacheEntry cacheBlock(String blockName, byte buf[], boolean inMemory,
+      Partition partition) {
     CachedBlock cb = map.get(blockName);
     if (cb != null) {
       stats.duplicateReads();
       cb.access(count.incrementAndGet());
     } else {
-      cb = new CachedBlock(blockName, buf, count.incrementAndGet(), inMemory);
+      cb = new CachedBlock(blockName, buf, count.incrementAndGet(), inMemory, partition);
       CachedBlock currCb = map.putIfAbsent(blockName, cb);
       if (currCb != null) {
         stats.duplicateReads();
@@ -233,7 +260,8 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
         // Actually added block to cache
         long newSize = cb.recordSize(size);
         elements.incrementAndGet();
-        if (newSize > acceptableSize() && !evictionInProgress) {
+        if ((newSize > acceptableSize() || (partition != null && partition.overAcceptable()))
+            && !evictionInProgress) {
           runEviction();
         }
       }
@@ -268,12 +296,22 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
    */
   @Override
   public CacheEntry getBlock(String blockName) {
+    return getBlock(blockName, (CacheStats) null);
+  }
+
+  private CacheEntry getBlock(String blockName, CacheStats partitionStats) {
     CachedBlock cb = map.get(blockName);
     if (cb == null) {
       stats.miss();
+      if (partitionStats != null) {
+        partitionStats.miss();
+      }
       return null;
     }
     stats.hit();
+    if (partitionStats != null) {
+      partitionStats.hit();
+    }
     cb.access(count.incrementAndGet());
     return wrap(cb);
   }
@@ -287,10 +325,25 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
     return wrap(cb);
   }
 
+  /**
+   * Sets a function that is passed the name and contents of each block evicted from this cache. It
+   * is called by the thread doing the eviction, so it should not block.
+   */
+  public void setEvictionListener(BiConsumer<String,byte[]> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
   protected long evictBlock(CachedBlock block) {
     if (map.remove(block.getName()) != null) {
       elements.decrementAndGet();
       stats.evicted();
+      if (block.getPartition() != null) {
+        block.getPartition().getStats().evicted();
+      }
+      BiConsumer<String,byte[]> listener = evictionListener;
+      if (listener != null) {
+        listener.accept(block.getName(), block.getBuffer());
+      }
       return block.evicted(size);
     }
     return 0;
@@ -319,6 +372,12 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
     try {
       evictionInProgress = true;
 
+      long partitionBytesFreed = evictPartitionOverflow();
+      if (partitionBytesFreed > 0) {
+        log.trace("Block cache LRU eviction freed {} bytes from partitions over their share",
+            partitionBytesFreed);
+      }
+
       long bytesToFree = size.get() - minSize();
 
       log.trace("Block cache LRU eviction started.  Attempting to free {} bytes", bytesToFree);
@@ -333,6 +392,9 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
 
       // Scan entire map putting into appropriate buckets
       for (CachedBlock cachedBlock : map.values()) {
+        if (isProtected(cachedBlock)) {
+          continue;
+        }
         switch (cachedBlock.getPriority()) {
           case SINGLE: {
             bucketSingle.add(cachedBlock);
@@ -386,6 +448,54 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
     }
   }
 
+  /**
+   * Evicts the least recently used blocks of each partition that has grown past its acceptable
+   * share until it is back under its minimum target.
+   *
+   * @return bytes freed
+   */
+  private long evictPartitionOverflow() {
+    Map<Partition,CachedBlockQueue> queues = null;
+    for (Partition partition : partitions.values()) {
+      if (partition.overAcceptable()) {
+        if (queues == null) {
+          queues = new HashMap<>();
+        }
+        queues.put(partition, new CachedBlockQueue(partition.overflow(), conf.getBlockSize()));
+      }
+    }
+
+    if (queues == null) {
+      return 0;
+    }
+
+    for (CachedBlock cachedBlock : map.values()) {
+      CachedBlockQueue queue = queues.get(cachedBlock.getPartition());
+      if (queue != null) {
+        queue.add(cachedBlock);
+      }
+    }
+
+    long bytesFreed = 0;
+    for (Entry<Partition,CachedBlockQueue> entry : queues.entrySet()) {
+      for (CachedBlock block : entry.getValue().get()) {
+        if (entry.getKey().overflow() <= 0) {
+          break;
+        }
+        bytesFreed += evictBlock(block);
+      }
+    }
+    return bytesFreed;
+  }
+
+  /**
+   * A block is protected from eviction while its partition is within its minimum share.
+   */
+  private boolean isProtected(CachedBlock block) {
+    Partition partition = block.getPartition();
+    return partition != null && partition.getCurrentSize() <= partition.minSize;
+  }
+
   /**
    * Used to group blocks into priority buckets. There will be a BlockBucket for each priority
    * (single, multi, memory). Once bucketed, the eviction algorithm takes the appropriate number of
@@ -412,6 +522,9 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
       CachedBlock[] blocks = queue.get();
       long freedBytes = 0;
       for (CachedBlock block : blocks) {
+        if (isProtected(block)) {
+          continue;
+        }
         freedBytes += evictBlock(block);
         if (freedBytes >= toFree) {
           return freedBytes;
@@ -463,6 +576,28 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
     return (int) Math.min(Integer.MAX_VALUE, getMaxSize());
   }
 
+  /**
+   * Returns the names of the most recently used blocks, most recent first.
+   */
+  @Override
+  public List<String> getHotBlockNames(int maxBlocks) {
+    // access times change while blocks are used, so sort a copy of them
+    List<Pair<Long,String>> blocks = new ArrayList<>(map.size());
+    for (CachedBlock cb : map.values()) {
+      blocks.add(new Pair<>(cb.getAccessTime(), cb.getName()));
+    }
+    blocks.sort((b1, b2) -> Long.compare(b2.getFirst(), b1.getFirst()));
+
+    List<String> names = new ArrayList<>(Math.min(maxBlocks, blocks.size()));
+    for (Pair<Long,String> block : blocks) {
+      if (names.size() >= maxBlocks) {
+        break;
+      }
+      names.add(block.getSecond());
+    }
+    return names;
+  }
+
   /**
    * Get the current size of this cache.
    *
@@ -504,6 +639,96 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
     return this.stats.getEvictedCount();
   }
 
+  /**
+   * Get the named partition of this cache, creating it if it does not exist. Its shares are taken
+   * from the cache configuration.
+   */
+  public Partition getPartition(String name) {
+    return partitions.computeIfAbsent(name, Partition::new);
+  }
+
+  /**
+   * Get the partitions of this cache that have been used so far.
+   */
+  public Collection<Partition> getPartitions() {
+    return Collections.unmodifiableCollection(partitions.values());
+  }
+
+  /**
+   * A named view of this cache. Blocks cached through a partition are charged to it, and its
+   * statistics only count the lookups made through it.
+   */
+  public class Partition extends SynchronousLoadingBlockCache {
+
+    private final String name;
+    private final long minSize;
+    private final long maxSize;
+    private final AtomicLong partitionSize = new AtomicLong(0);
+    private final CacheStats partitionStats = new CacheStats();
+
+    private Partition(String name) {
+      this.name = name;
+      this.minSize = (long) Math.floor(conf.getMaxSize() * conf.getPartitionMinFactor(name));
+      this.maxSize = (long) Math.floor(conf.getMaxSize() * conf.getPartitionMaxFactor(name));
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    void addSize(long delta) {
+      partitionSize.addAndGet(delta);
+    }
+
+    public long getCurrentSize() {
+      return partitionSize.get();
+    }
+
+    private boolean overAcceptable() {
+      return maxSize < conf.getMaxSize()
+          && getCurrentSize() > (long) Math.floor(maxSize * conf.getAcceptableFactor());
+    }
+
+    private long overflow() {
+      return getCurrentSize() - (long) Math.floor(maxSize * conf.getMinFactor());
+    }
+
+    @Override
+    public CacheEntry cacheBlock(String blockName, byte[] buf) {
+      return LruBlockCache.this.cacheBlock(blockName, buf, false, this);
+    }
+
+    @Override
+    public CacheEntry getBlock(String blockName) {
+      return LruBlockCache.this.getBlock(blockName, partitionStats);
+    }
+
+    @Override
+    protected CacheEntry getBlockNoStats(String blockName) {
+      return LruBlockCache.this.getBlockNoStats(blockName);
+    }
+
+    @Override
+    protected int getMaxEntrySize() {
+      return (int) Math.min(Integer.MAX_VALUE, maxSize);
+    }
+
+    @Override
+    public long getMaxHeapSize() {
+      return maxSize;
+    }
+
+    @Override
+    public long getMaxSize() {
+      return maxSize;
+    }
+
+    @Override
+    public CacheStats getStats() {
+      return partitionStats;
+    }
+  }
+
   /**
    * Eviction thread. Sits in waiting state until an eviction is triggered when the cache size grows
    * above the acceptable level.
@@ -632,6 +857,11 @@ public class LruBlockCache extends SynchronousLoadingBlockCache implements Block
       return accessCount.get();
     }
 
+    @Override
+    public long evictedCount() {
+      return evictedCount.get();
+    }
+
     public long getMissCount() {
       return missCount.get();
     }
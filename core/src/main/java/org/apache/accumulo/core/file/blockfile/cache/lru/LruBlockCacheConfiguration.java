@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import org.apache.accumulo.core.conf.ConfigurationTypeHelper;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager.Configuration;
 import org.apache.accumulo.core.spi.cache.CacheType;
@@ -56,6 +57,11 @@ public final class LruBlockCacheConfiguration {
   public static final String MAP_LOAD_PROPERTY = "map.load";
   public static final String MAP_CONCURRENCY_PROPERTY = "map.concurrency";
   public static final String EVICTION_THREAD_PROPERTY = "eviction.thread";
+  public static final String L2_DIR_PROPERTY = "l2.dir";
+  public static final String L2_SIZE_PROPERTY = "l2.size";
+  public static final String PARTITION_PROPERTY_PREFIX = "partition.";
+  public static final String PARTITION_MIN_FACTOR_SUFFIX = ".min.factor";
+  public static final String PARTITION_MAX_FACTOR_SUFFIX = ".max.factor";
 
   /** Acceptable size of cache (no evictions if size < acceptable) */
   private final float acceptableFactor;
@@ -80,6 +86,18 @@ public final class LruBlockCacheConfiguration {
 
   private final boolean useEvictionThread;
 
+  /** Local directory for the second tier cache file, or null if there is no second tier */
+  private final String l2Dir;
+
+  /** Maximum size of the second tier cache file */
+  private final long l2Size;
+
+  /** Share of the cache each named partition is guaranteed to keep during eviction */
+  private final Map<String,Float> partitionMinFactors = new HashMap<>();
+
+  /** Share of the cache each named partition may grow to before its own blocks are evicted */
+  private final Map<String,Float> partitionMaxFactors = new HashMap<>();
+
   private final Configuration conf;
 
   private final Map<String,String> props;
@@ -111,6 +129,22 @@ public final class LruBlockCacheConfiguration {
     this.mapConcurrencyLevel = get(MAP_CONCURRENCY_PROPERTY).map(Integer::valueOf)
         .filter(i -> i > 0).orElse(DEFAULT_CONCURRENCY_LEVEL);
     this.useEvictionThread = get(EVICTION_THREAD_PROPERTY).map(Boolean::valueOf).orElse(true);
+    this.l2Dir = get(L2_DIR_PROPERTY).filter(d -> !d.isEmpty()).orElse(null);
+    this.l2Size = get(L2_SIZE_PROPERTY).map(ConfigurationTypeHelper::getFixedMemoryAsBytes)
+        .orElse(0L);
+
+    props.forEach((k, v) -> {
+      if (k.startsWith(PARTITION_PROPERTY_PREFIX)) {
+        String name = k.substring(PARTITION_PROPERTY_PREFIX.length());
+        if (name.endsWith(PARTITION_MIN_FACTOR_SUFFIX)) {
+          name = name.substring(0, name.length() - PARTITION_MIN_FACTOR_SUFFIX.length());
+          partitionMinFactors.put(name, Float.valueOf(v));
+        } else if (name.endsWith(PARTITION_MAX_FACTOR_SUFFIX)) {
+          name = name.substring(0, name.length() - PARTITION_MAX_FACTOR_SUFFIX.length());
+          partitionMaxFactors.put(name, Float.valueOf(v));
+        }
+      }
+    });
 
     if (this.getSingleFactor() + this.getMultiFactor() + this.getMemoryFactor() != 1) {
       throw new IllegalArgumentException(
@@ -122,6 +156,30 @@ public final class LruBlockCacheConfiguration {
     if (this.getMinFactor() >= 1.0f || this.getAcceptableFactor() >= 1.0f) {
       throw new IllegalArgumentException("all factors must be < 1");
     }
+    if (this.l2Dir != null && this.l2Size <= 0) {
+      throw new IllegalArgumentException(
+          L2_SIZE_PROPERTY + " must be set when using " + L2_DIR_PROPERTY);
+    }
+    float totalPartitionMin = 0;
+    for (String name : partitionMinFactors.keySet()) {
+      float min = getPartitionMinFactor(name);
+      if (min < 0 || min > getPartitionMaxFactor(name)) {
+        throw new IllegalArgumentException(
+            "min factor of cache partition " + name + " must be between 0 and its max factor");
+      }
+      totalPartitionMin += min;
+    }
+    for (String name : partitionMaxFactors.keySet()) {
+      float max = getPartitionMaxFactor(name);
+      if (max <= 0 || max > 1.0f) {
+        throw new IllegalArgumentException(
+            "max factor of cache partition " + name + " must be > 0 and <= 1");
+      }
+    }
+    if (totalPartitionMin >= this.getMinFactor()) {
+      throw new IllegalArgumentException(
+          "partition min factors must total less than minFactor " + this.getMinFactor());
+    }
   }
 
   public float getAcceptableFactor() {
@@ -156,6 +214,28 @@ public final class LruBlockCacheConfiguration {
     return useEvictionThread;
   }
 
+  public String getL2Dir() {
+    return l2Dir;
+  }
+
+  public long getL2Size() {
+    return l2Size;
+  }
+
+  /**
+   * @return the share of the cache reserved for the named partition, 0 if none was configured
+   */
+  public float getPartitionMinFactor(String partition) {
+    return partitionMinFactors.getOrDefault(partition, 0f);
+  }
+
+  /**
+   * @return the largest share of the cache the named partition may use, 1 if none was configured
+   */
+  public float getPartitionMaxFactor(String partition) {
+    return partitionMaxFactors.getOrDefault(partition, 1f);
+  }
+
   public static class Builder {
     private Map<String,String> props = new HashMap<>();
     private String prefix;
@@ -215,6 +295,24 @@ public final class LruBlockCacheConfiguration {
       return this;
     }
 
+    public Builder l2Dir(String dir) {
+      props.put(prefix + L2_DIR_PROPERTY, dir);
+      return this;
+    }
+
+    public Builder l2Size(long size) {
+      Preconditions.checkArgument(size > 0);
+      props.put(prefix + L2_SIZE_PROPERTY, size + "");
+      return this;
+    }
+
+    public Builder partitionShares(String partition, float min, float max) {
+      Preconditions.checkArgument(min >= 0 && min <= max && max > 0 && max <= 1);
+      set(PARTITION_PROPERTY_PREFIX + partition + PARTITION_MIN_FACTOR_SUFFIX, min);
+      set(PARTITION_PROPERTY_PREFIX + partition + PARTITION_MAX_FACTOR_SUFFIX, max);
+      return this;
+    }
+
     public Map<String,String> buildMap() {
       return ImmutableMap.copyOf(props);
     }
@@ -230,7 +328,9 @@ public final class LruBlockCacheConfiguration {
         + this.getMinFactor() + ", singleFactor: " + this.getSingleFactor() + ", multiFactor: "
         + this.getMultiFactor() + ", memoryFactor: " + this.getMemoryFactor() + ", mapLoadFactor: "
         + this.getMapLoadFactor() + ", mapConcurrencyLevel: " + this.getMapConcurrencyLevel()
-        + ", useEvictionThread: " + this.isUseEvictionThread();
+        + ", useEvictionThread: " + this.isUseEvictionThread() + ", l2Dir: " + this.getL2Dir()
+        + ", l2Size: " + this.getL2Size() + ", partitionMinFactors: " + partitionMinFactors
+        + ", partitionMaxFactors: " + partitionMaxFactors;
   }
 
   public long getMaxSize() {
@@ -17,6 +17,15 @@
  */
 package org.apache.accumulo.core.file.blockfile.cache.lru;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.accumulo.core.file.blockfile.cache.tiered.FileBlockStore;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.TieredBlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager;
 import org.apache.accumulo.core.spi.cache.CacheType;
@@ -27,21 +36,73 @@ public class LruBlockCacheManager extends BlockCacheManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(LruBlockCacheManager.class);
 
+  private final Map<String,TieredBlockCache> tieredPartitions = new ConcurrentHashMap<>();
+
   @Override
   protected BlockCache createCache(Configuration conf, CacheType type) {
     LruBlockCacheConfiguration cc = new LruBlockCacheConfiguration(conf, type);
     LOG.info("Creating {} cache with configuration {}", type, cc);
-    return new LruBlockCache(cc);
+    LruBlockCache cache = new LruBlockCache(cc);
+    if (cc.getL2Dir() == null) {
+      return cache;
+    }
+
+    FileBlockStore store;
+    try {
+      store = new FileBlockStore(new File(cc.getL2Dir()), type.name().toLowerCase(),
+          cc.getL2Size());
+    } catch (IOException e) {
+      cache.shutdown();
+      throw new UncheckedIOException(e);
+    }
+    TieredBlockCache tiered = new TieredBlockCache(cache, store, cc.getBlockSize());
+    cache.setEvictionListener(tiered::spill);
+    return tiered;
+  }
+
+  @Override
+  public BlockCache getBlockCache(CacheType type, String partition) {
+    BlockCache cache = getBlockCache(type);
+    if (cache == null || partition == null || partition.isEmpty()) {
+      return cache;
+    }
+    if (cache instanceof TieredBlockCache) {
+      TieredBlockCache tiered = (TieredBlockCache) cache;
+      return tieredPartitions.computeIfAbsent(type + ":" + partition,
+          k -> new TieredBlockCache(((LruBlockCache) tiered.getFirstTier()).getPartition(partition),
+              tiered.getSecondTier(), tiered.getBlockSize()));
+    }
+    return ((LruBlockCache) cache).getPartition(partition);
+  }
+
+  @Override
+  public Map<String,BlockCache.Stats> getPartitionStats(CacheType type) {
+    BlockCache cache = getBlockCache(type);
+    if (cache instanceof TieredBlockCache) {
+      cache = ((TieredBlockCache) cache).getFirstTier();
+    }
+    Map<String,BlockCache.Stats> stats = new HashMap<>();
+    if (cache != null) {
+      for (LruBlockCache.Partition partition : ((LruBlockCache) cache).getPartitions()) {
+        stats.put(partition.getName(), partition.getStats());
+      }
+    }
+    return stats;
   }
 
   @Override
   public void stop() {
     for (CacheType type : CacheType.values()) {
-      LruBlockCache cache = ((LruBlockCache) this.getBlockCache(type));
+      BlockCache cache = this.getBlockCache(type);
+      if (cache instanceof TieredBlockCache) {
+        ((TieredBlockCache) cache).close();
+        cache = ((TieredBlockCache) cache).getFirstTier();
+      }
       if (cache != null) {
-        cache.shutdown();
+        ((LruBlockCache) cache).shutdown();
       }
     }
+    tieredPartitions.clear();
     super.stop();
   }
 
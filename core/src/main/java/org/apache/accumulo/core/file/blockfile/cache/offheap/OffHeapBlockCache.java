@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+import org.apache.accumulo.core.conf.ConfigurationTypeHelper;
+import org.apache.accumulo.core.file.blockfile.cache.impl.ClassSize;
+import org.apache.accumulo.core.file.blockfile.cache.impl.SizeConstants;
+import org.apache.accumulo.core.file.blockfile.cache.lru.SynchronousLoadingBlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager.Configuration;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A block cache that keeps block contents in direct memory, outside of the Java heap, so that a
+ * large cache does not require a large heap.
+ * <p>
+ * The cache memory is divided into fixed size slabs that are allocated on demand. Each slab is
+ * assigned to a size class when it is first needed and is cut into equal chunks of that class's
+ * size, so a block is stored in a single chunk of the smallest class that can hold it. Slabs are
+ * not moved between size classes once assigned, and caches too small to have at least 64 slabs of
+ * the configured size use smaller slabs. When a size class has no free chunk and no slab can be
+ * added, a chunk of that class is reclaimed using the CLOCK algorithm, which approximates LRU
+ * without reordering anything on a cache hit.
+ * <p>
+ * Only block metadata lives on the heap. Since {@link CacheEntry#getBuffer()} returns a heap array,
+ * a hit copies the block out of its chunk. The total size of all off heap caches must fit within
+ * the JVM's {@code -XX:MaxDirectMemorySize}.
+ */
+public final class OffHeapBlockCache extends SynchronousLoadingBlockCache implements BlockCache {
+
+  private static final Logger log = LoggerFactory.getLogger(OffHeapBlockCache.class);
+
+  public static final String PROPERTY_PREFIX = "offheap";
+
+  public static final String SLAB_SIZE_PROPERTY = "slab.size";
+  public static final String MIN_CHUNK_SIZE_PROPERTY = "min.chunk.size";
+  public static final String GROWTH_FACTOR_PROPERTY = "growth.factor";
+
+  public static final int DEFAULT_SLAB_SIZE = 4 * 1024 * 1024;
+  public static final int DEFAULT_MIN_CHUNK_SIZE = 1024;
+  public static final float DEFAULT_GROWTH_FACTOR = 1.25f;
+
+  private static final int CHUNK_ALIGNMENT = 64;
+  private static final int MIN_SLABS = 64;
+
+  // approximate heap used to track one cached block, not counting its name
+  private static final long BLOCK_OVERHEAD = ClassSize.align(ClassSize.OBJECT
+      + 3 * ClassSize.REFERENCE + 2 * SizeConstants.SIZEOF_INT + SizeConstants.SIZEOF_BOOLEAN)
+      + ClassSize.STRING + ClassSize.CONCURRENT_HASHMAP_ENTRY;
+
+  private final ConcurrentHashMap<String,Block> blocks = new ConcurrentHashMap<>();
+  private final SizeClass[] sizeClasses;
+  private final int slabSize;
+  private final int maxSlabs;
+  private final AtomicInteger allocatedSlabs = new AtomicInteger();
+  private final long maxHeapSize;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder evictedCount = new LongAdder();
+
+  public OffHeapBlockCache(Configuration conf, CacheType type) {
+    Map<String,String> props = conf.getProperties(PROPERTY_PREFIX, type);
+    long maxSize = conf.getMaxSize(type);
+
+    int configuredSlabSize = get(props, SLAB_SIZE_PROPERTY, DEFAULT_SLAB_SIZE);
+    int minChunkSize = get(props, MIN_CHUNK_SIZE_PROPERTY, DEFAULT_MIN_CHUNK_SIZE);
+    float growthFactor = props.containsKey(GROWTH_FACTOR_PROPERTY)
+        ? Float.parseFloat(props.get(GROWTH_FACTOR_PROPERTY))
+        : DEFAULT_GROWTH_FACTOR;
+    if (configuredSlabSize <= 0 || minChunkSize <= 0 || growthFactor <= 1.0f) {
+      throw new IllegalArgumentException("Invalid off heap cache configuration " + props);
+    }
+
+    // Slabs stay with the size class they are first given to, so a small cache uses smaller slabs
+    // to leave enough of them for every size class in use.
+    this.slabSize = (int) Math.max(minChunkSize,
+        Math.min(configuredSlabSize, maxSize / MIN_SLABS / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT));
+    this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxSize / slabSize));
+    this.sizeClasses = createSizeClasses(minChunkSize, growthFactor, slabSize);
+    long expectedBlocks = Math.max(1, getMaxSize() / Math.max(1, conf.getBlockSize()));
+    // block names are about 64 bytes, and the indexes built for hot blocks are about 1% of the
+    // size of the blocks
+    this.maxHeapSize = expectedBlocks * (BLOCK_OVERHEAD + ClassSize.align(64)) + getMaxSize() / 100;
+  }
+
+  private static int get(Map<String,String> props, String prop, int defaultValue) {
+    String val = props.get(prop);
+    if (val == null)
+      return defaultValue;
+    return (int) ConfigurationTypeHelper.getFixedMemoryAsBytes(val);
+  }
+
+  private SizeClass[] createSizeClasses(int minChunkSize, float growthFactor, int slabSize) {
+    List<SizeClass> classes = new ArrayList<>();
+    long size = Math.min(align(minChunkSize), slabSize);
+    while (size < slabSize) {
+      classes.add(new SizeClass((int) size));
+      size = Math.max(size + CHUNK_ALIGNMENT, align((long) Math.ceil(size * growthFactor)));
+    }
+    classes.add(new SizeClass(slabSize));
+    return classes.toArray(new SizeClass[classes.size()]);
+  }
+
+  private static long align(long size) {
+    return (size + CHUNK_ALIGNMENT - 1) / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT;
+  }
+
+  private SizeClass sizeClassFor(int length) {
+    int low = 0;
+    int high = sizeClasses.length - 1;
+    if (length > sizeClasses[high].chunkSize)
+      return null;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sizeClasses[mid].chunkSize < length)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return sizeClasses[low];
+  }
+
+  /**
+   * Metadata for a cached block. The chunk is guarded by the size class lock and is set to -1 when
+   * the block is evicted.
+   */
+  private static final class Block {
+    private final String name;
+    private final SizeClass sizeClass;
+    private final int length;
+    private int chunk;
+    private volatile boolean referenced;
+    private CacheEntry.Weighable index;
+
+    Block(String name, SizeClass sizeClass, int length, int chunk) {
+      this.name = name;
+      this.sizeClass = sizeClass;
+      this.length = length;
+      this.chunk = chunk;
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T extends CacheEntry.Weighable> T getIndex(Supplier<T> supplier) {
+      if (index == null) {
+        index = supplier.get();
+      }
+      return (T) index;
+    }
+  }
+
+  private final class SizeClass {
+    private final int chunkSize;
+    private final int chunksPerSlab;
+    private final StampedLock lock = new StampedLock();
+
+    // all of the following are guarded by lock
+    private ByteBuffer[] slabs = new ByteBuffer[0];
+    private Block[] owners = new Block[0];
+    private int[] free = new int[0];
+    private int numFree = 0;
+    private int hand = 0;
+
+    SizeClass(int chunkSize) {
+      this.chunkSize = chunkSize;
+      this.chunksPerSlab = slabSize / chunkSize;
+    }
+
+    private boolean addSlab() {
+      int count = allocatedSlabs.get();
+      while (count < maxSlabs) {
+        if (allocatedSlabs.compareAndSet(count, count + 1)) {
+          int first = owners.length;
+          slabs = Arrays.copyOf(slabs, slabs.length + 1);
+          slabs[slabs.length - 1] = ByteBuffer.allocateDirect(slabSize);
+          owners = Arrays.copyOf(owners, first + chunksPerSlab);
+          free = Arrays.copyOf(free, first + chunksPerSlab);
+          for (int i = first + chunksPerSlab - 1; i >= first; i--) {
+            free[numFree++] = i;
+          }
+          return true;
+        }
+        count = allocatedSlabs.get();
+      }
+      return false;
+    }
+
+    private int evict() {
+      for (int i = 0; i < 2 * owners.length; i++) {
+        int chunk = hand;
+        hand = (hand + 1) % owners.length;
+        Block owner = owners[chunk];
+        if (owner == null) {
+          return chunk;
+        }
+        if (owner.referenced) {
+          owner.referenced = false;
+        } else {
+          blocks.remove(owner.name, owner);
+          owners[chunk] = null;
+          owner.chunk = -1;
+          evictedCount.increment();
+          return chunk;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     *
+     * @return a chunk that is not in use, or -1 if none could be found
+     */
+    int allocate() {
+      if (numFree > 0 || addSlab()) {
+        return free[--numFree];
+      }
+      if (owners.length == 0) {
+        return -1;
+      }
+      return evict();
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    void release(int chunk) {
+      owners[chunk] = null;
+      free[numFree++] = chunk;
+    }
+
+    private ByteBuffer chunkBuffer(int chunk) {
+      ByteBuffer buffer = slabs[chunk / chunksPerSlab].duplicate();
+      buffer.position((chunk % chunksPerSlab) * chunkSize);
+      return buffer;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    void write(int chunk, byte[] data) {
+      chunkBuffer(chunk).put(data);
+    }
+
+    byte[] read(Block block) {
+      long stamp = lock.readLock();
+      try {
+        int chunk = block.chunk;
+        if (chunk < 0) {
+          return null;
+        }
+        byte[] data = new byte[block.length];
+        chunkBuffer(chunk).get(data);
+        return data;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    void clear() {
+      long stamp = lock.writeLock();
+      try {
+        for (Block owner : owners) {
+          if (owner != null) {
+            owner.chunk = -1;
+          }
+        }
+        slabs = new ByteBuffer[0];
+        owners = new Block[0];
+        free = new int[0];
+        numFree = 0;
+        hand = 0;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    Block block = blocks.get(blockName);
+    if (block != null) {
+      return new OffHeapCacheEntry(block, buf);
+    }
+
+    SizeClass sizeClass = sizeClassFor(buf.length);
+    if (sizeClass == null) {
+      return new OffHeapCacheEntry(null, buf);
+    }
+
+    long stamp = sizeClass.lock.writeLock();
+    try {
+      int chunk = sizeClass.allocate();
+      if (chunk < 0) {
+        return new OffHeapCacheEntry(null, buf);
+      }
+      sizeClass.write(chunk, buf);
+      block = new Block(blockName, sizeClass, buf.length, chunk);
+      Block existing = blocks.putIfAbsent(blockName, block);
+      if (existing != null) {
+        sizeClass.release(chunk);
+        block = existing;
+      } else {
+        sizeClass.owners[chunk] = block;
+      }
+    } finally {
+      sizeClass.lock.unlockWrite(stamp);
+    }
+
+    return new OffHeapCacheEntry(block, buf);
+  }
+
+  private CacheEntry get(String blockName, boolean recordStats) {
+    if (recordStats) {
+      requestCount.increment();
+    }
+
+    Block block = blocks.get(blockName);
+    if (block == null) {
+      return null;
+    }
+
+    byte[] data = block.sizeClass.read(block);
+    if (data == null) {
+      // evicted after the lookup
+      return null;
+    }
+
+    block.referenced = true;
+    if (recordStats) {
+      hitCount.increment();
+    }
+    return new OffHeapCacheEntry(block, data);
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName) {
+    return get(blockName, true);
+  }
+
+  @Override
+  protected CacheEntry getBlockNoStats(String blockName) {
+    return get(blockName, false);
+  }
+
+  @Override
+  protected int getMaxEntrySize() {
+    return slabSize;
+  }
+
+  @Override
+  public long getMaxHeapSize() {
+    return maxHeapSize;
+  }
+
+  @Override
+  public long getMaxSize() {
+    return (long) maxSlabs * slabSize;
+  }
+
+  /**
+   * @return the number of bytes of direct memory currently allocated by this cache
+   */
+  public long getAllocatedSize() {
+    return (long) allocatedSlabs.get() * slabSize;
+  }
+
+  public long getEvictedCount() {
+    return evictedCount.sum();
+  }
+
+  public int getBlockCount() {
+    return blocks.size();
+  }
+
+  /**
+   * Returns the names of blocks that have been read since the clock hand last passed them, followed
+   * by the rest.
+   */
+  @Override
+  public List<String> getHotBlockNames(int maxBlocks) {
+    List<String> referenced = new ArrayList<>();
+    List<String> others = new ArrayList<>();
+    for (Block block : blocks.values()) {
+      if (referenced.size() >= maxBlocks) {
+        break;
+      }
+      (block.referenced ? referenced : others).add(block.name);
+    }
+    for (String name : others) {
+      if (referenced.size() >= maxBlocks) {
+        break;
+      }
+      referenced.add(name);
+    }
+    return referenced;
+  }
+
+  @Override
+  public Stats getStats() {
+    long hits = hitCount.sum();
+    long requests = requestCount.sum();
+    return new Stats() {
+      @Override
+      public long hitCount() {
+        return hits;
+      }
+
+      @Override
+      public long requestCount() {
+        return requests;
+      }
+    };
+  }
+
+  /**
+   * Drops all cached blocks and releases the slabs for garbage collection.
+   */
+  public void shutdown() {
+    blocks.clear();
+    for (SizeClass sizeClass : sizeClasses) {
+      sizeClass.clear();
+    }
+    allocatedSlabs.set(0);
+    log.debug("Off heap cache shutdown, hits={} requests={} evicted={}", hitCount.sum(),
+        requestCount.sum(), evictedCount.sum());
+  }
+
+  private static final class OffHeapCacheEntry implements CacheEntry {
+    private final Block block;
+    private final byte[] buffer;
+
+    OffHeapCacheEntry(Block block, byte[] buffer) {
+      this.block = block;
+      this.buffer = buffer;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      return buffer;
+    }
+
+    @Override
+    public <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      if (block == null) {
+        return null;
+      }
+      return block.getIndex(supplier);
+    }
+
+    @Override
+    public void indexWeightChanged() {}
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.tiered;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.accumulo.core.file.blockfile.cache.impl.ClassSize;
+import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores blocks in a fixed size file on local disk, meant to be a second tier behind an in memory
+ * block cache.
+ * <p>
+ * The file is used as a circular log. Blocks are appended at the head and the oldest blocks are
+ * dropped as the head wraps around and overwrites them, so every write to the device is sequential
+ * and the only state kept on the heap is the location of each block. Writes are done by a single
+ * background thread and are dropped when it falls behind, since storing a block is only ever an
+ * optimization. The file does not survive a restart.
+ */
+public class FileBlockStore implements AutoCloseable {
+
+  private static final Logger log = LoggerFactory.getLogger(FileBlockStore.class);
+
+  private static final int WRITE_QUEUE_SIZE = 1024;
+
+  // approximate heap used to track the location of one block, not counting its name
+  private static final long ENTRY_OVERHEAD = ClassSize.align(ClassSize.OBJECT + 8 + 4)
+      + ClassSize.align(ClassSize.OBJECT + 2 * ClassSize.REFERENCE) + ClassSize.STRING
+      + ClassSize.CONCURRENT_HASHMAP_ENTRY + ClassSize.REFERENCE;
+
+  private static final class Location {
+    // position in the log, which only grows. The position in the file is pos % capacity.
+    final long pos;
+    final int length;
+
+    Location(long pos, int length) {
+      this.pos = pos;
+      this.length = length;
+    }
+  }
+
+  private static final class Written {
+    final String name;
+    final Location location;
+
+    Written(String name, Location location) {
+      this.name = name;
+      this.location = location;
+    }
+  }
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final long capacity;
+  private final Executor writer;
+  private final ExecutorService ownedWriter;
+
+  private final ConcurrentHashMap<String,Location> index = new ConcurrentHashMap<>();
+
+  // only accessed by the writer
+  private final ArrayDeque<Written> written = new ArrayDeque<>();
+  private long head = 0;
+
+  // end of the log region the writer may be overwriting, readers use this to detect torn reads
+  private volatile long reserved = 0;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * Creates a store that writes blocks with its own background thread.
+   *
+   * @param dir
+   *          local directory to create the store's file in
+   * @param name
+   *          used in the file and thread names
+   * @param capacity
+   *          maximum size of the file
+   */
+  public FileBlockStore(File dir, String name, long capacity) throws IOException {
+    this(dir, name, capacity, newWriter(name), true);
+  }
+
+  /**
+   * Creates a store that writes blocks using the given executor. The executor must run tasks one at
+   * a time in the order they were submitted.
+   */
+  public FileBlockStore(File dir, String name, long capacity, Executor writer) throws IOException {
+    this(dir, name, capacity, writer, false);
+  }
+
+  private FileBlockStore(File dir, String name, long capacity, Executor writer, boolean ownsWriter)
+      throws IOException {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive : " + capacity);
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create directory " + dir);
+    }
+    this.file = File.createTempFile("accumulo-" + name + "-", ".blocks", dir);
+    this.file.deleteOnExit();
+    this.raf = new RandomAccessFile(file, "rw");
+    this.channel = raf.getChannel();
+    this.capacity = capacity;
+    this.writer = writer;
+    this.ownedWriter = ownsWriter ? (ExecutorService) writer : null;
+  }
+
+  private static ExecutorService newWriter(String name) {
+    return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE), new NamingThreadFactory(name + "-l2-writer"));
+  }
+
+  /**
+   * Queues a block to be written. The block is not written if it is already stored, if it is larger
+   * than the store, or if too many writes are already queued.
+   */
+  public void put(String name, byte[] data) {
+    if (data.length > capacity || index.containsKey(name)) {
+      return;
+    }
+    try {
+      writer.execute(() -> write(name, data));
+    } catch (RejectedExecutionException e) {
+      dropped.increment();
+    }
+  }
+
+  private void write(String name, byte[] data) {
+    if (index.containsKey(name)) {
+      return;
+    }
+
+    long pos = head;
+    long offset = pos % capacity;
+    if (offset + data.length > capacity) {
+      // do not split a block across the end of the file
+      pos += capacity - offset;
+      offset = 0;
+    }
+    long end = pos + data.length;
+
+    // tell readers this region is changing before anything in it is dropped or overwritten
+    reserved = end;
+    while (!written.isEmpty() && written.peek().location.pos < end - capacity) {
+      Written old = written.poll();
+      index.remove(old.name, old.location);
+    }
+
+    try {
+      ByteBuffer buf = ByteBuffer.wrap(data);
+      while (buf.hasRemaining()) {
+        channel.write(buf, offset + buf.position());
+      }
+    } catch (IOException e) {
+      log.warn("Failed to write block {} to {}", name, file, e);
+      head = end;
+      return;
+    }
+
+    head = end;
+    Location location = new Location(pos, data.length);
+    index.put(name, location);
+    written.add(new Written(name, location));
+  }
+
+  /**
+   * @return the block's contents, or null if the block is not stored
+   */
+  public byte[] get(String name) {
+    requests.increment();
+    Location location = index.get(name);
+    if (location == null) {
+      return null;
+    }
+
+    byte[] data = new byte[location.length];
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    long offset = location.pos % capacity;
+    try {
+      while (buf.hasRemaining()) {
+        if (channel.read(buf, offset + buf.position()) < 0) {
+          return null;
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Failed to read block {} from {}", name, file, e);
+      return null;
+    }
+
+    if (location.pos < reserved - capacity) {
+      // the writer overwrote the block while it was being read
+      return null;
+    }
+
+    hits.increment();
+    return data;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the approximate heap needed to track a full store of blocks of the given average size
+   */
+  public long getMaxHeapSize(long blockSize) {
+    return capacity / Math.max(1, blockSize) * (ENTRY_OVERHEAD + ClassSize.align(64));
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  public int getBlockCount() {
+    return index.size();
+  }
+
+  @Override
+  public void close() {
+    if (ownedWriter != null) {
+      ownedWriter.shutdownNow();
+    }
+    index.clear();
+    try {
+      raf.close();
+    } catch (IOException e) {
+      log.debug("Failed to close {}", file, e);
+    }
+    if (!file.delete()) {
+      log.debug("Failed to delete {}", file);
+    }
+  }
+}
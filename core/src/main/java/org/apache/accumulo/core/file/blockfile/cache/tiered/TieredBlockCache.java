@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache.tiered;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+
+/**
+ * A block cache with two tiers. Blocks evicted from the first tier, an in memory cache, are spilled
+ * to a {@link FileBlockStore} on local disk. A block that misses the first tier is read from the
+ * store, and put back in the first tier, before falling back to the block's loader.
+ * <p>
+ * The first tier must pass its evicted blocks to {@link #spill(String, byte[])}.
+ */
+public class TieredBlockCache implements BlockCache {
+
+  private final BlockCache l1;
+  private final FileBlockStore l2;
+  private final long blockSize;
+
+  public TieredBlockCache(BlockCache l1, FileBlockStore l2, long blockSize) {
+    this.l1 = l1;
+    this.l2 = l2;
+    this.blockSize = blockSize;
+  }
+
+  public BlockCache getFirstTier() {
+    return l1;
+  }
+
+  public FileBlockStore getSecondTier() {
+    return l2;
+  }
+
+  public long getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Called with each block evicted from the first tier.
+   */
+  public void spill(String blockName, byte[] buf) {
+    l2.put(blockName, buf);
+  }
+
+  @Override
+  public CacheEntry cacheBlock(String blockName, byte[] buf) {
+    return l1.cacheBlock(blockName, buf);
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName) {
+    CacheEntry ce = l1.getBlock(blockName);
+    if (ce == null) {
+      byte[] data = l2.get(blockName);
+      if (data != null) {
+        ce = l1.cacheBlock(blockName, data);
+      }
+    }
+    return ce;
+  }
+
+  /**
+   * Wraps a loader so that a block that misses the first tier is looked for in the second tier
+   * before it is loaded. The first tier still takes care of not loading a block concurrently.
+   */
+  private class SecondTierLoader implements Loader {
+    private final String blockName;
+    private final Loader loader;
+
+    SecondTierLoader(String blockName, Loader loader) {
+      this.blockName = blockName;
+      this.loader = loader;
+    }
+
+    @Override
+    public Map<String,Loader> getDependencies() {
+      Map<String,Loader> deps = loader.getDependencies();
+      if (deps.isEmpty()) {
+        return deps;
+      }
+      Map<String,Loader> wrapped = new HashMap<>();
+      deps.forEach((name, depLoader) -> wrapped.put(name, new SecondTierLoader(name, depLoader)));
+      return wrapped;
+    }
+
+    @Override
+    public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+      byte[] data = l2.get(blockName);
+      if (data != null && data.length <= maxSize) {
+        return data;
+      }
+      return loader.load(maxSize, dependencies);
+    }
+  }
+
+  @Override
+  public CacheEntry getBlock(String blockName, Loader loader) {
+    return l1.getBlock(blockName, new SecondTierLoader(blockName, loader));
+  }
+
+  @Override
+  public long getMaxHeapSize() {
+    return l1.getMaxHeapSize() + l2.getMaxHeapSize(blockSize);
+  }
+
+  @Override
+  public long getMaxSize() {
+    return l1.getMaxSize();
+  }
+
+  /**
+   * Returns the hot blocks of the first tier, the blocks spilled to the second tier have gone cold.
+   */
+  @Override
+  public List<String> getHotBlockNames(int maxBlocks) {
+    return l1.getHotBlockNames(maxBlocks);
+  }
+
+  @Override
+  public Stats getStats() {
+    Stats stats = l1.getStats();
+    long hits = stats.hitCount() + l2.getHitCount();
+    long requests = stats.requestCount();
+    return new Stats() {
+      @Override
+      public long hitCount() {
+        return hits;
+      }
+
+      @Override
+      public long requestCount() {
+        return requests;
+      }
+    };
+  }
+
+  public void close() {
+    l2.close();
+  }
+}
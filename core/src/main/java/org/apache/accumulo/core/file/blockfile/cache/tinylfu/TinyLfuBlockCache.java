@@ -17,8 +17,10 @@
  */
 package org.apache.accumulo.core.file.blockfile.cache.tinylfu;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executors;
@@ -95,6 +97,14 @@ public final class TinyLfuBlockCache implements BlockCache {
     }));
   }
 
+  /**
+   * Returns the names of the blocks the eviction policy is least likely to evict, hottest first.
+   */
+  @Override
+  public List<String> getHotBlockNames(int maxBlocks) {
+    return new ArrayList<>(policy.hottest(maxBlocks).keySet());
+  }
+
   @Override
   public BlockCache.Stats getStats() {
     CacheStats stats = cache.stats();
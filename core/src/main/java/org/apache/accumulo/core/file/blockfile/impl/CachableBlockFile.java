@@ -21,18 +21,30 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.ClassSize;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
+import org.apache.accumulo.core.file.rfile.bcfile.BCFile.BlockRegion;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile.Reader.BlockReader;
 import org.apache.accumulo.core.file.rfile.bcfile.MetaBlockDoesNotExist;
 import org.apache.accumulo.core.file.streams.RateLimitedInputStream;
+import org.apache.accumulo.core.iterators.IterationInterruptedException;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCache.Loader;
 import org.apache.accumulo.core.spi.cache.CacheEntry;
@@ -40,6 +52,7 @@ import org.apache.accumulo.core.spi.cache.CacheEntry.Weighable;
 import org.apache.accumulo.core.spi.crypto.CryptoService;
 import org.apache.accumulo.core.util.ratelimit.RateLimiter;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ChecksumFileSystem;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.Seekable;
@@ -67,6 +80,55 @@ public class CachableBlockFile {
     return p.toString();
   }
 
+  /**
+   * Puts the blocks of a file that is being written into the block caches, under the names a
+   * {@link Reader} of the file looks them up by, so that the first reads of a new file find the
+   * blocks that were just written in the cache.
+   */
+  public static class BlockCacheWriter {
+    private final String cacheId;
+    private final BlockCache dataCache;
+    private final BlockCache indexCache;
+
+    /**
+     * @param cacheId
+     *          the id of the file the blocks will be read from, see {@link #pathToCacheId(Path)}
+     * @param dataCache
+     *          cache to put data blocks in, may be null to not cache data blocks
+     * @param indexCache
+     *          cache to put index blocks in, may be null to not cache index blocks
+     */
+    public BlockCacheWriter(String cacheId, BlockCache dataCache, BlockCache indexCache) {
+      this.cacheId = Objects.requireNonNull(cacheId);
+      this.dataCache = dataCache;
+      this.indexCache = indexCache;
+    }
+
+    public boolean isCachingDataBlocks() {
+      return dataCache != null;
+    }
+
+    public boolean isCachingIndexBlocks() {
+      return indexCache != null;
+    }
+
+    /**
+     * Caches the uncompressed contents of a data block written at the given offset.
+     */
+    public void dataBlockWritten(long offset, byte[] data) {
+      if (dataCache != null)
+        dataCache.cacheBlock(cacheId + "R" + offset, data);
+    }
+
+    /**
+     * Caches the uncompressed contents of an index block written at the given offset.
+     */
+    public void indexBlockWritten(long offset, byte[] data) {
+      if (indexCache != null)
+        indexCache.cacheBlock(cacheId + "R" + offset, data);
+    }
+  }
+
   /**
    * Class wraps the BCFile reader.
    */
@@ -78,10 +140,13 @@ public class CachableBlockFile {
     private final BlockCache _iCache;
     private Cache<String,Long> fileLenCache = null;
     private volatile InputStream fin = null;
-    private boolean closed = false;
+    private volatile boolean closed = false;
     private final Configuration conf;
     private final AccumuloConfiguration accumuloConfiguration;
     private final CryptoService cryptoService;
+    private final Executor readAheadExecutor;
+    private final boolean positionalReads;
+    private final boolean cacheCompressed;
 
     private final IoeSupplier<InputStream> inputSupplier;
     private final IoeSupplier<Long> lengthSupplier;
@@ -95,6 +160,13 @@ public class CachableBlockFile {
     // https://stackoverflow.com/a/8381338
     private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
 
+    // data blocks that are no further apart than this are read with a single read
+    private static final int MAX_COALESCE_GAP = 64 * 1024;
+    private static final int MAX_COALESCED_READ = 16 * 1024 * 1024;
+
+    // a compressed data block read this many times also keeps a decompressed copy in the cache
+    private static final int HOT_BLOCK_ACCESSES = 3;
+
     private long getCachedFileLen() throws IOException {
       try {
         return fileLenCache.get(cacheId, lengthSupplier::get);
@@ -109,15 +181,17 @@ public class CachableBlockFile {
       if (reader == null) {
         RateLimitedInputStream fsIn = new RateLimitedInputStream(
             (InputStream & Seekable) inputSupplier.get(), readLimiter);
+        boolean pread = positionalReads && fsIn.isPositionedReadable();
         BCFile.Reader tmpReader = null;
         if (serializedMetadata == null) {
           if (fileLenCache == null) {
             tmpReader = new BCFile.Reader(fsIn, lengthSupplier.get(), conf, accumuloConfiguration,
-                cryptoService);
+                cryptoService, pread);
           } else {
             long len = getCachedFileLen();
             try {
-              tmpReader = new BCFile.Reader(fsIn, len, conf, accumuloConfiguration, cryptoService);
+              tmpReader = new BCFile.Reader(fsIn, len, conf, accumuloConfiguration, cryptoService,
+                  pread);
             } catch (Exception e) {
               log.debug("Failed to open {}, clearing file length cache and retrying", cacheId, e);
               fileLenCache.invalidate(cacheId);
@@ -125,12 +199,13 @@ public class CachableBlockFile {
 
             if (tmpReader == null) {
               len = getCachedFileLen();
-              tmpReader = new BCFile.Reader(fsIn, len, conf, accumuloConfiguration, cryptoService);
+              tmpReader = new BCFile.Reader(fsIn, len, conf, accumuloConfiguration, cryptoService,
+                  pread);
             }
           }
         } else {
           tmpReader = new BCFile.Reader(serializedMetadata, fsIn, conf, accumuloConfiguration,
-              cryptoService);
+              cryptoService, pread);
         }
 
         if (!bcfr.compareAndSet(null, tmpReader)) {
@@ -244,6 +319,34 @@ public class CachableBlockFile {
       }
     }
 
+    private class CompressedBlockLoader implements Loader {
+      private final BlockRegion region;
+
+      private CompressedBlockLoader(BlockRegion region) {
+        this.region = region;
+      }
+
+      @Override
+      public Map<String,Loader> getDependencies() {
+        return Collections.emptyMap();
+      }
+
+      @Override
+      public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+        if (region.getCompressedSize() > Math.min(maxSize, MAX_ARRAY_SIZE)) {
+          return null;
+        }
+        try {
+          return getBCFile().readCompressedDataBlocks(Collections.singletonList(region)).get(0);
+        } catch (IOException e) {
+          log.debug(
+              "Error reading compressed block for file " + cacheId + " at " + region.getOffset(),
+              e);
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
     private abstract class BaseBlockLoader implements Loader {
 
       abstract BlockReader getBlockReader(int maxSize, BCFile.Reader bcfr) throws IOException;
@@ -305,8 +408,9 @@ public class CachableBlockFile {
 
     private Reader(String cacheId, IoeSupplier<InputStream> inputSupplier,
         IoeSupplier<Long> lenghtSupplier, Cache<String,Long> fileLenCache, BlockCache data,
-        BlockCache index, RateLimiter readLimiter, Configuration conf,
-        AccumuloConfiguration accumuloConfiguration, CryptoService cryptoService) {
+        BlockCache index, RateLimiter readLimiter, Executor readAheadExecutor,
+        boolean positionalReads, Configuration conf, AccumuloConfiguration accumuloConfiguration,
+        CryptoService cryptoService) {
       Preconditions.checkArgument(cacheId != null || (data == null && index == null));
       this.cacheId = cacheId;
       this.inputSupplier = inputSupplier;
@@ -315,6 +419,10 @@ public class CachableBlockFile {
       this._dCache = data;
       this._iCache = index;
       this.readLimiter = readLimiter;
+      this.readAheadExecutor = readAheadExecutor;
+      this.positionalReads = positionalReads;
+      this.cacheCompressed = accumuloConfiguration != null
+          && accumuloConfiguration.getBoolean(Property.TABLE_BLOCKCACHE_COMPRESSED);
       this.conf = conf;
       this.accumuloConfiguration = accumuloConfiguration;
       this.cryptoService = Objects.requireNonNull(cryptoService);
@@ -330,8 +438,17 @@ public class CachableBlockFile {
         BlockCache data, BlockCache index, RateLimiter readLimiter,
         AccumuloConfiguration accumuloConfiguration, CryptoService cryptoService)
         throws IOException {
+      this(fs, dataFile, conf, fileLenCache, data, index, readLimiter, null, accumuloConfiguration,
+          cryptoService);
+    }
+
+    public Reader(FileSystem fs, Path dataFile, Configuration conf, Cache<String,Long> fileLenCache,
+        BlockCache data, BlockCache index, RateLimiter readLimiter, Executor readAheadExecutor,
+        AccumuloConfiguration accumuloConfiguration, CryptoService cryptoService)
+        throws IOException {
       this(pathToCacheId(dataFile), () -> fs.open(dataFile),
-          () -> fs.getFileStatus(dataFile).getLen(), fileLenCache, data, index, readLimiter, conf,
+          () -> fs.getFileStatus(dataFile).getLen(), fileLenCache, data, index, readLimiter,
+          readAheadExecutor, usePositionalReads(fs, accumuloConfiguration), conf,
           accumuloConfiguration, cryptoService);
     }
 
@@ -339,15 +456,38 @@ public class CachableBlockFile {
         InputStreamType fsin, long len, Configuration conf, BlockCache data, BlockCache index,
         AccumuloConfiguration accumuloConfiguration, CryptoService cryptoService)
         throws IOException {
-      this(cacheId, () -> fsin, () -> len, null, data, index, null, conf, accumuloConfiguration,
-          cryptoService);
+      this(cacheId, fsin, len, conf, data, index, null, accumuloConfiguration, cryptoService);
+    }
+
+    public <InputStreamType extends InputStream & Seekable> Reader(String cacheId,
+        InputStreamType fsin, long len, Configuration conf, BlockCache data, BlockCache index,
+        Executor readAheadExecutor, AccumuloConfiguration accumuloConfiguration,
+        CryptoService cryptoService) throws IOException {
+      this(cacheId, () -> fsin, () -> len, null, data, index, null, readAheadExecutor, false, conf,
+          accumuloConfiguration, cryptoService);
     }
 
     public <InputStreamType extends InputStream & Seekable> Reader(InputStreamType fsin, long len,
         Configuration conf, AccumuloConfiguration accumuloConfiguration,
         CryptoService cryptoService) throws IOException {
-      this(null, () -> fsin, () -> len, null, null, null, null, conf, accumuloConfiguration,
-          cryptoService);
+      this(null, () -> fsin, () -> len, null, null, null, null, null, false, conf,
+          accumuloConfiguration, cryptoService);
+    }
+
+    private static boolean usePositionalReads(FileSystem fs, AccumuloConfiguration conf) {
+      // a checksummed file system, like the default local file system, opens the file again for
+      // every positional read
+      if (fs instanceof ChecksumFileSystem)
+        return false;
+
+      String scheme = fs.getUri().getScheme();
+      if (scheme == null)
+        return false;
+      for (String s : conf.get(Property.GENERAL_FILE_POSITIONAL_READ_SCHEMES).split(",")) {
+        if (s.trim().equalsIgnoreCase(scheme))
+          return true;
+      }
+      return false;
     }
 
     /**
@@ -415,7 +555,13 @@ public class CachableBlockFile {
 
     public CachedBlockRead getDataBlock(long offset, long compressedSize, long rawSize)
         throws IOException {
-      if (_dCache != null) {
+      if (_dCache != null && cacheCompressed) {
+        CachedBlockRead cbr = getCompressedDataBlock(
+            new BlockRegion(offset, compressedSize, rawSize));
+        if (cbr != null) {
+          return cbr;
+        }
+      } else if (_dCache != null) {
         String _lookup = this.cacheId + "R" + offset;
         CacheEntry ce = _dCache.getBlock(_lookup,
             new RawBlockLoader(offset, compressedSize, rawSize, false));
@@ -428,6 +574,139 @@ public class CachableBlockFile {
       return new CachedBlockRead(_currBlock);
     }
 
+    private String dataBlockKey(long offset) {
+      return this.cacheId + (cacheCompressed ? "C" : "R") + offset;
+    }
+
+    private CachedBlockRead getCompressedDataBlock(BlockRegion region) throws IOException {
+      if (region.getRawSize() > MAX_ARRAY_SIZE) {
+        return null;
+      }
+
+      CacheEntry ce = _dCache.getBlock(dataBlockKey(region.getOffset()),
+          new CompressedBlockLoader(region));
+      if (ce == null) {
+        return null;
+      }
+
+      HotBlock hot = ce.getIndex(HotBlock::new);
+      if (hot != null) {
+        byte[] data = hot.data;
+        if (data == null && hot.accesses.incrementAndGet() >= HOT_BLOCK_ACCESSES) {
+          data = new byte[(int) region.getRawSize()];
+          try (BlockReader reader = getBCFile().getDataBlock(ce.getBuffer(), region)) {
+            reader.readFully(data);
+          }
+          hot.data = data;
+          ce.indexWeightChanged();
+        }
+        if (data != null) {
+          return new CachedBlockRead(new HotEntry(ce, hot), data);
+        }
+      }
+
+      // decompress as the block is read, the decompressor comes from a pool and is reused
+      return new CachedBlockRead(getBCFile().getDataBlock(ce.getBuffer(), region));
+    }
+
+    /**
+     * Reads data blocks into the data cache before they are needed. Blocks that are already cached
+     * are skipped. The rest are read using as few reads of the file as possible, reading blocks
+     * that are close together in the file with a single read. Does nothing if there is no data
+     * cache.
+     */
+    public void cacheDataBlocks(Collection<BlockRegion> blocks) throws IOException {
+      cacheDataBlocks(blocks, null);
+    }
+
+    /**
+     * Reads data blocks into the cache like {@link #cacheDataBlocks(Collection)}, checking the
+     * interrupt flag before each read.
+     */
+    public void cacheDataBlocks(Collection<BlockRegion> blocks, AtomicBoolean interruptFlag)
+        throws IOException {
+      if (_dCache == null)
+        return;
+
+      TreeMap<Long,BlockRegion> needed = new TreeMap<>();
+      for (BlockRegion block : blocks) {
+        if (block.getCompressedSize() > MAX_COALESCED_READ || block.getRawSize() > MAX_ARRAY_SIZE
+            || needed.containsKey(block.getOffset()))
+          continue;
+        if (_dCache.getBlock(dataBlockKey(block.getOffset())) == null)
+          needed.put(block.getOffset(), block);
+      }
+
+      List<BlockRegion> coalesced = new ArrayList<>();
+      long start = 0;
+      long end = 0;
+      for (BlockRegion block : needed.values()) {
+        long blockEnd = block.getOffset() + block.getCompressedSize();
+        if (!coalesced.isEmpty() && (block.getOffset() - end > MAX_COALESCE_GAP
+            || blockEnd - start > MAX_COALESCED_READ)) {
+          readAndCacheDataBlocks(coalesced, interruptFlag);
+          coalesced.clear();
+        }
+        if (coalesced.isEmpty())
+          start = block.getOffset();
+        coalesced.add(block);
+        end = blockEnd;
+      }
+
+      if (!coalesced.isEmpty())
+        readAndCacheDataBlocks(coalesced, interruptFlag);
+    }
+
+    private void readAndCacheDataBlocks(List<BlockRegion> coalesced, AtomicBoolean interruptFlag)
+        throws IOException {
+      if (interruptFlag != null && interruptFlag.get())
+        throw new IterationInterruptedException();
+      List<byte[]> data = cacheCompressed ? getBCFile().readCompressedDataBlocks(coalesced)
+          : getBCFile().readDataBlocks(coalesced);
+      for (int i = 0; i < coalesced.size(); i++) {
+        _dCache.cacheBlock(dataBlockKey(coalesced.get(i).getOffset()), data.get(i));
+      }
+    }
+
+    /**
+     * @return the number of data blocks that should be read ahead of a sequential scan, or 0 if
+     *         read ahead is disabled or there is no data cache to read blocks into
+     */
+    public int getReadAheadBlocks() {
+      if (_dCache == null || readAheadExecutor == null || accumuloConfiguration == null)
+        return 0;
+      return accumuloConfiguration.getCount(Property.TABLE_FILE_READAHEAD_BLOCKS);
+    }
+
+    /**
+     * Asynchronously reads and decompresses a data block into the data cache, so that a later call
+     * to {@link #getDataBlock(long, long, long)} for the same block will find it there. This is
+     * best effort, the request is dropped if the read ahead executor can not accept it.
+     */
+    public void readAheadDataBlock(long offset, long compressedSize, long rawSize) {
+      if (_dCache == null || readAheadExecutor == null)
+        return;
+
+      String _lookup = dataBlockKey(offset);
+      Loader loader = cacheCompressed
+          ? new CompressedBlockLoader(new BlockRegion(offset, compressedSize, rawSize))
+          : new RawBlockLoader(offset, compressedSize, rawSize, false);
+      try {
+        readAheadExecutor.execute(() -> {
+          if (closed)
+            return;
+          try {
+            _dCache.getBlock(_lookup, loader);
+          } catch (RuntimeException e) {
+            // the scan will read the block itself and report any error when it gets there
+            log.debug("Failed to read ahead block {} of {}", offset, cacheId, e);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        log.trace("Read ahead of block {} of {} rejected", offset, cacheId);
+      }
+    }
+
     @Override
     public synchronized void close() throws IOException {
       if (closed)
@@ -450,6 +729,63 @@ public class CachableBlockFile {
 
   }
 
+  /**
+   * Attached to a compressed data block in the cache. Once the block has been read often enough, it
+   * also holds the decompressed block, which is counted in the cache's size along with the
+   * compressed block and evicted with it.
+   */
+  private static class HotBlock implements Weighable {
+    private final AtomicInteger accesses = new AtomicInteger();
+    private volatile byte[] data;
+    private Weighable index;
+
+    @SuppressWarnings("unchecked")
+    synchronized <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      if (index == null) {
+        index = supplier.get();
+      }
+      return (T) index;
+    }
+
+    @Override
+    public synchronized int weight() {
+      byte[] d = data;
+      int weight = d == null ? 0 : ClassSize.ARRAY + d.length;
+      if (index != null) {
+        weight += index.weight();
+      }
+      return weight;
+    }
+  }
+
+  /**
+   * Presents the decompressed copy of a cached compressed block as a cache entry.
+   */
+  private static class HotEntry implements CacheEntry {
+    private final CacheEntry compressed;
+    private final HotBlock hot;
+
+    HotEntry(CacheEntry compressed, HotBlock hot) {
+      this.compressed = compressed;
+      this.hot = hot;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+      return hot.data;
+    }
+
+    @Override
+    public <T extends Weighable> T getIndex(Supplier<T> supplier) {
+      return hot.getIndex(supplier);
+    }
+
+    @Override
+    public void indexWeightChanged() {
+      compressed.indexWeightChanged();
+    }
+  }
+
   public static class CachedBlockRead extends DataInputStream {
     private SeekableByteArrayInputStream seekableInput;
     private final CacheEntry cb;
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.util.Collection;
+
+import org.apache.accumulo.core.data.ByteSequence;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A small bloom filter of the column families in a data block, stored in the block's index entry. A
+ * scan that fetches a few column families can skip blocks whose summary shows they contain none of
+ * them, without reading the blocks.
+ */
+class FamilySummary {
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+  private static final int NUM_HASHES = 3;
+
+  private FamilySummary() {}
+
+  private static long hash(ByteSequence family) {
+    return HASH.hashBytes(family.getBackingArray(), family.offset(), family.length()).asLong();
+  }
+
+  private static int bit(long hash, int i, int numBits) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    return ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+  }
+
+  private static boolean isSet(byte[] summary, int bit) {
+    return (summary[bit >>> 3] & (1 << (bit & 7))) != 0;
+  }
+
+  static void add(byte[] summary, ByteSequence family) {
+    long hash = hash(family);
+    int numBits = summary.length * 8;
+    for (int i = 0; i < NUM_HASHES; i++) {
+      int bit = bit(hash, i, numBits);
+      summary[bit >>> 3] |= (1 << (bit & 7));
+    }
+  }
+
+  /**
+   * Tests index entry summaries for a set of column families.
+   */
+  static class Filter {
+    private final long[] hashes;
+
+    Filter(Collection<ByteSequence> families) {
+      hashes = new long[families.size()];
+      int i = 0;
+      for (ByteSequence family : families) {
+        hashes[i++] = hash(family);
+      }
+    }
+
+    /**
+     * @return false only if the block with the given summary can not contain any of the families
+     */
+    boolean mayContainAny(byte[] summary) {
+      if (summary == null || summary.length == 0)
+        return true;
+
+      int numBits = summary.length * 8;
+      for (long hash : hashes) {
+        boolean all = true;
+        for (int i = 0; i < NUM_HASHES && all; i++) {
+          all = isSet(summary, bit(hash, i, numBits));
+        }
+        if (all)
+          return true;
+      }
+      return false;
+    }
+  }
+}
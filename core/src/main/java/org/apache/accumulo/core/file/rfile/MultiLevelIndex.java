@@ -50,19 +50,32 @@ public class MultiLevelIndex {
     private long offset;
     private long compressedSize;
     private long rawSize;
+    private byte[] families;
     private boolean newFormat;
+    private boolean hasFamilies;
 
     IndexEntry(Key k, int e, long offset, long compressedSize, long rawSize) {
+      this(k, e, offset, compressedSize, rawSize, null);
+    }
+
+    IndexEntry(Key k, int e, long offset, long compressedSize, long rawSize, byte[] families) {
       this.key = k;
       this.entries = e;
       this.offset = offset;
       this.compressedSize = compressedSize;
       this.rawSize = rawSize;
+      this.families = families;
       newFormat = true;
+      hasFamilies = true;
     }
 
     public IndexEntry(boolean newFormat) {
+      this(newFormat, false);
+    }
+
+    public IndexEntry(boolean newFormat, boolean hasFamilies) {
       this.newFormat = newFormat;
+      this.hasFamilies = hasFamilies;
     }
 
     @Override
@@ -79,6 +92,14 @@ public class MultiLevelIndex {
         compressedSize = -1;
         rawSize = -1;
       }
+      families = null;
+      if (hasFamilies) {
+        int len = Utils.readVInt(in);
+        if (len > 0) {
+          families = new byte[len];
+          in.readFully(families);
+        }
+      }
     }
 
     @Override
@@ -90,6 +111,14 @@ public class MultiLevelIndex {
         Utils.writeVLong(out, compressedSize);
         Utils.writeVLong(out, rawSize);
       }
+      if (hasFamilies) {
+        if (families == null) {
+          Utils.writeVInt(out, 0);
+        } else {
+          Utils.writeVInt(out, families.length);
+          out.write(families);
+        }
+      }
     }
 
     public Key getKey() {
@@ -112,6 +141,14 @@ public class MultiLevelIndex {
       return rawSize;
     }
 
+    /**
+     * @return a summary of the column families in the block, or null if there is none
+     * @see FamilySummary
+     */
+    byte[] getFamilies() {
+      return families;
+    }
+
     @Override
     public int compareTo(IndexEntry o) {
       return key.compareTo(o.key);
@@ -206,16 +243,19 @@ public class MultiLevelIndex {
   private static class SerializedIndex extends SerializedIndexBase<IndexEntry> {
 
     private boolean newFormat;
+    private boolean hasFamilies;
 
-    SerializedIndex(int[] offsets, byte[] data, boolean newFormat) {
+    SerializedIndex(int[] offsets, byte[] data, boolean newFormat, boolean hasFamilies) {
       super(offsets, data);
       this.newFormat = newFormat;
+      this.hasFamilies = hasFamilies;
     }
 
-    SerializedIndex(byte[] data, int offsetsOffset, int numOffsets, int indexOffset,
-        int indexSize) {
+    SerializedIndex(byte[] data, int offsetsOffset, int numOffsets, int indexOffset, int indexSize,
+        boolean hasFamilies) {
       super(data, offsetsOffset, numOffsets, indexOffset, indexSize);
       this.newFormat = true;
+      this.hasFamilies = hasFamilies;
     }
 
     public long sizeInBytes() {
@@ -228,7 +268,7 @@ public class MultiLevelIndex {
 
     @Override
     protected IndexEntry newValue() throws IOException {
-      IndexEntry ie = new IndexEntry(newFormat);
+      IndexEntry ie = new IndexEntry(newFormat, hasFamilies);
       ie.readFields(dis);
       return ie;
     }
@@ -270,12 +310,14 @@ public class MultiLevelIndex {
     private int indexSize;
     private int indexOffset;
     private boolean newFormat;
+    private boolean hasFamilies;
 
     public IndexBlock(int level, int totalAdded) {
       // System.out.println("IndexBlock("+level+","+levelCount+","+totalAdded+")");
 
       this.level = level;
       this.offset = totalAdded;
+      this.hasFamilies = true;
 
       indexBytes = new ByteArrayOutputStream();
       indexOut = new DataOutputStream(indexBytes);
@@ -284,10 +326,10 @@ public class MultiLevelIndex {
 
     public IndexBlock() {}
 
-    public void add(Key key, int value, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    public void add(Key key, int value, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       offsets.add(indexOut.size());
-      new IndexEntry(key, value, offset, compressedSize, rawSize).write(indexOut);
+      new IndexEntry(key, value, offset, compressedSize, rawSize, families).write(indexOut);
     }
 
     int getSize() {
@@ -314,7 +356,9 @@ public class MultiLevelIndex {
     public void readFields(DataInput in, int version) throws IOException {
 
       if (version == RFile.RINDEX_VER_6 || version == RFile.RINDEX_VER_7
-          || version == RFile.RINDEX_VER_8) {
+          || version == RFile.RINDEX_VER_8 || version == RFile.RINDEX_VER_9
+          || version == RFile.RINDEX_VER_10 || version == RFile.RINDEX_VER_11) {
+        hasFamilies = version == RFile.RINDEX_VER_10 || version == RFile.RINDEX_VER_11;
         level = in.readInt();
         offset = in.readInt();
         hasNext = in.readBoolean();
@@ -405,9 +449,10 @@ public class MultiLevelIndex {
       // keeping a SerializedIndex ref for the object could lead to
       // problems with deep copies.
       if (offsetsArray == null) {
-        return new SerializedIndex(data, offsetsOffset, numOffsets, indexOffset, indexSize);
+        return new SerializedIndex(data, offsetsOffset, numOffsets, indexOffset, indexSize,
+            hasFamilies);
       } else {
-        return new SerializedIndex(offsetsArray, data, newFormat);
+        return new SerializedIndex(offsetsArray, data, newFormat, hasFamilies);
       }
     }
 
@@ -464,11 +509,11 @@ public class MultiLevelIndex {
 
       DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
 
-      IndexEntry ie = new IndexEntry(true);
+      IndexEntry ie = new IndexEntry(true, true);
       for (int i = 0; i < buffered; i++) {
         ie.readFields(dis);
         writer.add(ie.getKey(), ie.getNumEntries(), ie.getOffset(), ie.getCompressedSize(),
-            ie.getRawSize());
+            ie.getRawSize(), ie.getFamilies());
       }
 
       buffered = 0;
@@ -477,20 +522,20 @@ public class MultiLevelIndex {
 
     }
 
-    public void add(Key key, int data, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    public void add(Key key, int data, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       if (buffer.size() > (10 * 1 << 20)) {
         flush();
       }
 
-      new IndexEntry(key, data, offset, compressedSize, rawSize).write(buffer);
+      new IndexEntry(key, data, offset, compressedSize, rawSize, families).write(buffer);
       buffered++;
     }
 
-    public void addLast(Key key, int data, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    public void addLast(Key key, int data, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       flush();
-      writer.addLast(key, data, offset, compressedSize, rawSize);
+      writer.addLast(key, data, offset, compressedSize, rawSize, families);
     }
 
     public void close(DataOutput out) throws IOException {
@@ -509,21 +554,33 @@ public class MultiLevelIndex {
 
     private BCFile.Writer blockFileWriter;
 
+    private CachableBlockFile.BlockCacheWriter cacheWriter;
+
     Writer(BCFile.Writer blockFileWriter, int maxBlockSize) {
+      this(blockFileWriter, maxBlockSize, null);
+    }
+
+    /**
+     * @param cacheWriter
+     *          used to cache index blocks as they are written, may be null
+     */
+    Writer(BCFile.Writer blockFileWriter, int maxBlockSize,
+        CachableBlockFile.BlockCacheWriter cacheWriter) {
       this.blockFileWriter = blockFileWriter;
       this.threshold = maxBlockSize;
+      this.cacheWriter = cacheWriter;
       levels = new ArrayList<>();
     }
 
-    private void add(int level, Key key, int data, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    private void add(int level, Key key, int data, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       if (level == levels.size()) {
         levels.add(new IndexBlock(level, 0));
       }
 
       IndexBlock iblock = levels.get(level);
 
-      iblock.add(key, data, offset, compressedSize, rawSize);
+      iblock.add(key, data, offset, compressedSize, rawSize, families);
     }
 
     private void flush(int level, Key lastKey, boolean last) throws IOException {
@@ -535,10 +592,19 @@ public class MultiLevelIndex {
       if ((iblock.getSize() > threshold && iblock.offsets.size() > 1) || last) {
         BCFile.Writer.BlockAppender out = blockFileWriter.prepareDataBlock();
         iblock.setHasNext(!last);
-        iblock.write(out);
-        out.close();
+        if (cacheWriter != null && cacheWriter.isCachingIndexBlocks()) {
+          ByteArrayOutputStream baos = new ByteArrayOutputStream();
+          iblock.write(new DataOutputStream(baos));
+          baos.writeTo(out);
+          out.close();
+          cacheWriter.indexBlockWritten(out.getStartPos(), baos.toByteArray());
+        } else {
+          iblock.write(out);
+          out.close();
+        }
 
-        add(level + 1, lastKey, 0, out.getStartPos(), out.getCompressedSize(), out.getRawSize());
+        add(level + 1, lastKey, 0, out.getStartPos(), out.getCompressedSize(), out.getRawSize(),
+            null);
         flush(level + 1, lastKey, last);
 
         if (last)
@@ -548,20 +614,25 @@ public class MultiLevelIndex {
       }
     }
 
-    public void add(Key key, int data, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    /**
+     * @param families
+     *          a summary of the column families in the data block, may be null
+     * @see FamilySummary
+     */
+    public void add(Key key, int data, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       totalAdded++;
-      add(0, key, data, offset, compressedSize, rawSize);
+      add(0, key, data, offset, compressedSize, rawSize, families);
       flush(0, key, false);
     }
 
-    public void addLast(Key key, int data, long offset, long compressedSize, long rawSize)
-        throws IOException {
+    public void addLast(Key key, int data, long offset, long compressedSize, long rawSize,
+        byte[] families) throws IOException {
       if (addedLast)
         throw new IllegalStateException("already added last");
 
       totalAdded++;
-      add(0, key, data, offset, compressedSize, rawSize);
+      add(0, key, data, offset, compressedSize, rawSize, families);
       flush(0, key, true);
       addedLast = true;
 
@@ -822,7 +893,8 @@ public class MultiLevelIndex {
       size = 0;
 
       if (version == RFile.RINDEX_VER_6 || version == RFile.RINDEX_VER_7
-          || version == RFile.RINDEX_VER_8) {
+          || version == RFile.RINDEX_VER_8 || version == RFile.RINDEX_VER_9
+          || version == RFile.RINDEX_VER_10 || version == RFile.RINDEX_VER_11) {
         size = in.readInt();
       }
 
@@ -867,6 +939,21 @@ public class MultiLevelIndex {
       getIndexInfo(rootBlock, sizes, counts);
     }
 
+    private void load(IndexBlock ib) throws IOException {
+      if (ib.getLevel() > 0) {
+        for (IndexEntry ie : ib.getIndex()) {
+          load(getIndexBlock(ie));
+        }
+      }
+    }
+
+    /**
+     * Reads every block of the index, which puts them in the index cache when there is one.
+     */
+    public void load() throws IOException {
+      load(rootBlock);
+    }
+
     private void printIndex(IndexBlock ib, String prefix, PrintStream out) throws IOException {
       List<IndexEntry> index = ib.getIndex();
 
@@ -18,6 +18,7 @@ package org.apache.accumulo.core.file.rfile;
 
 import static java.util.Objects.requireNonNull;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
@@ -71,6 +72,8 @@ import org.apache.accumulo.core.iterators.system.LocalityGroupIterator.LocalityG
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.util.LocalityGroupUtil;
 import org.apache.accumulo.core.util.MutableByteSequence;
+import org.apache.accumulo.core.util.ratelimit.RateLimiter;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang.mutable.MutableLong;
 import org.apache.hadoop.io.Writable;
 import org.slf4j.Logger;
@@ -89,6 +92,17 @@ public class RFile {
 
   private static final int RINDEX_MAGIC = 0x20637474;
 
+  static final int RINDEX_VER_11 = 11; // Added the smallest and largest timestamp of the keys in
+                                       // each locality group. This allows a scan that only wants
+                                       // a range of time to skip files outside of it.
+  static final int RINDEX_VER_10 = 10; // Added a summary of the column families in each data block
+                                       // to the index entry of the block. A scan fetching column
+                                       // families can skip blocks that contain none of them.
+  static final int RINDEX_VER_9 = 9; // Added restart points to data blocks. Every Nth key in a data
+                                     // block is written without relative encoding and the offsets
+                                     // of these keys are written at the end of the block. This
+                                     // allows a seek within a cached data block to binary search
+                                     // to a nearby key instead of decoding every key before it.
   static final int RINDEX_VER_8 = 8; // Added sample storage. There is a sample locality group for
                                      // each locality group. Sample are built using a Sampler and
                                      // sampler configuration. The Sampler and its configuration are
@@ -157,6 +171,10 @@ public class RFile {
     private MultiLevelIndex.BufferedWriter indexWriter;
     private MultiLevelIndex.Reader indexReader;
     private int version;
+    private int restartInterval = 0;
+    // not known for files written before version 11, so start with a range that includes any key
+    private long minTimestamp = Long.MIN_VALUE;
+    private long maxTimestamp = Long.MAX_VALUE;
 
     public LocalityGroupMetadata(int version, CachableBlockFile.Reader br) {
       columnFamilies = new HashMap<>();
@@ -164,26 +182,33 @@ public class RFile {
       this.version = version;
     }
 
-    public LocalityGroupMetadata(Set<ByteSequence> pcf, int indexBlockSize, BCFile.Writer bfw) {
+    public LocalityGroupMetadata(Set<ByteSequence> pcf, int indexBlockSize, int restartInterval,
+        BCFile.Writer bfw, CachableBlockFile.BlockCacheWriter cacheWriter) {
       isDefaultLG = true;
       columnFamilies = new HashMap<>();
       previousColumnFamilies = pcf;
+      this.restartInterval = restartInterval;
+      this.minTimestamp = Long.MAX_VALUE;
+      this.maxTimestamp = Long.MIN_VALUE;
 
       indexWriter = new MultiLevelIndex.BufferedWriter(
-          new MultiLevelIndex.Writer(bfw, indexBlockSize));
+          new MultiLevelIndex.Writer(bfw, indexBlockSize, cacheWriter));
     }
 
     public LocalityGroupMetadata(String name, Set<ByteSequence> cfset, int indexBlockSize,
-        BCFile.Writer bfw) {
+        int restartInterval, BCFile.Writer bfw, CachableBlockFile.BlockCacheWriter cacheWriter) {
       this.name = name;
       isDefaultLG = false;
+      this.restartInterval = restartInterval;
+      this.minTimestamp = Long.MAX_VALUE;
+      this.maxTimestamp = Long.MIN_VALUE;
       columnFamilies = new HashMap<>();
       for (ByteSequence cf : cfset) {
         columnFamilies.put(cf, new MutableLong(0));
       }
 
       indexWriter = new MultiLevelIndex.BufferedWriter(
-          new MultiLevelIndex.Writer(bfw, indexBlockSize));
+          new MultiLevelIndex.Writer(bfw, indexBlockSize, cacheWriter));
     }
 
     private Key getFirstKey() {
@@ -196,6 +221,14 @@ public class RFile {
       this.firstKey = new Key(key);
     }
 
+    private void updateTimestamps(Key key) {
+      long ts = key.getTimestamp();
+      if (ts < minTimestamp)
+        minTimestamp = ts;
+      if (ts > maxTimestamp)
+        maxTimestamp = ts;
+    }
+
     public void updateColumnCount(Key key) {
 
       if (isDefaultLG && columnFamilies == null) {
@@ -284,6 +317,15 @@ public class RFile {
         firstKey = null;
       }
 
+      if (version == RINDEX_VER_9 || version == RINDEX_VER_10 || version == RINDEX_VER_11) {
+        restartInterval = in.readInt();
+      }
+
+      if (version == RINDEX_VER_11) {
+        minTimestamp = in.readLong();
+        maxTimestamp = in.readLong();
+      }
+
       indexReader.readFields(in);
     }
 
@@ -313,6 +355,11 @@ public class RFile {
       if (firstKey != null)
         firstKey.write(out);
 
+      out.writeInt(restartInterval);
+
+      out.writeLong(minTimestamp);
+      out.writeLong(maxTimestamp);
+
       indexWriter.close(out);
     }
 
@@ -324,6 +371,13 @@ public class RFile {
           || version == RINDEX_VER_7) {
         out.printf("\t%-22s : %d\n", "Start block", startBlock);
       }
+      if (version == RINDEX_VER_9 || version == RINDEX_VER_10 || version == RINDEX_VER_11) {
+        out.printf("\t%-22s : %d\n", "Restart interval", restartInterval);
+      }
+      if (version == RINDEX_VER_11 && minTimestamp <= maxTimestamp) {
+        out.printf("\t%-22s : %d\n", "Min timestamp", minTimestamp);
+        out.printf("\t%-22s : %d\n", "Max timestamp", maxTimestamp);
+      }
       out.printf("\t%-22s : %,d\n", "Num   blocks", indexReader.size());
       TreeMap<Integer,Long> sizesByLevel = new TreeMap<>();
       TreeMap<Integer,Long> countsByLevel = new TreeMap<>();
@@ -424,6 +478,11 @@ public class RFile {
 
     private BCFile.Writer fileWriter;
     private BlockAppender blockWriter;
+    // the block being written, which also copies what is written when blocks are being cached
+    private DataOutputStream blockOut;
+
+    private final CachableBlockFile.BlockCacheWriter cacheWriter;
+    private ByteArrayOutputStream blockCopy;
 
     private final long blockSize;
     private final long maxBlockSize;
@@ -437,17 +496,33 @@ public class RFile {
 
     private SampleLocalityGroupWriter sample;
 
+    private RestartPoints restarts;
+
+    private final int familySummarySize;
+    private byte[] blockFamilies;
+
     // Use windowed stats to fix ACCUMULO-4669
     private RollingStats keyLenStats = new RollingStats(2017);
     private double averageKeySize = 0;
 
     LocalityGroupWriter(BCFile.Writer fileWriter, long blockSize, long maxBlockSize,
-        LocalityGroupMetadata currentLocalityGroup, SampleLocalityGroupWriter sample) {
+        int familySummarySize, LocalityGroupMetadata currentLocalityGroup,
+        SampleLocalityGroupWriter sample, CachableBlockFile.BlockCacheWriter cacheWriter) {
       this.fileWriter = fileWriter;
+      this.cacheWriter = cacheWriter;
       this.blockSize = blockSize;
       this.maxBlockSize = maxBlockSize;
       this.currentLocalityGroup = currentLocalityGroup;
       this.sample = sample;
+      if (currentLocalityGroup.restartInterval > 0) {
+        this.restarts = new RestartPoints(currentLocalityGroup.restartInterval);
+      }
+      // a summary can not tell blocks apart when every block has the one family of the group
+      if (currentLocalityGroup.isDefaultLG || currentLocalityGroup.columnFamilies.size() > 1) {
+        this.familySummarySize = familySummarySize;
+      } else {
+        this.familySummarySize = 0;
+      }
     }
 
     private boolean isGiantKey(Key k) {
@@ -456,6 +531,16 @@ public class RFile {
       return k.getSize() > mean + Math.max(9 * mean, 4 * stddev);
     }
 
+    private void startBlock() throws IOException {
+      blockWriter = fileWriter.prepareBufferedDataBlock();
+      if (cacheWriter != null && cacheWriter.isCachingDataBlocks()) {
+        blockCopy = new ByteArrayOutputStream((int) Math.min(maxBlockSize, 1 << 20));
+        blockOut = new DataOutputStream(new TeeOutputStream(blockWriter, blockCopy));
+      } else {
+        blockOut = blockWriter;
+      }
+    }
+
     public void append(Key key, Value value) throws IOException {
 
       if (key.compareTo(prevKey) < 0) {
@@ -464,6 +549,7 @@ public class RFile {
       }
 
       currentLocalityGroup.updateColumnCount(key);
+      currentLocalityGroup.updateTimestamps(key);
 
       if (currentLocalityGroup.getFirstKey() == null) {
         currentLocalityGroup.setFirstKey(key);
@@ -474,7 +560,7 @@ public class RFile {
       }
 
       if (blockWriter == null) {
-        blockWriter = fileWriter.prepareDataBlock();
+        startBlock();
       } else if (blockWriter.getRawSize() > blockSize) {
 
         // Look for a key that's short to put in the index, defining short as average or below.
@@ -490,7 +576,7 @@ public class RFile {
         if ((closeKey.getSize() <= averageKeySize || blockWriter.getRawSize() > maxBlockSize)
             && !isGiantKey(closeKey)) {
           closeBlock(closeKey, false);
-          blockWriter = fileWriter.prepareDataBlock();
+          startBlock();
           // set average to zero so its recomputed for the next block
           averageKeySize = 0;
           // To constrain the growth of data blocks, we limit our worst case scenarios to closing
@@ -499,16 +585,32 @@ public class RFile {
         } else if (((long) key.getSize() + (long) value.getSize() + blockWriter.getRawSize()
             + 128L) >= Integer.MAX_VALUE) {
           closeBlock(closeKey, false);
-          blockWriter = fileWriter.prepareDataBlock();
+          startBlock();
           averageKeySize = 0;
 
         }
       }
 
-      RelativeKey rk = new RelativeKey(lastKeyInBlock, key);
+      if (familySummarySize > 0) {
+        if (blockFamilies == null) {
+          blockFamilies = new byte[familySummarySize];
+          FamilySummary.add(blockFamilies, key.getColumnFamilyData());
+        } else if (!key.getColumnFamilyData().equals(lastKeyInBlock.getColumnFamilyData())) {
+          FamilySummary.add(blockFamilies, key.getColumnFamilyData());
+        }
+      }
+
+      RelativeKey rk;
+      if (restarts != null && restarts.isRestart(entries)) {
+        // write the key without relative encoding so that a seek can start decoding here
+        restarts.add(blockWriter.getRawSize());
+        rk = new RelativeKey(null, key);
+      } else {
+        rk = new RelativeKey(lastKeyInBlock, key);
+      }
 
-      rk.write(blockWriter);
-      value.write(blockWriter);
+      rk.write(blockOut);
+      value.write(blockOut);
       entries++;
 
       keyLenStats.addValue(key.getSize());
@@ -519,20 +621,33 @@ public class RFile {
     }
 
     private void closeBlock(Key key, boolean lastBlock) throws IOException {
-      blockWriter.close();
-
-      if (lastBlock)
-        currentLocalityGroup.indexWriter.addLast(key, entries, blockWriter.getStartPos(),
-            blockWriter.getCompressedSize(), blockWriter.getRawSize());
-      else
-        currentLocalityGroup.indexWriter.add(key, entries, blockWriter.getStartPos(),
-            blockWriter.getCompressedSize(), blockWriter.getRawSize());
+      if (restarts != null) {
+        restarts.write(blockOut);
+      }
+
+      // the block may be compressed and written after this returns, so its index entry is added
+      // once its location in the file is known
+      MultiLevelIndex.BufferedWriter indexWriter = currentLocalityGroup.indexWriter;
+      int blockEntries = entries;
+      byte[] families = blockFamilies;
+      byte[] cached = blockCopy == null ? null : blockCopy.toByteArray();
+      blockWriter.close((startPos, compressedSize, rawSize) -> {
+        if (lastBlock)
+          indexWriter.addLast(key, blockEntries, startPos, compressedSize, rawSize, families);
+        else
+          indexWriter.add(key, blockEntries, startPos, compressedSize, rawSize, families);
+        if (cached != null)
+          cacheWriter.dataBlockWritten(startPos, cached);
+      });
 
       if (sample != null)
         sample.flushIfNeeded();
 
       blockWriter = null;
+      blockOut = null;
+      blockCopy = null;
       lastKeyInBlock = null;
+      blockFamilies = null;
       entries = 0;
     }
 
@@ -557,6 +672,8 @@ public class RFile {
     private final long blockSize;
     private final long maxBlockSize;
     private final int indexBlockSize;
+    private final int restartInterval;
+    private final int familySummarySize;
 
     private ArrayList<LocalityGroupMetadata> localityGroups = new ArrayList<>();
     private ArrayList<LocalityGroupMetadata> sampleGroups = new ArrayList<>();
@@ -575,6 +692,8 @@ public class RFile {
     private SamplerConfigurationImpl samplerConfig;
     private Sampler sampler;
 
+    private CachableBlockFile.BlockCacheWriter cacheWriter;
+
     public Writer(BCFile.Writer bfw, int blockSize) throws IOException {
       this(bfw, blockSize, (int) DefaultConfiguration.getInstance()
           .getAsBytes(Property.TABLE_FILE_COMPRESSED_BLOCK_SIZE_INDEX), null, null);
@@ -582,9 +701,39 @@ public class RFile {
 
     public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize,
         SamplerConfigurationImpl samplerConfig, Sampler sampler) throws IOException {
+      this(bfw, blockSize, indexBlockSize,
+          DefaultConfiguration.getInstance().getCount(Property.TABLE_FILE_RESTART_INTERVAL),
+          samplerConfig, sampler);
+    }
+
+    public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize, int restartInterval,
+        SamplerConfigurationImpl samplerConfig, Sampler sampler) throws IOException {
+      this(bfw, blockSize, indexBlockSize, restartInterval,
+          DefaultConfiguration.getInstance().getCount(Property.TABLE_FILE_FAMILY_SUMMARY_SIZE),
+          samplerConfig, sampler);
+    }
+
+    public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize, int restartInterval,
+        int familySummarySize, SamplerConfigurationImpl samplerConfig, Sampler sampler)
+        throws IOException {
+      this(bfw, blockSize, indexBlockSize, restartInterval, familySummarySize, samplerConfig,
+          sampler, null);
+    }
+
+    /**
+     * @param cacheWriter
+     *          used to put the index and data blocks of the file in the block caches as they are
+     *          written, may be null. Blocks of sample data are not cached.
+     */
+    public Writer(BCFile.Writer bfw, int blockSize, int indexBlockSize, int restartInterval,
+        int familySummarySize, SamplerConfigurationImpl samplerConfig, Sampler sampler,
+        CachableBlockFile.BlockCacheWriter cacheWriter) throws IOException {
+      this.cacheWriter = cacheWriter;
       this.blockSize = blockSize;
       this.maxBlockSize = (long) (blockSize * MAX_BLOCK_MULTIPLIER);
       this.indexBlockSize = indexBlockSize;
+      this.restartInterval = restartInterval;
+      this.familySummarySize = familySummarySize;
       this.fileWriter = bfw;
       previousColumnFamilies = new HashSet<>();
       this.samplerConfig = samplerConfig;
@@ -603,7 +752,7 @@ public class RFile {
       BlockAppender mba = fileWriter.prepareMetaBlock("RFile.index");
 
       mba.writeInt(RINDEX_MAGIC);
-      mba.writeInt(RINDEX_VER_8);
+      mba.writeInt(RINDEX_VER_11);
 
       if (currentLocalityGroup != null) {
         localityGroups.add(currentLocalityGroup);
@@ -688,9 +837,9 @@ public class RFile {
       if (columnFamilies == null) {
         startedDefaultLocalityGroup = true;
         currentLocalityGroup = new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize,
-            fileWriter);
+            restartInterval, fileWriter, cacheWriter);
         sampleLocalityGroup = new LocalityGroupMetadata(previousColumnFamilies, indexBlockSize,
-            fileWriter);
+            restartInterval, fileWriter, null);
       } else {
         if (!Collections.disjoint(columnFamilies, previousColumnFamilies)) {
           HashSet<ByteSequence> overlap = new HashSet<>(columnFamilies);
@@ -699,20 +848,19 @@ public class RFile {
               "Column families over lap with previous locality group : " + overlap);
         }
         currentLocalityGroup = new LocalityGroupMetadata(name, columnFamilies, indexBlockSize,
-            fileWriter);
+            restartInterval, fileWriter, cacheWriter);
         sampleLocalityGroup = new LocalityGroupMetadata(name, columnFamilies, indexBlockSize,
-            fileWriter);
+            restartInterval, fileWriter, null);
         previousColumnFamilies.addAll(columnFamilies);
       }
 
       SampleLocalityGroupWriter sampleWriter = null;
       if (sampler != null) {
-        sampleWriter = new SampleLocalityGroupWriter(
-            new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, sampleLocalityGroup, null),
-            sampler);
+        sampleWriter = new SampleLocalityGroupWriter(new LocalityGroupWriter(fileWriter, blockSize,
+            maxBlockSize, familySummarySize, sampleLocalityGroup, null, null), sampler);
       }
-      lgWriter = new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, currentLocalityGroup,
-          sampleWriter);
+      lgWriter = new LocalityGroupWriter(fileWriter, blockSize, maxBlockSize, familySummarySize,
+          currentLocalityGroup, sampleWriter, cacheWriter);
     }
 
     @Override
@@ -752,7 +900,12 @@ public class RFile {
     private int startBlock;
     private boolean closed = false;
     private int version;
+    private int restartInterval;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private int readAheadBlocks;
     private boolean checkRange = true;
+    private FamilySummary.Filter familyFilter;
 
     private LocalityGroupReader(CachableBlockFile.Reader reader, LocalityGroupMetadata lgm,
         int version) throws IOException {
@@ -762,9 +915,15 @@ public class RFile {
       this.startBlock = lgm.startBlock;
       blockCount = index.size();
       this.version = version;
+      this.restartInterval = lgm.restartInterval;
+      this.minTimestamp = lgm.minTimestamp;
+      this.maxTimestamp = lgm.maxTimestamp;
 
       this.reader = reader;
 
+      if (version != RINDEX_VER_3 && version != RINDEX_VER_4)
+        this.readAheadBlocks = reader.getReadAheadBlocks();
+
     }
 
     public LocalityGroupReader(LocalityGroupReader lgr) {
@@ -775,6 +934,10 @@ public class RFile {
       this.blockCount = lgr.blockCount;
       this.reader = lgr.reader;
       this.version = lgr.version;
+      this.restartInterval = lgr.restartInterval;
+      this.minTimestamp = lgr.minTimestamp;
+      this.maxTimestamp = lgr.maxTimestamp;
+      this.readAheadBlocks = lgr.readAheadBlocks;
     }
 
     Iterator<IndexEntry> getIndex() throws IOException {
@@ -799,6 +962,10 @@ public class RFile {
     private Range range = null;
     private boolean hasTop = false;
     private AtomicBoolean interruptFlag;
+    // the key of the last block skipped by the family filter, if any
+    private Key skippedKey = null;
+    // the position in the index of the last block read ahead
+    private int readAheadIndex = -1;
 
     @Override
     public Key getTopKey() {
@@ -836,7 +1003,7 @@ public class RFile {
           metricsGatherer.startBlock();
 
         if (iiter.hasNext()) {
-          IndexEntry indexEntry = iiter.next();
+          IndexEntry indexEntry = skipBlocks(iiter.next());
           entriesLeft = indexEntry.getNumEntries();
           currBlock = getDataBlock(indexEntry);
 
@@ -844,6 +1011,9 @@ public class RFile {
           if (!checkRange)
             hasTop = true;
 
+          if (readAheadBlocks > 0)
+            readAhead(indexEntry);
+
         } else {
           rk = null;
           val = null;
@@ -852,7 +1022,12 @@ public class RFile {
         }
       }
 
-      prevKey = rk.getKey();
+      if (skippedKey != null) {
+        prevKey = skippedKey;
+        skippedKey = null;
+      } else {
+        prevKey = rk.getKey();
+      }
       rk.readFields(currBlock);
       val.readFields(currBlock);
 
@@ -864,6 +1039,43 @@ public class RFile {
         hasTop = !range.afterEndKey(rk.getKey());
     }
 
+    /**
+     * Sets the column families a scan is fetching, so that blocks which can not contain any of them
+     * are skipped.
+     *
+     * @param filter
+     *          the families being fetched, or null to read every block
+     */
+    void setFamilyFilter(FamilySummary.Filter filter) {
+      if (filter != familyFilter) {
+        // blocks skipped with the previous filter may hold families fetched with this one, so the
+        // current position can not be used to satisfy the next seek
+        reset();
+        familyFilter = filter;
+      }
+    }
+
+    /**
+     * Moves the index iterator past blocks whose family summary shows that they contain none of the
+     * families being fetched, starting with the block of the given index entry. The block
+     * containing the end of the range and the last block are never skipped. When blocks are
+     * skipped, the key of the last one is kept in {@link #skippedKey} to be used as the previous
+     * key, because all of the keys in the skipped blocks sort at or before it.
+     *
+     * @return the index entry of the block to read
+     */
+    private IndexEntry skipBlocks(IndexEntry indexEntry) {
+      if (familyFilter == null)
+        return indexEntry;
+
+      while (!familyFilter.mayContainAny(indexEntry.getFamilies()) && iiter.hasNext()
+          && !range.afterEndKey(indexEntry.getKey())) {
+        skippedKey = new Key(indexEntry.getKey());
+        indexEntry = iiter.next();
+      }
+      return indexEntry;
+    }
+
     private CachableBlockFile.CachedBlockRead getDataBlock(IndexEntry indexEntry)
         throws IOException {
       if (interruptFlag != null && interruptFlag.get())
@@ -877,6 +1089,98 @@ public class RFile {
 
     }
 
+    /**
+     * Called when a scan moves from one block to the next, which is taken as a sign that it will
+     * continue on to the blocks after it. Requests that the blocks following the current one be
+     * read into the data cache, stopping at the end of the range. The index iterator is left where
+     * it was.
+     */
+    private void readAhead(IndexEntry currEntry) {
+      int first = Math.max(iiter.previousIndex() + 1, readAheadIndex + 1);
+      int last = iiter.previousIndex() + readAheadBlocks;
+
+      int moved = 0;
+      try {
+        IndexEntry prevEntry = currEntry;
+        while (iiter.hasNext() && iiter.nextIndex() <= last
+            && !range.afterEndKey(prevEntry.getKey())) {
+          IndexEntry indexEntry = iiter.next();
+          moved++;
+          if (iiter.previousIndex() >= first) {
+            reader.readAheadDataBlock(indexEntry.getOffset(), indexEntry.getCompressedSize(),
+                indexEntry.getRawSize());
+            readAheadIndex = iiter.previousIndex();
+          }
+          prevEntry = indexEntry;
+        }
+      } finally {
+        while (moved-- > 0)
+          iiter.previous();
+      }
+    }
+
+    void loadIndex() throws IOException {
+      index.load();
+    }
+
+    /**
+     * Adds the data blocks that start at any of the given offsets to {@code blocks}.
+     */
+    void findBlocks(Set<Long> offsets, List<BCFile.BlockRegion> blocks) throws IOException {
+      if (blockCount == 0 || version == RINDEX_VER_3 || version == RINDEX_VER_4)
+        return;
+
+      IndexIterator blocksIter = index.lookup(new Key());
+      while (blocksIter.hasNext()) {
+        IndexEntry indexEntry = blocksIter.next();
+        if (offsets.contains(indexEntry.getOffset()))
+          blocks.add(new BCFile.BlockRegion(indexEntry.getOffset(),
+              indexEntry.getCompressedSize(), indexEntry.getRawSize()));
+      }
+    }
+
+    /**
+     * Adds the data blocks that a seek to the given range would read to {@code blocks}, stopping
+     * once {@code blocks} holds {@code maxBlocks} entries. Blocks that the seek would skip because
+     * of the family filter are left out.
+     */
+    void findBlocks(Range range, FamilySummary.Filter filter, List<BCFile.BlockRegion> blocks,
+        int maxBlocks) throws IOException {
+      if (blockCount == 0 || version == RINDEX_VER_3 || version == RINDEX_VER_4)
+        return;
+
+      if (firstKey == null || range.afterEndKey(firstKey))
+        return;
+
+      Key startKey = range.getStartKey();
+      if (startKey == null)
+        startKey = new Key();
+
+      IndexIterator blocksIter = index.lookup(startKey);
+
+      // a seek goes to the earliest index entry containing the key
+      while (blocksIter.hasNext() && blocksIter.hasPrevious()
+          && blocksIter.peekPrevious().getKey().equals(blocksIter.peek().getKey())) {
+        blocksIter.previous();
+      }
+
+      // index keys may be shortened to a key past the last key in their block, so when the last
+      // key of the block containing the end of the range is in the range a scan also reads the
+      // first key of the next block
+      boolean sawEnd = false;
+      while (blocksIter.hasNext() && blocks.size() < maxBlocks) {
+        IndexEntry indexEntry = blocksIter.next();
+        if (filter != null && !filter.mayContainAny(indexEntry.getFamilies())
+            && blocksIter.hasNext() && !range.afterEndKey(indexEntry.getKey()))
+          continue;
+        blocks.add(new BCFile.BlockRegion(indexEntry.getOffset(), indexEntry.getCompressedSize(),
+            indexEntry.getRawSize()));
+        if (sawEnd)
+          break;
+        sawEnd = range.afterEndKey(indexEntry.getKey());
+      }
+    }
+
     @Override
     public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
         throws IOException {
@@ -959,10 +1263,23 @@ public class RFile {
           // because if only forward seeks are being done, then there is no benefit to building
           // and index for the block... could consider using the index if it exist but not
           // causing the build of an index... doing this could slow down some use cases and
-          // and speed up others.
+          // and speed up others. Restart points are always present though, so they are used to
+          // jump forward when one exists between the current position and the start key.
 
           MutableByteSequence valbs = new MutableByteSequence(new byte[64], 0, 0);
-          SkippR skippr = RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, getTopKey(),
+          Key currKey = getTopKey();
+
+          if (restartInterval > 0 && currBlock.isIndexable()) {
+            int numEntries = iiter.peekPrevious().getNumEntries();
+            Key restartKey = seekRestart(numEntries, startKey, numEntries - entriesLeft - 1);
+            if (restartKey != null) {
+              valbs = new MutableByteSequence(val.get(), 0, val.getSize());
+              prevKey = restartKey;
+              currKey = restartKey;
+            }
+          }
+
+          SkippR skippr = RelativeKey.fastSkip(currBlock, startKey, valbs, prevKey, currKey,
               entriesLeft);
           if (skippr.skipped > 0) {
             entriesLeft -= skippr.skipped;
@@ -995,6 +1312,7 @@ public class RFile {
 
       if (reseek) {
         iiter = index.lookup(startKey);
+        readAheadIndex = -1;
 
         reset();
 
@@ -1015,7 +1333,11 @@ public class RFile {
           else
             prevKey = new Key(); // first block in the file, so set prev key to minimal key
 
-          IndexEntry indexEntry = iiter.next();
+          IndexEntry indexEntry = skipBlocks(iiter.next());
+          if (skippedKey != null) {
+            prevKey = skippedKey;
+            skippedKey = null;
+          }
           entriesLeft = indexEntry.getNumEntries();
           currBlock = getDataBlock(indexEntry);
 
@@ -1027,7 +1349,16 @@ public class RFile {
 
           Key currKey = null;
 
-          if (currBlock.isIndexable()) {
+          if (restartInterval > 0 && currBlock.isIndexable()) {
+            Key restartKey = seekRestart(indexEntry.getNumEntries(), startKey, 0);
+            if (restartKey != null) {
+              valbs = new MutableByteSequence(val.get(), 0, val.getSize());
+              // the restart key is less than the start key, so fastSkip will always read past it
+              // and will set prevKey correctly
+              prevKey = restartKey;
+              currKey = restartKey;
+            }
+          } else if (currBlock.isIndexable()) {
             BlockIndex blockIndex = BlockIndex.getIndex(currBlock, indexEntry);
             if (blockIndex != null) {
               BlockIndexEntry bie = blockIndex.seekBlock(startKey, currBlock);
@@ -1073,6 +1404,30 @@ public class RFile {
       }
     }
 
+    /**
+     * Positions the current block at the last restart point before the start key that comes after
+     * entry {@code minEntry}. When successful, the key and value at the restart point are read and
+     * {@link #entriesLeft} is updated.
+     *
+     * @return the key at the restart point or null if no restart point was usable
+     */
+    private Key seekRestart(int numEntries, Key startKey, int minEntry) throws IOException {
+      int restartEntry = RestartPoints.seek(currBlock, restartInterval, numEntries, startKey,
+          minEntry);
+      if (restartEntry < 0) {
+        return null;
+      }
+
+      RelativeKey tmpRk = new RelativeKey();
+      tmpRk.readFields(currBlock);
+      val = new Value();
+      val.readFields(currBlock);
+
+      // just consumed the restart entry, so subtract one from entries left
+      entriesLeft = numEntries - restartEntry - 1;
+      return tmpRk.getKey();
+    }
+
     @Override
     public Key getFirstKey() throws IOException {
       return firstKey;
@@ -1135,12 +1490,24 @@ public class RFile {
     private final ArrayList<LocalityGroupMetadata> localityGroups = new ArrayList<>();
     private final ArrayList<LocalityGroupMetadata> sampleGroups = new ArrayList<>();
 
+    // bounds the blocks a single prefetch reads, so one lookup can not flush the data cache
+    private static final int MAX_PREFETCH_BLOCKS = 64;
+
+    // bounds the memory used by the block list of a warm up
+    private static final int MAX_WARM_UP_BLOCKS = 1024;
+
+    // data blocks restored to the cache per acquisition of the rate limiter
+    private static final int RESTORE_BATCH_BLOCKS = 16;
+
     private final LocalityGroupReader currentReaders[];
     private final LocalityGroupReader readers[];
     private final LocalityGroupReader sampleReaders[];
     private final LocalityGroupContext lgContext;
     private LocalityGroupSeekCache lgCache;
 
+    private Set<ByteSequence> filterFamilies;
+    private FamilySummary.Filter familyFilter;
+
     private List<Reader> deepCopies;
     private boolean deepCopy = false;
 
@@ -1161,8 +1528,9 @@ public class RFile {
 
         if (magic != RINDEX_MAGIC)
           throw new IOException("Did not see expected magic number, saw " + magic);
-        if (ver != RINDEX_VER_8 && ver != RINDEX_VER_7 && ver != RINDEX_VER_6 && ver != RINDEX_VER_4
-            && ver != RINDEX_VER_3)
+        if (ver != RINDEX_VER_11 && ver != RINDEX_VER_10 && ver != RINDEX_VER_9
+            && ver != RINDEX_VER_8 && ver != RINDEX_VER_7 && ver != RINDEX_VER_6
+            && ver != RINDEX_VER_4 && ver != RINDEX_VER_3)
           throw new IOException("Did not see expected version, saw " + ver);
 
         int size = mb.readInt();
@@ -1180,7 +1548,8 @@ public class RFile {
 
         readers = currentReaders;
 
-        if (ver == RINDEX_VER_8 && mb.readBoolean()) {
+        if ((ver == RINDEX_VER_11 || ver == RINDEX_VER_10 || ver == RINDEX_VER_9
+            || ver == RINDEX_VER_8) && mb.readBoolean()) {
           sampleReaders = new LocalityGroupReader[size];
 
           for (int i = 0; i < size; i++) {
@@ -1337,6 +1706,24 @@ public class RFile {
       return maxKey;
     }
 
+    @Override
+    public long getMinTimestamp() {
+      long min = Long.MAX_VALUE;
+      for (LocalityGroupReader currentReader : currentReaders) {
+        min = Math.min(min, currentReader.minTimestamp);
+      }
+      return min;
+    }
+
+    @Override
+    public long getMaxTimestamp() {
+      long max = Long.MIN_VALUE;
+      for (LocalityGroupReader currentReader : currentReaders) {
+        max = Math.max(max, currentReader.maxTimestamp);
+      }
+      return max;
+    }
+
     @Override
     public DataInputStream getMetaStore(String name) throws IOException, NoSuchMetaStoreException {
       try {
@@ -1429,10 +1816,116 @@ public class RFile {
     @Override
     public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
         throws IOException {
+      FamilySummary.Filter filter = getFamilyFilter(columnFamilies, inclusive);
+      for (LocalityGroupReader lgr : currentReaders) {
+        lgr.setFamilyFilter(filter);
+      }
       lgCache = LocalityGroupIterator.seek(this, lgContext, range, columnFamilies, inclusive,
           lgCache);
     }
 
+    /**
+     * Returns the filter for skipping data blocks that can not contain the fetched families. The
+     * filter is kept for as long as the same families are fetched, so that consecutive seeks can
+     * continue from the current position.
+     */
+    private FamilySummary.Filter getFamilyFilter(Collection<ByteSequence> columnFamilies,
+        boolean inclusive) {
+      if (!inclusive || columnFamilies.isEmpty())
+        return null;
+
+      if (familyFilter == null || filterFamilies.size() != columnFamilies.size()
+          || !filterFamilies.containsAll(columnFamilies)) {
+        filterFamilies = new HashSet<>(columnFamilies);
+        familyFilter = new FamilySummary.Filter(filterFamilies);
+      }
+      return familyFilter;
+    }
+
+    /**
+     * Reads the data blocks needed by the leading ranges into the data cache, until the blocks hold
+     * {@code maxBytes} of data. Blocks that are close together in the file are read with a single
+     * request instead of one request per block.
+     */
+    @Override
+    public long prefetch(Collection<Range> ranges, Collection<ByteSequence> columnFamilies,
+        boolean inclusive, long maxBytes) throws IOException {
+      if (ranges.size() < 2 || maxBytes <= 0)
+        return 0;
+
+      FamilySummary.Filter filter = getFamilyFilter(columnFamilies, inclusive);
+      Collection<LocalityGroup> groups = LocalityGroupIterator.getGroups(lgContext,
+          columnFamilies, inclusive);
+      List<BCFile.BlockRegion> blocks = new ArrayList<>();
+      long bytes = 0;
+      fetch: for (Range range : ranges) {
+        for (LocalityGroup lg : groups) {
+          int found = blocks.size();
+          ((LocalityGroupReader) lg).findBlocks(range, filter, blocks, MAX_PREFETCH_BLOCKS);
+          for (int i = found; i < blocks.size(); i++) {
+            bytes += blocks.get(i).getRawSize();
+            if (bytes >= maxBytes) {
+              blocks.subList(i + 1, blocks.size()).clear();
+              break fetch;
+            }
+          }
+          if (blocks.size() >= MAX_PREFETCH_BLOCKS)
+            break fetch;
+        }
+      }
+
+      reader.cacheDataBlocks(blocks, interruptFlag);
+      return bytes;
+    }
+
+    @Override
+    public void warmUp(Range range, long maxDataBytes) throws IOException {
+      List<BCFile.BlockRegion> blocks = new ArrayList<>();
+      long remaining = maxDataBytes;
+      for (LocalityGroupReader lgr : readers) {
+        lgr.loadIndex();
+
+        if (remaining <= 0)
+          continue;
+
+        List<BCFile.BlockRegion> lgBlocks = new ArrayList<>();
+        lgr.findBlocks(range, null, lgBlocks, MAX_WARM_UP_BLOCKS);
+        for (BCFile.BlockRegion block : lgBlocks) {
+          if (block.getRawSize() > remaining) {
+            remaining = 0;
+            break;
+          }
+          remaining -= block.getRawSize();
+          blocks.add(block);
+        }
+      }
+
+      reader.cacheDataBlocks(blocks);
+    }
+
+    @Override
+    public void restoreCachedBlocks(boolean index, Set<Long> dataBlockOffsets,
+        RateLimiter readLimiter) throws IOException {
+      List<BCFile.BlockRegion> blocks = new ArrayList<>();
+      for (LocalityGroupReader lgr : readers) {
+        if (index)
+          lgr.loadIndex();
+        if (!dataBlockOffsets.isEmpty())
+          lgr.findBlocks(dataBlockOffsets, blocks);
+      }
+
+      // read a few blocks at a time, so the rate limiter spreads the reads out
+      for (int i = 0; i < blocks.size(); i += RESTORE_BATCH_BLOCKS) {
+        List<BCFile.BlockRegion> batch = blocks.subList(i,
+            Math.min(blocks.size(), i + RESTORE_BATCH_BLOCKS));
+        long bytes = 0;
+        for (BCFile.BlockRegion block : batch)
+          bytes += block.getCompressedSize();
+        readLimiter.acquire(bytes);
+        reader.cacheDataBlocks(batch);
+      }
+    }
+
     int getNumLocalityGroupsSeeked() {
       return (lgCache == null ? 0 : lgCache.getNumLGSeeked());
     }
@@ -33,6 +33,7 @@ import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.sample.impl.SamplerFactory;
+import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
@@ -48,7 +49,8 @@ public class RFileOperations extends FileOperations {
     CachableBlockFile.Reader _cbr = new CachableBlockFile.Reader(options.getFileSystem(),
         new Path(options.getFilename()), options.getConfiguration(), options.getFileLenCache(),
         options.getDataCache(), options.getIndexCache(), options.getRateLimiter(),
-        options.getTableConfiguration(), options.getCryptoService());
+        options.getReadAheadExecutor(), options.getTableConfiguration(),
+        options.getCryptoService());
     return new RFile.Reader(_cbr);
   }
 
@@ -92,6 +94,8 @@ public class RFileOperations extends FileOperations {
     Preconditions.checkArgument((indexBlockSize < Integer.MAX_VALUE && indexBlockSize > 0),
         "table.file.compress.blocksize.index must be greater than 0 and less than "
             + Integer.MAX_VALUE);
+    int restartInterval = acuconf.getCount(Property.TABLE_FILE_RESTART_INTERVAL);
+    int familySummarySize = acuconf.getCount(Property.TABLE_FILE_FAMILY_SUMMARY_SIZE);
 
     SamplerConfigurationImpl samplerConfig = SamplerConfigurationImpl.newSamplerConfig(acuconf);
     Sampler sampler = null;
@@ -130,8 +134,21 @@ public class RFileOperations extends FileOperations {
     }
 
     BCFile.Writer _cbw = new BCFile.Writer(outputStream, options.getRateLimiter(), compression,
-        conf, acuconf, options.cryptoService);
+        conf, acuconf, options.cryptoService, options.getCompressionExecutor());
+
+    CachableBlockFile.BlockCacheWriter cacheWriter = null;
+    if (options.getCacheFilename() != null
+        && (options.getDataCache() != null || options.getIndexCache() != null)) {
+      // blocks cached compressed can not be written through, their format is not known until the
+      // file is read
+      BlockCache dataCache = acuconf.getBoolean(Property.TABLE_BLOCKCACHE_COMPRESSED) ? null
+          : options.getDataCache();
+      cacheWriter = new CachableBlockFile.BlockCacheWriter(
+          CachableBlockFile.pathToCacheId(new Path(options.getCacheFilename())), dataCache,
+          options.getIndexCache());
+    }
 
-    return new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize, samplerConfig, sampler);
+    return new RFile.Writer(_cbw, (int) blockSize, (int) indexBlockSize, restartInterval,
+        familySummarySize, samplerConfig, sampler, cacheWriter);
   }
 }
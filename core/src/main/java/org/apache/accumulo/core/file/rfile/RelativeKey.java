@@ -22,9 +22,11 @@ import java.io.IOException;
 
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
 import org.apache.accumulo.core.util.MutableByteSequence;
 import org.apache.accumulo.core.util.UnsynchronizedBuffer;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
 import org.apache.hadoop.io.WritableUtils;
 
 public class RelativeKey implements Writable {
@@ -176,7 +178,7 @@ public class RelativeKey implements Writable {
     long ts;
 
     if ((fieldsSame & ROW_SAME) == ROW_SAME) {
-      row = prevKey.getRowData().toArray();
+      row = shareField(prevKey.getRowData());
     } else if ((fieldsPrefixed & ROW_COMMON_PREFIX) == ROW_COMMON_PREFIX) {
       row = readPrefix(in, prevKey.getRowData());
     } else {
@@ -184,7 +186,7 @@ public class RelativeKey implements Writable {
     }
 
     if ((fieldsSame & CF_SAME) == CF_SAME) {
-      cf = prevKey.getColumnFamilyData().toArray();
+      cf = shareField(prevKey.getColumnFamilyData());
     } else if ((fieldsPrefixed & CF_COMMON_PREFIX) == CF_COMMON_PREFIX) {
       cf = readPrefix(in, prevKey.getColumnFamilyData());
     } else {
@@ -192,7 +194,7 @@ public class RelativeKey implements Writable {
     }
 
     if ((fieldsSame & CQ_SAME) == CQ_SAME) {
-      cq = prevKey.getColumnQualifierData().toArray();
+      cq = shareField(prevKey.getColumnQualifierData());
     } else if ((fieldsPrefixed & CQ_COMMON_PREFIX) == CQ_COMMON_PREFIX) {
       cq = readPrefix(in, prevKey.getColumnQualifierData());
     } else {
@@ -200,7 +202,7 @@ public class RelativeKey implements Writable {
     }
 
     if ((fieldsSame & CV_SAME) == CV_SAME) {
-      cv = prevKey.getColumnVisibilityData().toArray();
+      cv = shareField(prevKey.getColumnVisibilityData());
     } else if ((fieldsPrefixed & CV_COMMON_PREFIX) == CV_COMMON_PREFIX) {
       cv = readPrefix(in, prevKey.getColumnVisibilityData());
     } else {
@@ -219,6 +221,21 @@ public class RelativeKey implements Writable {
     this.prevKey = this.key;
   }
 
+  /**
+   * Returns the array backing a field of the previous key so it can be referenced by the key being
+   * read. Arrays in a {@link Key} are never modified after the key is created (see
+   * {@link Key#set(Key)}), so consecutive keys with the same row, family, etc can share a single
+   * array instead of each key allocating its own copy. For sorted data this avoids most of the
+   * allocation done when reading keys.
+   */
+  private static byte[] shareField(ByteSequence field) {
+    if (field.isBackedByArray() && field.offset() == 0
+        && field.length() == field.getBackingArray().length) {
+      return field.getBackingArray();
+    }
+    return field.toArray();
+  }
+
   public static class SkippR {
     RelativeKey rk;
     int skipped;
@@ -504,6 +521,50 @@ public class RelativeKey implements Writable {
     return key;
   }
 
+  /**
+   * Compares a key that was serialized without a previous key, as is done for the restart points of
+   * a data block, to the given key. The comparison is done against the serialized bytes, so no
+   * objects are created for the serialized key.
+   *
+   * @return a negative integer, zero, or a positive integer as the key serialized at {@code pos} is
+   *         less than, equal to, or greater than {@code key} when comparing up to {@code part}
+   * @see Key#compareTo(Key, PartialKey)
+   */
+  static int compareUnrelated(byte[] data, int pos, Key key, PartialKey part) throws IOException {
+    byte fieldsSame = data[pos];
+    if ((fieldsSame & ~DELETED) != 0) {
+      throw new IllegalStateException("Key at " + pos + " was encoded relative to a previous key");
+    }
+    pos++;
+
+    ByteSequence[] fields = {key.getRowData(), key.getColumnFamilyData(),
+        key.getColumnQualifierData(), key.getColumnVisibilityData()};
+    PartialKey[] parts = {PartialKey.ROW, PartialKey.ROW_COLFAM, PartialKey.ROW_COLFAM_COLQUAL,
+        PartialKey.ROW_COLFAM_COLQUAL_COLVIS};
+
+    for (int i = 0; i < fields.length; i++) {
+      ByteSequence field = fields[i];
+      int len = WritableComparator.readVInt(data, pos);
+      pos += WritableUtils.decodeVIntSize(data[pos]);
+      int cmp = WritableComparator.compareBytes(data, pos, len, field.getBackingArray(),
+          field.offset(), field.length());
+      if (cmp != 0 || part == parts[i])
+        return cmp;
+      pos += len;
+    }
+
+    long ts = WritableComparator.readVLong(data, pos);
+    if (ts != key.getTimestamp())
+      return ts < key.getTimestamp() ? 1 : -1;
+    if (part == PartialKey.ROW_COLFAM_COLQUAL_COLVIS_TIME)
+      return 0;
+
+    boolean deleted = (fieldsSame & DELETED) == DELETED;
+    if (deleted == key.isDeleted())
+      return 0;
+    return deleted ? -1 : 1;
+  }
+
   private static void write(DataOutput out, ByteSequence bs) throws IOException {
     WritableUtils.writeVInt(out, bs.length());
     out.write(bs.getBackingArray(), bs.offset(), bs.length());
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.rfile;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile.CachedBlockRead;
+
+/**
+ * Restart points allow a seek within a data block to binary search to a key close to the one being
+ * sought instead of decoding every key in the block. Every Nth key in a data block is written
+ * without relative encoding, and the offsets of those keys are written after the last entry of the
+ * block. The offset of the first key in a block is always zero, so it is not written. The trailer
+ * of a block looks like the following.
+ *
+ * <pre>
+ * offset of key N (int), offset of key 2N (int), ... , number of offsets (int)
+ * </pre>
+ *
+ * Readers only decode as many entries as the index says a block has, so the trailer is only ever
+ * read when the entire block is in memory.
+ */
+class RestartPoints {
+
+  private int[] offsets = new int[16];
+  private int size = 0;
+
+  private final int interval;
+
+  RestartPoints(int interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * @return true if the entry about to be appended to a block should be written without relative
+   *         encoding
+   */
+  boolean isRestart(int entriesInBlock) {
+    return entriesInBlock > 0 && entriesInBlock % interval == 0;
+  }
+
+  void add(long offset) {
+    if (size == offsets.length) {
+      offsets = Arrays.copyOf(offsets, size * 2);
+    }
+    offsets[size++] = (int) offset;
+  }
+
+  void write(DataOutput out) throws IOException {
+    for (int i = 0; i < size; i++) {
+      out.writeInt(offsets[i]);
+    }
+    out.writeInt(size);
+    size = 0;
+  }
+
+  private static int readInt(byte[] data, int pos) {
+    return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16)
+        | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+  }
+
+  /**
+   * Finds the last restart point in a block whose row, family, and qualifier are less than those of
+   * the given key and positions the block at it. Only restart points after {@code minEntry} that
+   * are followed by at least one other entry in the block are considered. This guarantees that
+   * {@link RelativeKey#fastSkip} will read past the restart point, and therefore will always learn
+   * the key that precedes its final position.
+   *
+   * @param block
+   *          an entire data block that is in memory
+   * @param numEntries
+   *          the number of entries in the block
+   * @param minEntry
+   *          restart points at or before this entry number are ignored
+   * @return the entry number of the restart point the block was positioned at or -1 if no suitable
+   *         restart point was found, in which case the block position is unchanged
+   */
+  static int seek(CachedBlockRead block, int interval, int numEntries, Key key, int minEntry)
+      throws IOException {
+    byte[] data = block.getBuffer();
+
+    int numOffsets = readInt(data, data.length - 4);
+    int offsetsStart = data.length - 4 - numOffsets * 4;
+
+    // restart i is entry number (i + 1) * interval
+    int low = Math.max(0, minEntry / interval);
+    int high = Math.min(numOffsets - 1, (numEntries - 2) / interval - 1);
+
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int offset = readInt(data, offsetsStart + mid * 4);
+      if (RelativeKey.compareUnrelated(data, offset, key, PartialKey.ROW_COLFAM_COLQUAL) < 0) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    if (found == -1) {
+      return -1;
+    }
+
+    block.seek(readInt(data, offsetsStart + found * 4));
+    return (found + 1) * interval;
+  }
+}
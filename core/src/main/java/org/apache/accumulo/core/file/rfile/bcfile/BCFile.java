@@ -26,12 +26,19 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
 import org.apache.accumulo.core.crypto.CryptoUtils;
@@ -52,6 +59,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.io.compress.Compressor;
@@ -119,6 +127,12 @@ public final class BCFile {
     // reusable buffers.
     private BytesWritable fsOutputBuffer;
     private long length = 0;
+    // compresses buffered data blocks when not null
+    private final Executor compressionExecutor;
+    // buffered data blocks that have not been written to the file yet, in the order they were
+    // closed
+    private final ArrayDeque<PendingBlock> pendingBlocks = new ArrayDeque<>();
+    private static final int MAX_PENDING_BLOCKS = 16;
 
     public long getLength() {
       return this.length;
@@ -224,6 +238,7 @@ public final class BCFile {
     public class BlockAppender extends DataOutputStream {
       private final MetaBlockRegister metaBlockRegister;
       private final WBlockState wBlkState;
+      private final ByteArrayOutputStream rawBuffer;
       private boolean closed = false;
 
       /**
@@ -238,12 +253,25 @@ public final class BCFile {
         super(wbs.getOutputStream());
         this.metaBlockRegister = metaBlockRegister;
         this.wBlkState = wbs;
+        this.rawBuffer = null;
       }
 
       BlockAppender(WBlockState wbs) {
         super(wbs.getOutputStream());
         this.metaBlockRegister = null;
         this.wBlkState = wbs;
+        this.rawBuffer = null;
+      }
+
+      /**
+       * Constructor for a data block that is buffered in memory and compressed by the compression
+       * executor when it is closed.
+       */
+      BlockAppender(ByteArrayOutputStream rawBuffer) {
+        super(rawBuffer);
+        this.metaBlockRegister = null;
+        this.wBlkState = null;
+        this.rawBuffer = rawBuffer;
       }
 
       /**
@@ -268,13 +296,22 @@ public final class BCFile {
        *         inside the compressor.
        */
       public long getCompressedSize() throws IOException {
+        checkNotBuffered();
         return wBlkState.getCompressedSize();
       }
 
       public long getStartPos() {
+        checkNotBuffered();
         return wBlkState.getStartPos();
       }
 
+      private void checkNotBuffered() {
+        if (wBlkState == null) {
+          throw new IllegalStateException(
+              "The location of a buffered block is not known until it is written");
+        }
+      }
+
       @Override
       public void flush() {
         // The down stream is a special kind of stream that finishes a
@@ -302,6 +339,105 @@ public final class BCFile {
           blkInProgress = false;
         }
       }
+
+      /**
+       * Signaling the end of write to a block obtained from {@link #prepareBufferedDataBlock()}.
+       * The listener is called once the block has been written to the file, which may happen after
+       * this method returns. Listeners are called in the order blocks were closed.
+       */
+      public void close(BlockListener listener) throws IOException {
+        if (closed) {
+          return;
+        }
+
+        if (wBlkState != null) {
+          close();
+          listener.blockWritten(getStartPos(), getCompressedSize(), getRawSize());
+          return;
+        }
+
+        try {
+          ++errorCount;
+          pendingBlocks.add(new PendingBlock(getDefaultCompressionAlgorithm(), rawBuffer,
+              getRawSize(), listener));
+          --errorCount;
+        } finally {
+          closed = true;
+          blkInProgress = false;
+        }
+      }
+    }
+
+    /**
+     * Receives the location of a buffered data block once it has been written to the file.
+     */
+    public interface BlockListener {
+      void blockWritten(long startPos, long compressedSize, long rawSize) throws IOException;
+    }
+
+    /**
+     * A closed buffered data block that is being compressed by the compression executor.
+     */
+    private class PendingBlock {
+      private final Future<byte[]> compressed;
+      private final long rawSize;
+      private final BlockListener listener;
+
+      PendingBlock(Algorithm compressAlgo, ByteArrayOutputStream rawBuffer, long rawSize,
+          BlockListener listener) {
+        FutureTask<byte[]> task = new FutureTask<>(() -> compress(compressAlgo, rawBuffer));
+        compressionExecutor.execute(task);
+        this.compressed = task;
+        this.rawSize = rawSize;
+        this.listener = listener;
+      }
+    }
+
+    private static byte[] compress(Algorithm compressAlgo, ByteArrayOutputStream rawBuffer)
+        throws IOException {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(rawBuffer.size() / 4);
+      Compressor compressor = compressAlgo.getCompressor();
+      try {
+        OutputStream out = compressAlgo.createCompressionStream(compressed, compressor, 0);
+        rawBuffer.writeTo(out);
+        out.flush();
+      } finally {
+        compressAlgo.returnCompressor(compressor);
+      }
+      return compressed.toByteArray();
+    }
+
+    /**
+     * Writes buffered data blocks to the file in the order they were closed, until no more than the
+     * given number are left and the oldest one left is still being compressed. Encryption is done
+     * here rather than by the compression executor, so that blocks are encrypted in the order they
+     * are written.
+     */
+    private void writePendingBlocks(int maxPending) throws IOException {
+      while (pendingBlocks.size() > maxPending
+          || (!pendingBlocks.isEmpty() && pendingBlocks.peek().compressed.isDone())) {
+        PendingBlock pb = pendingBlocks.remove();
+
+        byte[] compressed;
+        try {
+          compressed = pb.compressed.get();
+        } catch (InterruptedException e) {
+          ++errorCount;
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for block compression");
+        } catch (ExecutionException e) {
+          ++errorCount;
+          throw new IOException("Failed to compress block", e.getCause());
+        }
+
+        ++errorCount;
+        WBlockState wbs = new WBlockState(Algorithm.NONE, out, fsOutputBuffer, conf, encrypter);
+        wbs.getOutputStream().write(compressed);
+        wbs.finish();
+        --errorCount;
+
+        pb.listener.blockWritten(wbs.getStartPos(), wbs.getCompressedSize(), pb.rawSize);
+      }
     }
 
     /**
@@ -316,6 +452,24 @@ public final class BCFile {
     public Writer(FSDataOutputStream fout, RateLimiter writeLimiter, String compressionName,
         Configuration conf, AccumuloConfiguration aconf, CryptoService cryptoService)
         throws IOException {
+      this(fout, writeLimiter, compressionName, conf, aconf, cryptoService, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fout
+     *          FS output stream.
+     * @param compressionName
+     *          Name of the compression algorithm, which will be used for all data blocks.
+     * @param compressionExecutor
+     *          Used to compress blocks obtained from {@link #prepareBufferedDataBlock()}. May be
+     *          null, in which case those blocks are compressed as they are written.
+     * @see Compression#getSupportedAlgorithms
+     */
+    public Writer(FSDataOutputStream fout, RateLimiter writeLimiter, String compressionName,
+        Configuration conf, AccumuloConfiguration aconf, CryptoService cryptoService,
+        Executor compressionExecutor) throws IOException {
       if (fout.getPos() != 0) {
         throw new IOException("Output file not at zero offset.");
       }
@@ -328,6 +482,7 @@ public final class BCFile {
       Magic.write(this.out);
       this.cryptoEnvironment = new CryptoEnvironmentImpl(Scope.RFILE, null);
       this.encrypter = cryptoService.getFileEncrypter(this.cryptoEnvironment);
+      this.compressionExecutor = compressionExecutor;
     }
 
     /**
@@ -370,6 +525,10 @@ public final class BCFile {
         }
       } finally {
         closed = true;
+        for (PendingBlock pb : pendingBlocks) {
+          pb.compressed.cancel(false);
+        }
+        pendingBlocks.clear();
       }
     }
 
@@ -383,6 +542,9 @@ public final class BCFile {
         throw new IllegalStateException("Cannot create Meta Block until previous block is closed.");
       }
 
+      // meta blocks follow all data blocks
+      writePendingBlocks(0);
+
       if (metaIndex.getMetaByName(name) != null) {
         throw new MetaBlockAlreadyExists("name=" + name);
       }
@@ -434,6 +596,37 @@ public final class BCFile {
       return ba;
     }
 
+    /**
+     * Create a Data Block whose location in the file does not need to be known as soon as it is
+     * closed. When this writer has a compression executor, the block is buffered in memory and
+     * compressed on another thread after it is closed, which allows the caller to move on to the
+     * next block. Blocks are written to the file in the order they are closed. The caller must call
+     * {@link BlockAppender#close(BlockListener)} to conclude the block creation. Blocks created by
+     * {@link #prepareDataBlock()} may be written to the file before buffered blocks closed earlier.
+     *
+     * @return The BlockAppender stream
+     */
+    public BlockAppender prepareBufferedDataBlock() throws IOException {
+      if (compressionExecutor == null) {
+        return prepareDataBlock();
+      }
+
+      if (blkInProgress) {
+        throw new IllegalStateException("Cannot create Data Block until previous block is closed.");
+      }
+
+      if (metaBlkSeen) {
+        throw new IllegalStateException("Cannot create Data Block after Meta Blocks.");
+      }
+
+      // write out blocks that are done and limit how many blocks are held in memory
+      writePendingBlocks(MAX_PENDING_BLOCKS - 1);
+
+      BlockAppender ba = new BlockAppender(new ByteArrayOutputStream());
+      blkInProgress = true;
+      return ba;
+    }
+
     /**
      * Callback to make sure a meta block is added to the internal list when its stream is closed.
      */
@@ -458,6 +651,7 @@ public final class BCFile {
    */
   public static class Reader implements Closeable {
     private final SeekableDataInputStream in;
+    private final boolean positionalReads;
     private final Configuration conf;
     final DataIndex dataIndex;
     // Index for meta blocks
@@ -476,19 +670,18 @@ public final class BCFile {
       private final InputStream in;
       private volatile boolean closed;
 
-      public <InputStreamType extends InputStream & Seekable> RBlockState(Algorithm compressionAlgo,
-          InputStreamType fsin, BlockRegion region, Configuration conf, FileDecrypter decrypter)
-          throws IOException {
+      /**
+       * @param compressedIn
+       *          a stream over exactly the compressed bytes of the block
+       */
+      public RBlockState(Algorithm compressionAlgo, InputStream compressedIn, BlockRegion region,
+          Configuration conf, FileDecrypter decrypter) throws IOException {
         this.compressAlgo = compressionAlgo;
         this.region = region;
         this.decompressor = compressionAlgo.getDecompressor();
 
-        BoundedRangeFileInputStream boundedRangeFileInputStream = new BoundedRangeFileInputStream(
-            fsin, this.region.getOffset(), this.region.getCompressedSize());
-
         try {
-          InputStream inputStreamToBeCompressed = decrypter
-              .decryptStream(boundedRangeFileInputStream);
+          InputStream inputStreamToBeCompressed = decrypter.decryptStream(compressedIn);
           this.in = compressAlgo.createDecompressionStream(inputStreamToBeCompressed, decompressor,
               getFSInputBufferSize(conf));
         } catch (IOException e) {
@@ -608,8 +801,26 @@ public final class BCFile {
     public <InputStreamType extends InputStream & Seekable> Reader(InputStreamType fin,
         long fileLength, Configuration conf, AccumuloConfiguration aconf,
         CryptoService cryptoService) throws IOException {
+      this(fin, fileLength, conf, aconf, cryptoService, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fin
+     *          FS input stream.
+     * @param fileLength
+     *          Length of the corresponding file
+     * @param positionalReads
+     *          if true, blocks are read with positional reads of the input stream, which must
+     *          implement {@link PositionedReadable}
+     */
+    public <InputStreamType extends InputStream & Seekable> Reader(InputStreamType fin,
+        long fileLength, Configuration conf, AccumuloConfiguration aconf,
+        CryptoService cryptoService, boolean positionalReads) throws IOException {
       this.in = new SeekableDataInputStream(fin);
       this.conf = conf;
+      this.positionalReads = positionalReads;
 
       // Move the cursor to grab the version and the magic first
       this.in.seek(fileLength - Magic.size() - Version.size());
@@ -663,8 +874,15 @@ public final class BCFile {
     public <InputStreamType extends InputStream & Seekable> Reader(byte[] serializedMetadata,
         InputStreamType fin, Configuration conf, AccumuloConfiguration aconf,
         CryptoService cryptoService) throws IOException {
+      this(serializedMetadata, fin, conf, aconf, cryptoService, false);
+    }
+
+    public <InputStreamType extends InputStream & Seekable> Reader(byte[] serializedMetadata,
+        InputStreamType fin, Configuration conf, AccumuloConfiguration aconf,
+        CryptoService cryptoService, boolean positionalReads) throws IOException {
       this.in = new SeekableDataInputStream(fin);
       this.conf = conf;
+      this.positionalReads = positionalReads;
 
       ByteArrayInputStream bais = new ByteArrayInputStream(serializedMetadata);
       DataInputStream dis = new DataInputStream(bais);
@@ -756,9 +974,75 @@ public final class BCFile {
       return dataIndex.getBlockRegionList().get(blockIndex).getRawSize();
     }
 
+    /**
+     * Reads data blocks that are close together in the file using a single read of the file. The
+     * bytes between the blocks are read and discarded.
+     *
+     * @param regions
+     *          sorted by offset and not overlapping, all of them must fit in a byte array
+     * @return the uncompressed contents of each block, in the same order as the regions
+     */
+    public List<byte[]> readDataBlocks(List<BlockRegion> regions) throws IOException {
+      long start = regions.get(0).getOffset();
+      byte[] compressed = readRegions(regions);
+
+      List<byte[]> blocks = new ArrayList<>(regions.size());
+      for (BlockRegion region : regions) {
+        InputStream compressedIn = new ByteArrayInputStream(compressed,
+            (int) (region.getOffset() - start), (int) region.getCompressedSize());
+        try (BlockReader reader = new BlockReader(new RBlockState(
+            dataIndex.getDefaultCompressionAlgorithm(), compressedIn, region, conf, decrypter))) {
+          byte[] block = new byte[(int) region.getRawSize()];
+          reader.readFully(block);
+          blocks.add(block);
+        }
+      }
+      return blocks;
+    }
+
+    /**
+     * Like {@link #readDataBlocks(List)}, but returns the blocks as they are stored in the file,
+     * still compressed and encrypted. Use {@link #getDataBlock(byte[], BlockRegion)} to read them.
+     */
+    public List<byte[]> readCompressedDataBlocks(List<BlockRegion> regions) throws IOException {
+      long start = regions.get(0).getOffset();
+      byte[] compressed = readRegions(regions);
+
+      List<byte[]> blocks = new ArrayList<>(regions.size());
+      for (BlockRegion region : regions) {
+        int from = (int) (region.getOffset() - start);
+        blocks.add(Arrays.copyOfRange(compressed, from, from + (int) region.getCompressedSize()));
+      }
+      return blocks;
+    }
+
+    private byte[] readRegions(List<BlockRegion> regions) throws IOException {
+      long start = regions.get(0).getOffset();
+      BlockRegion last = regions.get(regions.size() - 1);
+      long length = last.getOffset() + last.getCompressedSize() - start;
+
+      byte[] compressed = new byte[(int) length];
+      try (DataInputStream dis = new DataInputStream(
+          new BoundedRangeFileInputStream(in, start, length, positionalReads))) {
+        dis.readFully(compressed);
+      }
+      return compressed;
+    }
+
+    /**
+     * Stream access to a data block whose stored bytes were read by
+     * {@link #readCompressedDataBlocks(List)}.
+     */
+    public BlockReader getDataBlock(byte[] compressed, BlockRegion region) throws IOException {
+      return new BlockReader(new RBlockState(dataIndex.getDefaultCompressionAlgorithm(),
+          new ByteArrayInputStream(compressed), region, conf, decrypter));
+    }
+
     private BlockReader createReader(Algorithm compressAlgo, BlockRegion region)
         throws IOException {
-      RBlockState rbs = new RBlockState(compressAlgo, in, region, conf, decrypter);
+      BoundedRangeFileInputStream compressedIn = new BoundedRangeFileInputStream(in,
+          region.getOffset(), region.getCompressedSize(), positionalReads);
+      RBlockState rbs = new RBlockState(compressAlgo, compressedIn, region, conf, decrypter);
       return new BlockReader(rbs);
     }
   }
@@ -935,7 +1219,7 @@ public final class BCFile {
   /**
    * Block region.
    */
-  static final class BlockRegion {
+  public static final class BlockRegion {
     private final long offset;
     private final long compressedSize;
     private final long rawSize;
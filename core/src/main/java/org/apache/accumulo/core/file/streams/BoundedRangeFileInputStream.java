@@ -18,18 +18,32 @@ package org.apache.accumulo.core.file.streams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 
 /**
  * BoundedRangeFIleInputStream abstracts a contiguous region of a Hadoop FSDataInputStream as a
  * regular input stream. One can create multiple BoundedRangeFileInputStream on top of the same
  * FSDataInputStream and they would not interfere with each other.
+ *
+ * <p>
+ * By default a read seeks the shared stream and reads from it while holding the lock of the shared
+ * stream, so reads of the same file by different threads are serialized. When positional reads are
+ * enabled, reads use {@link PositionedReadable#read(long, byte[], int, int)} instead, which does
+ * not change the position of the shared stream, and no shared lock is held.
  */
 public class BoundedRangeFileInputStream extends InputStream {
 
+  private static final LongAdder lockedReads = new LongAdder();
+  private static final LongAdder lockWaitNanos = new LongAdder();
+  private static final LongAdder positionalReads = new LongAdder();
+
   private volatile boolean closed = false;
   private final InputStream in;
+  private final boolean positional;
+  private final Object lock;
   private long pos;
   private long end;
   private long mark;
@@ -50,16 +64,55 @@ public class BoundedRangeFileInputStream extends InputStream {
    */
   public <StreamType extends InputStream & Seekable> BoundedRangeFileInputStream(StreamType in,
       long offset, long length) {
+    this(in, offset, length, false);
+  }
+
+  /**
+   * @param positional
+   *          if true, reads are done with positional reads and the stream must implement
+   *          {@link PositionedReadable}
+   */
+  public <StreamType extends InputStream & Seekable> BoundedRangeFileInputStream(StreamType in,
+      long offset, long length, boolean positional) {
     if (offset < 0 || length < 0) {
       throw new IndexOutOfBoundsException("Invalid offset/length: " + offset + "/" + length);
     }
+    if (positional && !(in instanceof PositionedReadable)) {
+      throw new IllegalArgumentException(
+          "Positional reads requested for a stream that does not support them " + in.getClass());
+    }
 
     this.in = in;
+    this.positional = positional;
+    // close must wait for a read in progress, but only this stream needs to be locked for that when
+    // the shared stream is not being positioned
+    this.lock = positional ? this : in;
     this.pos = offset;
     this.end = offset + length;
     this.mark = -1;
   }
 
+  /**
+   * @return the number of reads done while holding the lock of a shared stream
+   */
+  public static long getLockedReads() {
+    return lockedReads.sum();
+  }
+
+  /**
+   * @return the total time, in nanoseconds, that reads have waited for the lock of a shared stream
+   */
+  public static long getLockWaitNanos() {
+    return lockWaitNanos.sum();
+  }
+
+  /**
+   * @return the number of positional reads, which do not lock a shared stream
+   */
+  public static long getPositionalReads() {
+    return positionalReads.sum();
+  }
+
   @Override
   public int available() throws IOException {
     return (int) (end - pos);
@@ -87,14 +140,30 @@ public class BoundedRangeFileInputStream extends InputStream {
     final int n = (int) Math.min(Integer.MAX_VALUE, Math.min(len, (end - pos)));
     if (n == 0)
       return -1;
-    Integer ret = 0;
-    synchronized (in) {
-      // ensuring we are not closed which would be followed by someone else reusing the decompressor
-      if (closed) {
-        throw new IOException("Stream closed");
+    int ret;
+    if (positional) {
+      synchronized (lock) {
+        // ensuring we are not closed which would be followed by someone else reusing the
+        // decompressor
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+        ret = ((PositionedReadable) in).read(pos, b, off, n);
       }
-      ((Seekable) in).seek(pos);
-      ret = in.read(b, off, n);
+      positionalReads.increment();
+    } else {
+      long startTime = System.nanoTime();
+      synchronized (in) {
+        lockWaitNanos.add(System.nanoTime() - startTime);
+        // ensuring we are not closed which would be followed by someone else reusing the
+        // decompressor
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+        ((Seekable) in).seek(pos);
+        ret = in.read(b, off, n);
+      }
+      lockedReads.increment();
     }
     if (ret < 0) {
       end = pos;
@@ -133,11 +202,11 @@ public class BoundedRangeFileInputStream extends InputStream {
 
   @Override
   public void close() {
-    // Synchronize on the FSDataInputStream to ensure we are blocked if in the read method:
+    // Synchronize with the read method to ensure we are blocked if in the read method:
     // Once this close completes, the underlying decompression stream may be returned to
     // the pool and subsequently used. Turns out this is a problem if currently using it to read.
     if (!closed) {
-      synchronized (in) {
+      synchronized (lock) {
         // Invalidate the state of the stream.
         closed = true;
       }
@@ -22,12 +22,15 @@ import java.io.InputStream;
 
 import org.apache.accumulo.core.util.ratelimit.NullRateLimiter;
 import org.apache.accumulo.core.util.ratelimit.RateLimiter;
+import org.apache.hadoop.fs.PositionedReadable;
 import org.apache.hadoop.fs.Seekable;
 
 /**
  * A decorator for an {@code InputStream} which limits the rate at which reads are performed.
+ * Positional reads may only be used when the decorated stream supports them.
  */
-public class RateLimitedInputStream extends FilterInputStream implements Seekable {
+public class RateLimitedInputStream extends FilterInputStream
+    implements Seekable, PositionedReadable {
   private final RateLimiter rateLimiter;
 
   public <StreamType extends InputStream & Seekable> RateLimitedInputStream(StreamType stream,
@@ -68,4 +71,31 @@ public class RateLimitedInputStream extends FilterInputStream implements Seekabl
   public boolean seekToNewSource(long targetPos) throws IOException {
     return ((Seekable) in).seekToNewSource(targetPos);
   }
+
+  /**
+   * @return true if the decorated stream supports positional reads
+   */
+  public boolean isPositionedReadable() {
+    return in instanceof PositionedReadable;
+  }
+
+  @Override
+  public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+    int count = ((PositionedReadable) in).read(position, buffer, offset, length);
+    if (count > 0) {
+      rateLimiter.acquire(count);
+    }
+    return count;
+  }
+
+  @Override
+  public void readFully(long position, byte[] buffer, int offset, int length) throws IOException {
+    ((PositionedReadable) in).readFully(position, buffer, offset, length);
+    rateLimiter.acquire(length);
+  }
+
+  @Override
+  public void readFully(long position, byte[] buffer) throws IOException {
+    readFully(position, buffer, 0, buffer.length);
+  }
 }
@@ -43,7 +43,10 @@ import org.apache.accumulo.core.dataImpl.thrift.IterInfo;
 import org.apache.accumulo.core.iterators.system.ColumnFamilySkippingIterator;
 import org.apache.accumulo.core.iterators.system.ColumnQualifierFilter;
 import org.apache.accumulo.core.iterators.system.DeletingIterator;
+import org.apache.accumulo.core.iterators.system.SystemScanIterator;
 import org.apache.accumulo.core.iterators.system.VisibilityFilter;
+import org.apache.accumulo.core.iterators.user.AgeOffFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
 import org.apache.accumulo.core.iterators.user.VersioningIterator;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.tabletserver.thrift.IteratorConfig;
@@ -359,6 +362,35 @@ public class IteratorUtil {
     return clazz;
   }
 
+  /**
+   * Determines the oldest timestamp that can be returned by a sorted list of iterators because of
+   * the {@link TimestampFilter} and {@link AgeOffFilter} iterators at the bottom of it. Keys older
+   * than this can be left out of the data read by the iterators without changing what they return.
+   * Filters are only considered when no iterators other than {@link VersioningIterator} are below
+   * them, since other iterators may use older keys to compute what they return.
+   *
+   * @return the oldest timestamp, or {@link Long#MIN_VALUE} when there is no lower bound
+   */
+  public static long getOldestTimestamp(List<IterInfo> iters,
+      Map<String,Map<String,String>> iterOpts) {
+    long oldest = Long.MIN_VALUE;
+    for (IterInfo iterInfo : iters) {
+      String className = iterInfo.getClassName();
+      if (className.equals(TimestampFilter.class.getName())) {
+        oldest = Math.max(oldest,
+            TimestampFilter.getOldestTimestamp(iterOpts.get(iterInfo.getIterName())));
+      } else if (className.equals(AgeOffFilter.class.getName())) {
+        oldest = Math.max(oldest,
+            AgeOffFilter.getOldestTimestamp(iterOpts.get(iterInfo.getIterName())));
+      } else if (!className.equals(VersioningIterator.class.getName())) {
+        // dropping keys older than every key a filter accepts does not change which of the newer
+        // versions are kept, so only versioning can be looked past
+        break;
+      }
+    }
+    return oldest;
+  }
+
   public static Range maximizeStartKeyTimeStamp(Range range) {
     Range seekRange = range;
 
@@ -450,8 +482,13 @@ public class IteratorUtil {
   public static SortedKeyValueIterator<Key,Value> setupSystemScanIterators(
       SortedKeyValueIterator<Key,Value> source, Set<Column> cols, Authorizations auths,
       byte[] defaultVisibility, AccumuloConfiguration conf) throws IOException {
-    SortedKeyValueIterator<Key,Value> delIter = DeletingIterator.wrap(source, false,
-        DeletingIterator.getBehavior(conf));
+    DeletingIterator.Behavior behavior = DeletingIterator.getBehavior(conf);
+    if (behavior == DeletingIterator.Behavior.PROCESS) {
+      return new SystemScanIterator(source, cols, auths, defaultVisibility);
+    }
+
+    // failing on deletes needs the separate iterators
+    SortedKeyValueIterator<Key,Value> delIter = DeletingIterator.wrap(source, false, behavior);
     ColumnFamilySkippingIterator cfsi = new ColumnFamilySkippingIterator(delIter);
     SortedKeyValueIterator<Key,Value> colFilter = ColumnQualifierFilter.wrap(cfsi, cols);
     return VisibilityFilter.wrap(colFilter, auths, defaultVisibility);
@@ -24,6 +24,7 @@ import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.system.BatchIterator;
 
 /**
  * An optimized version of {@link org.apache.accumulo.core.iterators.Filter}. This class grants
@@ -35,7 +36,7 @@ import org.apache.accumulo.core.data.Value;
  *
  * @since 2.0
  */
-public abstract class ServerFilter extends ServerWrappingIterator {
+public abstract class ServerFilter extends ServerWrappingIterator implements BatchIterator {
 
   public ServerFilter(SortedKeyValueIterator<Key,Value> source) {
     super(source);
@@ -57,6 +58,22 @@ public abstract class ServerFilter extends ServerWrappingIterator {
     findTop();
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values) throws IOException {
+    int accepted = 0;
+    while (accepted == 0 && source.hasTop()) {
+      int read = BatchIterator.nextBatch(source, keys, values);
+      for (int i = 0; i < read; i++) {
+        if (keys[i].isDeleted() || accept(keys[i], values[i])) {
+          keys[accepted] = keys[i];
+          values[accepted++] = values[i];
+        }
+      }
+      findTop();
+    }
+    return accepted;
+  }
+
   /**
    * Iterates over the source until an acceptable key/value pair is found.
    */
@@ -24,6 +24,7 @@ import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.system.BatchIterator;
 
 /**
  * A SortedKeyValueIterator similar to {@link org.apache.accumulo.core.iterators.ServerFilter} but
@@ -33,7 +34,7 @@ import org.apache.accumulo.core.data.Value;
  *
  * @since 2.0
  */
-public abstract class SynchronizedServerFilter implements SortedKeyValueIterator<Key,Value> {
+public abstract class SynchronizedServerFilter implements BatchIterator {
 
   protected final SortedKeyValueIterator<Key,Value> source;
 
@@ -72,6 +73,22 @@ public abstract class SynchronizedServerFilter implements SortedKeyValueIterator
     return source.hasTop();
   }
 
+  @Override
+  public synchronized int nextBatch(Key[] keys, Value[] values) throws IOException {
+    int accepted = 0;
+    while (accepted == 0 && source.hasTop()) {
+      int read = BatchIterator.nextBatch(source, keys, values);
+      for (int i = 0; i < read; i++) {
+        if (keys[i].isDeleted() || accept(keys[i], values[i])) {
+          keys[accepted] = keys[i];
+          values[accepted++] = values[i];
+        }
+      }
+      findTop();
+    }
+    return accepted;
+  }
+
   /**
    * Iterates over the source until an acceptable key/value pair is found.
    */
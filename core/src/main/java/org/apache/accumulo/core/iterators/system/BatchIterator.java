@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.io.IOException;
+
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+/**
+ * An iterator that can hand out many entries in one call. When the iterators in a stack implement
+ * this, entries move between the layers in arrays, instead of with a round of hasTop(),
+ * getTopKey(), getTopValue() and next() calls per entry in each layer. Iterators that do not
+ * implement this are read through {@link #nextBatch(SortedKeyValueIterator, Key[], Value[])}, so a
+ * batch iterator can sit on top of any source.
+ *
+ * @since 2.0
+ */
+public interface BatchIterator extends SortedKeyValueIterator<Key,Value> {
+
+  /**
+   * Reads entries into the given arrays, starting with the top entry, as if getTopKey(),
+   * getTopValue() and next() were called for each. Leaves the iterator positioned after the last
+   * entry read. Unlike the top key and value, the keys and values read stay valid after the
+   * iterator moves on.
+   *
+   * @return the number of entries read, at most keys.length. Zero if there is no top.
+   */
+  int nextBatch(Key[] keys, Value[] values) throws IOException;
+
+  /**
+   * Reads a batch of entries from any iterator, using {@link #nextBatch(Key[], Value[])} if the
+   * iterator implements it.
+   */
+  static int nextBatch(SortedKeyValueIterator<Key,Value> iter, Key[] keys, Value[] values)
+      throws IOException {
+    if (iter instanceof BatchIterator) {
+      return ((BatchIterator) iter).nextBatch(keys, values);
+    }
+    return readBatch(iter, keys, values);
+  }
+
+  /**
+   * Reads a batch of entries one at a time through the methods of {@link SortedKeyValueIterator}.
+   * The top key and value are copied, since the iterator may reuse them.
+   */
+  static int readBatch(SortedKeyValueIterator<Key,Value> iter, Key[] keys, Value[] values)
+      throws IOException {
+    int read = 0;
+    while (read < keys.length && iter.hasTop()) {
+      keys[read] = new Key(iter.getTopKey());
+      values[read] = new Value(iter.getTopValue().get(), false);
+      read++;
+      iter.next();
+    }
+    return read;
+  }
+}
@@ -33,7 +33,7 @@ import org.apache.accumulo.core.iterators.ServerSkippingIterator;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 
 public class ColumnFamilySkippingIterator extends ServerSkippingIterator
-    implements InterruptibleIterator {
+    implements InterruptibleIterator, BatchIterator {
 
   protected Set<ByteSequence> colFamSet = null;
   protected TreeSet<ByteSequence> sortedColFams = null;
@@ -90,6 +90,23 @@ public class ColumnFamilySkippingIterator extends ServerSkippingIterator
       }
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values) throws IOException {
+    int read = BatchIterator.nextBatch(source, keys, values);
+    int accepted = 0;
+    for (int i = 0; i < read; i++) {
+      ByteSequence cf = keys[i].getColumnFamilyData();
+      boolean wanted = inclusive ? colFamSet.contains(cf)
+          : colFamSet == null || !colFamSet.contains(cf);
+      if (wanted) {
+        keys[accepted] = keys[i];
+        values[accepted++] = values[i];
+      }
+    }
+    consume();
+    return accepted;
+  }
+
   private void reseek(Key key) throws IOException {
     if (range.afterEndKey(key)) {
       range = new Range(range.getEndKey(), true, range.getEndKey(), range.isEndKeyInclusive());
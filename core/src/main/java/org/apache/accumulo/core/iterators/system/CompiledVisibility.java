@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.accumulo.core.security.ColumnVisibility.Node;
+import org.apache.accumulo.core.security.VisibilityEvaluator;
+import org.apache.accumulo.core.security.VisibilityParseException;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * A visibility expression compiled to a small program over a bitset of the distinct terms of the
+ * expression. Terms are compared in their escaped form, as {@link VisibilityEvaluator} does for
+ * {@link Authorizations}.
+ * <p>
+ * Compiled expressions do not depend on the authorizations, so they are cached for all scans keyed
+ * by the bytes of the expression. Each one holds its own terms, so nothing outlives the cache. A
+ * scan evaluates expressions with an {@link Evaluator}, which resolves the terms of an expression
+ * to bits against its authorizations once and remembers the result.
+ */
+final class CompiledVisibility {
+
+  private static final int CACHE_SIZE = 100_000;
+
+  // the most results an evaluator remembers before it starts over
+  private static final int MAX_RESULTS = 1000;
+
+  // operators are negative, terms are their index in terms
+  private static final int AND = -1;
+  private static final int OR = -2;
+
+  private static final Cache<ByteSequence,CompiledVisibility> cache = Caffeine.newBuilder()
+      .maximumSize(CACHE_SIZE).build();
+
+  private static final CompiledVisibility EMPTY =
+      new CompiledVisibility(new int[0], new ByteSequence[0]);
+
+  // An expression in prefix order. A term is its index in terms. An AND or OR is the operator, the
+  // number of children and the length of the whole subexpression, followed by the children.
+  private final int[] program;
+  private final ByteSequence[] terms;
+
+  private CompiledVisibility(int[] program, ByteSequence[] terms) {
+    this.program = program;
+    this.terms = terms;
+  }
+
+  /**
+   * Evaluates expressions for one scan. The result for each expression is remembered, so a label
+   * that is seen again costs a comparison with the last label or one identity lookup. Not thread
+   * safe, each iterator needs its own.
+   */
+  static final class Evaluator {
+
+    private final Set<ByteSequence> authorizations;
+    private final IdentityHashMap<CompiledVisibility,Boolean> results = new IdentityHashMap<>();
+
+    // a copy of the last label, the expression may point into a key that will be reused
+    private byte[] lastLabel = null;
+    private int lastLabelLength;
+    private boolean lastResult;
+
+    Evaluator(Authorizations authorizations) {
+      List<byte[]> auths = authorizations.getAuthorizations();
+      Set<ByteSequence> set = new HashSet<>(auths.size() * 2);
+      for (byte[] auth : auths) {
+        set.add(new ArrayByteSequence(VisibilityEvaluator.escape(auth, false)));
+      }
+      this.authorizations = set;
+    }
+
+    /**
+     * Creates an evaluator for the same authorizations as another, with nothing remembered.
+     */
+    Evaluator(Evaluator other) {
+      this.authorizations = other.authorizations;
+    }
+
+    /**
+     * @return true if the authorizations satisfy the expression
+     * @throws VisibilityParseException
+     *           see {@link CompiledVisibility#get(ByteSequence)}
+     */
+    boolean evaluate(ByteSequence expression) throws VisibilityParseException {
+      if (isLastLabel(expression)) {
+        return lastResult;
+      }
+
+      CompiledVisibility compiled = get(expression);
+      Boolean result = results.get(compiled);
+      if (result == null) {
+        result = compiled.evaluate(compiled.resolve(authorizations));
+        if (results.size() >= MAX_RESULTS) {
+          results.clear();
+        }
+        results.put(compiled, result);
+      }
+
+      if (lastLabel == null || lastLabel.length < expression.length()) {
+        lastLabel = new byte[expression.length()];
+      }
+      for (int i = 0; i < expression.length(); i++) {
+        lastLabel[i] = expression.byteAt(i);
+      }
+      lastLabelLength = expression.length();
+      lastResult = result;
+      return result;
+    }
+
+    private boolean isLastLabel(ByteSequence expression) {
+      if (lastLabel == null || lastLabelLength != expression.length()) {
+        return false;
+      }
+      for (int i = lastLabelLength - 1; i >= 0; i--) {
+        if (lastLabel[i] != expression.byteAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Gets the compiled form of an expression, compiling it if it is not cached.
+   *
+   * @throws VisibilityParseException
+   *           if an AND or OR subexpression has less than two children, or a subexpression is of an
+   *           unknown type
+   * @throws org.apache.accumulo.core.util.BadArgumentException
+   *           if the expression can not be parsed
+   */
+  static CompiledVisibility get(ByteSequence expression) throws VisibilityParseException {
+    if (expression.length() == 0) {
+      return EMPTY;
+    }
+
+    CompiledVisibility compiled = cache.getIfPresent(expression);
+    if (compiled == null) {
+      byte[] bytes = copy(expression);
+      compiled = compile(bytes);
+      cache.put(new ArrayByteSequence(bytes), compiled);
+    }
+    return compiled;
+  }
+
+  // the expression may point into a key that will be reused, and toArray() may return that array
+  private static byte[] copy(ByteSequence expression) {
+    if (!expression.isBackedByArray()) {
+      return expression.toArray();
+    }
+    return Arrays.copyOfRange(expression.getBackingArray(), expression.offset(),
+        expression.offset() + expression.length());
+  }
+
+  static CompiledVisibility compile(byte[] expression) throws VisibilityParseException {
+    if (expression.length == 0) {
+      return EMPTY;
+    }
+
+    List<Integer> program = new ArrayList<>();
+    List<ByteSequence> terms = new ArrayList<>();
+    compile(expression, new ColumnVisibility(expression).getParseTree(), program, terms);
+
+    int[] ops = new int[program.size()];
+    for (int i = 0; i < ops.length; i++) {
+      ops[i] = program.get(i);
+    }
+    return new CompiledVisibility(ops, terms.toArray(new ByteSequence[0]));
+  }
+
+  private static void compile(byte[] expression, Node node, List<Integer> program,
+      List<ByteSequence> terms) throws VisibilityParseException {
+    switch (node.getType()) {
+      case TERM:
+        ByteSequence term = new ArrayByteSequence(node.getTerm(expression).toArray());
+        int index = terms.indexOf(term);
+        if (index < 0) {
+          index = terms.size();
+          terms.add(term);
+        }
+        program.add(index);
+        break;
+      case AND:
+      case OR:
+        List<Node> children = node.getChildren();
+        if (children == null || children.size() < 2)
+          throw new VisibilityParseException(node.getType() + " has less than 2 children",
+              expression, node.getTermStart());
+        int start = program.size();
+        program.add(node.getType() == ColumnVisibility.NodeType.AND ? AND : OR);
+        program.add(children.size());
+        program.add(0);
+        for (Node child : children) {
+          compile(expression, child, program, terms);
+        }
+        program.set(start + 2, program.size() - start);
+        break;
+      default:
+        throw new VisibilityParseException("No such node type", expression, node.getTermStart());
+    }
+  }
+
+  /**
+   * @return a bitset with the bit of each term of the expression that is in the authorizations set
+   */
+  private long[] resolve(Set<ByteSequence> authorizations) {
+    long[] bits = new long[(terms.length + 63) >>> 6];
+    for (int i = 0; i < terms.length; i++) {
+      if (authorizations.contains(terms[i])) {
+        bits[i >>> 6] |= 1L << i;
+      }
+    }
+    return bits;
+  }
+
+  private boolean evaluate(long[] termBits) {
+    return program.length == 0 || evaluate(termBits, 0);
+  }
+
+  private boolean evaluate(long[] bits, int pos) {
+    int op = program[pos];
+    if (op >= 0) {
+      return (bits[op >>> 6] & (1L << op)) != 0;
+    }
+
+    boolean and = op == AND;
+    int children = program[pos + 1];
+    pos += 3;
+    for (int i = 0; i < children; i++) {
+      if (evaluate(bits, pos) != and) {
+        return !and;
+      }
+      pos += program[pos] >= 0 ? 1 : program[pos + 2];
+    }
+    return and;
+  }
+}
@@ -32,7 +32,7 @@ import org.apache.accumulo.core.iterators.IteratorUtil;
 import org.apache.accumulo.core.iterators.ServerWrappingIterator;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 
-public class DeletingIterator extends ServerWrappingIterator {
+public class DeletingIterator extends ServerWrappingIterator implements BatchIterator {
   private boolean propogateDeletes;
   private Key workKey = new Key();
 
@@ -85,6 +85,35 @@ public class DeletingIterator extends ServerWrappingIterator {
     }
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values) throws IOException {
+    int read = BatchIterator.nextBatch(source, keys, values);
+    int kept = 0;
+    Key keyToSkip = null;
+    for (int i = 0; i < read; i++) {
+      Key key = keys[i];
+      if (keyToSkip != null && key.equals(keyToSkip, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+        continue;
+      }
+
+      keyToSkip = key.isDeleted() ? key : null;
+      if (keyToSkip == null || propogateDeletes) {
+        keys[kept] = key;
+        values[kept++] = values[i];
+      }
+    }
+
+    // the column of a delete at the end of the batch may go on in the source
+    if (keyToSkip != null) {
+      while (source.hasTop()
+          && source.getTopKey().equals(keyToSkip, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+        source.next();
+      }
+    }
+    findTop();
+    return kept;
+  }
+
   private void findTop() throws IOException {
     if (!propogateDeletes) {
       while (source.hasTop() && source.getTopKey().isDeleted()) {
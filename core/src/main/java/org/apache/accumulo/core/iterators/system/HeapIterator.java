@@ -17,109 +17,213 @@
 package org.apache.accumulo.core.iterators.system;
 
 import java.io.IOException;
-import java.util.PriorityQueue;
+import java.util.Arrays;
 
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 
 /**
- * Constructs a {@link PriorityQueue} of multiple SortedKeyValueIterators. Provides a simple way to
+ * Merges multiple SortedKeyValueIterators using a tournament tree. Provides a simple way to
  * interact with multiple SortedKeyValueIterators in sorted order.
+ * <p>
+ * The tree is a loser tree over the sources, each internal node holds the source that lost the
+ * match played there and the root holds the overall winner. The top key of each source is cached,
+ * so replaying the matches after the winner advances takes one comparison per level. The best of
+ * the sources the winner beat on its way to the root is the runner up, while the winner's next key
+ * stays below the runner up's key the tree is left alone and next() costs a single comparison.
+ * This makes long runs of keys from one source, and a single source, cheap.
  */
 public abstract class HeapIterator implements SortedKeyValueIterator<Key,Value> {
-  private PriorityQueue<SortedKeyValueIterator<Key,Value>> heap;
+  private SortedKeyValueIterator<Key,Value>[] sources;
+  // the top key of each source, null once the source has no top
+  private Key[] keys;
+  // tree[0] is the winning source, tree[1] to tree[size - 1] the losers of each match. Source i is
+  // the leaf at size + i.
+  private int[] tree;
+  // the winners of each match, only used while building the tree
+  private int[] winners;
+  private int size;
+  // sources are added one at a time, the tree is built when the merge is first used
+  private boolean built = true;
+
   private SortedKeyValueIterator<Key,Value> topIdx = null;
+  private int runnerUp;
   private Key nextKey;
 
   protected HeapIterator() {
-    heap = null;
+    sources = null;
   }
 
   protected HeapIterator(int maxSize) {
     createHeap(maxSize);
   }
 
+  @SuppressWarnings("unchecked")
   protected void createHeap(int maxSize) {
-    if (heap != null)
+    if (sources != null)
       throw new IllegalStateException("heap already exist");
 
-    heap = new PriorityQueue<>(maxSize == 0 ? 1 : maxSize,
-        (si1, si2) -> si1.getTopKey().compareTo(si2.getTopKey()));
+    int capacity = maxSize == 0 ? 1 : maxSize;
+    sources = new SortedKeyValueIterator[capacity];
+    keys = new Key[capacity];
+    tree = new int[capacity];
+    winners = new int[capacity];
   }
 
   @Override
   public final Key getTopKey() {
+    if (!built)
+      build();
     return topIdx.getTopKey();
   }
 
   @Override
   public final Value getTopValue() {
+    if (!built)
+      build();
     return topIdx.getTopValue();
   }
 
   @Override
   public final boolean hasTop() {
+    if (!built)
+      build();
     return topIdx != null;
   }
 
   @Override
   public final void next() throws IOException {
+    if (!built)
+      build();
+
     if (topIdx == null) {
       throw new IllegalStateException("Called next() when there is no top");
     }
 
+    int winner = tree[0];
     topIdx.next();
-    if (!topIdx.hasTop()) {
+    if (topIdx.hasTop()) {
+      Key key = topIdx.getTopKey();
+      keys[winner] = key;
+
       if (nextKey == null) {
-        // No iterators left
-        topIdx = null;
+        // topIdx is the only iterator
         return;
       }
 
-      pullReferencesFromHeap();
-    } else {
-      if (nextKey == null) {
-        // topIdx is the only iterator
+      int cmp = key.compareTo(nextKey);
+      if (cmp < 0 || (cmp == 0 && winner < runnerUp)) {
+        // still beats every source it beat before, so none of the matches change
         return;
       }
+    } else {
+      keys[winner] = null;
+    }
+
+    replay(winner);
+    setTop();
+  }
+
+  /**
+   * @return true if source a sorts before source b, sources with no top sort last
+   */
+  private boolean beats(int a, int b) {
+    if (keys[a] == null)
+      return false;
+    if (keys[b] == null)
+      return true;
+    int cmp = keys[a].compareTo(keys[b]);
+    return cmp < 0 || (cmp == 0 && a < b);
+  }
+
+  private void build() {
+    built = true;
+
+    if (size == 0) {
+      topIdx = null;
+      return;
+    }
+
+    for (int i = 0; i < size; i++) {
+      keys[i] = sources[i].getTopKey();
+    }
+
+    for (int node = size - 1; node > 0; node--) {
+      int left = 2 * node;
+      int right = left + 1;
+      int a = left >= size ? left - size : winners[left];
+      int b = right >= size ? right - size : winners[right];
+      if (beats(a, b)) {
+        winners[node] = a;
+        tree[node] = b;
+      } else {
+        winners[node] = b;
+        tree[node] = a;
+      }
+    }
 
-      if (nextKey.compareTo(topIdx.getTopKey()) < 0) {
-        // Grab the next top iterator and put the current top iterator back on the heap
-        // This updating of references is special-cased to save on percolation on edge cases
-        // since the current top is guaranteed to not be the minimum
-        SortedKeyValueIterator<Key,Value> nextTopIdx = heap.remove();
-        heap.add(topIdx);
+    tree[0] = size == 1 ? 0 : winners[1];
+    setTop();
+  }
 
-        topIdx = nextTopIdx;
-        nextKey = heap.peek().getTopKey();
+  /**
+   * Replays the matches on the path from the given source, the previous winner, to the root.
+   */
+  private void replay(int winner) {
+    for (int node = (winner + size) >>> 1; node > 0; node >>>= 1) {
+      if (beats(tree[node], winner)) {
+        int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
       }
     }
+    tree[0] = winner;
   }
 
-  private void pullReferencesFromHeap() {
-    topIdx = heap.remove();
-    if (!heap.isEmpty()) {
-      nextKey = heap.peek().getTopKey();
-    } else {
+  private void setTop() {
+    int winner = tree[0];
+    if (keys[winner] == null) {
+      // No iterators left
+      topIdx = null;
       nextKey = null;
+      return;
     }
+
+    topIdx = sources[winner];
+
+    // the runner up lost its last match to the winner, so it is on the winner's path
+    runnerUp = -1;
+    for (int node = (winner + size) >>> 1; node > 0; node >>>= 1) {
+      if (runnerUp == -1 || beats(tree[node], runnerUp)) {
+        runnerUp = tree[node];
+      }
+    }
+
+    nextKey = runnerUp == -1 ? null : keys[runnerUp];
   }
 
   protected final void clear() {
-    heap.clear();
+    Arrays.fill(sources, 0, size, null);
+    Arrays.fill(keys, 0, size, null);
+    size = 0;
+    built = true;
     topIdx = null;
     nextKey = null;
   }
 
   protected final void addSource(SortedKeyValueIterator<Key,Value> source) {
     if (source.hasTop()) {
-      heap.add(source);
-      if (topIdx != null) {
-        heap.add(topIdx);
+      if (size == sources.length) {
+        int capacity = 2 * size;
+        sources = Arrays.copyOf(sources, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        tree = Arrays.copyOf(tree, capacity);
+        winners = Arrays.copyOf(winners, capacity);
       }
 
-      pullReferencesFromHeap();
+      sources[size++] = source;
+      built = false;
     }
   }
 }
@@ -163,6 +163,29 @@ public class LocalityGroupIterator extends HeapIterator implements Interruptible
       Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
     hiter.clear();
 
+    Collection<LocalityGroup> groups = getGroups(lgContext, columnFamilies, inclusive);
+
+    for (LocalityGroup lgr : groups) {
+      lgr.getIterator().seek(range, EMPTY_CF_SET, false);
+      hiter.addSource(lgr.getIterator());
+    }
+
+    return groups;
+  }
+
+  /**
+   * Finds the locality groups that may contain data for the given column families.
+   *
+   * @param lgContext
+   *          The locality groups
+   * @param columnFamilies
+   *          The column fams to seek
+   * @param inclusive
+   *          The inclusiveness of the column fams
+   * @return The locality groups that a seek would use
+   */
+  public static Collection<LocalityGroup> getGroups(LocalityGroupContext lgContext,
+      Collection<ByteSequence> columnFamilies, boolean inclusive) {
     Set<ByteSequence> cfSet;
     if (columnFamilies.size() > 0)
       if (columnFamilies instanceof Set<?>) {
@@ -227,11 +250,6 @@ public class LocalityGroupIterator extends HeapIterator implements Interruptible
       }
     }
 
-    for (LocalityGroup lgr : groups) {
-      lgr.getIterator().seek(range, EMPTY_CF_SET, false);
-      hiter.addSource(lgr.getIterator());
-    }
-
     return groups;
   }
 
@@ -40,7 +40,7 @@ import org.apache.accumulo.core.iterators.YieldCallback;
  * their scan when that data is minor compacted. This iterator is designed to manage this behind the
  * scene.
  */
-public class SourceSwitchingIterator implements InterruptibleIterator {
+public class SourceSwitchingIterator implements InterruptibleIterator, BatchIterator {
 
   public interface DataSource {
     boolean isCurrent();
@@ -146,7 +146,54 @@ public class SourceSwitchingIterator implements InterruptibleIterator {
     }
   }
 
+  /**
+   * @return true if {@link #nextBatch(Key[], Value[])} takes batches from the current source,
+   *         false if it reads and copies one entry at a time, because the source is not a
+   *         {@link BatchIterator} or a row at a time is required
+   */
+  public boolean readsBatches() {
+    synchronized (copies) {
+      return !onlySwitchAfterRow && iter instanceof BatchIterator;
+    }
+  }
+
+  @Override
+  public int nextBatch(Key[] keys, Value[] values) throws IOException {
+    synchronized (copies) {
+      if (key == null) {
+        return 0;
+      }
+
+      if (onlySwitchAfterRow) {
+        // whether to switch is decided between each entry
+        return BatchIterator.readBatch(this, keys, values);
+      }
+
+      // iter is positioned at the top, read from it and then find the next top as next() would
+      int read = BatchIterator.nextBatch(iter, keys, values);
+      if (yield.isPresent() && yield.get().hasYielded()) {
+        // the source yielded part way through the batch, leave the yield for the caller
+        key = null;
+        val = null;
+      } else {
+        if (read > 0) {
+          key = keys[read - 1];
+        }
+        readNext(false, false);
+      }
+      return read;
+    }
+  }
+
   private void readNext(boolean initialSeek) throws IOException {
+    readNext(initialSeek, true);
+  }
+
+  /**
+   * @param advance
+   *          false if iter has already been moved past the current top
+   */
+  private void readNext(boolean initialSeek, boolean advance) throws IOException {
 
     // we need to check here if we were yielded in case the source was switched out and re-seeked by
     // someone else (minor compaction/InMemoryMap)
@@ -170,7 +217,7 @@ public class SourceSwitchingIterator implements InterruptibleIterator {
       } else
         iter.seek(new Range(key, false, range.getEndKey(), range.isEndKeyInclusive()),
             columnFamilies, inclusive);
-    else {
+    else if (advance) {
       iter.next();
       if (onlySwitchAfterRow && iter.hasTop() && !source.isCurrent()
           && !key.getRowData().equals(iter.getTopKey().getRowData())) {
@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Column;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.VisibilityParseException;
+import org.apache.accumulo.core.util.BadArgumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The system iterators of a scan in one. Does what a {@link DeletingIterator} that does not
+ * propagate deletes, a {@link ColumnFamilySkippingIterator}, a {@link ColumnQualifierFilter} and a
+ * {@link VisibilityFilter} stacked on each other do, but looks at each key once instead of once
+ * per layer.
+ * <p>
+ * Deletes, fetched columns and visibilities can be checked in any order, since a delete only hides
+ * keys with the same column and visibility as itself. Like {@link VisibilityFilter}, this is the
+ * top of the system iterators and so is synchronized.
+ */
+public class SystemScanIterator implements BatchIterator {
+
+  private static final Logger log = LoggerFactory.getLogger(SystemScanIterator.class);
+
+  private final SortedKeyValueIterator<Key,Value> source;
+
+  // fetched columns, null when no column has a qualifier
+  private final HashSet<ByteSequence> columnFamilies;
+  private final HashMap<ByteSequence,HashSet<ByteSequence>> columnsQualifiers;
+
+  // null when there are no authorizations and no default visibility
+  private final CompiledVisibility.Evaluator evaluator;
+  private final ByteSequence defaultVisibility;
+
+  // set by seek
+  private Set<ByteSequence> colFamSet;
+  private TreeSet<ByteSequence> sortedColFams;
+  private boolean inclusive;
+  private Range range;
+
+  private final Key workKey = new Key();
+
+  public SystemScanIterator(SortedKeyValueIterator<Key,Value> source, Set<Column> columns,
+      Authorizations authorizations, byte[] defaultVisibility) {
+    this.source = source;
+
+    HashSet<ByteSequence> families = new HashSet<>();
+    HashMap<ByteSequence,HashSet<ByteSequence>> qualifiers = new HashMap<>();
+    for (Column col : columns) {
+      if (col.columnQualifier != null) {
+        qualifiers.computeIfAbsent(new ArrayByteSequence(col.columnQualifier), k -> new HashSet<>())
+            .add(new ArrayByteSequence(col.columnFamily));
+      } else {
+        families.add(new ArrayByteSequence(col.columnFamily));
+      }
+    }
+    this.columnFamilies = qualifiers.isEmpty() ? null : families;
+    this.columnsQualifiers = qualifiers.isEmpty() ? null : qualifiers;
+
+    this.defaultVisibility = new ArrayByteSequence(defaultVisibility);
+    if (authorizations.isEmpty() && defaultVisibility.length == 0) {
+      this.evaluator = null;
+    } else {
+      this.evaluator = new CompiledVisibility.Evaluator(authorizations);
+    }
+  }
+
+  private SystemScanIterator(SortedKeyValueIterator<Key,Value> source,
+      SystemScanIterator other) {
+    this.source = source;
+    this.columnFamilies = other.columnFamilies;
+    this.columnsQualifiers = other.columnsQualifiers;
+    this.evaluator = other.evaluator == null ? null
+        : new CompiledVisibility.Evaluator(other.evaluator);
+    this.defaultVisibility = other.defaultVisibility;
+  }
+
+  @Override
+  public synchronized SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+    return new SystemScanIterator(source.deepCopy(env), this);
+  }
+
+  @Override
+  public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+      IteratorEnvironment env) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public synchronized boolean hasTop() {
+    return source.hasTop();
+  }
+
+  @Override
+  public synchronized Key getTopKey() {
+    return source.getTopKey();
+  }
+
+  @Override
+  public synchronized Value getTopValue() {
+    return source.getTopValue();
+  }
+
+  @Override
+  public synchronized void next() throws IOException {
+    source.next();
+    findTop();
+  }
+
+  @Override
+  public synchronized void seek(Range range, Collection<ByteSequence> columnFamilies,
+      boolean inclusive) throws IOException {
+    if (columnFamilies instanceof Set<?>) {
+      colFamSet = (Set<ByteSequence>) columnFamilies;
+    } else {
+      colFamSet = new HashSet<>(columnFamilies);
+    }
+    sortedColFams = inclusive ? new TreeSet<>(colFamSet) : null;
+    this.inclusive = inclusive;
+    this.range = range;
+
+    // do not want to seek to the middle of a column, a delete before the range may hide part of it
+    source.seek(IteratorUtil.maximizeStartKeyTimeStamp(range), colFamSet, inclusive);
+    findTop();
+  }
+
+  @Override
+  public synchronized int nextBatch(Key[] keys, Value[] values) throws IOException {
+    int accepted = 0;
+    while (accepted == 0 && source.hasTop()) {
+      int read = BatchIterator.nextBatch(source, keys, values);
+      Key keyToSkip = null;
+      for (int i = 0; i < read; i++) {
+        Key key = keys[i];
+        if (keyToSkip != null && key.equals(keyToSkip, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+          continue;
+        }
+
+        if (key.isDeleted()) {
+          keyToSkip = key;
+        } else {
+          keyToSkip = null;
+          if (acceptFamily(key.getColumnFamilyData()) && accept(key)) {
+            keys[accepted] = key;
+            values[accepted++] = values[i];
+          }
+        }
+      }
+
+      // the column of a delete at the end of the batch may go on in the source
+      if (keyToSkip != null) {
+        skipColumn(keyToSkip);
+      }
+      findTop();
+    }
+    return accepted;
+  }
+
+  /**
+   * Moves the source to the next key that is not deleted, in the range, in a fetched column and
+   * visible.
+   */
+  private void findTop() throws IOException {
+    int count = 0;
+    while (source.hasTop()) {
+      Key top = source.getTopKey();
+      if (top.isDeleted()) {
+        workKey.set(top);
+        source.next();
+        skipColumn(workKey);
+      } else if (range.beforeStartKey(top)) {
+        source.next();
+      } else if (!acceptFamily(top.getColumnFamilyData())) {
+        if (count < 10) {
+          // it is quicker to call next if we are close, but we never know if we are close
+          // so give next a try a few times
+          source.next();
+          count++;
+        } else {
+          skipFamily(top);
+          count = 0;
+        }
+      } else if (accept(top)) {
+        return;
+      } else {
+        count = 0;
+        source.next();
+      }
+    }
+  }
+
+  private void skipColumn(Key keyToSkip) throws IOException {
+    while (source.hasTop()
+        && source.getTopKey().equals(keyToSkip, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+      source.next();
+    }
+  }
+
+  private boolean acceptFamily(ByteSequence cf) {
+    if (inclusive) {
+      return colFamSet.contains(cf);
+    }
+    return colFamSet.isEmpty() || !colFamSet.contains(cf);
+  }
+
+  private void skipFamily(Key top) throws IOException {
+    if (inclusive) {
+      ByteSequence higherCF = sortedColFams.higher(top.getColumnFamilyData());
+      if (higherCF == null) {
+        // seek to the next row
+        reseek(top.followingKey(PartialKey.ROW));
+      } else {
+        // seek to the next column family in the sorted list of column families
+        reseek(new Key(top.getRowData().toArray(), higherCF.toArray(), new byte[0], new byte[0],
+            Long.MAX_VALUE));
+      }
+    } else {
+      // seek to the next column family in the data
+      reseek(top.followingKey(PartialKey.ROW_COLFAM));
+    }
+  }
+
+  private void reseek(Key key) throws IOException {
+    if (range.afterEndKey(key)) {
+      range = new Range(range.getEndKey(), true, range.getEndKey(), range.isEndKeyInclusive());
+    } else {
+      range = new Range(key, true, range.getEndKey(), range.isEndKeyInclusive());
+    }
+    source.seek(range, colFamSet, inclusive);
+  }
+
+  /**
+   * @return true if the key's column was fetched and its visibility is satisfied
+   */
+  private boolean accept(Key key) {
+    if (columnsQualifiers != null && !columnFamilies.contains(key.getColumnFamilyData())) {
+      HashSet<ByteSequence> cfset = columnsQualifiers.get(key.getColumnQualifierData());
+      // ensure the column qualifier goes with a paired column family
+      if (cfset == null || !cfset.contains(key.getColumnFamilyData())) {
+        return false;
+      }
+    }
+
+    ByteSequence testVis = key.getColumnVisibilityData();
+    if (testVis.length() == 0) {
+      if (defaultVisibility.length() == 0) {
+        return true;
+      }
+      testVis = defaultVisibility;
+    }
+
+    if (evaluator == null) {
+      return false;
+    }
+
+    try {
+      return evaluator.evaluate(testVis);
+    } catch (VisibilityParseException e) {
+      log.error("VisibilityParseException with visibility of Key: {}", key, e);
+      return false;
+    } catch (BadArgumentException e) {
+      log.error("BadArgumentException with visibility of Key: {}", key, e);
+      return false;
+    }
+  }
+}
@@ -24,11 +24,8 @@ import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.SynchronizedServerFilter;
 import org.apache.accumulo.core.security.Authorizations;
-import org.apache.accumulo.core.security.ColumnVisibility;
-import org.apache.accumulo.core.security.VisibilityEvaluator;
 import org.apache.accumulo.core.security.VisibilityParseException;
 import org.apache.accumulo.core.util.BadArgumentException;
-import org.apache.commons.collections.map.LRUMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,22 +36,23 @@ import org.slf4j.LoggerFactory;
  * of the iterator stack in {@link org.apache.accumulo.core.iterators.IteratorUtil}
  * .loadIterators(). For performance reasons, the synchronization was pushed down the stack to this
  * class.
+ * <p>
+ * Visibility expressions are evaluated in their {@link CompiledVisibility} form by an evaluator
+ * that remembers the result for each expression, one per filter.
  */
 public class VisibilityFilter extends SynchronizedServerFilter {
-  protected VisibilityEvaluator ve;
   protected ByteSequence defaultVisibility;
-  protected LRUMap cache;
   protected Authorizations authorizations;
+  private final CompiledVisibility.Evaluator evaluator;
 
   private static final Logger log = LoggerFactory.getLogger(VisibilityFilter.class);
 
   private VisibilityFilter(SortedKeyValueIterator<Key,Value> iterator,
       Authorizations authorizations, byte[] defaultVisibility) {
     super(iterator);
-    this.ve = new VisibilityEvaluator(authorizations);
     this.authorizations = authorizations;
+    this.evaluator = new CompiledVisibility.Evaluator(authorizations);
     this.defaultVisibility = new ArrayByteSequence(defaultVisibility);
-    this.cache = new LRUMap(1000);
   }
 
   @Override
@@ -71,14 +69,8 @@ public class VisibilityFilter extends SynchronizedServerFilter {
     else if (testVis.length() == 0)
       testVis = defaultVisibility;
 
-    Boolean b = (Boolean) cache.get(testVis);
-    if (b != null)
-      return b;
-
     try {
-      Boolean bb = ve.evaluate(new ColumnVisibility(testVis.toArray()));
-      cache.put(testVis, bb);
-      return bb;
+      return evaluator.evaluate(testVis);
     } catch (VisibilityParseException e) {
       log.error("VisibilityParseException with visibility of Key: {}", k, e);
       return false;
@@ -103,6 +103,28 @@ public class AgeOffFilter extends Filter {
     return true;
   }
 
+  /**
+   * Determines the oldest timestamp accepted by an age off filter configured with the given
+   * options. When the options do not set the current time, the time this is called is used. Since a
+   * filter created afterwards measures from a later time, it will not accept anything older.
+   *
+   * @return the oldest accepted timestamp, or {@link Long#MIN_VALUE} when the filter accepts any
+   *         old timestamp or the options can not be parsed
+   */
+  public static long getOldestTimestamp(Map<String,String> options) {
+    if (options == null || options.get(TTL) == null || Boolean.parseBoolean(options.get(NEGATE)))
+      return Long.MIN_VALUE;
+
+    try {
+      long threshold = Long.parseLong(options.get(TTL));
+      String time = options.get(CURRENT_TIME);
+      long currentTime = time != null ? Long.parseLong(time) : System.currentTimeMillis();
+      return Math.subtractExact(currentTime, threshold);
+    } catch (NumberFormatException | ArithmeticException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
   /**
    * A convenience method for setting the age off threshold.
    *
@@ -168,6 +168,35 @@ public class TimestampFilter extends Filter {
     return true;
   }
 
+  /**
+   * Determines the oldest timestamp accepted by a timestamp filter configured with the given
+   * options.
+   *
+   * @return the oldest accepted timestamp, or {@link Long#MIN_VALUE} when the filter accepts any
+   *         old timestamp or the options can not be parsed
+   */
+  public static long getOldestTimestamp(Map<String,String> options) {
+    if (options == null || !options.containsKey(START) || Boolean.parseBoolean(options.get(NEGATE)))
+      return Long.MIN_VALUE;
+
+    try {
+      String s = options.get(START);
+      long start;
+      if (s.startsWith(LONG_PREFIX))
+        start = Long.parseLong(s.substring(LONG_PREFIX.length()));
+      else
+        start = initDateParser().parse(s).getTime();
+
+      if (options.get(START_INCL) != null && !Boolean.parseBoolean(options.get(START_INCL))
+          && start < Long.MAX_VALUE)
+        start++;
+      return start;
+    } catch (Exception e) {
+      // let init report the problem
+      return Long.MIN_VALUE;
+    }
+  }
+
   /**
    * A convenience method for setting the range of timestamps accepted by the timestamp filter.
    *
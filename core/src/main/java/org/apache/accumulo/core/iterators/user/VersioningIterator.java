@@ -32,8 +32,10 @@ import org.apache.accumulo.core.iterators.IteratorUtil;
 import org.apache.accumulo.core.iterators.OptionDescriber;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.accumulo.core.iterators.system.BatchIterator;
 
-public class VersioningIterator extends WrappingIterator implements OptionDescriber {
+public class VersioningIterator extends WrappingIterator
+    implements OptionDescriber, BatchIterator {
   private final int maxCount = 10;
 
   private Key currentKey = new Key();
@@ -70,6 +72,49 @@ public class VersioningIterator extends WrappingIterator implements OptionDescri
     }
   }
 
+  @Override
+  public int nextBatch(Key[] keys, Value[] values) throws IOException {
+    if (getClass() != VersioningIterator.class) {
+      // a subclass may change what next() does
+      return BatchIterator.readBatch(this, keys, values);
+    }
+
+    // the first entry read is the top, its version is already counted
+    SortedKeyValueIterator<Key,Value> source = getSource();
+    int read = BatchIterator.nextBatch(source, keys, values);
+    int kept = 0;
+    for (int i = 0; i < read; i++) {
+      if (i > 0) {
+        if (keys[i].equals(currentKey, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+          numVersions++;
+        } else {
+          currentKey.set(keys[i]);
+          numVersions = 1;
+        }
+      }
+
+      if (numVersions <= maxVersions) {
+        keys[kept] = keys[i];
+        values[kept++] = values[i];
+      }
+    }
+
+    // count the version of the new top the way next() does
+    if (source.hasTop()
+        && source.getTopKey().equals(currentKey, PartialKey.ROW_COLFAM_COLQUAL_COLVIS)) {
+      if (numVersions >= maxVersions) {
+        skipColumn(currentKey);
+        resetVersionCount();
+      } else {
+        numVersions++;
+      }
+    } else {
+      resetVersionCount();
+    }
+
+    return kept;
+  }
+
   @Override
   public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
       throws IOException {
@@ -94,9 +139,11 @@ public class VersioningIterator extends WrappingIterator implements OptionDescri
   }
 
   private void skipRowColumn() throws IOException {
-    Key keyToSkip = currentKey;
     super.next();
+    skipColumn(currentKey);
+  }
 
+  private void skipColumn(Key keyToSkip) throws IOException {
     int count = 0;
     SortedKeyValueIterator<Key,Value> source = getSource();
     while (source.hasTop()
@@ -17,6 +17,8 @@
  */
 package org.apache.accumulo.core.spi.cache;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.accumulo.core.file.blockfile.cache.lru.SynchronousLoadingBlockCache;
@@ -91,6 +93,20 @@ public interface BlockCache {
    */
   long getMaxSize();
 
+  /**
+   * Get the names of blocks in this cache, with the blocks most likely to be used again first when
+   * the cache can tell. Used to record what is cached so the same blocks can be read back in after
+   * a restart. Caches that can not list their blocks return an empty list.
+   *
+   * @param maxBlocks
+   *          the most names to return
+   * @return block names
+   * @since 2.0.0
+   */
+  default List<String> getHotBlockNames(int maxBlocks) {
+    return Collections.emptyList();
+  }
+
   /**
    * Get the statistics of this cache.
    *
@@ -115,5 +131,16 @@ public interface BlockCache {
      * @return the number of lookups
      */
     long requestCount();
+
+    /**
+     * Returns the number of blocks that have been evicted. Caches that do not track evictions
+     * return 0.
+     *
+     * @return the number of evicted blocks
+     * @since 2.0.0
+     */
+    default long evictedCount() {
+      return 0;
+    }
   }
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.accumulo.core.spi.cache;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -121,6 +122,35 @@ public abstract class BlockCacheManager {
     return caches.get(type);
   }
 
+  /**
+   * Get the block cache of the given type to use for the named partition. Tables choose a partition
+   * with {@code table.cache.partition}, so a partition may hold the blocks of one table or of all
+   * the tables in a namespace. Implementations that support partitions may give each one a minimum
+   * and maximum share of the cache and keep separate statistics for it. The default implementation
+   * ignores the partition and returns the shared cache.
+   *
+   * @param type
+   *          block cache type
+   * @param partition
+   *          partition name, the empty string selects the shared cache
+   * @return BlockCache or null if not enabled
+   */
+  public BlockCache getBlockCache(CacheType type, String partition) {
+    return getBlockCache(type);
+  }
+
+  /**
+   * Get the statistics of each partition of the cache of the given type that has been used.
+   *
+   * @param type
+   *          block cache type
+   * @return statistics keyed by partition name, empty if the implementation does not support
+   *         partitions
+   */
+  public Map<String,BlockCache.Stats> getPartitionStats(CacheType type) {
+    return Collections.emptyMap();
+  }
+
   /**
    * Create a block cache using the supplied configuration
    *
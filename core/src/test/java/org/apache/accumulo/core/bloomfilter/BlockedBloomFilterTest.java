@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.bloomfilter;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.util.bloom.Key;
+import org.junit.Test;
+
+public class BlockedBloomFilterTest {
+
+  private static Key key(String prefix, int i) {
+    return new Key((prefix + i).getBytes(UTF_8));
+  }
+
+  private static BlockedBloomFilter roundTrip(BlockedBloomFilter filter) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    filter.write(out);
+    out.close();
+
+    BlockedBloomFilter copy = new BlockedBloomFilter();
+    copy.readFields(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+    return copy;
+  }
+
+  private static int falsePositives(Filter filter, int tests) {
+    int fp = 0;
+    for (int i = 0; i < tests; i++) {
+      if (filter.membershipTest(key("absent", i)))
+        fp++;
+    }
+    return fp;
+  }
+
+  @Test
+  public void testMembership() throws IOException {
+    // about 12 bits per key
+    BlockedBloomFilter filter = new BlockedBloomFilter(12 * 10000, 10000);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(key("present", i));
+    }
+
+    for (BlockedBloomFilter f : new BlockedBloomFilter[] {filter, roundTrip(filter)}) {
+      for (int i = 0; i < 10000; i++) {
+        assertTrue(f.membershipTest(key("present", i)));
+      }
+      int fp = falsePositives(f, 100000);
+      assertTrue("false positives " + fp, fp < 2000);
+    }
+  }
+
+  @Test
+  public void testRows() throws IOException {
+    BlockedBloomFilter filter = new BlockedBloomFilter(12 * 1000, 1000);
+    for (int i = 0; i < 5500; i++) {
+      filter.add(key("present", i));
+    }
+
+    BlockedBloomFilter copy = roundTrip(filter);
+    for (int i = 0; i < 5500; i++) {
+      assertTrue(copy.membershipTest(key("present", i)));
+    }
+    assertTrue(copy.membershipTest(null));
+  }
+
+  @Test
+  public void testFold() throws IOException {
+    BlockedBloomFilter filter = new BlockedBloomFilter(12 * 100000, 100000);
+    for (int i = 0; i < 100; i++) {
+      filter.add(key("present", i));
+    }
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    filter.write(out);
+    out.close();
+    // the mostly empty row should be folded well below the 150KB a full row needs
+    assertTrue("serialized size " + baos.size(), baos.size() < 1024);
+
+    BlockedBloomFilter copy = roundTrip(filter);
+    for (int i = 0; i < 100; i++) {
+      assertTrue(copy.membershipTest(key("present", i)));
+    }
+    int fp = falsePositives(copy, 100000);
+    assertTrue("false positives " + fp, fp < 2000);
+
+    // keys can still be added to a folded filter
+    for (int i = 100; i < 200; i++) {
+      copy.add(key("present", i));
+    }
+    for (int i = 0; i < 200; i++) {
+      assertTrue(copy.membershipTest(key("present", i)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIncompatibleOr() {
+    new BlockedBloomFilter(1024, 10).or(new BlockedBloomFilter(4096, 10));
+  }
+}
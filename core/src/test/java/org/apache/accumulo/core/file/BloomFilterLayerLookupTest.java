@@ -61,10 +61,19 @@ public class BloomFilterLayerLookupTest {
   public TemporaryFolder tempDir = new TemporaryFolder(
       new File(System.getProperty("user.dir") + "/target"));
 
-  @SuppressFBWarnings(value = "PATH_TRAVERSAL_IN",
-      justification = "tempDir is not provided by user")
   @Test
   public void test() throws IOException {
+    test("dynamic");
+  }
+
+  @Test
+  public void testBlocked() throws IOException {
+    test("blocked");
+  }
+
+  @SuppressFBWarnings(value = "PATH_TRAVERSAL_IN",
+      justification = "tempDir is not provided by user")
+  private void test(String bloomType) throws IOException {
     HashSet<Integer> valsSet = new HashSet<>();
     for (int i = 0; i < 100000; i++) {
       valsSet.add(random.nextInt(Integer.MAX_VALUE));
@@ -75,6 +84,7 @@ public class BloomFilterLayerLookupTest {
 
     ConfigurationCopy acuconf = new ConfigurationCopy(DefaultConfiguration.getInstance());
     acuconf.set(Property.TABLE_BLOOM_ENABLED, "true");
+    acuconf.set(Property.TABLE_BLOOM_TYPE, bloomType);
     acuconf.set(Property.TABLE_BLOOM_KEY_FUNCTOR, ColumnFamilyFunctor.class.getName());
     acuconf.set(Property.TABLE_FILE_TYPE, RFile.EXTENSION);
     acuconf.set(Property.TABLE_BLOOM_LOAD_THRESHOLD, "1");
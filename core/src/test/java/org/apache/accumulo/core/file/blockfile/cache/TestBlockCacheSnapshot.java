@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot.FileBlocks;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestBlockCacheSnapshot {
+
+  @Rule
+  public TemporaryFolder tempDir = new TemporaryFolder(
+      new File(System.getProperty("user.dir") + "/target"));
+
+  private BlockCacheManager startManager() throws Exception {
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, "1000");
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, "100000");
+    cc.set(Property.TSERV_DATACACHE_SIZE, "100000");
+    for (CacheType type : new CacheType[] {CacheType.INDEX, CacheType.DATA}) {
+      LruBlockCacheConfiguration.builder(type).useEvictionThread(false).buildMap()
+          .forEach(cc::set);
+    }
+    BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+    manager.start(new BlockCacheConfiguration(cc));
+    return manager;
+  }
+
+  @Test
+  public void testHotBlockNames() throws Exception {
+    BlockCacheManager manager = startManager();
+    LruBlockCache cache = (LruBlockCache) manager.getBlockCache(CacheType.DATA);
+    for (int i = 0; i < 5; i++) {
+      cache.cacheBlock("b" + i, new byte[100]);
+    }
+    cache.getBlock("b1");
+
+    // most recently used first
+    assertEquals(Arrays.asList("b1", "b4", "b3"), cache.getHotBlockNames(3));
+    assertEquals(5, cache.getHotBlockNames(10).size());
+
+    manager.stop();
+  }
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    BlockCacheManager manager = startManager();
+    BlockCache indexCache = manager.getBlockCache(CacheType.INDEX);
+    BlockCache dataCache = manager.getBlockCache(CacheType.DATA);
+
+    String f1 = "hdfs://nn/accumulo/tables/1/t-0001/F0001.rf";
+    String f2 = "hdfs://nn/accumulo/tables/1/t-0001/F0001.rf_tmp";
+    indexCache.cacheBlock(f1 + "R500", new byte[10]);
+    indexCache.cacheBlock(f1 + "!RootData", new byte[10]);
+    indexCache.cacheBlock(f1 + "Mstats", new byte[10]);
+    dataCache.cacheBlock(f1 + "R0", new byte[10]);
+    dataCache.cacheBlock(f1 + "C250", new byte[10]);
+    dataCache.cacheBlock(f2 + "R0", new byte[10]);
+
+    File file = new File(tempDir.getRoot(), "blocks");
+    BlockCacheSnapshot.write(manager, 100, file);
+    manager.stop();
+
+    BlockCacheSnapshot snapshot = BlockCacheSnapshot.read(file);
+    assertFalse(snapshot.isEmpty());
+
+    FileBlocks blocks = snapshot.remove(f1);
+    assertTrue(blocks.hasIndexBlocks());
+    assertEquals(new TreeSet<>(Arrays.asList(0L, 250L)), blocks.getDataBlockOffsets());
+
+    // only restored once
+    assertNull(snapshot.remove(f1));
+
+    blocks = snapshot.remove(f2);
+    assertFalse(blocks.hasIndexBlocks());
+    assertEquals(Collections.singleton(0L), blocks.getDataBlockOffsets());
+
+    assertNull(snapshot.remove("hdfs://nn/accumulo/tables/1/t-0001/F0002.rf"));
+    assertTrue(snapshot.isEmpty());
+  }
+
+  @Test
+  public void testReadMissing() throws Exception {
+    BlockCacheSnapshot snapshot = BlockCacheSnapshot.read(new File(tempDir.getRoot(), "none"));
+    assertTrue(snapshot.isEmpty());
+  }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.security.SecureRandom;
@@ -38,6 +39,7 @@ import org.apache.accumulo.core.file.blockfile.cache.lru.HeapSize;
 import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCache;
 import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheConfiguration;
 import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager;
 import org.apache.accumulo.core.spi.cache.CacheEntry;
 import org.apache.accumulo.core.spi.cache.CacheType;
@@ -491,6 +493,132 @@ public class TestLruBlockCache {
     manager.stop();
   }
 
+  @Test
+  public void testPartitionMaxShare() throws Exception {
+
+    long maxSize = 100000;
+    long blockSize = calculateBlockSizeDefault(maxSize, 20);
+
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(blockSize));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(maxSize));
+    LruBlockCacheConfiguration.builder(CacheType.INDEX).useEvictionThread(false)
+        .partitionShares("small", 0f, 0.3f).buildMap().forEach(cc::set);
+    manager.start(new BlockCacheConfiguration(cc));
+
+    LruBlockCache cache = (LruBlockCache) manager.getBlockCache(CacheType.INDEX);
+    BlockCache partitionCache = manager.getBlockCache(CacheType.INDEX, "small");
+    LruBlockCache.Partition partition = cache.getPartition("small");
+    assertSame(partition, partitionCache);
+    assertSame(cache, manager.getBlockCache(CacheType.INDEX, ""));
+
+    Block[] sharedBlocks = generateFixedBlocks(5, blockSize, "shared");
+    Block[] partitionBlocks = generateFixedBlocks(20, blockSize, "small");
+
+    for (Block block : sharedBlocks) {
+      cache.cacheBlock(block.blockName, block.buf);
+    }
+    for (Block block : partitionBlocks) {
+      partitionCache.cacheBlock(block.blockName, block.buf);
+    }
+
+    // the partition was kept under its max share by evicting its own blocks
+    assertTrue(partition.getCurrentSize() <= maxSize * 0.3);
+    assertTrue(cache.getEvictedCount() > 0);
+    assertEquals(cache.getEvictedCount(), partition.getStats().evictedCount());
+    assertEquals(cache.getEvictedCount(),
+        manager.getPartitionStats(CacheType.INDEX).get("small").evictedCount());
+    for (Block block : sharedBlocks) {
+      assertNotNull(cache.getBlock(block.blockName));
+    }
+
+    // the most recently cached blocks of the partition remain
+    Block last = partitionBlocks[partitionBlocks.length - 1];
+    assertNotNull(partitionCache.getBlock(last.blockName));
+    assertNull(partitionCache.getBlock(partitionBlocks[0].blockName));
+    assertEquals(2, partition.getStats().requestCount());
+    assertEquals(1, partition.getStats().hitCount());
+
+    manager.stop();
+  }
+
+  @Test
+  public void testPartitionMinShare() throws Exception {
+
+    long maxSize = 100000;
+    long blockSize = calculateBlockSizeDefault(maxSize, 20);
+
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Long.toString(blockSize));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(maxSize));
+    LruBlockCacheConfiguration.builder(CacheType.INDEX).useEvictionThread(false)
+        .partitionShares("reserved", 0.3f, 1f).buildMap().forEach(cc::set);
+    manager.start(new BlockCacheConfiguration(cc));
+
+    LruBlockCache cache = (LruBlockCache) manager.getBlockCache(CacheType.INDEX);
+    BlockCache partitionCache = manager.getBlockCache(CacheType.INDEX, "reserved");
+    LruBlockCache.Partition partition = cache.getPartition("reserved");
+
+    // fill the partition with as many blocks as fit in its min share of the whole cache
+    long share = (long) Math.floor(maxSize * 0.3f);
+    Block[] blocks = generateFixedBlocks(20, blockSize, "reserved");
+    partitionCache.cacheBlock(blocks[0].blockName, blocks[0].buf);
+    long perBlock = partition.getCurrentSize();
+    Block[] partitionBlocks = Arrays.copyOf(blocks, (int) (share / perBlock));
+    Block extraBlock = blocks[partitionBlocks.length];
+    Block[] sharedBlocks = generateFixedBlocks(40, blockSize, "shared");
+
+    for (int i = 1; i < partitionBlocks.length; i++) {
+      partitionCache.cacheBlock(partitionBlocks[i].blockName, partitionBlocks[i].buf);
+    }
+    assertTrue(partition.getCurrentSize() <= share);
+    assertTrue(partition.getCurrentSize() > share - perBlock);
+
+    // scan through enough other blocks to evict everything several times over
+    for (Block block : sharedBlocks) {
+      cache.cacheBlock(block.blockName, block.buf);
+    }
+
+    assertTrue(cache.getEvictionCount() > 1);
+    assertTrue(cache.heapSize() < maxSize);
+    assertNull(cache.getBlock(sharedBlocks[0].blockName));
+
+    // the partition is within its min share, so none of its blocks were evicted
+    for (Block block : partitionBlocks) {
+      assertNotNull(partitionCache.getBlock(block.blockName));
+    }
+    BlockCache.Stats stats = manager.getPartitionStats(CacheType.INDEX).get("reserved");
+    assertEquals(0, stats.evictedCount());
+    assertEquals(partitionBlocks.length, stats.hitCount());
+    assertEquals(partitionBlocks.length, stats.requestCount());
+
+    // once over its share the partition's blocks are evicted again, but only down to its share
+    partitionCache.cacheBlock(extraBlock.blockName, extraBlock.buf);
+    for (Block block : generateFixedBlocks(40, blockSize, "more")) {
+      cache.cacheBlock(block.blockName, block.buf);
+    }
+    assertTrue(stats.evictedCount() > 0);
+    assertTrue(partition.getCurrentSize() <= share);
+    assertTrue(partition.getCurrentSize() > share - perBlock);
+
+    manager.stop();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPartitionMinSharesTooLarge() {
+    DefaultConfiguration dc = DefaultConfiguration.getInstance();
+    ConfigurationCopy cc = new ConfigurationCopy(dc);
+    LruBlockCacheConfiguration.builder(CacheType.INDEX).partitionShares("a", 0.4f, 0.5f)
+        .partitionShares("b", 0.4f, 0.5f).buildMap().forEach(cc::set);
+    new LruBlockCacheConfiguration(new BlockCacheConfiguration(cc), CacheType.INDEX);
+  }
+
   private Block[] generateFixedBlocks(int numBlocks, int size, String pfx) {
     Block[] blocks = new Block[numBlocks];
     for (int i = 0; i < numBlocks; i++) {
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.offheap.OffHeapBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.offheap.OffHeapBlockCacheManager;
+import org.apache.accumulo.core.spi.cache.BlockCache.Loader;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheEntry;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestOffHeapBlockCache {
+
+  private static final int SLAB_SIZE = 64 * 1024;
+
+  private BlockCacheManager manager;
+  private OffHeapBlockCache cache;
+  private Random random = new Random(42);
+
+  @Before
+  public void startCache() throws Exception {
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, OffHeapBlockCacheManager.class.getName());
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, "4K");
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Integer.toString(64 * SLAB_SIZE));
+    cc.set(BlockCacheManager.getFullyQualifiedPropertyPrefix(OffHeapBlockCache.PROPERTY_PREFIX)
+        + OffHeapBlockCache.SLAB_SIZE_PROPERTY, Integer.toString(SLAB_SIZE));
+    manager = BlockCacheManagerFactory.getInstance(cc);
+    manager.start(new BlockCacheConfiguration(cc));
+    cache = (OffHeapBlockCache) manager.getBlockCache(CacheType.INDEX);
+  }
+
+  @After
+  public void stopCache() {
+    manager.stop();
+  }
+
+  private byte[] randomBlock(int size) {
+    byte[] data = new byte[size];
+    random.nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testCacheSimple() {
+    assertEquals(64 * SLAB_SIZE, cache.getMaxSize());
+    assertTrue(cache.getMaxHeapSize() < cache.getMaxSize());
+
+    byte[][] blocks = new byte[20][];
+    for (int i = 0; i < blocks.length; i++) {
+      blocks[i] = randomBlock(1000 + i * 100);
+      assertNull(cache.getBlock("b" + i));
+      CacheEntry ce = cache.cacheBlock("b" + i, blocks[i]);
+      assertArrayEquals(blocks[i], ce.getBuffer());
+    }
+
+    for (int i = 0; i < blocks.length; i++) {
+      CacheEntry ce = cache.getBlock("b" + i);
+      assertNotNull(ce);
+      assertArrayEquals(blocks[i], ce.getBuffer());
+    }
+
+    assertEquals(20, cache.getStats().hitCount());
+    assertEquals(40, cache.getStats().requestCount());
+    assertEquals(0, cache.getEvictedCount());
+    // sizes from 1000 to 2900 bytes only need a few size classes with one slab each
+    assertTrue(cache.getAllocatedSize() <= 8 * SLAB_SIZE);
+  }
+
+  @Test
+  public void testEviction() {
+    int blockSize = 4000;
+    int numBlocks = 64 * SLAB_SIZE / blockSize * 2;
+    byte[][] blocks = new byte[numBlocks][];
+    for (int i = 0; i < numBlocks; i++) {
+      blocks[i] = randomBlock(blockSize);
+      cache.cacheBlock("b" + i, blocks[i]);
+      // keep the first block hot so the clock passes over it
+      assertNotNull(cache.getBlock("b0"));
+    }
+
+    assertTrue(cache.getEvictedCount() > 0);
+    assertEquals(64 * SLAB_SIZE, cache.getAllocatedSize());
+    assertTrue(cache.getBlockCount() < numBlocks);
+
+    assertArrayEquals(blocks[0], cache.getBlock("b0").getBuffer());
+    assertArrayEquals(blocks[numBlocks - 1], cache.getBlock("b" + (numBlocks - 1)).getBuffer());
+    for (int i = 0; i < numBlocks; i++) {
+      CacheEntry ce = cache.getBlock("b" + i);
+      if (ce != null) {
+        assertArrayEquals(blocks[i], ce.getBuffer());
+      }
+    }
+  }
+
+  @Test
+  public void testTooLarge() {
+    byte[] block = randomBlock(SLAB_SIZE + 1);
+    CacheEntry ce = cache.cacheBlock("big", block);
+    assertArrayEquals(block, ce.getBuffer());
+    assertNull(cache.getBlock("big"));
+  }
+
+  @Test
+  public void testSmallCache() throws Exception {
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, OffHeapBlockCacheManager.class.getName());
+    cc.set(Property.TSERV_DATACACHE_SIZE, "256K");
+    BlockCacheManager smallManager = BlockCacheManagerFactory.getInstance(cc);
+    smallManager.start(new BlockCacheConfiguration(cc));
+    try {
+      OffHeapBlockCache small = (OffHeapBlockCache) smallManager.getBlockCache(CacheType.DATA);
+      assertEquals(256 * 1024, small.getMaxSize());
+
+      // slabs shrink to 4K so that blocks of several sizes can be cached
+      for (int size = 1000; size <= 4000; size += 500) {
+        byte[] block = randomBlock(size);
+        small.cacheBlock("b" + size, block);
+        assertArrayEquals(block, small.getBlock("b" + size).getBuffer());
+      }
+
+      small.cacheBlock("big", randomBlock(5000));
+      assertNull(small.getBlock("big"));
+    } finally {
+      smallManager.stop();
+    }
+  }
+
+  @Test
+  public void testLoader() {
+    byte[] block = randomBlock(5000);
+    Loader loader = new Loader() {
+      @Override
+      public Map<String,Loader> getDependencies() {
+        return Collections.emptyMap();
+      }
+
+      @Override
+      public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+        assertEquals(SLAB_SIZE, maxSize);
+        return block;
+      }
+    };
+
+    assertArrayEquals(block, cache.getBlock("loaded", loader).getBuffer());
+    assertArrayEquals(block, cache.getBlock("loaded").getBuffer());
+  }
+}
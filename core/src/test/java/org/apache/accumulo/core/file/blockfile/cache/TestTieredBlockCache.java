@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.blockfile.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCache;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheConfiguration;
+import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.FileBlockStore;
+import org.apache.accumulo.core.file.blockfile.cache.tiered.TieredBlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCache.Loader;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+public class TestTieredBlockCache {
+
+  @Rule
+  public TemporaryFolder tempDir = new TemporaryFolder(
+      new File(System.getProperty("user.dir") + "/target"));
+
+  private Random random = new Random(7);
+
+  private byte[] randomBlock(int size) {
+    byte[] data = new byte[size];
+    random.nextBytes(data);
+    return data;
+  }
+
+  @Test
+  public void testFileBlockStore() throws Exception {
+    // run writes in the calling thread
+    try (FileBlockStore store = new FileBlockStore(tempDir.getRoot(), "test", 10000,
+        Runnable::run)) {
+      byte[][] blocks = new byte[12][];
+      for (int i = 0; i < blocks.length; i++) {
+        blocks[i] = randomBlock(1500);
+        store.put("b" + i, blocks[i]);
+        assertArrayEquals(blocks[i], store.get("b" + i));
+      }
+
+      // only six blocks fit, and the log skips the last 1000 bytes of the file when wrapping
+      assertEquals(6, store.getBlockCount());
+      for (int i = 0; i < 6; i++) {
+        assertNull(store.get("b" + i));
+      }
+      for (int i = 6; i < blocks.length; i++) {
+        assertArrayEquals(blocks[i], store.get("b" + i));
+      }
+
+      store.put("big", randomBlock(10001));
+      assertNull(store.get("big"));
+    }
+  }
+
+  @SuppressFBWarnings(value = "PATH_TRAVERSAL_IN",
+      justification = "tempDir is not provided by user")
+  @Test
+  public void testSpillEvicted() throws Exception {
+    long maxSize = 100000;
+    int blockSize = 5000;
+
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
+    cc.set(Property.TSERV_DEFAULT_BLOCKSIZE, Integer.toString(blockSize));
+    cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(maxSize));
+    LruBlockCacheConfiguration.builder(CacheType.INDEX).useEvictionThread(false)
+        .l2Dir(new File(tempDir.getRoot(), "l2").getAbsolutePath()).l2Size(10 * maxSize).buildMap()
+        .forEach(cc::set);
+    BlockCacheManager manager = BlockCacheManagerFactory.getInstance(cc);
+    manager.start(new BlockCacheConfiguration(cc));
+
+    try {
+      TieredBlockCache cache = (TieredBlockCache) manager.getBlockCache(CacheType.INDEX);
+      LruBlockCache lru = (LruBlockCache) cache.getFirstTier();
+      assertTrue(manager.getBlockCache(CacheType.DATA) instanceof LruBlockCache);
+
+      byte[][] blocks = new byte[60][];
+      for (int i = 0; i < blocks.length; i++) {
+        blocks[i] = randomBlock(blockSize);
+        cache.cacheBlock("b" + i, blocks[i]);
+      }
+
+      assertTrue(lru.getEvictedCount() > 0);
+      long deadline = System.currentTimeMillis() + 30000;
+      while (cache.getSecondTier().getBlockCount() < lru.getEvictedCount()) {
+        assertTrue("evicted blocks were not written", System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+
+      Loader failingLoader = new Loader() {
+        @Override
+        public Map<String,Loader> getDependencies() {
+          return Collections.emptyMap();
+        }
+
+        @Override
+        public byte[] load(int maxSize, Map<String,byte[]> dependencies) {
+          fail("block should have been read from the second tier");
+          return null;
+        }
+      };
+
+      // blocks evicted so far can be read without loading them, reading them evicts other blocks
+      // that are written to the second tier in the background
+      int spilled = 0;
+      for (int i = 0; i < blocks.length; i++) {
+        if (cache.getSecondTier().get("b" + i) != null) {
+          assertNotNull(cache.getBlock("b" + i, failingLoader));
+          assertArrayEquals(blocks[i], cache.getBlock("b" + i, failingLoader).getBuffer());
+          spilled++;
+        }
+      }
+      assertTrue(spilled > 0);
+      assertTrue(cache.getSecondTier().getHitCount() > 0);
+      assertTrue(cache.getStats().hitCount() > lru.getStats().hitCount());
+    } finally {
+      manager.stop();
+    }
+  }
+}
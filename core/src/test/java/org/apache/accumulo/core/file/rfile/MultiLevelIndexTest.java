@@ -16,6 +16,7 @@
  */
 package org.apache.accumulo.core.file.rfile;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
@@ -67,9 +68,9 @@ public class MultiLevelIndexTest {
     BufferedWriter mliw = new BufferedWriter(new Writer(_cbw, maxBlockSize));
 
     for (int i = 0; i < num; i++)
-      mliw.add(new Key(String.format("%05d000", i)), i, 0, 0, 0);
+      mliw.add(new Key(String.format("%05d000", i)), i, 0, 0, 0, families(i));
 
-    mliw.addLast(new Key(String.format("%05d000", num)), num, 0, 0, 0);
+    mliw.addLast(new Key(String.format("%05d000", num)), num, 0, 0, 0, families(num));
 
     BCFile.Writer.BlockAppender root = _cbw.prepareMetaBlock("root");
     mliw.close(root);
@@ -86,7 +87,7 @@ public class MultiLevelIndexTest {
         CachedConfiguration.getInstance(), aconf,
         CryptoServiceFactory.newInstance(aconf, ClassloaderType.JAVA));
 
-    Reader reader = new Reader(_cbr, RFile.RINDEX_VER_8);
+    Reader reader = new Reader(_cbr, RFile.RINDEX_VER_11);
     CachableBlockFile.CachedBlockRead rootIn = _cbr.getMetaBlock("root");
     reader.readFields(rootIn);
     rootIn.close();
@@ -95,7 +96,9 @@ public class MultiLevelIndexTest {
     while (liter.hasNext()) {
       assertEquals(count, liter.nextIndex());
       assertEquals(count, liter.peek().getNumEntries());
-      assertEquals(count, liter.next().getNumEntries());
+      IndexEntry ie = liter.next();
+      assertEquals(count, ie.getNumEntries());
+      assertArrayEquals(families(count), ie.getFamilies());
       count++;
     }
 
@@ -129,4 +132,8 @@ public class MultiLevelIndexTest {
 
   }
 
+  private static byte[] families(int i) {
+    return i % 3 == 0 ? null : new byte[] {(byte) i, (byte) (i >> 8)};
+  }
+
 }
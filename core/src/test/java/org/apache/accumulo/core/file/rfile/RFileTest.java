@@ -17,6 +17,7 @@
 package org.apache.accumulo.core.file.rfile;
 
 import static org.apache.accumulo.core.conf.Property.INSTANCE_CRYPTO_PREFIX;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -45,6 +46,11 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.accumulo.core.Constants;
 import org.apache.accumulo.core.client.sample.RowSampler;
@@ -73,6 +79,7 @@ import org.apache.accumulo.core.file.blockfile.cache.lru.LruBlockCacheManager;
 import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
 import org.apache.accumulo.core.file.rfile.RFile.Reader;
 import org.apache.accumulo.core.file.rfile.bcfile.BCFile;
+import org.apache.accumulo.core.iterators.IterationInterruptedException;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.system.ColumnFamilySkippingIterator;
 import org.apache.accumulo.core.metadata.MetadataTable;
@@ -228,6 +235,10 @@ public class RFileTest {
     public Reader reader;
     public SortedKeyValueIterator<Key,Value> iter;
     private BlockCacheManager manager;
+    public Executor readAheadExecutor;
+    public Executor compressionExecutor;
+    // when set the writer puts the blocks it writes in the caches the reader uses
+    public boolean cacheWrittenBlocks = false;
 
     public TestRFile(AccumuloConfiguration accumuloConfiguration) {
       this.accumuloConfiguration = accumuloConfiguration;
@@ -243,7 +254,8 @@ public class RFileTest {
       baos = new ByteArrayOutputStream();
       dos = new FSDataOutputStream(baos, new FileSystem.Statistics("a"));
       BCFile.Writer _cbw = new BCFile.Writer(dos, null, "gz", conf, accumuloConfiguration,
-          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA));
+          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA),
+          compressionExecutor);
 
       SamplerConfigurationImpl samplerConfig = SamplerConfigurationImpl
           .newSamplerConfig(accumuloConfiguration);
@@ -253,7 +265,17 @@ public class RFileTest {
         sampler = SamplerFactory.newSampler(samplerConfig, accumuloConfiguration);
       }
 
-      writer = new RFile.Writer(_cbw, blockSize, 1000, samplerConfig, sampler);
+      CachableBlockFile.BlockCacheWriter cacheWriter = null;
+      if (cacheWrittenBlocks) {
+        startCacheManager();
+        cacheWriter = new CachableBlockFile.BlockCacheWriter("source-1",
+            manager.getBlockCache(CacheType.DATA), manager.getBlockCache(CacheType.INDEX));
+      }
+
+      writer = new RFile.Writer(_cbw, blockSize, 1000,
+          accumuloConfiguration.getCount(Property.TABLE_FILE_RESTART_INTERVAL),
+          accumuloConfiguration.getCount(Property.TABLE_FILE_FAMILY_SUMMARY_SIZE), samplerConfig,
+          sampler, cacheWriter);
 
       if (startDLG)
         writer.startDefaultLocalityGroup();
@@ -281,6 +303,10 @@ public class RFileTest {
     }
 
     public void openReader(boolean cfsi) throws IOException {
+      openReader(cfsi, true);
+    }
+
+    public void openReader(boolean cfsi, boolean checkIndex) throws IOException {
       int fileLength = 0;
       byte[] data = null;
       data = baos.toByteArray();
@@ -289,6 +315,24 @@ public class RFileTest {
       in = new FSDataInputStream(bais);
       fileLength = data.length;
 
+      if (!cacheWrittenBlocks) {
+        startCacheManager();
+      }
+      LruBlockCache indexCache = (LruBlockCache) manager.getBlockCache(CacheType.INDEX);
+      LruBlockCache dataCache = (LruBlockCache) manager.getBlockCache(CacheType.DATA);
+
+      CachableBlockFile.Reader _cbr = new CachableBlockFile.Reader("source-1", in, fileLength, conf,
+          dataCache, indexCache, readAheadExecutor, accumuloConfiguration,
+          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA));
+      reader = new RFile.Reader(_cbr);
+      if (cfsi)
+        iter = new ColumnFamilySkippingIterator(reader);
+
+      if (checkIndex)
+        checkIndex(reader);
+    }
+
+    private void startCacheManager() {
       DefaultConfiguration dc = DefaultConfiguration.getInstance();
       ConfigurationCopy cc = new ConfigurationCopy(dc);
       cc.set(Property.TSERV_CACHE_MANAGER_IMPL, LruBlockCacheManager.class.getName());
@@ -301,17 +345,6 @@ public class RFileTest {
       cc.set(Property.TSERV_DATACACHE_SIZE, Long.toString(100000000));
       cc.set(Property.TSERV_INDEXCACHE_SIZE, Long.toString(100000000));
       manager.start(new BlockCacheConfiguration(cc));
-      LruBlockCache indexCache = (LruBlockCache) manager.getBlockCache(CacheType.INDEX);
-      LruBlockCache dataCache = (LruBlockCache) manager.getBlockCache(CacheType.DATA);
-
-      CachableBlockFile.Reader _cbr = new CachableBlockFile.Reader("source-1", in, fileLength, conf,
-          dataCache, indexCache, accumuloConfiguration,
-          CryptoServiceFactory.newInstance(accumuloConfiguration, ClassloaderType.JAVA));
-      reader = new RFile.Reader(_cbr);
-      if (cfsi)
-        iter = new ColumnFamilySkippingIterator(reader);
-
-      checkIndex(reader);
     }
 
     public void closeReader() throws IOException {
@@ -551,7 +584,7 @@ public class RFileTest {
       count++;
       iiter.next();
     }
-    assertEquals(20, count);
+    assertEquals(24, count);
 
     trf.closeReader();
   }
@@ -1700,6 +1733,550 @@ public class RFileTest {
     trf.closeReader();
   }
 
+  @Test
+  public void testRestartPoints() throws Exception {
+    for (int interval : new int[] {0, 1, 2, 3, 16, 1000}) {
+      ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+      cc.set(Property.TABLE_FILE_RESTART_INTERVAL, interval + "");
+      TestRFile trf = new TestRFile(cc);
+
+      // use large blocks so that seeks must search within a block
+      trf.openWriter(100000);
+
+      List<Key> expectedKeys = new ArrayList<>();
+      for (int r = 0; r < 100; r++) {
+        for (int q = 0; q < 10; q++) {
+          // write a few versions of each key, some deleted, so that restart points land on
+          // keys that only differ by timestamp and delete flag
+          for (int ts = 3; ts > 0; ts--) {
+            Key k = newKey(formatString("r_", r), "cf" + (q / 5), formatString("cq_", q),
+                "L" + (q % 3), ts);
+            if (ts == 2 && q % 4 == 0) {
+              Key dk = new Key(k);
+              dk.setDeleted(true);
+              expectedKeys.add(dk);
+              trf.writer.append(dk, newValue("del" + r + q));
+            }
+            expectedKeys.add(k);
+            trf.writer.append(k, newValue("v" + r + q + ts));
+          }
+        }
+      }
+
+      trf.closeWriter();
+      trf.openReader();
+
+      Set<ByteSequence> cfs = Collections.emptySet();
+
+      // seek to every key in the file, this is done twice so that the blocks are cached
+      for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < expectedKeys.size(); i++) {
+          trf.reader.seek(new Range(expectedKeys.get(i), null), cfs, false);
+          for (int j = i; j < Math.min(i + 3, expectedKeys.size()); j++) {
+            assertTrue(trf.reader.hasTop());
+            assertEquals(expectedKeys.get(j), trf.reader.getTopKey());
+            trf.reader.next();
+          }
+        }
+      }
+
+      // seek to keys that do not exist in the file, in random order
+      Random rand = new SecureRandom();
+      for (int count = 0; count < 1000; count++) {
+        int r = rand.nextInt(100);
+        int q = rand.nextInt(10);
+        Key seekKey = newKey(formatString("r_", r), "cf" + (q / 5), formatString("cq_", q) + "a",
+            "L0", 5);
+        trf.reader.seek(new Range(seekKey, null), cfs, false);
+
+        Key expected = null;
+        for (Key k : expectedKeys) {
+          if (k.compareTo(seekKey) >= 0) {
+            expected = k;
+            break;
+          }
+        }
+
+        if (expected == null) {
+          assertFalse(trf.reader.hasTop());
+        } else {
+          assertTrue(trf.reader.hasTop());
+          assertEquals(expected, trf.reader.getTopKey());
+        }
+      }
+
+      // seek forward within the unconsumed portion of the current block
+      trf.reader.seek(new Range(), cfs, false);
+      for (int i = 0; i < expectedKeys.size(); i += 1 + rand.nextInt(60)) {
+        trf.reader.seek(new Range(expectedKeys.get(i), null), cfs, false);
+        assertTrue(trf.reader.hasTop());
+        assertEquals(expectedKeys.get(i), trf.reader.getTopKey());
+      }
+
+      trf.closeReader();
+    }
+  }
+
+  @Test
+  public void testReadAhead() throws Exception {
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TABLE_FILE_READAHEAD_BLOCKS, "3");
+    TestRFile trf = new TestRFile(cc);
+
+    // run read ahead requests on the calling thread so the test can count them
+    AtomicInteger readAheadCount = new AtomicInteger(0);
+    trf.readAheadExecutor = r -> {
+      readAheadCount.incrementAndGet();
+      r.run();
+    };
+
+    trf.openWriter();
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("v" + r + q));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader();
+
+    List<Key> indexKeys = new ArrayList<>();
+    FileSKVIterator indexIter = trf.reader.getIndex();
+    while (indexIter.hasTop()) {
+      indexKeys.add(new Key(indexIter.getTopKey()));
+      indexIter.next();
+    }
+    assertTrue(indexKeys.size() > 10);
+
+    // a full scan should read ahead every block except the first two, which are read by the scan
+    // before it looks sequential
+    Set<ByteSequence> cfs = Collections.emptySet();
+    trf.reader.seek(new Range(), cfs, false);
+    int count = 0;
+    while (trf.reader.hasTop()) {
+      count++;
+      trf.reader.next();
+    }
+    assertEquals(5000, count);
+    assertEquals(indexKeys.size() - 2, readAheadCount.get());
+
+    // blocks after the end of the range should not be read ahead
+    readAheadCount.set(0);
+    Range range = new Range(formatString("r_", 40), formatString("r_", 49));
+    int blocksInRange = 0;
+    for (int i = 0; i < indexKeys.size(); i++) {
+      if (!range.beforeStartKey(indexKeys.get(i))
+          && (i == 0 || !range.afterEndKey(indexKeys.get(i - 1)))) {
+        blocksInRange++;
+      }
+    }
+    trf.reader.seek(range, cfs, false);
+    count = 0;
+    while (trf.reader.hasTop()) {
+      count++;
+      trf.reader.next();
+    }
+    assertEquals(500, count);
+    assertTrue(readAheadCount.get() > 0);
+    assertTrue(readAheadCount.get() <= blocksInRange - 2);
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    TestRFile trf = new TestRFile(DefaultConfiguration.getInstance());
+
+    trf.openWriter(false);
+    trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence("cf1"));
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("v" + r + q));
+      }
+    }
+    trf.writer.startDefaultLocalityGroup();
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf2", formatString("cq_", q), "", 1),
+            newValue("v" + r + q));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader();
+
+    List<Range> ranges = new ArrayList<>();
+    for (int r = 5; r < 100; r += 20) {
+      ranges.add(new Range(formatString("r_", r), formatString("r_", r + 2)));
+    }
+
+    // only the blocks of the locality group being read should be cached
+    Set<ByteSequence> cf1 = newColFamByteSequence("cf1");
+    assertTrue(trf.reader.prefetch(ranges, cf1, true, Long.MAX_VALUE) > 0);
+
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+    long misses = dataCache.getStats().getMissCount();
+    int count = 0;
+    for (Range range : ranges) {
+      trf.reader.seek(range, cf1, true);
+      while (trf.reader.hasTop()) {
+        assertEquals("cf1", trf.reader.getTopKey().getColumnFamily().toString());
+        count++;
+        trf.reader.next();
+      }
+    }
+    assertEquals(ranges.size() * 150, count);
+    assertEquals(misses, dataCache.getStats().getMissCount());
+
+    Set<ByteSequence> cf2 = newColFamByteSequence("cf2");
+    trf.reader.seek(ranges.get(0), cf2, true);
+    assertTrue(trf.reader.hasTop());
+    assertTrue(dataCache.getStats().getMissCount() > misses);
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testPrefetchLimits() throws Exception {
+    TestRFile trf = new TestRFile(DefaultConfiguration.getInstance());
+
+    trf.openWriter(false);
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("v" + r + q));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader();
+
+    List<Range> ranges = new ArrayList<>();
+    for (int r = 5; r < 100; r += 20) {
+      ranges.add(new Range(formatString("r_", r), formatString("r_", r + 2)));
+    }
+
+    // a tiny budget only fetches the first block of the leading range
+    long bytes = trf.reader.prefetch(ranges, EMPTY_COL_FAMS, false, 1);
+    assertTrue(bytes > 0);
+
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+    long misses = dataCache.getStats().getMissCount();
+    trf.reader.seek(ranges.get(0), EMPTY_COL_FAMS, false);
+    assertTrue(trf.reader.hasTop());
+    assertEquals(misses, dataCache.getStats().getMissCount());
+    trf.reader.seek(ranges.get(ranges.size() - 1), EMPTY_COL_FAMS, false);
+    assertTrue(trf.reader.hasTop());
+    assertTrue(dataCache.getStats().getMissCount() > misses);
+
+    // nothing is read once the lookup has been interrupted
+    trf.reader.setInterruptFlag(new AtomicBoolean(true));
+    try {
+      trf.reader.prefetch(ranges, EMPTY_COL_FAMS, false, Long.MAX_VALUE);
+      fail("Expected prefetch to be interrupted");
+    } catch (IterationInterruptedException e) {
+      // expected
+    }
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testWarmUp() throws IOException {
+    TestRFile trf = new TestRFile(conf);
+
+    trf.openWriter();
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("" + q));
+      }
+    }
+    trf.closeWriter();
+    // checking the index would read all of it into the cache
+    trf.openReader(true, false);
+
+    LruBlockCache indexCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.INDEX);
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+
+    trf.reader.warmUp(new Range(formatString("r_", 10), formatString("r_", 90)), 20000);
+    assertTrue(dataCache.size() > 0);
+
+    // the whole index was read, and enough data blocks to read the first rows of the range
+    long indexMisses = indexCache.getStats().getMissCount();
+    long dataMisses = dataCache.getStats().getMissCount();
+    for (int r = 10; r < 15; r++) {
+      trf.reader.seek(new Range(formatString("r_", r)), EMPTY_COL_FAMS, false);
+      int count = 0;
+      while (trf.reader.hasTop()) {
+        count++;
+        trf.reader.next();
+      }
+      assertEquals(50, count);
+    }
+    assertEquals(dataMisses, dataCache.getStats().getMissCount());
+
+    for (int r = 0; r < 100; r += 3) {
+      trf.reader.seek(new Range(formatString("r_", r)), EMPTY_COL_FAMS, false);
+      assertTrue(trf.reader.hasTop());
+    }
+    assertEquals(indexMisses, indexCache.getStats().getMissCount());
+    assertTrue(dataCache.getStats().getMissCount() > dataMisses);
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testCacheWrittenBlocks() throws IOException {
+    TestRFile trf = new TestRFile(conf);
+    trf.cacheWrittenBlocks = true;
+
+    trf.openWriter(false);
+    trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence("cf1"));
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 25; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("" + q));
+      }
+    }
+    trf.writer.startDefaultLocalityGroup();
+    for (int r = 0; r < 100; r++) {
+      for (int q = 0; q < 25; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf2", formatString("cq_", q), "", 1),
+            newValue("" + q));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader(true, false);
+
+    LruBlockCache indexCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.INDEX);
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+    long indexMisses = indexCache.getStats().getMissCount();
+
+    trf.reader.seek(new Range(), EMPTY_COL_FAMS, false);
+    int count = 0;
+    while (trf.reader.hasTop()) {
+      count++;
+      trf.reader.next();
+    }
+    assertEquals(5000, count);
+
+    for (int r = 0; r < 100; r += 3) {
+      trf.reader.seek(new Range(formatString("r_", r)), EMPTY_COL_FAMS, false);
+      assertTrue(trf.reader.hasTop());
+    }
+
+    // every block of the index and of the data was cached as it was written
+    assertTrue(dataCache.getStats().hitCount() > 0);
+    assertEquals(0, dataCache.getStats().getMissCount());
+    assertEquals(indexMisses, indexCache.getStats().getMissCount());
+
+    trf.closeReader();
+  }
+
+  private static int scanFamily(TestRFile trf, Range range, String family, boolean inclusive)
+      throws IOException {
+    trf.iter.seek(range, newColFamByteSequence(family), inclusive);
+    int count = 0;
+    while (trf.iter.hasTop()) {
+      assertEquals(inclusive, trf.iter.getTopKey().getColumnFamily().toString().equals(family));
+      count++;
+      trf.iter.next();
+    }
+    return count;
+  }
+
+  private long scanWithDataCache(boolean compressed) throws IOException {
+    ConfigurationCopy cc = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    cc.set(Property.TABLE_BLOCKCACHE_COMPRESSED, Boolean.toString(compressed));
+    TestRFile trf = new TestRFile(cc);
+
+    trf.openWriter();
+    for (int r = 0; r < 200; r++) {
+      for (int q = 0; q < 50; q++) {
+        trf.writer.append(newKey(formatString("r_", r), "cf1", formatString("cq_", q), "", 1),
+            newValue("compressible value " + (q % 5)));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader();
+
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+    long cacheSize = 0;
+
+    // later scans read blocks from the cache, eventually from the decompressed copies of hot blocks
+    for (int i = 0; i < 5; i++) {
+      trf.reader.seek(new Range(), EMPTY_COL_FAMS, false);
+      int count = 0;
+      while (trf.reader.hasTop()) {
+        Key expected = newKey(formatString("r_", count / 50), "cf1",
+            formatString("cq_", count % 50), "", 1);
+        assertEquals(expected, trf.reader.getTopKey());
+        assertEquals(newValue("compressible value " + (count % 50 % 5)), trf.reader.getTopValue());
+        count++;
+        trf.reader.next();
+      }
+      assertEquals(10000, count);
+      if (i == 0) {
+        cacheSize = dataCache.getCurrentSize();
+      }
+
+      for (int r = 0; r < 200; r += 7) {
+        Key key = newKey(formatString("r_", r), "cf1", formatString("cq_", 25), "", 1);
+        trf.reader.seek(new Range(key, null), EMPTY_COL_FAMS, false);
+        assertTrue(trf.reader.hasTop());
+        assertEquals(key, trf.reader.getTopKey());
+      }
+    }
+    assertTrue(dataCache.getStats().hitCount() > 0);
+
+    trf.closeReader();
+    return cacheSize;
+  }
+
+  @Test
+  public void testCompressedBlockCache() throws Exception {
+    long compressedSize = scanWithDataCache(true);
+    long uncompressedSize = scanWithDataCache(false);
+    assertTrue(compressedSize + " " + uncompressedSize, compressedSize < uncompressedSize / 2);
+  }
+
+  @Test
+  public void testFamilySummaries() throws Exception {
+    TestRFile trf = new TestRFile(DefaultConfiguration.getInstance());
+
+    // the rare family only occurs in a few of the blocks of the default locality group
+    trf.openWriter(true, 1000);
+    for (int r = 0; r < 1000; r++) {
+      String row = formatString("r_", r);
+      for (int q = 0; q < 10; q++) {
+        trf.writer.append(newKey(row, "common", formatString("cq_", q), "", 1),
+            newValue("v" + r + q));
+      }
+      if (r % 250 == 0) {
+        trf.writer.append(newKey(row, "rare", "cq", "", 1), newValue("v" + r));
+      }
+    }
+    trf.closeWriter();
+    trf.openReader();
+
+    LruBlockCache dataCache = (LruBlockCache) trf.manager.getBlockCache(CacheType.DATA);
+    long misses = dataCache.getStats().getMissCount();
+    assertEquals(4, scanFamily(trf, new Range(), "rare", true));
+    long rareMisses = dataCache.getStats().getMissCount() - misses;
+
+    assertEquals(10000, scanFamily(trf, new Range(), "rare", false));
+    long allMisses = dataCache.getStats().getMissCount() - misses;
+    assertTrue(rareMisses + " " + allMisses, rareMisses * 10 < allMisses);
+
+    // blocks skipped for one set of families must be read when seeking for another
+    Range range = new Range(formatString("r_", 200), formatString("r_", 600));
+    assertEquals(2, scanFamily(trf, range, "rare", true));
+    assertEquals(4010, scanFamily(trf, range, "common", true));
+    assertEquals(2, scanFamily(trf, range, "rare", true));
+    for (int r = 0; r < 1000; r += 50) {
+      Range row = new Range(formatString("r_", r));
+      assertEquals(r % 250 == 0 ? 1 : 0, scanFamily(trf, row, "rare", true));
+      assertEquals(10, scanFamily(trf, row, "common", true));
+    }
+
+    trf.closeReader();
+  }
+
+  @Test
+  public void testTimestampRange() throws Exception {
+    TestRFile trf = new TestRFile(DefaultConfiguration.getInstance());
+
+    trf.openWriter(false);
+    trf.writer.startNewLocalityGroup("lg1", newColFamByteSequence("cf1"));
+    for (int r = 0; r < 100; r++) {
+      trf.writer.append(newKey(formatString("r_", r), "cf1", "cq", "", 1000 + r), newValue("v"));
+    }
+    trf.writer.startDefaultLocalityGroup();
+    for (int r = 0; r < 100; r++) {
+      trf.writer.append(newKey(formatString("r_", r), "cf2", "cq", "", 500 + r * 10),
+          newValue("v"));
+    }
+    trf.closeWriter();
+
+    trf.openReader();
+    assertEquals(500, trf.reader.getMinTimestamp());
+    assertEquals(1490, trf.reader.getMaxTimestamp());
+    trf.closeReader();
+
+    // an empty file has no timestamps in any range
+    trf = new TestRFile(DefaultConfiguration.getInstance());
+    trf.openWriter();
+    trf.closeWriter();
+    trf.openReader();
+    assertTrue(trf.reader.getMinTimestamp() > trf.reader.getMaxTimestamp());
+    trf.closeReader();
+  }
+
+  private static TestRFile writeWithCompressionExecutor(AccumuloConfiguration aconf,
+      Executor executor, List<Key> expectedKeys) throws IOException {
+    TestRFile trf = new TestRFile(aconf);
+    trf.compressionExecutor = executor;
+    trf.openWriter(false, 500);
+
+    // use multiple locality groups so blocks from different index writers are pending together
+    expectedKeys.clear();
+    String[] families = {"cf1", "cf2", "cf3"};
+    for (int lg = 0; lg < families.length; lg++) {
+      if (lg < 2) {
+        trf.writer.startNewLocalityGroup("lg" + lg, newColFamByteSequence(families[lg]));
+      } else {
+        trf.writer.startDefaultLocalityGroup();
+      }
+
+      for (int r = 0; r < 500; r++) {
+        Key k = newKey(formatString("r_", r), families[lg], "cq", "", 1);
+        expectedKeys.add(k);
+        trf.writer.append(k, newValue("v" + lg + r));
+      }
+    }
+
+    trf.closeWriter();
+    return trf;
+  }
+
+  @Test
+  public void testCompressionExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Key> expectedKeys = new ArrayList<>();
+
+      // compressing blocks on other threads should not change the contents of the file
+      TestRFile expected = writeWithCompressionExecutor(null, null, expectedKeys);
+      TestRFile actual = writeWithCompressionExecutor(null, executor, expectedKeys);
+      assertArrayEquals(expected.baos.toByteArray(), actual.baos.toByteArray());
+
+      // encrypted files can not be compared, but should be readable
+      for (TestRFile trf : Arrays.asList(actual, writeWithCompressionExecutor(
+          getAccumuloConfig(CryptoTest.CRYPTO_ON_CONF), executor, expectedKeys))) {
+        trf.openReader();
+        expectedKeys.sort(null);
+
+        trf.iter.seek(new Range(), EMPTY_COL_FAMS, false);
+        for (Key k : expectedKeys) {
+          assertTrue(trf.iter.hasTop());
+          assertEquals(k, trf.iter.getTopKey());
+          trf.iter.next();
+        }
+        assertFalse(trf.iter.hasTop());
+
+        for (int i = 0; i < expectedKeys.size(); i += 37) {
+          trf.seek(expectedKeys.get(i));
+          assertTrue(trf.iter.hasTop());
+          assertEquals(expectedKeys.get(i), trf.iter.getTopKey());
+        }
+
+        trf.closeReader();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test(expected = NullPointerException.class)
   public void testMissingUnreleasedVersions() throws Exception {
     runVersionTest(5, DefaultConfiguration.getInstance());
@@ -17,6 +17,8 @@
 package org.apache.accumulo.core.file.rfile;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -112,6 +114,67 @@ public class RelativeKeyTest {
     assertEquals(expected.getKey(), actual.getKey());
   }
 
+  @Test
+  public void testReadSharesSameFields() throws IOException {
+    Key prevKey = new Key("row1", "columnfamily1", "columnqualifier1", "columnvisibility1", 1000);
+    Key newKey = new Key("row1", "columnfamily1", "columnqualifier2", "columnvisibility1", 1000);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    new RelativeKey(null, prevKey).write(out);
+    new RelativeKey(prevKey, newKey).write(out);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    RelativeKey rk = new RelativeKey();
+    rk.readFields(in);
+    Key first = rk.getKey();
+    rk.readFields(in);
+    Key second = rk.getKey();
+
+    assertEquals(prevKey, first);
+    assertEquals(newKey, second);
+
+    // fields that are the same as the previous key should reference the same array
+    assertSame(first.getRowData().getBackingArray(), second.getRowData().getBackingArray());
+    assertSame(first.getColumnFamilyData().getBackingArray(),
+        second.getColumnFamilyData().getBackingArray());
+    assertNotSame(first.getColumnQualifierData().getBackingArray(),
+        second.getColumnQualifierData().getBackingArray());
+    assertSame(first.getColumnVisibilityData().getBackingArray(),
+        second.getColumnVisibilityData().getBackingArray());
+  }
+
+  @Test
+  public void testCompareUnrelated() throws IOException {
+    Key base = new Key("row2", "cf2", "cq2", "cv2", 1000);
+    Key deleted = new Key(base);
+    deleted.setDeleted(true);
+
+    Key[] keys = {new Key("row1", "cf2", "cq2", "cv2", 1000),
+        new Key("row2", "cf1", "cq2", "cv2", 1000), new Key("row2", "cf2", "cq1", "cv2", 1000),
+        new Key("row2", "cf2", "cq2", "cv1", 1000), new Key("row2", "cf2", "cq2", "cv2", 2000),
+        deleted, base, new Key("row2", "cf2", "cq2", "cv2", 999),
+        new Key("row2", "cf2", "cq2", "cv3", 1000), new Key("row2", "cf2", "cq3", "cv2", 1000),
+        new Key("row2", "cf3", "cq2", "cv2", 1000), new Key("row3", "cf2", "cq2", "cv2", 1000),
+        new Key("row22", "", "", "", 0)};
+
+    for (Key serialized : keys) {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(baos);
+      // write some junk before the key to ensure the offset is respected
+      out.writeInt(42);
+      new RelativeKey(null, serialized).write(out);
+      byte[] data = baos.toByteArray();
+
+      for (Key other : keys) {
+        for (PartialKey part : PartialKey.values()) {
+          assertEquals(Integer.signum(serialized.compareTo(other, part)),
+              Integer.signum(RelativeKey.compareUnrelated(data, 4, other, part)));
+        }
+      }
+    }
+  }
+
   private static ArrayList<Key> expectedKeys;
   private static ArrayList<Value> expectedValues;
   private static ArrayList<Integer> expectedPositions;
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.file.streams;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Seekable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BoundedRangeFileInputStreamTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder(
+      new File(System.getProperty("user.dir") + "/target"));
+
+  private byte[] data;
+
+  private FSDataInputStream open() throws IOException {
+    data = new byte[1 << 20];
+    new Random(42).nextBytes(data);
+    File file = tempFolder.newFile("data");
+    Files.write(file.toPath(), data);
+    return FileSystem.getLocal(new Configuration()).open(new Path(file.getAbsolutePath()));
+  }
+
+  private void readConcurrently(FSDataInputStream in, boolean positional) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        int seed = t;
+        futures.add(executor.submit(() -> {
+          Random rand = new Random(seed);
+          for (int i = 0; i < 100; i++) {
+            int offset = rand.nextInt(data.length - 10000);
+            int length = rand.nextInt(10000);
+            byte[] read = new byte[length];
+            try (DataInputStream dis = new DataInputStream(
+                new BoundedRangeFileInputStream(in, offset, length, positional))) {
+              dis.readFully(read);
+              assertEquals(-1, dis.read());
+            }
+            assertArrayEquals(Arrays.copyOfRange(data, offset, offset + length), read);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testLockedReads() throws Exception {
+    try (FSDataInputStream in = open()) {
+      long lockedReads = BoundedRangeFileInputStream.getLockedReads();
+      readConcurrently(in, false);
+      assertTrue(BoundedRangeFileInputStream.getLockedReads() > lockedReads);
+    }
+  }
+
+  @Test
+  public void testPositionalReads() throws Exception {
+    try (FSDataInputStream in = open()) {
+      in.seek(7);
+      long positionalReads = BoundedRangeFileInputStream.getPositionalReads();
+      readConcurrently(in, true);
+      assertTrue(BoundedRangeFileInputStream.getPositionalReads() > positionalReads);
+      // positional reads do not move the shared stream
+      assertEquals(7, in.getPos());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPositionalReadsNotSupported() {
+    new BoundedRangeFileInputStream(new SeekableInputStream(), 0, 0, true);
+  }
+
+  private static class SeekableInputStream extends ByteArrayInputStream implements Seekable {
+
+    SeekableInputStream() {
+      super(new byte[0]);
+    }
+
+    @Override
+    public void seek(long pos) {
+      this.pos = (int) pos;
+    }
+
+    @Override
+    public long getPos() {
+      return pos;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+  }
+}
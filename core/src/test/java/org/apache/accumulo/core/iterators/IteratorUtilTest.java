@@ -42,6 +42,8 @@ import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
 import org.apache.accumulo.core.iterators.system.MultiIteratorTest;
 import org.apache.accumulo.core.iterators.user.AgeOffFilter;
 import org.apache.accumulo.core.iterators.user.SummingCombiner;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -400,4 +402,42 @@ public class IteratorUtilTest {
     }
   }
 
+  @Test
+  public void testOldestTimestamp() {
+    ConfigurationCopy conf = new ConfigurationCopy();
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "vers",
+        "20," + VersioningIterator.class.getName());
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ageoff", "30," + AgeOffFilter.class.getName());
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ageoff.opt.ttl", "1000");
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ageoff.opt.currentTime", "5000");
+
+    List<IterInfo> iters = new ArrayList<>();
+    Map<String,Map<String,String>> options = new HashMap<>();
+    IteratorUtil.parseIterConf(IteratorScope.scan, iters, options, conf);
+    assertEquals(4000, IteratorUtil.getOldestTimestamp(iters, options));
+
+    // the later of the two lower bounds applies
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ts", "10," + TimestampFilter.class.getName());
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ts.opt." + TimestampFilter.START, "LONG4500");
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ts.opt." + TimestampFilter.START_INCL, "false");
+    iters.clear();
+    options.clear();
+    IteratorUtil.parseIterConf(IteratorScope.scan, iters, options, conf);
+    assertEquals(4501, IteratorUtil.getOldestTimestamp(iters, options));
+
+    // a negated filter accepts old keys
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "ts.opt.negate", "true");
+    iters.clear();
+    options.clear();
+    IteratorUtil.parseIterConf(IteratorScope.scan, iters, options, conf);
+    assertEquals(4000, IteratorUtil.getOldestTimestamp(iters, options));
+
+    // filters above an iterator that may use old keys do not allow skipping them
+    conf.set(Property.TABLE_ITERATOR_SCAN_PREFIX + "sum", "25," + SummingCombiner.class.getName());
+    iters.clear();
+    options.clear();
+    IteratorUtil.parseIterConf(IteratorScope.scan, iters, options, conf);
+    assertEquals(Long.MIN_VALUE, IteratorUtil.getOldestTimestamp(iters, options));
+  }
+
 }
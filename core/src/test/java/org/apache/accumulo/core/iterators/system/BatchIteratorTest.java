@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.data.Column;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.junit.Test;
+
+public class BatchIteratorTest {
+
+  // the default system iterators are fused into a SystemScanIterator, so also build them
+  // separately to cover the batches of each system iterator
+  private static SortedKeyValueIterator<Key,Value> createStack(TreeMap<Key,Value> tm,
+      Set<Column> columns, boolean separate) throws IOException {
+    Authorizations auths = new Authorizations("A", "B");
+    SortedKeyValueIterator<Key,Value> visFilter;
+    if (separate) {
+      visFilter = SystemIteratorTestUtil.createSeparateStack(tm, columns, auths, new byte[0]);
+    } else {
+      visFilter = IteratorUtil.setupSystemScanIterators(new SortedMapIterator(tm), columns, auths,
+          new byte[0], DefaultConfiguration.getInstance());
+    }
+    VersioningIterator vi = new VersioningIterator();
+    vi.init(visFilter, Collections.singletonMap("maxVersions", "2"), null);
+    return vi;
+  }
+
+  private static void seek(SortedKeyValueIterator<Key,Value> iter, Range range,
+      Set<Column> columns) throws IOException {
+    if (columns.isEmpty()) {
+      iter.seek(range, LocalityGroupUtil.EMPTY_CF_SET, false);
+    } else {
+      iter.seek(range, LocalityGroupUtil.families(columns), true);
+    }
+  }
+
+  private static void verify(TreeMap<Key,Value> tm, Set<Column> columns, Range range,
+      boolean separate) throws IOException {
+    List<Entry<Key,Value>> expected = new ArrayList<>();
+    SortedKeyValueIterator<Key,Value> iter = createStack(tm, columns, separate);
+    seek(iter, range, columns);
+    while (iter.hasTop()) {
+      expected.add(new KeyValue(new Key(iter.getTopKey()), iter.getTopValue()));
+      iter.next();
+    }
+
+    for (int batchSize : new int[] {1, 3, 64}) {
+      Key[] keys = new Key[batchSize];
+      Value[] values = new Value[batchSize];
+
+      List<Entry<Key,Value>> actual = new ArrayList<>();
+      iter = createStack(tm, columns, separate);
+      seek(iter, range, columns);
+      while (iter.hasTop()) {
+        int read = BatchIterator.nextBatch(iter, keys, values);
+        for (int i = 0; i < read; i++) {
+          actual.add(new KeyValue(keys[i], values[i]));
+        }
+      }
+
+      assertEquals("separate " + separate + " batch size " + batchSize, expected, actual);
+    }
+  }
+
+  @Test
+  public void testSameAsClassic() throws IOException {
+    TreeMap<Key,Value> tm = SystemIteratorTestUtil.createData();
+
+    for (boolean separate : new boolean[] {false, true}) {
+      Set<Column> columns = new HashSet<>();
+      verify(tm, columns, new Range(), separate);
+      verify(tm, columns, new Range(new Key("r050", "cf1", "cq1", "", 2), true, new Key("r150"),
+          false), separate);
+
+      // fetch a whole family and a single column
+      columns.add(new Column("cf0".getBytes(UTF_8), null, null));
+      columns.add(new Column("cf2".getBytes(UTF_8), "cq1".getBytes(UTF_8), null));
+      verify(tm, columns, new Range(), separate);
+      verify(tm, columns, new Range("r100", null), separate);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.accumulo.core.security.VisibilityEvaluator;
+import org.apache.accumulo.core.security.VisibilityParseException;
+import org.apache.accumulo.core.util.BadArgumentException;
+import org.junit.Test;
+
+public class CompiledVisibilityTest {
+
+  private static boolean evaluate(String expression, Authorizations auths)
+      throws VisibilityParseException {
+    return new CompiledVisibility.Evaluator(auths).evaluate(new ArrayByteSequence(expression));
+  }
+
+  @Test
+  public void testEvaluate() throws VisibilityParseException {
+    Authorizations auths = new Authorizations("one", "two", "a\"b", "c\\d");
+
+    assertTrue(evaluate("", auths));
+    assertTrue(evaluate("one", auths));
+    assertFalse(evaluate("three", auths));
+    assertTrue(evaluate("one&two", auths));
+    assertFalse(evaluate("one&three", auths));
+    assertTrue(evaluate("three|two", auths));
+    assertFalse(evaluate("three|four", auths));
+    assertTrue(evaluate("(one&three)|(two&one)", auths));
+    assertFalse(evaluate("(one|three)&(four|five)", auths));
+    assertTrue(evaluate("\"a\\\"b\"&\"c\\\\d\"", auths));
+    assertFalse(evaluate("\"a\\\"b\"&\"c\\\\e\"", auths));
+
+    assertTrue(evaluate("", Authorizations.EMPTY));
+    assertFalse(evaluate("one", Authorizations.EMPTY));
+  }
+
+  @Test
+  public void testCached() throws VisibilityParseException {
+    assertSame(CompiledVisibility.get(new ArrayByteSequence("x&(y|z)")),
+        CompiledVisibility.get(new ArrayByteSequence("x&(y|z)".getBytes())));
+  }
+
+  @Test
+  public void testReusedLabel() throws VisibilityParseException {
+    CompiledVisibility.Evaluator evaluator =
+        new CompiledVisibility.Evaluator(new Authorizations("one"));
+
+    // keys reuse their arrays, so the label an evaluator last saw may change under it
+    byte[] label = "one".getBytes();
+    assertTrue(evaluator.evaluate(new ArrayByteSequence(label)));
+    label[2] = 'w';
+    assertFalse(evaluator.evaluate(new ArrayByteSequence(label)));
+    assertTrue(new CompiledVisibility.Evaluator(evaluator)
+        .evaluate(new ArrayByteSequence("one&one")));
+  }
+
+  @Test
+  public void testBadExpression() throws VisibilityParseException {
+    for (String expression : Arrays.asList("one&", "one|two&three", "(one", "\"one")) {
+      try {
+        CompiledVisibility.get(new ArrayByteSequence(expression));
+        fail(expression);
+      } catch (BadArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testSameAsEvaluator() throws VisibilityParseException {
+    Random rand = new Random(42);
+    List<String> expressions = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      String op = rand.nextBoolean() ? "&" : "|";
+      StringBuilder sb = new StringBuilder("(t" + rand.nextInt(300));
+      for (int j = 0; j < 3; j++) {
+        sb.append(op).append("t").append(rand.nextInt(300));
+      }
+      sb.append(")").append(op.equals("&") ? "|" : "&").append("t").append(rand.nextInt(300));
+      expressions.add(sb.toString());
+    }
+
+    for (int i = 0; i < 20; i++) {
+      String[] terms = new String[rand.nextInt(150)];
+      for (int j = 0; j < terms.length; j++) {
+        terms[j] = "t" + rand.nextInt(300);
+      }
+      Authorizations auths = new Authorizations(terms);
+      VisibilityEvaluator ve = new VisibilityEvaluator(auths);
+      CompiledVisibility.Evaluator evaluator = new CompiledVisibility.Evaluator(auths);
+
+      // the second pass gets remembered results
+      for (int pass = 0; pass < 2; pass++) {
+        for (String expression : expressions) {
+          assertEquals(expression, ve.evaluate(new ColumnVisibility(expression)),
+              evaluator.evaluate(new ArrayByteSequence(expression)));
+        }
+      }
+    }
+  }
+}
@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
 import java.util.TreeMap;
 
 import org.apache.accumulo.core.clientImpl.Table;
@@ -417,4 +419,39 @@ public class MultiIteratorTest {
     mi.seek(r7, EMPTY_COL_FAMS, false);
     assertFalse(mi.hasTop());
   }
+
+  @Test
+  public void testManySources() throws IOException {
+    // some sources supply long runs of consecutive keys, others interleave
+    Random rand = new Random(42);
+    for (int numSources : new int[] {1, 2, 3, 7, 8, 33}) {
+      TreeMap<Key,Value> expected = new TreeMap<>();
+      List<SortedKeyValueIterator<Key,Value>> iters = new ArrayList<>();
+      for (int s = 0; s < numSources; s++) {
+        TreeMap<Key,Value> tm = new TreeMap<>();
+        boolean runs = rand.nextBoolean();
+        int count = rand.nextInt(4) == 0 ? 0 : rand.nextInt(200);
+        for (int i = 0; i < count; i++) {
+          int row = runs ? s * 1000 + i : rand.nextInt(100_000);
+          newKeyValue(tm, row, s, false, "v" + s);
+        }
+        expected.putAll(tm);
+        iters.add(new SortedMapIterator(tm));
+      }
+
+      MultiIterator mi = new MultiIterator(iters, true);
+      for (int seek = 0; seek < 2; seek++) {
+        Key start = seek == 0 ? null : newKey(rand.nextInt(50_000), 0);
+        mi.seek(start == null ? new Range() : new Range(start, null), EMPTY_COL_FAMS, false);
+        for (Entry<Key,Value> entry : (start == null ? expected : expected.tailMap(start))
+            .entrySet()) {
+          assertTrue(mi.hasTop());
+          assertEquals(entry.getKey(), mi.getTopKey());
+          assertEquals(entry.getValue(), mi.getTopValue());
+          mi.next();
+        }
+        assertFalse(mi.hasTop());
+      }
+    }
+  }
 }
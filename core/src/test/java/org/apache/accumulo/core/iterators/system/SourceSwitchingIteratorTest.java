@@ -24,8 +24,10 @@ import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -330,6 +332,125 @@ public class SourceSwitchingIteratorTest {
     assertFalse(ssi.hasTop());
   }
 
+  private List<String> nextBatch(SourceSwitchingIterator ssi, int size) throws IOException {
+    Key[] keys = new Key[size];
+    Value[] values = new Value[size];
+    int read = ssi.nextBatch(keys, values);
+    List<String> batch = new ArrayList<>();
+    for (int i = 0; i < read; i++) {
+      batch.add(keys[i].getRow() + ":" + keys[i].getColumnQualifier() + "=" + values[i]);
+    }
+    return batch;
+  }
+
+  @Test
+  public void testSwitchBetweenBatches() throws Exception {
+    TreeMap<Key,Value> tm1 = new TreeMap<>();
+    put(tm1, "r1", "cf1", "cq1", 5, "v1");
+    put(tm1, "r1", "cf1", "cq2", 5, "v2");
+    put(tm1, "r2", "cf1", "cq1", 5, "v3");
+    put(tm1, "r2", "cf1", "cq2", 5, "v4");
+    put(tm1, "r3", "cf1", "cq1", 5, "v5");
+    put(tm1, "r3", "cf1", "cq2", 5, "v6");
+
+    TreeMap<Key,Value> tm2 = new TreeMap<>();
+    for (Entry<Key,Value> entry : tm1.entrySet()) {
+      tm2.put(entry.getKey(), new Value(("new_" + entry.getValue()).getBytes()));
+    }
+
+    TestDataSource tds =
+        new TestDataSource(new ColumnFamilySkippingIterator(new SortedMapIterator(tm1)));
+    SourceSwitchingIterator ssi = new SourceSwitchingIterator(tds, false);
+    ssi.seek(new Range(), new ArrayList<>(), false);
+    assertTrue(ssi.readsBatches());
+
+    assertEquals(Arrays.asList("r1:cq1=v1", "r1:cq2=v2"), nextBatch(ssi, 2));
+    tds.next = new TestDataSource(new ColumnFamilySkippingIterator(new SortedMapIterator(tm2)));
+
+    // the batch that is already positioned comes from the old source, the switch happens after it
+    // and continues after the last key returned
+    assertEquals(Arrays.asList("r2:cq1=v3", "r2:cq2=v4"), nextBatch(ssi, 2));
+    assertEquals(Arrays.asList("r3:cq1=new_v5", "r3:cq2=new_v6"), nextBatch(ssi, 2));
+    assertFalse(ssi.hasTop());
+    assertEquals(0, nextBatch(ssi, 2).size());
+  }
+
+  @Test
+  public void testSwitchBetweenBatchesAfterRow() throws Exception {
+    TreeMap<Key,Value> tm1 = new TreeMap<>();
+    put(tm1, "r1", "cf1", "cq1", 5, "v1");
+    put(tm1, "r1", "cf1", "cq2", 5, "v2");
+    put(tm1, "r1", "cf1", "cq3", 5, "v3");
+    put(tm1, "r1", "cf1", "cq4", 5, "v4");
+    put(tm1, "r3", "cf1", "cq1", 5, "v5");
+    put(tm1, "r3", "cf1", "cq2", 5, "v6");
+
+    TestDataSource tds =
+        new TestDataSource(new ColumnFamilySkippingIterator(new SortedMapIterator(tm1)));
+    SourceSwitchingIterator ssi = new SourceSwitchingIterator(tds, true);
+    ssi.seek(new Range(), new ArrayList<>(), false);
+    assertFalse(ssi.readsBatches());
+
+    assertEquals(Arrays.asList("r1:cq1=v1", "r1:cq2=v2", "r1:cq3=v3"), nextBatch(ssi, 3));
+
+    // the new source is only used once the current row is finished, even within a batch
+    TreeMap<Key,Value> tm2 = new TreeMap<>(tm1);
+    put(tm2, "r1", "cf1", "cq5", 5, "v7");
+    put(tm2, "r2", "cf1", "cq1", 5, "v8");
+    tds.next = new TestDataSource(new ColumnFamilySkippingIterator(new SortedMapIterator(tm2)));
+
+    assertEquals(Arrays.asList("r1:cq4=v4", "r2:cq1=v8", "r3:cq1=v5"), nextBatch(ssi, 3));
+    assertEquals(Arrays.asList("r3:cq2=v6"), nextBatch(ssi, 3));
+    assertFalse(ssi.hasTop());
+  }
+
+  /**
+   * @return the number of batches that were ended by a yield
+   */
+  private int readBatchesWithYields(SourceSwitchingIterator ssi, YieldCallback<Key> yield, Range r,
+      int size, List<String> entries) throws IOException {
+    int yields = 0;
+    ssi.seek(r, new ArrayList<>(), false);
+    r = yield(r, ssi, yield);
+    while (ssi.hasTop()) {
+      List<String> batch = nextBatch(ssi, size);
+      entries.addAll(batch);
+      if (yield.hasYielded()) {
+        // a yield part way through a batch ends the batch, the entries before it are kept
+        assertFalse(ssi.hasTop());
+        assertFalse(batch.isEmpty());
+        yields++;
+        r = yield(r, ssi, yield);
+      }
+    }
+    return yields;
+  }
+
+  @Test
+  public void testYieldInBatch() throws Exception {
+    TreeMap<Key,Value> tm1 = new TreeMap<>();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      put(tm1, "r" + i, "cf1", "cq1", 5, "v" + i);
+      expected.add("r" + i + ":cq1=v" + i);
+    }
+
+    for (boolean onlySwitchAfterRow : new boolean[] {false, true}) {
+      YieldingIterator ymi = new YieldingIterator(new SortedMapIterator(tm1));
+      SourceSwitchingIterator ssi =
+          new SourceSwitchingIterator(new TestDataSource(ymi), onlySwitchAfterRow);
+      YieldCallback<Key> yield = new YieldCallback<>();
+      ssi.enableYielding(yield);
+
+      // yielding is not passed on to the source when switching only after a row
+      List<String> entries = new ArrayList<>();
+      int yields = readBatchesWithYields(ssi, yield, new Range(), 4, entries);
+      assertEquals(expected, entries);
+      assertEquals(onlySwitchAfterRow, yields == 0);
+      assertFalse(yield.hasYielded());
+    }
+  }
+
   /**
    * This iterator which implements yielding will yield after every other next and every other seek
    * call.
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.Column;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.security.Authorizations;
+
+class SystemIteratorTestUtil {
+
+  /**
+   * @return the same 5000 random entries on every call, with a mix of rows, columns, visibilities,
+   *         timestamps and deletes
+   */
+  static TreeMap<Key,Value> createData() {
+    Random rand = new Random(42);
+    TreeMap<Key,Value> tm = new TreeMap<>();
+    String[] visibilities = {"", "A", "B", "A&B", "A|C", "C"};
+    for (int i = 0; i < 5000; i++) {
+      Key k = new Key(String.format("r%03d", rand.nextInt(200)), "cf" + rand.nextInt(5),
+          "cq" + rand.nextInt(3), visibilities[rand.nextInt(visibilities.length)],
+          rand.nextInt(5));
+      k.setDeleted(rand.nextInt(10) == 0);
+      tm.put(k, new Value(("v" + i).getBytes(UTF_8)));
+    }
+    return tm;
+  }
+
+  /**
+   * @return the system scan iterators over the data as separate iterators, as they are stacked
+   *         when they are not fused into a {@link SystemScanIterator}
+   */
+  static SortedKeyValueIterator<Key,Value> createSeparateStack(SortedMap<Key,Value> data,
+      Set<Column> columns, Authorizations auths, byte[] defaultVisibility) {
+    SortedKeyValueIterator<Key,Value> delIter = DeletingIterator
+        .wrap(new SortedMapIterator(data), false, DeletingIterator.Behavior.PROCESS);
+    ColumnFamilySkippingIterator cfsi = new ColumnFamilySkippingIterator(delIter);
+    SortedKeyValueIterator<Key,Value> colFilter = ColumnQualifierFilter.wrap(cfsi, columns);
+    return VisibilityFilter.wrap(colFilter, auths, defaultVisibility);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.core.iterators.system;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Column;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyValue;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.junit.Test;
+
+public class SystemScanIteratorTest {
+
+  private static final TreeMap<Key,Value> DATA = SystemIteratorTestUtil.createData();
+
+  private static Column column(String cf, String cq) {
+    return new Column(cf.getBytes(UTF_8), cq == null ? null : cq.getBytes(UTF_8), null);
+  }
+
+  private static List<Entry<Key,Value>> read(SortedKeyValueIterator<Key,Value> iter, Range range,
+      Collection<ByteSequence> families, boolean inclusive) throws IOException {
+    List<Entry<Key,Value>> entries = new ArrayList<>();
+    iter.seek(range, families, inclusive);
+    while (iter.hasTop()) {
+      entries.add(new KeyValue(new Key(iter.getTopKey()), iter.getTopValue()));
+      iter.next();
+    }
+    return entries;
+  }
+
+  private static List<Entry<Key,Value>> readBatches(SortedKeyValueIterator<Key,Value> iter,
+      Range range, Collection<ByteSequence> families, boolean inclusive) throws IOException {
+    List<Entry<Key,Value>> entries = new ArrayList<>();
+    Key[] keys = new Key[7];
+    Value[] values = new Value[7];
+    iter.seek(range, families, inclusive);
+    while (iter.hasTop()) {
+      int read = BatchIterator.nextBatch(iter, keys, values);
+      for (int i = 0; i < read; i++) {
+        entries.add(new KeyValue(keys[i], values[i]));
+      }
+    }
+    return entries;
+  }
+
+  private static void verify(Set<Column> columns, Authorizations auths, String defaultVisibility,
+      Collection<ByteSequence> families, boolean inclusive) throws IOException {
+    byte[] defVis = defaultVisibility.getBytes(UTF_8);
+    List<Range> ranges = Arrays.asList(new Range(),
+        new Range(new Key("r050", "cf1", "cq1", "A", 2), true, new Key("r150"), false),
+        new Range(new Key("r050", "cf1", "cq1", "A", 2), false, new Key("r060", "cf3"), true),
+        new Range("r100"), new Range("r190", null));
+
+    for (Range range : ranges) {
+      String msg = columns + " " + auths + " " + defaultVisibility + " " + families + " "
+          + inclusive + " " + range;
+      List<Entry<Key,Value>> expected = read(
+          SystemIteratorTestUtil.createSeparateStack(DATA, columns, auths, defVis), range,
+          families, inclusive);
+
+      SystemScanIterator ssi = new SystemScanIterator(new SortedMapIterator(DATA), columns, auths,
+          defVis);
+      assertEquals(msg, expected, read(ssi, range, families, inclusive));
+      assertEquals(msg, expected, readBatches(ssi, range, families, inclusive));
+      assertEquals(msg, expected, read(ssi.deepCopy(null), range, families, inclusive));
+    }
+  }
+
+  private static void verify(Set<Column> columns, Authorizations auths, String defaultVisibility)
+      throws IOException {
+    if (columns.isEmpty()) {
+      verify(columns, auths, defaultVisibility, LocalityGroupUtil.EMPTY_CF_SET, false);
+      // how a scan of the default locality group excludes the families of other groups
+      verify(columns, auths, defaultVisibility,
+          Collections.singleton(new ArrayByteSequence("cf1")), false);
+    } else {
+      verify(columns, auths, defaultVisibility, LocalityGroupUtil.families(columns), true);
+    }
+  }
+
+  @Test
+  public void testSameAsSeparateIterators() throws IOException {
+    List<Set<Column>> columnSets = new ArrayList<>();
+    columnSets.add(Collections.emptySet());
+    columnSets.add(Collections.singleton(column("cf2", null)));
+    columnSets.add(new HashSet<>(Arrays.asList(column("cf0", null), column("cf3", "cq1"))));
+    columnSets.add(new HashSet<>(Arrays.asList(column("cf1", "cq0"), column("cf4", "cq2"))));
+
+    for (Set<Column> columns : columnSets) {
+      verify(columns, new Authorizations("A", "B"), "");
+      verify(columns, new Authorizations("A", "B"), "C");
+      verify(columns, Authorizations.EMPTY, "");
+      verify(columns, Authorizations.EMPTY, "A|C");
+    }
+  }
+
+  @Test
+  public void testDeletes() throws IOException {
+    TreeMap<Key,Value> tm = new TreeMap<>();
+    Value value = new Value("v".getBytes(UTF_8));
+    tm.put(new Key("r1", "cf1", "cq1", 5), value);
+    Key delete = new Key("r1", "cf1", "cq1", 4);
+    delete.setDeleted(true);
+    tm.put(delete, value);
+    tm.put(new Key("r1", "cf1", "cq1", 3), value);
+    tm.put(new Key("r1", "cf1", "cq2", 3), value);
+
+    SystemScanIterator ssi = new SystemScanIterator(new SortedMapIterator(tm),
+        Collections.emptySet(), Authorizations.EMPTY, new byte[0]);
+    List<Entry<Key,Value>> entries = read(ssi, new Range(), LocalityGroupUtil.EMPTY_CF_SET,
+        false);
+    assertEquals(2, entries.size());
+    assertEquals(new Key("r1", "cf1", "cq1", 5), entries.get(0).getKey());
+    assertEquals(new Key("r1", "cf1", "cq2", 3), entries.get(1).getKey());
+
+    // a delete before the start of the range still hides the keys in it
+    entries = read(ssi, new Range(new Key("r1", "cf1", "cq1", 3), null),
+        LocalityGroupUtil.EMPTY_CF_SET, false);
+    assertEquals(1, entries.size());
+    assertEquals(new Key("r1", "cf1", "cq2", 3), entries.get(0).getKey());
+    assertFalse(ssi.hasTop());
+  }
+}
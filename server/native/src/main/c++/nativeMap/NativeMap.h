@@ -51,7 +51,7 @@ struct Iterator {
   RowMap::iterator rowIter;
   ColumnMap::iterator colIter;
 
-  Iterator(NativeMapData &nm, int32_t *ia):nativeMap(nm){
+  Iterator(NativeMapData &nm):nativeMap(nm){
     rowIter = nativeMap.rowmap.begin();
     if(rowIter == nativeMap.rowmap.end()){
       return;
@@ -59,11 +59,11 @@ struct Iterator {
 
     colIter = rowIter->second.begin();
 
-    skipAndFillIn(ia, true);
+    skip();
   }
 
 
-  Iterator(NativeMapData &nm, Field &row, SubKey &sk, int32_t *ia):nativeMap(nm){
+  Iterator(NativeMapData &nm, Field &row, SubKey &sk):nativeMap(nm){
     rowIter = nativeMap.rowmap.lower_bound(row);
     if(rowIter == nativeMap.rowmap.end()){
       return;
@@ -76,40 +76,108 @@ struct Iterator {
       colIter = rowIter->second.begin();
     }
 
-    skipAndFillIn(ia, true);
+    skip();
   }
 
-  bool skipAndFillIn(int32_t *ia, bool firstCall)
-  {
+  //moves past rows with no columns, returns true if the row changed
+  bool skip(){
     bool rowChanged = false;
 
     while(colIter == rowIter->second.end()){
       rowIter++;
       rowChanged = true;
       if(rowIter == nativeMap.rowmap.end()){
-        return false;
+        return true;
       }
       colIter = rowIter->second.begin();
     }
 
-    ia[0] = (firstCall || rowChanged) ? rowIter->first.length() : -1;
-    ia[1] = colIter->first.getCFLen();
-    ia[2] = colIter->first.getCQLen();
-    ia[3] = colIter->first.getCVLen();
-    ia[4] = colIter->first.isDeleted() ? 1 : 0;
-    ia[5] = colIter->second.length();
-    ia[6] = colIter->first.getMC();
-
-    return true;
+    return rowChanged;
   }
 
   bool atEnd(){
     return rowIter == nativeMap.rowmap.end();
   }
 
-  void advance(int32_t *ia){
-    colIter++;
-    skipAndFillIn(ia, false);
+  static void putInt(uint8_t *data, int64_t &pos, int32_t i){
+    memcpy(data + pos, &i, 4);
+    pos += 4;
+  }
+
+  static void putField(uint8_t *data, int64_t &pos, const Field &f){
+    memcpy(data + pos, f.field, f.length());
+    pos += f.length();
+  }
+
+  /**
+   * Copies entries, starting with the current one, into data and advances past each entry copied.
+   * Stops after maxEntries entries, or after the entry that takes the total key and value bytes
+   * over maxBytes, or when the next entry does not fit.
+   *
+   * The data starts with an int that is 1 if entries remain after the last one copied. Each entry
+   * is the row, family, qualifier, visibility and value lengths and the mutation count as ints,
+   * the timestamp as a long and the deleted flag as a byte, followed by the bytes of each field.
+   * All numbers are in native byte order. The row length is -1 and the row is left out when an
+   * entry has the same row as the entry before it.
+   *
+   * Returns the number of entries copied. If the first entry does not fit, nothing is copied and
+   * the negated size the data needs to hold it is returned.
+   */
+  int32_t fillBatch(uint8_t *data, int64_t capacity, int32_t maxEntries, int32_t maxBytes){
+    const int32_t headerLen = 6 * 4 + 8 + 1;
+
+    int64_t pos = 4;
+    int32_t count = 0;
+    int64_t amountRead = 0;
+    bool newRow = true;
+
+    while(!atEnd() && count < maxEntries){
+      const Field &row = rowIter->first;
+      const SubKey &sk = colIter->first;
+      const Field &val = colIter->second;
+
+      int64_t len = headerLen + (newRow ? row.length() : 0) + sk.totalLen + val.length();
+      if(pos + len > capacity){
+        if(count == 0){
+          return (int32_t)-(pos + len);
+        }
+        break;
+      }
+
+      putInt(data, pos, newRow ? row.length() : -1);
+      putInt(data, pos, sk.getCFLen());
+      putInt(data, pos, sk.getCQLen());
+      putInt(data, pos, sk.getCVLen());
+      putInt(data, pos, val.length());
+      putInt(data, pos, sk.getMC());
+      int64_t ts = sk.getTimestamp();
+      memcpy(data + pos, &ts, 8);
+      pos += 8;
+      data[pos++] = sk.isDeleted() ? 1 : 0;
+
+      if(newRow){
+        putField(data, pos, row);
+      }
+      putField(data, pos, sk.getCF());
+      putField(data, pos, sk.getCQ());
+      putField(data, pos, sk.getCV());
+      putField(data, pos, val);
+
+      count++;
+      amountRead += row.length() + sk.totalLen + val.length();
+
+      colIter++;
+      newRow = skip();
+
+      if(amountRead > maxBytes){
+        break;
+      }
+    }
+
+    int32_t more = atEnd() ? 0 : 1;
+    memcpy(data, &more, 4);
+
+    return count;
   }
 };
 
@@ -193,12 +261,12 @@ struct NativeMap : public NativeMapData {
     }
   }
 
-  Iterator *iterator(int32_t *ia){
-    return new Iterator(*this, ia);
+  Iterator *iterator(){
+    return new Iterator(*this);
   }
 
-  Iterator *iterator(Field &row, SubKey &sk, int32_t *ia){
-    return new Iterator(*this, row, sk, ia);
+  Iterator *iterator(Field &row, SubKey &sk){
+    return new Iterator(*this, row, sk);
   }
 
   int64_t getMemoryUsed(){
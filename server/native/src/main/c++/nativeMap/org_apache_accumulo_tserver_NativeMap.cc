@@ -64,64 +64,37 @@ JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_deleteNM(JNIE
 }
 
 
-JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_createNMI__J_3I(JNIEnv *env, jclass cls, jlong nm, jintArray lens) {
+JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_createNMI__J(JNIEnv *env, jclass cls, jlong nm) {
   NativeMap *nativeMap = (NativeMap *)nm;
-  int32_t ia[7];
-  Iterator *iter = nativeMap->iterator(ia);
+  Iterator *iter = nativeMap->iterator();
   if (iter->atEnd()) {
     delete(iter);
     return 0;
   }
-  env->SetIntArrayRegion(lens, 0, 7, ia);
   return (jlong)iter;
 }
 
-JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_createNMI__J_3B_3B_3B_3BJZ_3I(JNIEnv *env, jclass cls, jlong nm, jbyteArray r, jbyteArray cf, jbyteArray cq, jbyteArray cv, jlong ts, jboolean del, jintArray lens) {
+JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_createNMI__J_3B_3B_3B_3BJZ(JNIEnv *env, jclass cls, jlong nm, jbyteArray r, jbyteArray cf, jbyteArray cq, jbyteArray cv, jlong ts, jboolean del) {
 
   NativeMap *nativeMap = (NativeMap *)nm;
   LocalField row(env, r);
   LocalSubKey sk(env, cf, cq, cv, ts, del);
 
-  int32_t ia[7];
-  Iterator *iter = nativeMap->iterator(row, sk, ia);
+  Iterator *iter = nativeMap->iterator(row, sk);
 
   if(iter->atEnd()) {
     delete(iter);
     return 0;
   }
 
-  env->SetIntArrayRegion(lens, 0, 7, ia);
   return (jlong)iter;
 }
 
-JNIEXPORT jboolean JNICALL Java_org_apache_accumulo_tserver_NativeMap_nmiNext(JNIEnv *env, jclass cls, jlong ip, jintArray lens) {
+JNIEXPORT jint JNICALL Java_org_apache_accumulo_tserver_NativeMap_nmiNextBatch(JNIEnv *env, jclass cls, jlong ip, jobject buf, jint maxEntries, jint maxBytes) {
   Iterator &iter = *((Iterator *)ip);
-
-  int32_t ia[7];
-  iter.advance(ia);
-  if(iter.atEnd()) {
-    return false;
-  }
-
-  env->SetIntArrayRegion(lens, 0, 7, ia);
-  return true;
-}
-
-JNIEXPORT void JNICALL Java_org_apache_accumulo_tserver_NativeMap_nmiGetData(JNIEnv *env, jclass cls, jlong ip, jbyteArray r, jbyteArray cf, jbyteArray cq, jbyteArray cv, jbyteArray val) {
-  Iterator &iter = *((Iterator *)ip);
-  if(r != NULL) {
-    iter.rowIter->first.fillIn(env, r);
-  }
-
-  iter.colIter->first.getCF().fillIn(env, cf);
-  iter.colIter->first.getCQ().fillIn(env, cq);
-  iter.colIter->first.getCV().fillIn(env, cv);
-  iter.colIter->second.fillIn(env, val);
-}
-
-JNIEXPORT jlong JNICALL Java_org_apache_accumulo_tserver_NativeMap_nmiGetTS(JNIEnv *env, jclass cls, jlong ip) {
-  Iterator &iter = *((Iterator *)ip);
-  return iter.colIter->first.getTimestamp();
+  uint8_t *data = (uint8_t *)env->GetDirectBufferAddress(buf);
+  jlong capacity = env->GetDirectBufferCapacity(buf);
+  return iter.fillBatch(data, capacity, maxEntries, maxBytes);
 }
 
 JNIEXPORT void JNICALL Java_org_apache_accumulo_tserver_NativeMap_deleteNMI(JNIEnv *env, jclass cls, jlong ip) {
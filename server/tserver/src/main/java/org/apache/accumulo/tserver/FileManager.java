@@ -26,16 +26,22 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.client.SampleNotPresentException;
 import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
 import org.apache.accumulo.core.file.FileOperations;
 import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot.FileBlocks;
+import org.apache.accumulo.core.file.blockfile.impl.CachableBlockFile;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
@@ -45,7 +51,11 @@ import org.apache.accumulo.core.iterators.system.TimeSettingIterator;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.BlockCacheManager;
+import org.apache.accumulo.core.spi.cache.CacheType;
+import org.apache.accumulo.core.util.ratelimit.RateLimiter;
 import org.apache.accumulo.server.ServerContext;
+import org.apache.accumulo.server.conf.TableConfiguration;
 import org.apache.accumulo.server.fs.FileRef;
 import org.apache.accumulo.server.fs.VolumeManager;
 import org.apache.accumulo.server.problems.ProblemReport;
@@ -113,9 +123,9 @@ public class FileManager {
   // TabletResourceManager and passed through the file opener to
   // CachableBlockFile which can handle the caches being
   // null if unallocated
-  private BlockCache dataCache = null;
-  private BlockCache indexCache = null;
+  private final BlockCacheManager cacheManager;
   private Cache<String,Long> fileLenCache;
+  private Executor readAheadExecutor;
 
   private long maxIdleTime;
 
@@ -162,20 +172,21 @@ public class FileManager {
 
   /**
    *
-   * @param dataCache
-   *          : underlying file can and should be able to handle a null cache
-   * @param indexCache
-   *          : underlying file can and should be able to handle a null cache
+   * @param cacheManager
+   *          : supplies the data and index caches of each table's cache partition, underlying file
+   *          can and should be able to handle a null cache
+   * @param readAheadExecutor
+   *          : used to read data blocks into the data cache ahead of sequential scans
    */
   public FileManager(ServerContext context, VolumeManager fs, int maxOpen,
-      Cache<String,Long> fileLenCache, BlockCache dataCache, BlockCache indexCache) {
+      Cache<String,Long> fileLenCache, BlockCacheManager cacheManager, Executor readAheadExecutor) {
 
     if (maxOpen <= 0)
       throw new IllegalArgumentException("maxOpen <= 0");
     this.context = context;
-    this.dataCache = dataCache;
-    this.indexCache = indexCache;
+    this.cacheManager = cacheManager;
     this.fileLenCache = fileLenCache;
+    this.readAheadExecutor = readAheadExecutor;
 
     this.filePermits = new Semaphore(maxOpen, false);
     this.maxOpen = maxOpen;
@@ -314,6 +325,16 @@ public class FileManager {
     // limitations
     closeReaders(filesToClose);
 
+    TableConfiguration tableConf = null;
+    BlockCache dataCache = null;
+    BlockCache indexCache = null;
+    if (!filesToOpen.isEmpty()) {
+      tableConf = context.getServerConfFactory().getTableConfiguration(tablet.getTableId());
+      String partition = tableConf.get(Property.TABLE_CACHE_PARTITION);
+      dataCache = cacheManager.getBlockCache(CacheType.DATA, partition);
+      indexCache = cacheManager.getBlockCache(CacheType.INDEX, partition);
+    }
+
     // open any files that need to be opened
     for (String file : filesToOpen) {
       try {
@@ -324,9 +345,9 @@ public class FileManager {
         // log.debug("Opening "+file + " path " + path);
         FileSKVIterator reader = FileOperations.getInstance().newReaderBuilder()
             .forFile(path.toString(), ns, ns.getConf(), context.getCryptoService())
-            .withTableConfiguration(
-                context.getServerConfFactory().getTableConfiguration(tablet.getTableId()))
-            .withBlockCache(dataCache, indexCache).withFileLenCache(fileLenCache).build();
+            .withTableConfiguration(tableConf).withBlockCache(dataCache, indexCache)
+            .withFileLenCache(fileLenCache)
+            .withReadAheadExecutor(readAheadExecutor).build();
         readersReserved.put(reader, file);
       } catch (Exception e) {
 
@@ -522,11 +543,30 @@ public class FileManager {
 
     public synchronized List<InterruptibleIterator> openFiles(Map<FileRef,DataFileValue> files,
         boolean detachable, SamplerConfigurationImpl samplerConfig) throws IOException {
+      return openFiles(files, detachable, samplerConfig, Collections.emptyList(),
+          Collections.emptySet(), false, 0, null, Long.MIN_VALUE);
+    }
+
+    /**
+     * Opens files the same way as {@link #openFiles(Map, boolean, SamplerConfigurationImpl)}, and
+     * also asks each file to prefetch the data needed by the leading ranges that are about to be
+     * read. The files share {@code prefetchBytes}, which should be about what the read can
+     * return, so that a lookup does not fetch blocks for ranges it will not get to. Files whose
+     * keys are all older than {@code oldestTimestamp} are left out of the returned iterators,
+     * because the scan would filter out everything read from them.
+     */
+    public synchronized List<InterruptibleIterator> openFiles(Map<FileRef,DataFileValue> files,
+        boolean detachable, SamplerConfigurationImpl samplerConfig,
+        Collection<Range> prefetchRanges, Collection<ByteSequence> columnFamilies,
+        boolean inclusive, long prefetchBytes, AtomicBoolean interruptFlag, long oldestTimestamp)
+        throws IOException {
 
       Map<FileSKVIterator,String> newlyReservedReaders = openFileRefs(files.keySet());
 
       ArrayList<InterruptibleIterator> iters = new ArrayList<>();
 
+      long filePrefetchBytes = prefetchBytes / Math.max(1, newlyReservedReaders.size());
+
       boolean sawTimeSet = false;
       for (DataFileValue dfv : files.values()) {
         if (dfv.isTimeSet()) {
@@ -540,6 +580,13 @@ public class FileManager {
         String filename = entry.getValue();
         InterruptibleIterator iter;
 
+        if (oldestTimestamp != Long.MIN_VALUE
+            && getMaxTimestamp(reader, filename, files, sawTimeSet) < oldestTimestamp) {
+          log.trace("Not reading {} for {}, all of its keys are older than {}", filename, tablet,
+              oldestTimestamp);
+          continue;
+        }
+
         FileSKVIterator source = reader;
         if (samplerConfig != null) {
           source = source.getSample(samplerConfig);
@@ -548,6 +595,17 @@ public class FileManager {
           }
         }
 
+        if (prefetchRanges.size() > 1 && filePrefetchBytes > 0) {
+          if (interruptFlag != null)
+            source.setInterruptFlag(interruptFlag);
+          try {
+            source.prefetch(prefetchRanges, columnFamilies, inclusive, filePrefetchBytes);
+          } catch (IOException e) {
+            // only a hint, any real problem with the file will be seen when it is read
+            log.debug("Failed to prefetch data for {} from {}", tablet, filename, e);
+          }
+        }
+
         if (detachable) {
           FileDataSource fds = new FileDataSource(filename, source);
           dataSources.add(fds);
@@ -573,6 +631,79 @@ public class FileManager {
       return iters;
     }
 
+    /**
+     * Reads the index of each file, and up to {@code maxDataBytes} of each file's data in the given
+     * range, into the block caches. The files are left open in the pool of open files, ready for
+     * the scans that follow.
+     */
+    public synchronized void warmUp(Collection<FileRef> files, Range range, long maxDataBytes)
+        throws IOException {
+      Map<FileSKVIterator,String> newlyReservedReaders = openFileRefs(files);
+      try {
+        for (Entry<FileSKVIterator,String> entry : newlyReservedReaders.entrySet()) {
+          try {
+            entry.getKey().warmUp(range, maxDataBytes);
+          } catch (IOException e) {
+            // only a hint, any real problem with the file will be seen when it is read
+            log.debug("Failed to warm up cache for {} from {}", tablet, entry.getValue(), e);
+          }
+        }
+      } finally {
+        releaseOpenFiles(false);
+      }
+    }
+
+    /**
+     * Reads the blocks of the given files that a cache snapshot recorded back into the block
+     * caches. The blocks of each file are removed from the snapshot, so they are restored at most
+     * once. The files are left open in the pool of open files.
+     */
+    public synchronized void restoreCachedBlocks(Collection<FileRef> files,
+        BlockCacheSnapshot snapshot, RateLimiter readLimiter) throws IOException {
+      Map<String,FileBlocks> fileBlocks = new HashMap<>();
+      List<FileRef> filesToRestore = new ArrayList<>();
+      for (FileRef file : files) {
+        FileBlocks blocks = snapshot.remove(CachableBlockFile.pathToCacheId(file.path()));
+        if (blocks != null) {
+          fileBlocks.put(file.path().toString(), blocks);
+          filesToRestore.add(file);
+        }
+      }
+
+      if (filesToRestore.isEmpty()) {
+        return;
+      }
+
+      Map<FileSKVIterator,String> newlyReservedReaders = openFileRefs(filesToRestore);
+      try {
+        for (Entry<FileSKVIterator,String> entry : newlyReservedReaders.entrySet()) {
+          FileBlocks blocks = fileBlocks.get(entry.getValue());
+          try {
+            entry.getKey().restoreCachedBlocks(blocks.hasIndexBlocks(),
+                blocks.getDataBlockOffsets(), readLimiter);
+          } catch (IOException e) {
+            // only a hint, any real problem with the file will be seen when it is read
+            log.debug("Failed to restore cached blocks for {} from {}", tablet, entry.getValue(),
+                e);
+          }
+        }
+      } finally {
+        releaseOpenFiles(false);
+      }
+    }
+
+    private long getMaxTimestamp(FileSKVIterator reader, String filename,
+        Map<FileRef,DataFileValue> files, boolean sawTimeSet) throws IOException {
+      if (sawTimeSet) {
+        // the timestamps of a file with its time set are all replaced when it is read
+        DataFileValue value = files.get(new FileRef(filename));
+        if (value.isTimeSet()) {
+          return value.getTime();
+        }
+      }
+      return reader.getMaxTimestamp();
+    }
+
     public synchronized void detach() {
 
       releaseReaders(tablet, tabletReservedReaders, false);
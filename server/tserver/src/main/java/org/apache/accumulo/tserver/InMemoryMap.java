@@ -36,6 +36,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.accumulo.core.client.SampleNotPresentException;
 import org.apache.accumulo.core.client.sample.Sampler;
@@ -89,6 +90,7 @@ public class InMemoryMap {
   private volatile String memDumpFile = null;
   private final String memDumpDir;
   private final String mapType;
+  private final boolean concurrentWrites;
 
   private Map<String,Set<ByteSequence>> lggroups;
 
@@ -109,6 +111,8 @@ public class InMemoryMap {
   public static final String TYPE_DEFAULT_MAP = "DefaultMap";
   public static final String TYPE_LOCALITY_GROUP_MAP = "LocalityGroupMap";
   public static final String TYPE_LOCALITY_GROUP_MAP_NATIVE = "LocalityGroupMap with native";
+  public static final String TYPE_OFF_HEAP_MAP_WRAPPER = "OffHeapMapWrapper";
+  public static final String TYPE_LOCALITY_GROUP_MAP_OFF_HEAP = "LocalityGroupMap with off heap";
 
   // @formatter:off
   private AtomicReference<Pair<SamplerConfigurationImpl,Sampler>> samplerRef =
@@ -136,6 +140,10 @@ public class InMemoryMap {
       throws LocalityGroupConfigurationError {
 
     boolean useNativeMap = config.getBoolean(Property.TSERV_NATIVEMAP_ENABLED);
+    boolean useOffHeapMap = !useNativeMap && config.getBoolean(Property.TSERV_OFFHEAPMAP_ENABLED);
+    // the native and off heap maps serialize their inserts, so only the Java map gains anything
+    this.concurrentWrites = config.getBoolean(Property.TSERV_CONCURRENT_WRITES_ENABLED)
+        && !(useNativeMap && NativeMap.isLoaded()) && !useOffHeapMap;
 
     this.memDumpDir = config.get(Property.TSERV_MEMDUMP_DIR);
     this.lggroups = LocalityGroupUtil.getLocalityGroups(config);
@@ -147,19 +155,28 @@ public class InMemoryMap {
     SimpleMap sampleMap;
 
     if (lggroups.size() == 0) {
-      allMap = newMap(useNativeMap);
-      sampleMap = newMap(useNativeMap);
-      mapType = useNativeMap ? TYPE_NATIVE_MAP_WRAPPER : TYPE_DEFAULT_MAP;
+      allMap = newMap(useNativeMap, useOffHeapMap);
+      sampleMap = newMap(useNativeMap, useOffHeapMap);
+      if (useNativeMap) {
+        mapType = TYPE_NATIVE_MAP_WRAPPER;
+      } else {
+        mapType = useOffHeapMap ? TYPE_OFF_HEAP_MAP_WRAPPER : TYPE_DEFAULT_MAP;
+      }
     } else {
-      allMap = new LocalityGroupMap(lggroups, useNativeMap);
-      sampleMap = new LocalityGroupMap(lggroups, useNativeMap);
-      mapType = useNativeMap ? TYPE_LOCALITY_GROUP_MAP_NATIVE : TYPE_LOCALITY_GROUP_MAP;
+      allMap = new LocalityGroupMap(lggroups, useNativeMap, useOffHeapMap);
+      sampleMap = new LocalityGroupMap(lggroups, useNativeMap, useOffHeapMap);
+      if (useNativeMap) {
+        mapType = TYPE_LOCALITY_GROUP_MAP_NATIVE;
+      } else {
+        mapType = useOffHeapMap ? TYPE_LOCALITY_GROUP_MAP_OFF_HEAP : TYPE_LOCALITY_GROUP_MAP;
+      }
     }
 
     map = new SampleMap(allMap, sampleMap);
+    insertCombiner = InsertCombiner.create(config, serverContext);
   }
 
-  private static SimpleMap newMap(boolean useNativeMap) {
+  private static SimpleMap newMap(boolean useNativeMap, boolean useOffHeapMap) {
     if (useNativeMap && NativeMap.isLoaded()) {
       try {
         return new NativeMapWrapper();
@@ -168,16 +185,22 @@ public class InMemoryMap {
       }
     }
 
+    if (useOffHeapMap) {
+      return new OffHeapMapWrapper();
+    }
+
     return new DefaultMap();
   }
 
   /**
    * Description of the type of SimpleMap that is created.
    * <p>
-   * If no locality groups are present, the SimpleMap is either TYPE_DEFAULT_MAP or
-   * TYPE_NATIVE_MAP_WRAPPER. If there is one more locality groups, then the InMemoryMap has an
-   * array for simple maps that either contain either TYPE_LOCALITY_GROUP_MAP which contains
-   * DefaultMaps or TYPE_LOCALITY_GROUP_MAP_NATIVE which contains NativeMapWrappers.
+   * If no locality groups are present, the SimpleMap is either TYPE_DEFAULT_MAP,
+   * TYPE_NATIVE_MAP_WRAPPER or TYPE_OFF_HEAP_MAP_WRAPPER. If there is one more locality groups,
+   * then the InMemoryMap has an array for simple maps that either contain either
+   * TYPE_LOCALITY_GROUP_MAP which contains DefaultMaps, TYPE_LOCALITY_GROUP_MAP_NATIVE which
+   * contains NativeMapWrappers or TYPE_LOCALITY_GROUP_MAP_OFF_HEAP which contains
+   * OffHeapMapWrappers.
    *
    * @return String that describes the Map type
    */
@@ -300,15 +323,14 @@ public class InMemoryMap {
     // the last map in the array is the default locality group
     private SimpleMap maps[];
     private Partitioner partitioner;
-    private PreAllocatedArray<List<Mutation>> partitioned;
 
-    LocalityGroupMap(Map<String,Set<ByteSequence>> groups, boolean useNativeMap) {
+    LocalityGroupMap(Map<String,Set<ByteSequence>> groups, boolean useNativeMap,
+        boolean useOffHeapMap) {
       this.groupFams = new PreAllocatedArray<>(groups.size());
       this.maps = new SimpleMap[groups.size() + 1];
-      this.partitioned = new PreAllocatedArray<>(groups.size() + 1);
 
       for (int i = 0; i < maps.length; i++) {
-        maps[i] = newMap(useNativeMap);
+        maps[i] = newMap(useNativeMap, useOffHeapMap);
       }
 
       int count = 0;
@@ -320,10 +342,6 @@ public class InMemoryMap {
       }
 
       partitioner = new LocalityGroupUtil.Partitioner(this.groupFams);
-
-      for (int i = 0; i < partitioned.length; i++) {
-        partitioned.set(i, new ArrayList<>());
-      }
     }
 
     @Override
@@ -375,25 +393,20 @@ public class InMemoryMap {
     }
 
     @Override
-    public synchronized void mutate(List<Mutation> mutations, int kvCount) {
-      // this method is synchronized because it reuses objects to avoid allocation,
-      // currently, the method that calls this is synchronized so there is no
-      // loss in parallelism.... synchronization was added here for future proofing
+    public void mutate(List<Mutation> mutations, int kvCount) {
+      // writers may call this concurrently, so each call partitions into its own lists
+      PreAllocatedArray<List<Mutation>> partitioned = new PreAllocatedArray<>(maps.length);
+      for (int i = 0; i < partitioned.length; i++) {
+        partitioned.set(i, new ArrayList<>());
+      }
 
-      try {
-        partitioner.partition(mutations, partitioned);
+      partitioner.partition(mutations, partitioned);
 
-        for (int i = 0; i < partitioned.length; i++) {
-          if (partitioned.get(i).size() > 0) {
-            maps[i].mutate(partitioned.get(i), kvCount);
-            for (Mutation m : partitioned.get(i))
-              kvCount += m.getUpdates().size();
-          }
-        }
-      } finally {
-        // clear immediately so mutations can be garbage collected
-        for (List<Mutation> list : partitioned) {
-          list.clear();
+      for (int i = 0; i < partitioned.length; i++) {
+        if (partitioned.get(i).size() > 0) {
+          maps[i].mutate(partitioned.get(i), kvCount);
+          for (Mutation m : partitioned.get(i))
+            kvCount += m.getUpdates().size();
         }
       }
     }
@@ -519,20 +532,131 @@ public class InMemoryMap {
     }
   }
 
+  private static class OffHeapMapWrapper implements SimpleMap {
+    private OffHeapMap offHeapMap;
+
+    OffHeapMapWrapper() {
+      offHeapMap = new OffHeapMap();
+    }
+
+    @Override
+    public Value get(Key key) {
+      return offHeapMap.get(key);
+    }
+
+    @Override
+    public Iterator<Entry<Key,Value>> iterator(Key startKey) {
+      return offHeapMap.iterator(startKey);
+    }
+
+    @Override
+    public int size() {
+      return offHeapMap.size();
+    }
+
+    @Override
+    public InterruptibleIterator skvIterator(SamplerConfigurationImpl samplerConfig) {
+      if (samplerConfig != null)
+        throw new SampleNotPresentException();
+      return (InterruptibleIterator) offHeapMap.skvIterator();
+    }
+
+    @Override
+    public void delete() {
+      offHeapMap.delete();
+    }
+
+    @Override
+    public long getMemoryUsed() {
+      return offHeapMap.getMemoryUsed();
+    }
+
+    @Override
+    public void mutate(List<Mutation> mutations, int kvCount) {
+      offHeapMap.mutate(mutations, kvCount);
+    }
+  }
+
   private AtomicInteger nextKVCount = new AtomicInteger(1);
   private AtomicInteger kvCount = new AtomicInteger(0);
 
   private Object writeSerializer = new Object();
 
+  // null unless the table combines on insert
+  private final InsertCombiner insertCombiner;
+  private final ReentrantReadWriteLock combineLock = new ReentrantReadWriteLock();
+
   /**
    * Applies changes to a row in the InMemoryMap
    *
    */
   public void mutate(List<Mutation> mutations) {
+    if (insertCombiner == null) {
+      int numKVs = 0;
+      for (Mutation mutation : mutations)
+        numKVs += mutation.size();
+      write(mutations, numKVs);
+      return;
+    }
+
+    // writers combine and write under the read lock, so flushPending() sees no write half done
+    combineLock.readLock().lock();
+    try {
+      List<Mutation> remaining = insertCombiner.combine(mutations);
+      if (!remaining.isEmpty()) {
+        write(remaining, countUpdates(remaining));
+      }
+    } finally {
+      combineLock.readLock().unlock();
+    }
+  }
+
+  private static int countUpdates(List<Mutation> mutations) {
     int numKVs = 0;
     for (Mutation mutation : mutations)
-      numKVs += mutation.size();
+      numKVs += mutation.getUpdates().size();
+    return numKVs;
+  }
 
+  /**
+   * Writes the values combined on insert to the map, so that a reader that starts after this sees
+   * them.
+   *
+   * @return the kv count a reader starting now should read up to. It covers every write that
+   *         finished before this was called and no part of a write that has not.
+   */
+  private int flushPending() {
+    if (insertCombiner == null) {
+      return kvCount.get();
+    }
+
+    // A write buffers its combined updates before it publishes its kv count, and pending values
+    // are only drained under the write lock. So if nothing is pending after reading the kv count
+    // under the read lock, no write that count covers has an update that is not in the map.
+    combineLock.readLock().lock();
+    try {
+      int mc = kvCount.get();
+      if (insertCombiner.size() == 0) {
+        return mc;
+      }
+    } finally {
+      combineLock.readLock().unlock();
+    }
+
+    combineLock.writeLock().lock();
+    try {
+      List<Mutation> pending = insertCombiner.drain();
+      if (!pending.isEmpty()) {
+        write(pending, pending.size());
+      }
+      // read while writers are kept out, a write that starts after this may buffer part of itself
+      return kvCount.get();
+    } finally {
+      combineLock.writeLock().unlock();
+    }
+  }
+
+  private void write(List<Mutation> mutations, int numKVs) {
     // Can not update mutationCount while writes that started before
     // are in progress, this would cause partial mutations to be seen.
     // Also, can not continue until mutation count is updated, because
@@ -540,13 +664,45 @@ public class InMemoryMap {
     // wait for writes that started before to finish.
     //
     // using separate lock from this map, to allow read/write in parallel
+    if (!concurrentWrites) {
+      synchronized (writeSerializer) {
+        int kv = nextKVCount.getAndAdd(numKVs);
+        try {
+          map.mutate(mutations, kv);
+        } finally {
+          kvCount.set(kv + numKVs - 1);
+        }
+      }
+      return;
+    }
+
+    // Concurrent writers reserve their kv counts up front and write to the map in parallel. Only
+    // publishing the mutation count is done in the order the kv counts were reserved, so a write
+    // still waits for writes that started before it to finish.
+    int kv = nextKVCount.getAndAdd(numKVs);
+    try {
+      map.mutate(mutations, kv);
+    } finally {
+      publishKVCount(kv, numKVs);
+    }
+  }
+
+  private void publishKVCount(int kv, int numKVs) {
+    boolean interrupted = false;
     synchronized (writeSerializer) {
-      int kv = nextKVCount.getAndAdd(numKVs);
-      try {
-        map.mutate(mutations, kv);
-      } finally {
-        kvCount.set(kv + numKVs - 1);
+      // writes that started later can not finish until this one publishes, so keep waiting
+      while (kvCount.get() != kv - 1) {
+        try {
+          writeSerializer.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
       }
+      kvCount.set(kv + numKVs - 1);
+      writeSerializer.notifyAll();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
     }
   }
 
@@ -559,16 +715,23 @@ public class InMemoryMap {
     if (map == null)
       return 0;
 
+    if (insertCombiner != null) {
+      return map.getMemoryUsed() + insertCombiner.getMemoryUsed();
+    }
     return map.getMemoryUsed();
   }
 
   Iterator<Map.Entry<Key,Value>> iterator(Key startKey) {
+    flushPending();
     return map.iterator(startKey);
   }
 
   public synchronized long getNumEntries() {
     if (map == null)
       return 0;
+    if (insertCombiner != null) {
+      return map.size() + insertCombiner.size();
+    }
     return map.size();
   }
 
@@ -758,7 +921,7 @@ public class InMemoryMap {
     if (deleted)
       throw new IllegalStateException("Can not obtain iterator after map deleted");
 
-    int mc = kvCount.get();
+    int mc = flushPending();
     MemoryDataSource mds = new MemoryDataSource(iteratorSamplerConfig);
     // TODO seems like a bug that two MemoryDataSources are created... may need to fix in older
     // branches
@@ -772,6 +935,8 @@ public class InMemoryMap {
 
   public SortedKeyValueIterator<Key,Value> compactionIterator() {
 
+    flushPending();
+
     if (nextKVCount.get() - 1 != kvCount.get())
       throw new IllegalStateException("Memory map in unexpected state : nextKVCount = "
           + nextKVCount.get() + " kvCount = " + kvCount.get());
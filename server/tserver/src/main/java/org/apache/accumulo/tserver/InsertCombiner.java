@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.tserver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.dataImpl.thrift.IterInfo;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.apache.accumulo.core.iterators.conf.ColumnSet;
+import org.apache.accumulo.core.util.LocalityGroupUtil.PartitionedMutation;
+import org.apache.accumulo.server.ServerContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+/**
+ * Combines values as they are written to an {@link InMemoryMap}, for tables that set
+ * {@link Property#TABLE_MINC_INSERT_COMBINE}. Updates to a column that the first minor compaction
+ * iterator of the table, a {@link Combiner}, would combine are reduced into one pending value per
+ * row, column, visibility and timestamp. {@link #drain()} hands the pending values back to be
+ * written to the map.
+ * <p>
+ * Only values with equal timestamps are combined, so a delete hides exactly the values it would
+ * have hidden had they been written one by one. Tables using millisecond time give every mutation
+ * in a batch, and every batch in the same millisecond, the same timestamp.
+ */
+class InsertCombiner {
+
+  private static final Logger log = LoggerFactory.getLogger(InsertCombiner.class);
+
+  // the java objects holding a pending value, estimated like the entries of the default map
+  private static final long OVERHEAD_PER_ENTRY = 200;
+
+  /**
+   * A combiner and the columns it combines. Neither is thread safe, so each writer borrows its own.
+   */
+  private static class Reducer {
+    private final Combiner combiner;
+    // null when all columns are combined
+    private final ColumnSet columns;
+
+    Reducer(Combiner combiner, ColumnSet columns) {
+      this.combiner = combiner;
+      this.columns = columns;
+    }
+
+    boolean combines(Key key) {
+      return columns == null || columns.contains(key);
+    }
+
+    Value reduce(Key key, Value newer, Value older) {
+      // a combiner sees the most recent value first
+      return combiner.reduce(key, Arrays.asList(newer, older).iterator());
+    }
+  }
+
+  private final AccumuloConfiguration config;
+  private final ServerContext context;
+  private final IterInfo iterInfo;
+  private final Map<String,String> options;
+
+  private final ConcurrentLinkedQueue<Reducer> reducers = new ConcurrentLinkedQueue<>();
+
+  private final ConcurrentHashMap<Key,Value> pending = new ConcurrentHashMap<>();
+  private final AtomicLong pendingBytes = new AtomicLong();
+
+  private InsertCombiner(AccumuloConfiguration config, ServerContext context, IterInfo iterInfo,
+      Map<String,String> options) {
+    this.config = config;
+    this.context = context;
+    this.iterInfo = iterInfo;
+    this.options = options;
+  }
+
+  /**
+   * @return an insert combiner for the table, or null if the table does not combine on insert
+   */
+  static InsertCombiner create(AccumuloConfiguration config, ServerContext context) {
+    if (!config.getBoolean(Property.TABLE_MINC_INSERT_COMBINE)) {
+      return null;
+    }
+
+    List<IterInfo> iters = new ArrayList<>();
+    Map<String,Map<String,String>> iterOpts = new HashMap<>();
+    IteratorUtil.parseIterConf(IteratorScope.minc, iters, iterOpts, config);
+    if (iters.isEmpty()) {
+      log.warn("{} is set, but there is no minor compaction iterator to combine with",
+          Property.TABLE_MINC_INSERT_COMBINE.getKey());
+      return null;
+    }
+
+    IterInfo first = iters.get(0);
+    InsertCombiner insertCombiner = new InsertCombiner(config, context, first,
+        iterOpts.getOrDefault(first.iterName, Collections.emptyMap()));
+    try {
+      insertCombiner.reducers.add(insertCombiner.newReducer());
+    } catch (IOException | RuntimeException e) {
+      log.warn("Not combining on insert, could not load minor compaction iterator {}",
+          first.className, e);
+      return null;
+    }
+    return insertCombiner;
+  }
+
+  private Reducer newReducer() throws IOException {
+    SortedKeyValueIterator<Key,Value> iter = IteratorUtil.loadIterators(
+        new SortedMapIterator(new TreeMap<>()), Collections.singletonList(iterInfo),
+        Collections.singletonMap(iterInfo.iterName, options),
+        new TabletIteratorEnvironment(context, IteratorScope.minc, config), true,
+        config.get(Property.TABLE_CLASSPATH));
+
+    if (!(iter instanceof Combiner)) {
+      throw new IllegalArgumentException(iterInfo.className + " is not a Combiner");
+    }
+
+    ColumnSet columns = null;
+    if (!Boolean.parseBoolean(options.get("all"))) {
+      columns = new ColumnSet(Lists.newArrayList(Splitter.on(",").split(options.get("columns"))));
+    }
+    return new Reducer((Combiner) iter, columns);
+  }
+
+  private Reducer borrowReducer() {
+    Reducer reducer = reducers.poll();
+    if (reducer == null) {
+      try {
+        reducer = newReducer();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return reducer;
+  }
+
+  /**
+   * Buffers the updates of the mutations that can be combined.
+   *
+   * @return the mutations with the updates that were not buffered, which are still to be written
+   *         to the map
+   */
+  List<Mutation> combine(List<Mutation> mutations) {
+    Reducer reducer = borrowReducer();
+    try {
+      List<Mutation> remaining = new ArrayList<>(mutations.size());
+      for (Mutation m : mutations) {
+        List<ColumnUpdate> updates = m.getUpdates();
+        List<ColumnUpdate> notCombined = null;
+        for (int i = 0; i < updates.size(); i++) {
+          ColumnUpdate cu = updates.get(i);
+          if (add(reducer, m.getRow(), cu)) {
+            if (notCombined == null) {
+              notCombined = new ArrayList<>(updates.subList(0, i));
+            }
+          } else if (notCombined != null) {
+            notCombined.add(cu);
+          }
+        }
+
+        if (notCombined == null) {
+          remaining.add(m);
+        } else if (!notCombined.isEmpty()) {
+          remaining.add(new PartitionedMutation(m.getRow(), notCombined));
+        }
+      }
+      return remaining;
+    } finally {
+      reducers.add(reducer);
+    }
+  }
+
+  /**
+   * @return true if the update was combined into a pending value
+   */
+  private boolean add(Reducer reducer, byte[] row, ColumnUpdate cu) {
+    if (cu.isDeleted()) {
+      return false;
+    }
+
+    Key key = new Key(row, cu.getColumnFamily(), cu.getColumnQualifier(),
+        cu.getColumnVisibility(), cu.getTimestamp(), false, false);
+    if (!reducer.combines(key)) {
+      return false;
+    }
+
+    Value value = new Value(cu.getValue(), false);
+    try {
+      pending.compute(key, (k, older) -> {
+        if (older == null) {
+          pendingBytes.addAndGet(k.getLength() + value.getSize() + OVERHEAD_PER_ENTRY);
+          return value;
+        }
+        Value combined = reducer.reduce(k, value, older);
+        pendingBytes.addAndGet(combined.getSize() - older.getSize());
+        return combined;
+      });
+    } catch (RuntimeException e) {
+      // leave it to the minor compaction, which fails on the same values the same way
+      log.debug("Failed to combine {} on insert", key, e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Removes the pending values. Must not run at the same time as {@link #combine(List)}.
+   *
+   * @return a mutation for each pending value
+   */
+  List<Mutation> drain() {
+    List<Mutation> mutations = new ArrayList<>(pending.size());
+    for (Entry<Key,Value> entry : pending.entrySet()) {
+      Key key = entry.getKey();
+      ColumnUpdate cu = new ColumnUpdate(key.getColumnFamilyData().toArray(),
+          key.getColumnQualifierData().toArray(), key.getColumnVisibilityData().toArray(), true,
+          key.getTimestamp(), false, entry.getValue().get());
+      mutations.add(
+          new PartitionedMutation(key.getRowData().toArray(), Collections.singletonList(cu)));
+    }
+    pending.clear();
+    pendingBytes.set(0);
+    return mutations;
+  }
+
+  int size() {
+    return pending.size();
+  }
+
+  long getMemoryUsed() {
+    return pendingBytes.get();
+  }
+}
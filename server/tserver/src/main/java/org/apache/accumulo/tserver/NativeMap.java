@@ -18,6 +18,8 @@ package org.apache.accumulo.tserver;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -250,20 +252,22 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
     }
   }
 
-  private static native long createNMI(long nmp, int fieldLens[]);
+  private static native long createNMI(long nmp);
 
   private static native long createNMI(long nmp, byte[] row, byte cf[], byte cq[], byte cv[],
-      long ts, boolean del, int fieldLens[]);
+      long ts, boolean del);
 
-  private static native boolean nmiNext(long nmiPointer, int fieldLens[]);
-
-  private static native void nmiGetData(long nmiPointer, byte[] row, byte cf[], byte cq[],
-      byte cv[], byte[] valData);
-
-  private static native long nmiGetTS(long nmiPointer);
+  private static native int nmiNextBatch(long nmiPointer, ByteBuffer buffer, int maxEntries,
+      int maxBytes);
 
   private static native void deleteNMI(long nmiPointer);
 
+  // Entries are copied out of the native map in batches, into a direct buffer that is decoded
+  // right away. So each thread can reuse one buffer for all of its iterators.
+  private static final int BATCH_BUFFER_SIZE = 1 << 16;
+  private static final ThreadLocal<ByteBuffer> batchBuffers = ThreadLocal.withInitial(
+      () -> ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE).order(ByteOrder.nativeOrder()));
+
   private class ConcurrentIterator implements Iterator<Map.Entry<Key,Value>> {
 
     // in order to get good performance when there are multiple threads reading, need to read a lot
@@ -312,21 +316,12 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
       if (source.hasNext())
         source.doNextPreCheck();
 
-      int amountRead = 0;
-
       // as we keep filling, increase the read ahead buffer
       if (nextEntries.length < MAX_READ_AHEAD_ENTRIES)
         nextEntries = new PreAllocatedArray<>(
             Math.min(nextEntries.length * 2, MAX_READ_AHEAD_ENTRIES));
 
-      while (source.hasNext() && end < nextEntries.length) {
-        Entry<Key,Value> ne = source.next();
-        nextEntries.set(end++, ne);
-        amountRead += ne.getKey().getSize() + ne.getValue().getSize();
-
-        if (amountRead > READ_AHEAD_BYTES)
-          break;
-      }
+      end = source.nextBatch(nextEntries, READ_AHEAD_BYTES);
     }
 
     @Override
@@ -375,7 +370,7 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
     }
   }
 
-  private class NMIterator implements Iterator<Map.Entry<Key,Value>> {
+  private class NMIterator {
 
     /**
      * The strategy for dealing with native memory allocated for iterators is to simply delete that
@@ -390,8 +385,6 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
     private long nmiPointer;
     private boolean hasNext;
     private int expectedModCount;
-    private int[] fieldsLens = new int[7];
-    private byte lastRow[];
 
     // it is assumed the read lock is held when this method is called
     NMIterator(Key key) {
@@ -404,7 +397,7 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
 
       nmiPointer = createNMI(nmPointer, key.getRowData().toArray(),
           key.getColumnFamilyData().toArray(), key.getColumnQualifierData().toArray(),
-          key.getColumnVisibilityData().toArray(), key.getTimestamp(), key.isDeleted(), fieldsLens);
+          key.getColumnVisibilityData().toArray(), key.getTimestamp(), key.isDeleted());
 
       hasNext = nmiPointer != 0;
     }
@@ -423,7 +416,6 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
       nmiPointer = 0;
     }
 
-    @Override
     public boolean hasNext() {
       return hasNext;
     }
@@ -440,46 +432,62 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
       }
     }
 
-    @Override
+    /**
+     * Reads up to entries.length entries with one call into the native map, stopping after the
+     * entry that takes the key and value bytes read over maxBytes.
+     *
+     * @return the number of entries read
+     */
     // It is assumed that this method is called w/ the read lock held and
     // that doNextPreCheck() is called prior to calling this method
     // also this method is synchronized to ensure that a deleted iterator
     // is not used
-    public synchronized Entry<Key,Value> next() {
+    public synchronized int nextBatch(PreAllocatedArray<Entry<Key,Value>> entries, int maxBytes) {
       if (!hasNext) {
-        throw new NoSuchElementException();
+        return 0;
       }
 
       if (nmiPointer == 0) {
         throw new IllegalStateException("Native Map Iterator Deleted");
       }
 
-      byte[] row = null;
-      if (fieldsLens[0] >= 0) {
-        row = new byte[fieldsLens[0]];
-        lastRow = row;
+      ByteBuffer buffer = batchBuffers.get();
+      int count = nmiNextBatch(nmiPointer, buffer, entries.length, maxBytes);
+      if (count < 0) {
+        // an entry too large for the thread's buffer gets a buffer of its own
+        buffer = ByteBuffer.allocateDirect(-count).order(ByteOrder.nativeOrder());
+        count = nmiNextBatch(nmiPointer, buffer, entries.length, maxBytes);
       }
 
-      byte cf[] = new byte[fieldsLens[1]];
-      byte cq[] = new byte[fieldsLens[2]];
-      byte cv[] = new byte[fieldsLens[3]];
-      boolean deleted = fieldsLens[4] != 0;
-      byte val[] = new byte[fieldsLens[5]];
-
-      nmiGetData(nmiPointer, row, cf, cq, cv, val);
-      long ts = nmiGetTS(nmiPointer);
+      buffer.clear();
+      hasNext = buffer.getInt() != 0;
 
-      Key k = new MemKey(lastRow, cf, cq, cv, ts, deleted, false, fieldsLens[6]);
-      Value v = new Value(val, false);
-
-      hasNext = nmiNext(nmiPointer, fieldsLens);
+      // the first entry of a batch always has its row, later entries in the same row do not
+      byte[] row = null;
+      for (int i = 0; i < count; i++) {
+        int rowLen = buffer.getInt();
+        byte cf[] = new byte[buffer.getInt()];
+        byte cq[] = new byte[buffer.getInt()];
+        byte cv[] = new byte[buffer.getInt()];
+        byte val[] = new byte[buffer.getInt()];
+        int kvCount = buffer.getInt();
+        long ts = buffer.getLong();
+        boolean deleted = buffer.get() != 0;
+
+        if (rowLen >= 0) {
+          row = new byte[rowLen];
+          buffer.get(row);
+        }
+        buffer.get(cf);
+        buffer.get(cq);
+        buffer.get(cv);
+        buffer.get(val);
 
-      return new SimpleImmutableEntry<>(k, v);
-    }
+        Key k = new MemKey(row, cf, cq, cv, ts, deleted, false, kvCount);
+        entries.set(i, new SimpleImmutableEntry<>(k, new Value(val, false)));
+      }
 
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException();
+      return count;
     }
 
     @Override
@@ -582,8 +590,9 @@ public class NativeMap implements Iterable<Map.Entry<Key,Value>> {
     try {
       Value ret = null;
       NMIterator nmi = new NMIterator(key);
-      if (nmi.hasNext()) {
-        Entry<Key,Value> entry = nmi.next();
+      PreAllocatedArray<Entry<Key,Value>> entries = new PreAllocatedArray<>(1);
+      if (nmi.nextBatch(entries, 0) == 1) {
+        Entry<Key,Value> entry = entries.get(0);
         if (entry.getKey().equals(key)) {
           ret = entry.getValue();
         }
@@ -0,0 +1,739 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.tserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.accumulo.core.client.SampleNotPresentException;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IterationInterruptedException;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.system.InterruptibleIterator;
+import org.apache.accumulo.core.util.PreAllocatedArray;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * This class stores data in direct memory, outside of the Java heap, without needing the native
+ * library that {@link NativeMap} uses. Like the native map, it keeps the many small objects that
+ * make up an in-memory map out of the heap, so they do not add to Java GC pauses.
+ * <p>
+ * Keys and values are copied into direct {@link ByteBuffer} chunks that are allocated as the map
+ * grows, and are indexed by a skip list whose nodes live in the same chunks. Like the allocator
+ * used by the native map, entries larger than 2K get a buffer of their own. Entries are never
+ * removed, so the memory of a map is only released when it is deleted and its buffers are garbage
+ * collected. The direct memory of all maps must fit within the JVM's
+ * {@code -XX:MaxDirectMemorySize}.
+ * <p>
+ * As with the native map, writers and readers share a read write lock and readers copy out a batch
+ * of entries each time they acquire it. Since nodes are never freed, an iterator continues from the
+ * last node it read and only has to seek again when a concurrent write replaced an entry.
+ */
+public class OffHeapMap implements Iterable<Map.Entry<Key,Value>> {
+
+  private static final int CHUNK_SIZE = 1 << 17;
+  private static final int BIG_ENTRY_SIZE = 1 << 11;
+
+  private static final int MAX_LEVEL = 16;
+  private static final long NIL = -1;
+
+  // The layout of a node. The node header is followed by one next pointer for each level of the
+  // node, then the row, family, qualifier, visibility and value bytes.
+  private static final int KV_COUNT = 0;
+  private static final int TIMESTAMP = 4;
+  private static final int DELETED = 12;
+  private static final int HEIGHT = 13;
+  private static final int ROW_LEN = 14;
+  private static final int CF_LEN = 18;
+  private static final int CQ_LEN = 22;
+  private static final int CV_LEN = 26;
+  private static final int VAL_LEN = 30;
+  private static final int NEXT = 34;
+
+  // A node address is the index of its buffer in the upper 32 bits and its offset in the lower
+  private final List<ByteBuffer> buffers = new ArrayList<>();
+  private ByteBuffer chunk;
+  private int chunkIndex;
+  private int chunkUsed;
+  private long reserved = 0;
+
+  private final long[] head = new long[MAX_LEVEL];
+  private final long[] preds = new long[MAX_LEVEL];
+  private int level = 1;
+  private final Random random = new Random();
+
+  private int size = 0;
+  private int replaceCount = 0;
+  private boolean deleted = false;
+
+  private final ReadWriteLock rwLock;
+  private final Lock rlock;
+  private final Lock wlock;
+
+  /**
+   * The fields of a key being inserted or searched for.
+   */
+  private static class Probe {
+    final byte[] row;
+    final byte[] cf;
+    final byte[] cq;
+    final byte[] cv;
+    final long ts;
+    final boolean del;
+    final int kvCount;
+
+    Probe(byte[] row, byte[] cf, byte[] cq, byte[] cv, long ts, boolean del, int kvCount) {
+      this.row = row;
+      this.cf = cf;
+      this.cq = cq;
+      this.cv = cv;
+      this.ts = ts;
+      this.del = del;
+      this.kvCount = kvCount;
+    }
+
+    Probe(Key key) {
+      // a plain key sorts before all of the mem keys with the same fields
+      this(key.getRowData().toArray(), key.getColumnFamilyData().toArray(),
+          key.getColumnQualifierData().toArray(), key.getColumnVisibilityData().toArray(),
+          key.getTimestamp(), key.isDeleted(),
+          key instanceof MemKey ? ((MemKey) key).getKVCount() : Integer.MAX_VALUE);
+    }
+  }
+
+  public OffHeapMap() {
+    Arrays.fill(head, NIL);
+    rwLock = new ReentrantReadWriteLock();
+    rlock = rwLock.readLock();
+    wlock = rwLock.writeLock();
+  }
+
+  private ByteBuffer buffer(long addr) {
+    return buffers.get((int) (addr >>> 32));
+  }
+
+  private static int offset(long addr) {
+    return (int) addr;
+  }
+
+  // it is assumed the write lock is held when this method is called
+  private long allocate(int len) {
+    if (len > BIG_ENTRY_SIZE) {
+      buffers.add(ByteBuffer.allocateDirect(len));
+      reserved += len;
+      return (long) (buffers.size() - 1) << 32;
+    }
+
+    if (chunk == null || chunkUsed + len > CHUNK_SIZE) {
+      chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+      buffers.add(chunk);
+      chunkIndex = buffers.size() - 1;
+      chunkUsed = 0;
+      reserved += CHUNK_SIZE;
+    }
+
+    long addr = ((long) chunkIndex << 32) | chunkUsed;
+    chunkUsed += len;
+    return addr;
+  }
+
+  private long nextNode(long node, int level) {
+    if (node == NIL) {
+      return head[level];
+    }
+    return buffer(node).getLong(offset(node) + NEXT + level * 8);
+  }
+
+  private void setNextNode(long node, int level, long next) {
+    if (node == NIL) {
+      head[level] = next;
+    } else {
+      buffer(node).putLong(offset(node) + NEXT + level * 8, next);
+    }
+  }
+
+  private int height(long node) {
+    return buffer(node).get(offset(node) + HEIGHT);
+  }
+
+  private static int compareBytes(ByteBuffer buf, int pos, int len, byte[] bytes) {
+    int min = Math.min(len, bytes.length);
+    for (int i = 0; i < min; i++) {
+      int cmp = (buf.get(pos + i) & 0xff) - (bytes[i] & 0xff);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return len - bytes.length;
+  }
+
+  /**
+   * Compares the key of a node to a probe the same way {@link MemKeyComparator} compares keys,
+   * optionally ignoring the kv count.
+   */
+  private int compare(long node, Probe probe, boolean compareKVCount) {
+    ByteBuffer buf = buffer(node);
+    int off = offset(node);
+
+    int pos = off + NEXT + buf.get(off + HEIGHT) * 8;
+    int len = buf.getInt(off + ROW_LEN);
+    int cmp = compareBytes(buf, pos, len, probe.row);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += len;
+    len = buf.getInt(off + CF_LEN);
+    cmp = compareBytes(buf, pos, len, probe.cf);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += len;
+    len = buf.getInt(off + CQ_LEN);
+    cmp = compareBytes(buf, pos, len, probe.cq);
+    if (cmp != 0) {
+      return cmp;
+    }
+    pos += len;
+    len = buf.getInt(off + CV_LEN);
+    cmp = compareBytes(buf, pos, len, probe.cv);
+    if (cmp != 0) {
+      return cmp;
+    }
+
+    // newer timestamps and deletes sort first
+    long ts = buf.getLong(off + TIMESTAMP);
+    if (ts != probe.ts) {
+      return ts > probe.ts ? -1 : 1;
+    }
+    boolean del = buf.get(off + DELETED) != 0;
+    if (del != probe.del) {
+      return del ? -1 : 1;
+    }
+
+    if (!compareKVCount) {
+      return 0;
+    }
+    // later updates sort first
+    return Integer.compare(probe.kvCount, buf.getInt(off + KV_COUNT));
+  }
+
+  /**
+   * Finds the first node that is not less than the probe. If preds is not null, it is filled with
+   * the last node before the probe on each level.
+   *
+   * @return the node, or {@link #NIL} if all nodes are less than the probe
+   */
+  private long seek(Probe probe, long[] preds) {
+    long pred = NIL;
+    long next = NIL;
+    for (int i = level - 1; i >= 0; i--) {
+      next = nextNode(pred, i);
+      while (next != NIL && compare(next, probe, true) < 0) {
+        pred = next;
+        next = nextNode(pred, i);
+      }
+      if (preds != null) {
+        preds[i] = pred;
+      }
+    }
+    return next;
+  }
+
+  private int randomHeight() {
+    int height = 1;
+    while (height < MAX_LEVEL && (random.nextInt() & 3) == 0) {
+      height++;
+    }
+    return height;
+  }
+
+  private static void put(ByteBuffer buf, int pos, byte[] bytes) {
+    ByteBuffer dup = buf.duplicate();
+    dup.position(pos);
+    dup.put(bytes);
+  }
+
+  // it is assumed the write lock is held when this method is called
+  private void insert(Probe probe, byte[] value) {
+    long found = seek(probe, preds);
+    boolean replace = found != NIL && compare(found, probe, true) == 0;
+
+    int height = replace ? height(found) : randomHeight();
+    if (height > level) {
+      for (int i = level; i < height; i++) {
+        preds[i] = NIL;
+      }
+      level = height;
+    }
+
+    int dataOff = NEXT + height * 8;
+    long node = allocate(dataOff + probe.row.length + probe.cf.length + probe.cq.length
+        + probe.cv.length + value.length);
+    ByteBuffer buf = buffer(node);
+    int off = offset(node);
+
+    buf.putInt(off + KV_COUNT, probe.kvCount);
+    buf.putLong(off + TIMESTAMP, probe.ts);
+    buf.put(off + DELETED, (byte) (probe.del ? 1 : 0));
+    buf.put(off + HEIGHT, (byte) height);
+    buf.putInt(off + ROW_LEN, probe.row.length);
+    buf.putInt(off + CF_LEN, probe.cf.length);
+    buf.putInt(off + CQ_LEN, probe.cq.length);
+    buf.putInt(off + CV_LEN, probe.cv.length);
+    buf.putInt(off + VAL_LEN, value.length);
+
+    int pos = off + dataOff;
+    put(buf, pos, probe.row);
+    pos += probe.row.length;
+    put(buf, pos, probe.cf);
+    pos += probe.cf.length;
+    put(buf, pos, probe.cq);
+    pos += probe.cq.length;
+    put(buf, pos, probe.cv);
+    pos += probe.cv.length;
+    put(buf, pos, value);
+
+    for (int i = 0; i < height; i++) {
+      setNextNode(node, i, replace ? nextNode(found, i) : nextNode(preds[i], i));
+      setNextNode(preds[i], i, node);
+    }
+
+    if (replace) {
+      replaceCount++;
+    } else {
+      size++;
+    }
+  }
+
+  /**
+   * Copies the entry of a node out of direct memory. The row array of the previous entry is reused
+   * when the rows are the same.
+   */
+  private Entry<Key,Value> entry(long node, byte[] lastRow) {
+    ByteBuffer buf = buffer(node).duplicate();
+    int off = offset(node);
+
+    int rowLen = buf.getInt(off + ROW_LEN);
+    int pos = off + NEXT + buf.get(off + HEIGHT) * 8;
+
+    byte[] row;
+    if (lastRow != null && compareBytes(buf, pos, rowLen, lastRow) == 0) {
+      row = lastRow;
+      buf.position(pos + rowLen);
+    } else {
+      row = new byte[rowLen];
+      buf.position(pos);
+      buf.get(row);
+    }
+
+    byte[] cf = new byte[buf.getInt(off + CF_LEN)];
+    byte[] cq = new byte[buf.getInt(off + CQ_LEN)];
+    byte[] cv = new byte[buf.getInt(off + CV_LEN)];
+    byte[] val = new byte[buf.getInt(off + VAL_LEN)];
+    buf.get(cf);
+    buf.get(cq);
+    buf.get(cv);
+    buf.get(val);
+
+    Key k = new MemKey(row, cf, cq, cv, buf.getLong(off + TIMESTAMP), buf.get(off + DELETED) != 0,
+        false, buf.getInt(off + KV_COUNT));
+    return new SimpleImmutableEntry<>(k, new Value(val, false));
+  }
+
+  private class ConcurrentIterator implements Iterator<Map.Entry<Key,Value>> {
+
+    // same read ahead as the native map, reading a batch of entries each time the read lock is
+    // acquired keeps readers and writers from contending for the lock on every entry
+    private static final int MAX_READ_AHEAD_ENTRIES = 16;
+    private static final int READ_AHEAD_BYTES = 4096;
+
+    // the last node read, the next batch starts after it
+    private long lastNode = NIL;
+    private Key lastKey = null;
+    private int expectedReplaceCount;
+
+    private PreAllocatedArray<Entry<Key,Value>> nextEntries;
+    private int index;
+    private int end;
+
+    ConcurrentIterator() {
+      this(new MemKey());
+    }
+
+    ConcurrentIterator(Key key) {
+      // start off with a small read ahead
+      nextEntries = new PreAllocatedArray<>(1);
+
+      rlock.lock();
+      try {
+        if (deleted) {
+          throw new IllegalStateException("Off Heap Map Deleted");
+        }
+        expectedReplaceCount = replaceCount;
+        fill(seek(new Probe(key), null));
+      } finally {
+        rlock.unlock();
+      }
+    }
+
+    // it is assumed the read lock is held when this method is called
+    private void fill() {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      // Entries inserted after the last node read are linked from it, so they are seen. If an
+      // entry was replaced, the last node may no longer be in the list, so seek past its key.
+      long node;
+      if (expectedReplaceCount != replaceCount) {
+        Probe probe = new Probe(lastKey);
+        node = seek(probe, null);
+        if (node != NIL && compare(node, probe, true) == 0) {
+          node = nextNode(node, 0);
+        }
+        expectedReplaceCount = replaceCount;
+      } else {
+        node = nextNode(lastNode, 0);
+      }
+
+      fill(node);
+    }
+
+    // it is assumed the read lock is held when this method is called
+    private void fill(long node) {
+      end = 0;
+      index = 0;
+
+      int amountRead = 0;
+
+      // as we keep filling, increase the read ahead buffer
+      if (nextEntries.length < MAX_READ_AHEAD_ENTRIES)
+        nextEntries = new PreAllocatedArray<>(
+            Math.min(nextEntries.length * 2, MAX_READ_AHEAD_ENTRIES));
+
+      byte[] lastRow = null;
+      while (node != NIL && end < nextEntries.length) {
+        Entry<Key,Value> ne = entry(node, lastRow);
+        nextEntries.set(end++, ne);
+        lastNode = node;
+        lastKey = ne.getKey();
+        lastRow = lastKey.getRowData().getBackingArray();
+        node = nextNode(node, 0);
+        amountRead += ne.getKey().getSize() + ne.getValue().getSize();
+
+        if (amountRead > READ_AHEAD_BYTES)
+          break;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return end != 0;
+    }
+
+    @Override
+    public Entry<Key,Value> next() {
+      if (end == 0) {
+        throw new NoSuchElementException();
+      }
+
+      Entry<Key,Value> ret = nextEntries.get(index++);
+
+      if (index == end) {
+        rlock.lock();
+        try {
+          fill();
+        } finally {
+          rlock.unlock();
+        }
+      }
+
+      return ret;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private int _mutate(Mutation mutation, int mutationCount) {
+    byte[] row = mutation.getRow();
+    for (ColumnUpdate update : mutation.getUpdates()) {
+      insert(new Probe(row, update.getColumnFamily(), update.getColumnQualifier(),
+          update.getColumnVisibility(), update.getTimestamp(), update.isDeleted(),
+          mutationCount++), update.getValue());
+    }
+    return mutationCount;
+  }
+
+  @VisibleForTesting
+  public void mutate(Mutation mutation, int mutationCount) {
+    mutate(Collections.singletonList(mutation), mutationCount);
+  }
+
+  void mutate(List<Mutation> mutations, int mutationCount) {
+    Iterator<Mutation> iter = mutations.iterator();
+
+    while (iter.hasNext()) {
+
+      wlock.lock();
+      try {
+        if (deleted) {
+          throw new IllegalStateException("Off Heap Map Deleted");
+        }
+
+        int count = 0;
+        while (iter.hasNext() && count < 10) {
+          Mutation mutation = iter.next();
+          // a partitioned mutation does not know its size, so count what was written
+          int start = mutationCount;
+          mutationCount = _mutate(mutation, mutationCount);
+          count += mutationCount - start;
+        }
+      } finally {
+        wlock.unlock();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  public void put(Key key, Value value) {
+    wlock.lock();
+    try {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      insert(new Probe(key.getRowData().toArray(), key.getColumnFamilyData().toArray(),
+          key.getColumnQualifierData().toArray(), key.getColumnVisibilityData().toArray(),
+          key.getTimestamp(), key.isDeleted(), 0), value.get());
+    } finally {
+      wlock.unlock();
+    }
+  }
+
+  public Value get(Key key) {
+    rlock.lock();
+    try {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      Probe probe = new Probe(key);
+      long node = seek(probe, null);
+      if (node != NIL && compare(node, probe, false) == 0) {
+        return entry(node, null).getValue();
+      }
+      return null;
+    } finally {
+      rlock.unlock();
+    }
+  }
+
+  public int size() {
+    rlock.lock();
+    try {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      return size;
+    } finally {
+      rlock.unlock();
+    }
+  }
+
+  public long getMemoryUsed() {
+    rlock.lock();
+    try {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      // like the native map, the unused end of the current chunk is not counted
+      return reserved - (chunk == null ? 0 : CHUNK_SIZE - chunkUsed);
+    } finally {
+      rlock.unlock();
+    }
+  }
+
+  @Override
+  public Iterator<Map.Entry<Key,Value>> iterator() {
+    return new ConcurrentIterator();
+  }
+
+  public Iterator<Map.Entry<Key,Value>> iterator(Key startKey) {
+    return new ConcurrentIterator(startKey);
+  }
+
+  /**
+   * Drops all of the map's buffers. The direct memory is released when the buffers are garbage
+   * collected.
+   */
+  public void delete() {
+    wlock.lock();
+    try {
+      if (deleted) {
+        throw new IllegalStateException("Off Heap Map Deleted");
+      }
+
+      deleted = true;
+      buffers.clear();
+      chunk = null;
+      Arrays.fill(head, NIL);
+    } finally {
+      wlock.unlock();
+    }
+  }
+
+  private static class OHSKVIter implements InterruptibleIterator {
+
+    private ConcurrentIterator iter;
+    private Entry<Key,Value> entry;
+
+    private OffHeapMap map;
+    private Range range;
+    private AtomicBoolean interruptFlag;
+    private int interruptCheckCount = 0;
+
+    private OHSKVIter(OffHeapMap map, AtomicBoolean interruptFlag) {
+      this.map = map;
+      this.range = new Range();
+      iter = map.new ConcurrentIterator();
+      if (iter.hasNext())
+        entry = iter.next();
+      else
+        entry = null;
+
+      this.interruptFlag = interruptFlag;
+    }
+
+    public OHSKVIter(OffHeapMap map) {
+      this(map, null);
+    }
+
+    @Override
+    public Key getTopKey() {
+      return entry.getKey();
+    }
+
+    @Override
+    public Value getTopValue() {
+      return entry.getValue();
+    }
+
+    @Override
+    public boolean hasTop() {
+      return entry != null;
+    }
+
+    @Override
+    public void next() throws IOException {
+
+      if (entry == null)
+        throw new IllegalStateException();
+
+      // checking the interrupt flag for every call to next had bad a bad performance impact
+      // so check it every 100th time
+      if (interruptFlag != null && interruptCheckCount++ % 100 == 0 && interruptFlag.get())
+        throw new IterationInterruptedException();
+
+      if (iter.hasNext()) {
+        entry = iter.next();
+        if (range.afterEndKey(entry.getKey())) {
+          entry = null;
+        }
+      } else
+        entry = null;
+
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
+        throws IOException {
+
+      if (interruptFlag != null && interruptFlag.get())
+        throw new IterationInterruptedException();
+
+      this.range = range;
+
+      Key key = range.getStartKey();
+      if (key == null) {
+        key = new MemKey();
+      }
+
+      iter = map.new ConcurrentIterator(key);
+      if (iter.hasNext()) {
+        entry = iter.next();
+        if (range.afterEndKey(entry.getKey())) {
+          entry = null;
+        }
+      } else
+        entry = null;
+
+      while (hasTop() && range.beforeStartKey(getTopKey())) {
+        next();
+      }
+    }
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      if (env != null && env.isSamplingEnabled()) {
+        throw new SampleNotPresentException();
+      }
+      return new OHSKVIter(map, interruptFlag);
+    }
+
+    @Override
+    public void setInterruptFlag(AtomicBoolean flag) {
+      this.interruptFlag = flag;
+    }
+  }
+
+  public SortedKeyValueIterator<Key,Value> skvIterator() {
+    return new OHSKVIter(this);
+  }
+}
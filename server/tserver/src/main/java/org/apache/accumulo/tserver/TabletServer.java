@@ -129,6 +129,7 @@ import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.securityImpl.thrift.TCredentials;
 import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheType;
 import org.apache.accumulo.core.spi.scan.ScanDispatcher;
 import org.apache.accumulo.core.summary.Gatherer;
 import org.apache.accumulo.core.summary.Gatherer.FileSystemResolver;
@@ -2541,6 +2542,7 @@ public class TabletServer implements Runnable {
             recentlyUnloadedCache.remove(tablet.getExtent());
           }
         }
+        resourceManager.executeCacheWarmUp(extent, tablet::warmUpCache);
         tablet = null; // release this reference
         successful = true;
       } catch (Throwable e) {
@@ -3449,6 +3451,10 @@ public class TabletServer implements Runnable {
     return resourceManager.holdTime();
   }
 
+  public Map<String,BlockCache.Stats> getCachePartitionStats(CacheType type) {
+    return resourceManager.getCachePartitionStats(type);
+  }
+
   public SecurityOperation getSecurityOperation() {
     return security;
   }
@@ -19,6 +19,7 @@ package org.apache.accumulo.tserver;
 import static java.util.Objects.requireNonNull;
 import static org.apache.accumulo.fate.util.UtilWaitThread.sleepUninterruptibly;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -38,8 +39,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
@@ -51,6 +54,7 @@ import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheConfiguration;
 import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheManagerFactory;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
 import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.spi.cache.BlockCacheManager;
@@ -63,6 +67,8 @@ import org.apache.accumulo.core.spi.scan.ScanPrioritizer;
 import org.apache.accumulo.core.spi.scan.SimpleScanDispatcher;
 import org.apache.accumulo.core.util.Daemon;
 import org.apache.accumulo.core.util.NamingThreadFactory;
+import org.apache.accumulo.core.util.ratelimit.RateLimiter;
+import org.apache.accumulo.core.util.ratelimit.SharedRateLimiterFactory;
 import org.apache.accumulo.fate.util.LoggingRunnable;
 import org.apache.accumulo.server.ServerContext;
 import org.apache.accumulo.server.conf.ServerConfigurationFactory;
@@ -101,10 +107,16 @@ public class TabletServerResourceManager {
 
   private static final Logger log = LoggerFactory.getLogger(TabletServerResourceManager.class);
 
+  private static final int BLOCK_READ_AHEAD_QUEUE_SIZE = 256;
+  private static final int CACHE_WARM_UP_QUEUE_SIZE = 1024;
+  private static final String CACHE_SNAPSHOT_FILE = "blocks";
+  private static final String CACHE_RESTORE_LIMITER_KEY = "cache_restore_rate_limiter";
+
   private final ExecutorService minorCompactionThreadPool;
   private final ExecutorService majorCompactionThreadPool;
   private final ExecutorService rootMajorCompactionThreadPool;
   private final ExecutorService defaultMajorCompactionThreadPool;
+  private final ExecutorService majorCompactionCompressionPool;
   private final ExecutorService splitThreadPool;
   private final ExecutorService defaultSplitThreadPool;
   private final ExecutorService defaultMigrationPool;
@@ -114,6 +126,8 @@ public class TabletServerResourceManager {
   private final ExecutorService summaryRetrievalPool;
   private final ExecutorService summaryParitionPool;
   private final ExecutorService summaryRemotePool;
+  private final ExecutorService blockReadAheadPool;
+  private final ExecutorService cacheWarmUpPool;
   private final Map<String,ExecutorService> threadPools = new TreeMap<>();
 
   private final Map<String,ExecutorService> scanExecutors;
@@ -137,6 +151,13 @@ public class TabletServerResourceManager {
 
   private Cache<String,Long> fileLenCache;
 
+  // the blocks cached before the last restart that have not been restored yet, null when none
+  private volatile BlockCacheSnapshot cacheSnapshot = null;
+  // restoring a snapshot is done by assignments and the warm up tasks they queue, these count the
+  // ones that are queued or running
+  private volatile boolean assignedSinceStart = false;
+  private final AtomicInteger pendingRestoreWork = new AtomicInteger(0);
+
   private ExecutorService addEs(String name, ExecutorService tp) {
     if (threadPools.containsKey(name)) {
       throw new IllegalArgumentException(
@@ -325,6 +346,8 @@ public class TabletServerResourceManager {
     long maxMemory = acuConf.getAsBytes(Property.TSERV_MAXMEM);
     boolean usingNativeMap = acuConf.getBoolean(Property.TSERV_NATIVEMAP_ENABLED)
         && NativeMap.isLoaded();
+    boolean usingOffHeapMap = !usingNativeMap
+        && acuConf.getBoolean(Property.TSERV_OFFHEAPMAP_ENABLED);
 
     long totalQueueSize = acuConf.getAsBytes(Property.TSERV_TOTAL_MUTATION_QUEUE_MAX);
 
@@ -345,8 +368,8 @@ public class TabletServerResourceManager {
     long sCacheSize = _sCache.getMaxHeapSize();
 
     Runtime runtime = Runtime.getRuntime();
-    if (usingNativeMap) {
-      // Still check block cache sizes when using native maps.
+    if (usingNativeMap || usingOffHeapMap) {
+      // Still check block cache sizes when using native or off heap maps.
       if (dCacheSize + iCacheSize + sCacheSize + totalQueueSize > runtime.maxMemory()) {
         throw new IllegalArgumentException(String.format(
             "Block cache sizes %,d" + " and mutation queue size %,d is too large for this JVM"
@@ -365,7 +388,7 @@ public class TabletServerResourceManager {
 
     // totalMemory - freeMemory = memory in use
     // maxMemory - memory in use = max available memory
-    if (!usingNativeMap
+    if (!usingNativeMap && !usingOffHeapMap
         && maxMemory > runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory())) {
       log.warn("In-memory map may not fit into local memory space.");
     }
@@ -379,6 +402,13 @@ public class TabletServerResourceManager {
     rootMajorCompactionThreadPool = createEs(0, 1, 300, "md root major compactor");
     defaultMajorCompactionThreadPool = createEs(0, 1, 300, "md major compactor");
 
+    int compressionThreads = acuConf.getCount(Property.TSERV_MAJC_COMPRESSION_THREADS);
+    if (compressionThreads > 0) {
+      majorCompactionCompressionPool = createEs(compressionThreads, "major compaction compressor");
+    } else {
+      majorCompactionCompressionPool = null;
+    }
+
     splitThreadPool = createEs(1, "splitter");
     defaultSplitThreadPool = createEs(0, 1, 60, "md splitter");
 
@@ -413,8 +443,16 @@ public class TabletServerResourceManager {
     fileLenCache = CacheBuilder.newBuilder().maximumSize(Math.min(maxOpenFiles * 1000L, 100_000))
         .build();
 
-    fileManager = new FileManager(tserver.getContext(), fs, maxOpenFiles, fileLenCache, _dCache,
-        _iCache);
+    // read ahead is best effort, so only a limited number of requests are queued
+    blockReadAheadPool = createEs(Property.TSERV_BLOCK_READ_AHEAD_THREADS, "block read ahead",
+        new LinkedBlockingQueue<>(BLOCK_READ_AHEAD_QUEUE_SIZE));
+
+    // warming up the cache is best effort too, a server loading many tablets drops the excess
+    cacheWarmUpPool = createEs(Property.TSERV_CACHE_WARMUP_THREADS, "cache warm up",
+        new LinkedBlockingQueue<>(CACHE_WARM_UP_QUEUE_SIZE));
+
+    fileManager = new FileManager(tserver.getContext(), fs, maxOpenFiles, fileLenCache,
+        cacheManager, blockReadAheadPool);
 
     memoryManager = Property.createInstanceFromPropertyName(acuConf, Property.TSERV_MEM_MGMT,
         MemoryManager.class, new LargestFirstMemoryManager());
@@ -427,6 +465,44 @@ public class TabletServerResourceManager {
     // We can use the same map for both metadata and normal assignments since the keyspace (extent)
     // is guaranteed to be unique. Schedule the task once, the task will reschedule itself.
     timer.schedule(new AssignmentWatcher(acuConf, activeAssignments, timer), 5000);
+
+    String snapshotDir = acuConf.get(Property.TSERV_CACHE_SNAPSHOT_DIR);
+    if (!snapshotDir.isEmpty()) {
+      File snapshotFile = new File(snapshotDir, CACHE_SNAPSHOT_FILE);
+      try {
+        BlockCacheSnapshot snapshot = BlockCacheSnapshot.read(snapshotFile);
+        if (!snapshot.isEmpty()) {
+          cacheSnapshot = snapshot;
+        }
+      } catch (IOException e) {
+        log.warn("Failed to read block cache snapshot {}", snapshotFile, e);
+      }
+      long interval = acuConf.getTimeInMillis(Property.TSERV_CACHE_SNAPSHOT_INTERVAL);
+      timer.schedule(() -> writeCacheSnapshot(snapshotFile), interval, interval);
+    }
+  }
+
+  private void writeCacheSnapshot(File snapshotFile) {
+    if (cacheSnapshot != null) {
+      if (!assignedSinceStart || pendingRestoreWork.get() > 0) {
+        // the caches are still being restored, writing them now would lose the old hot blocks
+        return;
+      }
+      // the blocks left belong to files of tablets this server was not assigned after the restart
+      cacheSnapshot = null;
+    }
+
+    try {
+      File dir = snapshotFile.getParentFile();
+      if (!dir.isDirectory() && !dir.mkdirs()) {
+        throw new IOException("Unable to create directory " + dir);
+      }
+      int maxBlocks = tserver.getConfiguration()
+          .getCount(Property.TSERV_CACHE_SNAPSHOT_MAX_BLOCKS);
+      BlockCacheSnapshot.write(cacheManager, maxBlocks, snapshotFile);
+    } catch (IOException e) {
+      log.warn("Failed to write block cache snapshot {}", snapshotFile, e);
+    }
   }
 
   /**
@@ -975,14 +1051,44 @@ public class TabletServerResourceManager {
     }
   }
 
+  /**
+   * Runs a task that reads a newly loaded tablet's files into the block caches. The task is dropped
+   * if too many are already queued.
+   */
+  public void executeCacheWarmUp(KeyExtent tablet, Runnable warmUpTask) {
+    try {
+      executeRestoreWork(cacheWarmUpPool, new LoggingRunnable(log, warmUpTask));
+    } catch (RejectedExecutionException e) {
+      log.debug("Cache warm up of {} rejected", tablet);
+    }
+  }
+
+  private void executeRestoreWork(ExecutorService executor, Runnable task) {
+    pendingRestoreWork.incrementAndGet();
+    try {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          pendingRestoreWork.decrementAndGet();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      pendingRestoreWork.decrementAndGet();
+      throw e;
+    }
+  }
+
   public void addAssignment(KeyExtent extent, Logger log, AssignmentHandler assignmentHandler) {
-    assignmentPool.execute(new ActiveAssignmentRunnable(activeAssignments, extent,
+    assignedSinceStart = true;
+    executeRestoreWork(assignmentPool, new ActiveAssignmentRunnable(activeAssignments, extent,
         new LoggingRunnable(log, assignmentHandler)));
   }
 
   public void addMetaDataAssignment(KeyExtent extent, Logger log,
       AssignmentHandler assignmentHandler) {
-    assignMetaDataPool.execute(new ActiveAssignmentRunnable(activeAssignments, extent,
+    assignedSinceStart = true;
+    executeRestoreWork(assignMetaDataPool, new ActiveAssignmentRunnable(activeAssignments, extent,
         new LoggingRunnable(log, assignmentHandler)));
   }
 
@@ -1008,10 +1114,58 @@ public class TabletServerResourceManager {
     return _sCache;
   }
 
+  /**
+   * @return the index cache of the named cache partition, the shared index cache when empty
+   */
+  public BlockCache getIndexCache(String partition) {
+    return cacheManager.getBlockCache(CacheType.INDEX, partition);
+  }
+
+  /**
+   * @return the data cache of the named cache partition, the shared data cache when empty
+   */
+  public BlockCache getDataCache(String partition) {
+    return cacheManager.getBlockCache(CacheType.DATA, partition);
+  }
+
+  /**
+   * @return the blocks that were cached before the tablet server restarted and have not been read
+   *         back into the caches yet, or null if there are none
+   */
+  public BlockCacheSnapshot getCacheSnapshot() {
+    BlockCacheSnapshot snapshot = cacheSnapshot;
+    if (snapshot != null && snapshot.isEmpty()) {
+      // every block has been restored, let the snapshot be garbage collected
+      cacheSnapshot = null;
+      return null;
+    }
+    return snapshot;
+  }
+
+  /**
+   * Get the {@link RateLimiter} for the reads that restore the blocks of a cache snapshot.
+   */
+  public RateLimiter getCacheRestoreLimiter() {
+    return SharedRateLimiterFactory.getInstance().create(CACHE_RESTORE_LIMITER_KEY,
+        () -> tserver.getConfiguration().getAsBytes(Property.TSERV_CACHE_RESTORE_THROUGHPUT));
+  }
+
+  public Map<String,BlockCache.Stats> getCachePartitionStats(CacheType type) {
+    return cacheManager.getPartitionStats(type);
+  }
+
   public Cache<String,Long> getFileLenCache() {
     return fileLenCache;
   }
 
+  /**
+   * @return the executor that compresses data blocks for major compactions, or null if compactions
+   *         should compress their own blocks
+   */
+  public ExecutorService getMajorCompactionCompressionExecutor() {
+    return majorCompactionCompressionPool;
+  }
+
   public ExecutorService getSummaryRetrievalExecutor() {
     return summaryRetrievalPool;
   }
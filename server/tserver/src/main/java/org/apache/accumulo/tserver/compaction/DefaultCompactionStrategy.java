@@ -16,28 +16,63 @@
  */
 package org.apache.accumulo.tserver.compaction;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.dataImpl.thrift.IterInfo;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
 import org.apache.accumulo.server.fs.FileRef;
 
 public class DefaultCompactionStrategy extends CompactionStrategy {
 
+  // files found by gatherInformation whose keys would all be removed by the table's compaction
+  // iterators
+  private Set<FileRef> expiredFiles = Collections.emptySet();
+
   @Override
   public boolean shouldCompact(MajorCompactionRequest request) {
     CompactionPlan plan = getCompactionPlan(request);
     return plan != null && !plan.inputFiles.isEmpty();
   }
 
+  @Override
+  public void gatherInformation(MajorCompactionRequest request) throws IOException {
+    super.gatherInformation(request);
+    expiredFiles = findExpiredFiles(request);
+  }
+
   @Override
   public CompactionPlan getCompactionPlan(MajorCompactionRequest request) {
     CompactionPlan result = new CompactionPlan();
 
+    if (!expiredFiles.isEmpty()) {
+      // the files may have changed since gatherInformation was called
+      Map<FileRef,DataFileValue> files = new HashMap<>(request.getFiles());
+      for (FileRef file : request.getFiles().keySet()) {
+        if (expiredFiles.contains(file)) {
+          result.deleteFiles.add(file);
+          files.remove(file);
+        }
+      }
+
+      // plan the compaction of the remaining files as if the expired ones were already gone
+      request = new MajorCompactionRequest(request);
+      request.setFiles(files);
+    }
+
     List<FileRef> toCompact = findMapFilesToCompact(request);
     if (toCompact == null || toCompact.isEmpty())
       return result;
@@ -56,6 +91,33 @@ public class DefaultCompactionStrategy extends CompactionStrategy {
     }
   }
 
+  /**
+   * Finds the files whose newest key is older than anything the table's compaction iterators keep,
+   * using the timestamps recorded in the files. A compaction of such a file would write nothing, so
+   * it can be dropped without being read. This is only done for system initiated compactions, since
+   * user compactions may run other iterators.
+   */
+  private Set<FileRef> findExpiredFiles(MajorCompactionRequest request) throws IOException {
+    MajorCompactionReason reason = request.getReason();
+    if (reason == MajorCompactionReason.USER || reason == MajorCompactionReason.CHOP)
+      return Collections.emptySet();
+
+    List<IterInfo> iters = new ArrayList<>();
+    Map<String,Map<String,String>> iterOpts = new HashMap<>();
+    IteratorUtil.parseIterConf(IteratorScope.majc, iters, iterOpts,
+        new ConfigurationCopy(request.getTableProperties()));
+    long oldestTimestamp = IteratorUtil.getOldestTimestamp(iters, iterOpts);
+    if (oldestTimestamp == Long.MIN_VALUE)
+      return Collections.emptySet();
+
+    Set<FileRef> expired = new HashSet<>();
+    for (FileRef file : request.getFiles().keySet()) {
+      if (request.getMaxTimestamp(file) < oldestTimestamp)
+        expired.add(file);
+    }
+    return expired;
+  }
+
   private List<FileRef> findMapFilesToCompact(MajorCompactionRequest request) {
     MajorCompactionReason reason = request.getReason();
     if (reason == MajorCompactionReason.USER) {
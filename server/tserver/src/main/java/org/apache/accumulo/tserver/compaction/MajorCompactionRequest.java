@@ -183,6 +183,35 @@ public class MajorCompactionRequest implements Cloneable {
         .withTableConfiguration(tableConfig).seekToBeginning().build();
   }
 
+  /**
+   * Returns the largest timestamp of the keys in a file, as they will be seen by a compaction. It
+   * is read from the file's index, none of the file's data is read.
+   *
+   * <p>
+   * Like {@link #openReader(FileRef)}, this method can only be called from
+   * {@link CompactionStrategy#gatherInformation(MajorCompactionRequest)}.
+   *
+   * @return the largest timestamp, or {@link Long#MAX_VALUE} if the file does not record it
+   */
+  public long getMaxTimestamp(FileRef ref) throws IOException {
+    DataFileValue dfv = files.get(ref);
+    if (dfv != null && dfv.isTimeSet()) {
+      // every key in the file is read with this time
+      return dfv.getTime();
+    }
+
+    Preconditions.checkState(volumeManager != null,
+        "Reading file timestamps is not" + " supported at this time. It's only supported when"
+            + " CompactionStrategy.gatherInformation() is called.");
+    FileSystem ns = volumeManager.getVolumeByPath(ref.path()).getFileSystem();
+    try (FileSKVIterator reader = FileOperations.getInstance().newReaderBuilder()
+        .forFile(ref.path().toString(), ns, ns.getConf(), context.getCryptoService())
+        .withTableConfiguration(tableConfig).withIndexCache(indexCache)
+        .withFileLenCache(fileLenCache).build()) {
+      return reader.getMaxTimestamp();
+    }
+  }
+
   public Map<String,String> getTableProperties() {
     return tableConfig.getAllPropertiesWithPrefix(Property.TABLE_PREFIX);
   }
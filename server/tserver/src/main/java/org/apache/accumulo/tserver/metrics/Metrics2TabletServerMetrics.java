@@ -16,6 +16,10 @@
  */
 package org.apache.accumulo.tserver.metrics;
 
+import java.util.Map.Entry;
+
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheType;
 import org.apache.accumulo.server.metrics.Metrics;
 import org.apache.accumulo.server.metrics.MetricsSystemHelper;
 import org.apache.accumulo.tserver.TabletServer;
@@ -123,5 +127,33 @@ public class Metrics2TabletServerMetrics
     builder.addGauge(Interns.info(QUERY_BYTE_RATE, "Query rate (bytes/sec)"),
         util.getQueryByteRate());
     builder.addGauge(Interns.info(SCANNED_RATE, "Scanned rate"), util.getScannedRate());
+    builder.addCounter(
+        Interns.info(FILE_READS_LOCKED, "Reads of files done while holding a shared stream lock"),
+        util.getFileReadsLocked());
+    builder.addCounter(
+        Interns.info(FILE_READ_LOCK_WAIT_TIME,
+            "Time (ms) reads of files have waited for a shared stream lock"),
+        util.getFileReadLockWaitTime());
+    builder.addCounter(
+        Interns.info(FILE_READS_POSITIONAL, "Reads of files done with positional reads"),
+        util.getFileReadsPositional());
+
+    for (CacheType type : CacheType.values()) {
+      String cacheName = type.name().toLowerCase();
+      for (Entry<String,BlockCache.Stats> entry : util.getCachePartitionStats(type).entrySet()) {
+        String prefix = CACHE_PARTITION_PREFIX + cacheName + "." + entry.getKey() + ".";
+        BlockCache.Stats stats = entry.getValue();
+        builder.addCounter(Interns.info(prefix + CACHE_PARTITION_HITS,
+            "Hits in the " + cacheName + " cache partition " + entry.getKey()), stats.hitCount());
+        builder.addCounter(
+            Interns.info(prefix + CACHE_PARTITION_REQUESTS,
+                "Requests to the " + cacheName + " cache partition " + entry.getKey()),
+            stats.requestCount());
+        builder.addCounter(
+            Interns.info(prefix + CACHE_PARTITION_EVICTED,
+                "Blocks evicted from the " + cacheName + " cache partition " + entry.getKey()),
+            stats.evictedCount());
+      }
+    }
   }
 }
@@ -39,4 +39,11 @@ public interface TabletServerMetricsKeys {
   String QUERY_RATE = "queryRate";
   String QUERY_BYTE_RATE = "queryByteRate";
   String SCANNED_RATE = "scannedRate";
+  String FILE_READS_LOCKED = "fileReadsLocked";
+  String FILE_READ_LOCK_WAIT_TIME = "fileReadLockWaitTime";
+  String FILE_READS_POSITIONAL = "fileReadsPositional";
+  String CACHE_PARTITION_PREFIX = "cachePartition.";
+  String CACHE_PARTITION_HITS = "hits";
+  String CACHE_PARTITION_REQUESTS = "requests";
+  String CACHE_PARTITION_EVICTED = "evicted";
 }
@@ -16,6 +16,12 @@
  */
 package org.apache.accumulo.tserver.metrics;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.file.streams.BoundedRangeFileInputStream;
+import org.apache.accumulo.core.spi.cache.BlockCache;
+import org.apache.accumulo.core.spi.cache.CacheType;
 import org.apache.accumulo.tserver.TabletServer;
 import org.apache.accumulo.tserver.tablet.Tablet;
 
@@ -167,4 +173,20 @@ public class TabletServerMetricsUtil {
       return 0;
     return result / (double) count;
   }
+
+  public long getFileReadsLocked() {
+    return BoundedRangeFileInputStream.getLockedReads();
+  }
+
+  public long getFileReadLockWaitTime() {
+    return TimeUnit.NANOSECONDS.toMillis(BoundedRangeFileInputStream.getLockWaitNanos());
+  }
+
+  public long getFileReadsPositional() {
+    return BoundedRangeFileInputStream.getPositionalReads();
+  }
+
+  public Map<String,BlockCache.Stats> getCachePartitionStats(CacheType type) {
+    return tserver.getCachePartitionStats(type);
+  }
 }
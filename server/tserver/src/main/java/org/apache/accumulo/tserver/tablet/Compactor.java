@@ -29,15 +29,18 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.accumulo.core.client.IteratorSetting;
 import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.dataImpl.KeyExtent;
 import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileOperations.WriterBuilder;
 import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.file.FileSKVWriter;
 import org.apache.accumulo.core.iterators.IteratorUtil;
@@ -48,6 +51,7 @@ import org.apache.accumulo.core.iterators.system.DeletingIterator;
 import org.apache.accumulo.core.iterators.system.MultiIterator;
 import org.apache.accumulo.core.iterators.system.TimeSettingIterator;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
+import org.apache.accumulo.core.spi.cache.BlockCache;
 import org.apache.accumulo.core.trace.Span;
 import org.apache.accumulo.core.trace.Trace;
 import org.apache.accumulo.core.util.LocalityGroupUtil;
@@ -63,6 +67,7 @@ import org.apache.accumulo.server.problems.ProblemType;
 import org.apache.accumulo.tserver.InMemoryMap;
 import org.apache.accumulo.tserver.MinorCompactionReason;
 import org.apache.accumulo.tserver.TabletIteratorEnvironment;
+import org.apache.accumulo.tserver.TabletServerResourceManager;
 import org.apache.accumulo.tserver.compaction.MajorCompactionReason;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -72,6 +77,7 @@ import org.slf4j.LoggerFactory;
 public class Compactor implements Callable<CompactionStats> {
   private static final Logger log = LoggerFactory.getLogger(Compactor.class);
   private static final AtomicLong nextCompactorID = new AtomicLong(0);
+  private static final String TMP_SUFFIX = "_tmp";
 
   public static class CompactionCanceledException extends Exception {
     private static final long serialVersionUID = 1L;
@@ -86,6 +92,12 @@ public class Compactor implements Callable<CompactionStats> {
     RateLimiter getReadLimiter();
 
     RateLimiter getWriteLimiter();
+
+    /**
+     * @return the executor used to compress data blocks of the output file, or null if blocks
+     *         should be compressed on the compaction thread
+     */
+    Executor getCompressionExecutor();
   }
 
   private final Map<FileRef,DataFileValue> filesToCompact;
@@ -97,6 +109,7 @@ public class Compactor implements Callable<CompactionStats> {
   private final VolumeManager fs;
   protected final KeyExtent extent;
   private final List<IteratorSetting> iterators;
+  private final TabletServerResourceManager resourceManager;
 
   // things to report
   private String currentLocalityGroup = "";
@@ -159,6 +172,7 @@ public class Compactor implements Callable<CompactionStats> {
     this.env = env;
     this.iterators = iterators;
     this.reason = reason;
+    this.resourceManager = tablet.getTabletResources().getTabletServerResourceManager();
 
     startTime = System.currentTimeMillis();
   }
@@ -200,9 +214,12 @@ public class Compactor implements Callable<CompactionStats> {
     try {
       FileOperations fileFactory = FileOperations.getInstance();
       FileSystem ns = this.fs.getVolumeByPath(outputFilePath).getFileSystem();
-      mfw = fileFactory.newWriterBuilder()
+      WriterBuilder writerBuilder = fileFactory.newWriterBuilder()
           .forFile(outputFilePathName, ns, ns.getConf(), context.getCryptoService())
-          .withTableConfiguration(acuTableConf).withRateLimiter(env.getWriteLimiter()).build();
+          .withTableConfiguration(acuTableConf).withRateLimiter(env.getWriteLimiter())
+          .withCompressionExecutor(env.getCompressionExecutor());
+      configureBlockCache(writerBuilder, outputFilePathName);
+      mfw = writerBuilder.build();
 
       Map<String,Set<ByteSequence>> lGroups;
       try {
@@ -278,6 +295,51 @@ public class Compactor implements Callable<CompactionStats> {
     }
   }
 
+  /**
+   * Has the writer put the blocks of the output file in the block caches, as set by the table's
+   * policy for this type of compaction.
+   */
+  private void configureBlockCache(WriterBuilder writerBuilder, String outputFilePathName) {
+    Property policyProperty = env.getIteratorScope() == IteratorScope.minc
+        ? Property.TABLE_CACHE_WRITE_MINC
+        : Property.TABLE_CACHE_WRITE_MAJC;
+    String policy = acuTableConf.get(policyProperty);
+
+    boolean cacheIndex;
+    boolean cacheData;
+    switch (policy) {
+      case "none":
+        return;
+      case "index":
+        cacheIndex = true;
+        cacheData = false;
+        break;
+      case "data":
+        cacheIndex = true;
+        cacheData = true;
+        break;
+      default:
+        log.warn("Unknown {} {} for {}, not caching blocks of {}", policyProperty.getKey(), policy,
+            extent, outputFilePathName);
+        return;
+    }
+
+    String partition = acuTableConf.get(Property.TABLE_CACHE_PARTITION);
+    BlockCache indexCache = cacheIndex && acuTableConf.getBoolean(Property.TABLE_INDEXCACHE_ENABLED)
+        ? resourceManager.getIndexCache(partition)
+        : null;
+    BlockCache dataCache = cacheData && acuTableConf.getBoolean(Property.TABLE_BLOCKCACHE_ENABLED)
+        ? resourceManager.getDataCache(partition)
+        : null;
+
+    // compactions write to a temporary file that is renamed to its final name when done
+    String cacheFilename = outputFilePathName;
+    if (cacheFilename.endsWith(TMP_SUFFIX)) {
+      cacheFilename = cacheFilename.substring(0, cacheFilename.length() - TMP_SUFFIX.length());
+    }
+    writerBuilder.withBlockCache(cacheFilename, dataCache, indexCache);
+  }
+
   private List<SortedKeyValueIterator<Key,Value>> openMapDataFiles(String lgName,
       ArrayList<FileSKVIterator> readers) throws IOException {
 
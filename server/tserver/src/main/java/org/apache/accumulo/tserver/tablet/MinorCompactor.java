@@ -23,6 +23,7 @@ import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.accumulo.core.clientImpl.Tables;
@@ -82,6 +83,11 @@ public class MinorCompactor extends Compactor {
           public RateLimiter getWriteLimiter() {
             return null;
           }
+
+          @Override
+          public Executor getCompressionExecutor() {
+            return null;
+          }
         }, Collections.emptyList(), mincReason.ordinal(), tableConfig);
     this.tabletServer = tabletServer;
   }
@@ -28,8 +28,10 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.client.sample.SamplerConfiguration;
+import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Column;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
 import org.apache.accumulo.core.dataImpl.thrift.IterInfo;
 import org.apache.accumulo.core.iterators.IterationInterruptedException;
@@ -44,6 +46,7 @@ import org.apache.accumulo.core.iterators.system.StatsIterator;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
 import org.apache.accumulo.core.util.Pair;
 import org.apache.accumulo.server.conf.TableConfiguration.ParsedIteratorConfig;
 import org.apache.accumulo.server.fs.FileRef;
@@ -71,6 +74,8 @@ class ScanDataSource implements DataSource {
 
   private final ScanOptions options;
   private final boolean loadIters;
+  private List<Range> prefetchRanges = Collections.emptyList();
+  private long prefetchBytes = 0;
 
   private static final Set<Column> EMPTY_COLS = Collections.emptySet();
 
@@ -105,6 +110,16 @@ class ScanDataSource implements DataSource {
         this.tablet, this.options, this.interruptFlag, this.loadIters);
   }
 
+  /**
+   * Sets the ranges that a lookup using this data source will read, so that files can fetch the
+   * data needed by the leading ranges together when they are opened. At most {@code maxBytes} of
+   * data is fetched, which should be about what the lookup can return.
+   */
+  void setPrefetchRanges(List<Range> ranges, long maxBytes) {
+    this.prefetchRanges = ranges;
+    this.prefetchBytes = maxBytes;
+  }
+
   @Override
   public DataSource getNewDataSource() {
     if (!isCurrent()) {
@@ -177,8 +192,39 @@ class ScanDataSource implements DataSource {
       files = reservation.getSecond();
     }
 
-    Collection<InterruptibleIterator> mapfiles = fileManager.openFiles(files, options.isIsolated(),
-        samplerConfig);
+    List<IterInfo> iterInfos = null;
+    Map<String,Map<String,String>> iterOpts = null;
+    ParsedIteratorConfig pic = null;
+    long oldestTimestamp = Long.MIN_VALUE;
+
+    if (loadIters) {
+      pic = tablet.getTableConfiguration().getParsedIteratorConfig(IteratorScope.scan);
+      if (options.getSsiList().size() == 0 && options.getSsio().size() == 0) {
+        // No scan time iterator options were set, so can just use the pre-parsed table iterator
+        // options.
+        iterInfos = pic.getIterInfo();
+        iterOpts = pic.getOpts();
+      } else {
+        // Scan time iterator options were set, so need to merge those with pre-parsed table
+        // iterator options.
+        iterOpts = new HashMap<>(pic.getOpts().size() + options.getSsio().size());
+        iterInfos = new ArrayList<>(pic.getIterInfo().size() + options.getSsiList().size());
+        IteratorUtil.mergeIteratorConfig(iterInfos, iterOpts, pic.getIterInfo(), pic.getOpts(),
+            options.getSsiList(), options.getSsio());
+      }
+
+      // files older than anything the iterators will return do not need to be read
+      oldestTimestamp = IteratorUtil.getOldestTimestamp(iterInfos, iterOpts);
+    }
+
+    Collection<InterruptibleIterator> mapfiles;
+    if (prefetchRanges.isEmpty() && oldestTimestamp == Long.MIN_VALUE) {
+      mapfiles = fileManager.openFiles(files, options.isIsolated(), samplerConfig);
+    } else {
+      Set<ByteSequence> cfset = LocalityGroupUtil.families(options.getColumnSet());
+      mapfiles = fileManager.openFiles(files, options.isIsolated(), samplerConfig, prefetchRanges,
+          cfset, !cfset.isEmpty(), prefetchBytes, interruptFlag, oldestTimestamp);
+    }
 
     for (SortedKeyValueIterator<Key,Value> skvi : Iterables.concat(mapfiles, memIters))
       ((InterruptibleIterator) skvi).setInterruptFlag(interruptFlag);
@@ -205,25 +251,6 @@ class ScanDataSource implements DataSource {
     if (!loadIters) {
       return visFilter;
     } else {
-      List<IterInfo> iterInfos;
-      Map<String,Map<String,String>> iterOpts;
-
-      ParsedIteratorConfig pic = tablet.getTableConfiguration()
-          .getParsedIteratorConfig(IteratorScope.scan);
-      if (options.getSsiList().size() == 0 && options.getSsio().size() == 0) {
-        // No scan time iterator options were set, so can just use the pre-parsed table iterator
-        // options.
-        iterInfos = pic.getIterInfo();
-        iterOpts = pic.getOpts();
-      } else {
-        // Scan time iterator options were set, so need to merge those with pre-parsed table
-        // iterator options.
-        iterOpts = new HashMap<>(pic.getOpts().size() + options.getSsio().size());
-        iterInfos = new ArrayList<>(pic.getIterInfo().size() + options.getSsiList().size());
-        IteratorUtil.mergeIteratorConfig(iterInfos, iterOpts, pic.getIterInfo(), pic.getOpts(),
-            options.getSsiList(), options.getSsio());
-      }
-
       String context;
       if (options.getClassLoaderContext() != null) {
         log.trace("Loading iterators for scan with scan context: {}",
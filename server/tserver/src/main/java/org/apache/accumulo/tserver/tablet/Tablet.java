@@ -39,6 +39,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
@@ -70,10 +71,12 @@ import org.apache.accumulo.core.dataImpl.thrift.IterInfo;
 import org.apache.accumulo.core.dataImpl.thrift.MapFileInfo;
 import org.apache.accumulo.core.file.FileOperations;
 import org.apache.accumulo.core.file.FileSKVIterator;
+import org.apache.accumulo.core.file.blockfile.cache.impl.BlockCacheSnapshot;
 import org.apache.accumulo.core.iterators.IterationInterruptedException;
 import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
 import org.apache.accumulo.core.iterators.YieldCallback;
+import org.apache.accumulo.core.iterators.system.BatchIterator;
 import org.apache.accumulo.core.iterators.system.SourceSwitchingIterator;
 import org.apache.accumulo.core.master.thrift.BulkImportState;
 import org.apache.accumulo.core.master.thrift.TabletLoadState;
@@ -118,10 +121,12 @@ import org.apache.accumulo.server.util.MetadataTableUtil;
 import org.apache.accumulo.server.util.ReplicationTableUtil;
 import org.apache.accumulo.start.classloader.vfs.AccumuloVFSClassLoader;
 import org.apache.accumulo.tserver.ConditionCheckerContext.ConditionChecker;
+import org.apache.accumulo.tserver.FileManager.ScanFileManager;
 import org.apache.accumulo.tserver.InMemoryMap;
 import org.apache.accumulo.tserver.MinorCompactionReason;
 import org.apache.accumulo.tserver.TConstraintViolationException;
 import org.apache.accumulo.tserver.TabletServer;
+import org.apache.accumulo.tserver.TabletServerResourceManager;
 import org.apache.accumulo.tserver.TabletServerResourceManager.TabletResourceManager;
 import org.apache.accumulo.tserver.TabletStatsKeeper;
 import org.apache.accumulo.tserver.TabletStatsKeeper.Operation;
@@ -757,6 +762,8 @@ public class Tablet implements TabletCommitter {
     ScanDataSource dataSource = new ScanDataSource(this, authorizations, this.defaultSecurityLabel,
         columns, ssiList, ssio, interruptFlag, samplerConfig, batchTimeOut, classLoaderContext);
 
+    dataSource.setPrefetchRanges(ranges, maxResultSize);
+
     LookupResult result = null;
 
     try {
@@ -791,14 +798,23 @@ public class Tablet implements TabletCommitter {
     List<KVEntry> results = new ArrayList<>();
     Key key = null;
 
-    Value value;
     long resultSize = 0L;
     long resultBytes = 0L;
 
     long maxResultsSize = tableConfiguration.getAsBytes(Property.TABLE_SCAN_MAXMEM);
 
+    // Entries are read in batches no larger than what the scan batch still has room for. Entries
+    // read past a full scan batch because of its size or time limits are read again after seeking
+    // to the continue key. When the stack can not hand out batches, entries are read one at a time
+    // instead, because KVEntry copies the top key and value anyway.
+    int batchEntries = Math.max(1,
+        Math.min(num, tabletServer.getConfiguration().getCount(Property.TSERV_SCAN_BATCH_ENTRIES)));
+    Key[] keys = new Key[batchEntries];
+    Value[] values = new Value[batchEntries];
+
     Key continueKey = null;
     boolean skipContinueKey = false;
+    boolean batchFull = false;
 
     YieldCallback<Key> yield = new YieldCallback<>();
 
@@ -813,31 +829,57 @@ public class Tablet implements TabletCommitter {
       iter.seek(range, LocalityGroupUtil.families(columns), true);
     }
 
-    while (iter.hasTop()) {
+    scan: while (iter.hasTop()) {
       if (yield.hasYielded()) {
         throw new IOException(
             "Coding error: hasTop returned true but has yielded at " + yield.getPositionAndReset());
       }
-      value = iter.getTopValue();
-      key = iter.getTopKey();
 
-      KVEntry kvEntry = new KVEntry(key, value); // copies key and value
-      results.add(kvEntry);
-      resultSize += kvEntry.estimateMemoryUsed();
-      resultBytes += kvEntry.numBytes();
+      boolean batching = iter instanceof SourceSwitchingIterator
+          ? ((SourceSwitchingIterator) iter).readsBatches() : iter instanceof BatchIterator;
+      int read;
+      if (batching) {
+        int remaining = num - results.size();
+        if (remaining < keys.length) {
+          keys = new Key[remaining];
+          values = new Value[remaining];
+        }
+        read = ((BatchIterator) iter).nextBatch(keys, values);
+      } else {
+        keys[0] = iter.getTopKey();
+        values[0] = iter.getTopValue();
+        read = 1;
+      }
 
-      boolean timesUp = batchTimeOut > 0 && System.nanoTime() >= stopTime;
+      for (int i = 0; i < read; i++) {
+        key = keys[i];
 
-      if (resultSize >= maxResultsSize || results.size() >= num || timesUp) {
-        continueKey = new Key(key);
-        skipContinueKey = true;
-        break;
+        KVEntry kvEntry = new KVEntry(key, values[i]); // copies key and value
+        results.add(kvEntry);
+        resultSize += kvEntry.estimateMemoryUsed();
+        resultBytes += kvEntry.numBytes();
+
+        boolean timesUp = batchTimeOut > 0 && System.nanoTime() >= stopTime;
+
+        if (resultSize >= maxResultsSize || results.size() >= num || timesUp) {
+          continueKey = new Key(key);
+          skipContinueKey = true;
+          batchFull = true;
+          break scan;
+        }
       }
 
-      iter.next();
+      if (!batching) {
+        iter.next();
+      }
     }
 
-    if (yield.hasYielded()) {
+    if (batchFull) {
+      // the iterator may have read past the continue key, a yield while doing so does not matter
+      if (yield.hasYielded()) {
+        yield.getPositionAndReset();
+      }
+    } else if (yield.hasYielded()) {
       continueKey = new Key(yield.getPositionAndReset());
       skipContinueKey = true;
       if (!range.contains(continueKey)) {
@@ -1878,7 +1920,9 @@ public class Tablet implements TabletCommitter {
         }
       }
 
-      if (inputFiles.isEmpty()) {
+      // a plan may only drop files, for example ones whose data has all aged off, in which case a
+      // compaction of no files is run to remove them
+      if (inputFiles.isEmpty() && (plan == null || plan.deleteFiles.isEmpty())) {
         if (reason == MajorCompactionReason.USER) {
           if (compactionId.getSecond().getIterators().isEmpty()) {
             log.debug(
@@ -1996,6 +2040,12 @@ public class Tablet implements TabletCommitter {
               return getTabletServer().getMajorCompactionWriteLimiter();
             }
 
+            @Override
+            public Executor getCompressionExecutor() {
+              return getTabletResources().getTabletServerResourceManager()
+                  .getMajorCompactionCompressionExecutor();
+            }
+
           };
 
           HashMap<FileRef,DataFileValue> copy = new HashMap<>(
@@ -2736,6 +2786,59 @@ public class Tablet implements TabletCommitter {
     getTabletResources().updateMemoryUsageStats(this, size, mincSize);
   }
 
+  /**
+   * Reads the tablet's files into the block caches, so the first scans after the tablet is loaded
+   * do not all miss the cache. The blocks of the tablet's files that were cached before the tablet
+   * server restarted are restored first, then the table's warm up policy is applied.
+   */
+  public void warmUpCache() {
+    TabletServerResourceManager resourceManager = getTabletResources()
+        .getTabletServerResourceManager();
+    BlockCacheSnapshot snapshot = resourceManager.getCacheSnapshot();
+
+    String policy = tableConfiguration.get(Property.TABLE_CACHE_WARMUP);
+    long maxDataBytes;
+    switch (policy) {
+      case "none":
+        maxDataBytes = -1;
+        break;
+      case "index":
+        maxDataBytes = 0;
+        break;
+      case "data":
+        maxDataBytes = tableConfiguration.getAsBytes(Property.TABLE_CACHE_WARMUP_DATA_MAX);
+        break;
+      default:
+        log.warn("Unknown {} {} for {}, not warming up the cache",
+            Property.TABLE_CACHE_WARMUP.getKey(), policy, extent);
+        maxDataBytes = -1;
+        break;
+    }
+
+    if ((snapshot == null && maxDataBytes < 0) || isClosing() || isClosed()) {
+      return;
+    }
+
+    Pair<Long,Map<FileRef,DataFileValue>> reservation = getDatafileManager().reserveFilesForScan();
+    try {
+      Set<FileRef> files = reservation.getSecond().keySet();
+      if (!files.isEmpty()) {
+        ScanFileManager fileManager = getTabletResources().newScanFileManager();
+        if (snapshot != null) {
+          fileManager.restoreCachedBlocks(files, snapshot,
+              resourceManager.getCacheRestoreLimiter());
+        }
+        if (maxDataBytes >= 0) {
+          fileManager.warmUp(files, extent.toDataRange(), maxDataBytes);
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Failed to warm up cache for {}", extent, e);
+    } finally {
+      getDatafileManager().returnFilesForScan(reservation.getFirst());
+    }
+  }
+
   public long incrementDataSourceDeletions() {
     return dataSourceDeletions.incrementAndGet();
   }
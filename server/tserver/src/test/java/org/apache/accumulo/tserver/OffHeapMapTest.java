@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.tserver;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class OffHeapMapTest {
+
+  private Key newKey(int r) {
+    return new Key(new Text(String.format("r%09d", r)));
+  }
+
+  private Key newKey(int r, int cf, int cq, int cv, int ts, boolean deleted) {
+    Key k = new Key(new Text(String.format("r%09d", r)), new Text(String.format("cf%09d", cf)),
+        new Text(String.format("cq%09d", cq)), new Text(String.format("cv%09d", cv)), ts);
+
+    k.setDeleted(deleted);
+
+    return k;
+  }
+
+  private Value newValue(int v) {
+    return new Value(String.format("r%09d", v).getBytes(UTF_8));
+  }
+
+  private void verifyIterator(int start, int end, int valueOffset,
+      Iterator<Entry<Key,Value>> iter) {
+    for (int i = start; i <= end; i++) {
+      assertTrue(iter.hasNext());
+      Entry<Key,Value> entry = iter.next();
+      assertEquals(newKey(i), entry.getKey());
+      assertEquals(newValue(i + valueOffset), entry.getValue());
+    }
+
+    assertFalse(iter.hasNext());
+  }
+
+  private void insertAndVerify(OffHeapMap ohm, int start, int end, int valueOffset) {
+    for (int i = start; i <= end; i++) {
+      ohm.put(newKey(i), newValue(i + valueOffset));
+    }
+
+    for (int i = start; i <= end; i++) {
+      Value v = ohm.get(newKey(i));
+      assertNotNull(v);
+      assertEquals(newValue(i + valueOffset), v);
+    }
+
+    assertNull(ohm.get(newKey(start - 1)));
+    assertNull(ohm.get(newKey(end + 1)));
+
+    verifyIterator(start, end, valueOffset, ohm.iterator());
+
+    for (int i = start; i <= end; i++) {
+      verifyIterator(i, end, valueOffset, ohm.iterator(newKey(i)));
+
+      // lookup nonexistent key that falls after existing key
+      verifyIterator(i + 1, end, valueOffset, ohm.iterator(newKey(i, 1, 1, 1, 1, false)));
+    }
+
+    assertEquals(end - start + 1, ohm.size());
+  }
+
+  @Test
+  public void testEmpty() {
+    OffHeapMap ohm = new OffHeapMap();
+
+    assertFalse(ohm.iterator().hasNext());
+    assertEquals(0, ohm.size());
+    assertEquals(0, ohm.getMemoryUsed());
+
+    ohm.delete();
+  }
+
+  @Test
+  public void testInsertAndReplace() {
+    OffHeapMap ohm = new OffHeapMap();
+
+    insertAndVerify(ohm, 1, 100, 0);
+    insertAndVerify(ohm, 1, 100, 1);
+    insertAndVerify(ohm, 1, 100, 2);
+
+    ohm.delete();
+  }
+
+  @Test
+  public void testMutationOrder() {
+    OffHeapMap ohm = new OffHeapMap();
+
+    // the same key written by later mutations must sort first
+    for (int i = 0; i < 3; i++) {
+      Mutation m = new Mutation("r1");
+      m.put("cf", "cq", 5, "v" + i);
+      ohm.mutate(m, i);
+    }
+
+    Iterator<Entry<Key,Value>> iter = ohm.iterator();
+    for (int i = 2; i >= 0; i--) {
+      Entry<Key,Value> entry = iter.next();
+      assertEquals(i, ((MemKey) entry.getKey()).getKVCount());
+      assertEquals("v" + i, entry.getValue().toString());
+    }
+    assertFalse(iter.hasNext());
+
+    // a plain key sorts before all the mem keys with the same fields
+    assertEquals("v2", ohm.get(new Key("r1", "cf", "cq", 5)).toString());
+    assertEquals(3, ohm.size());
+
+    ohm.delete();
+  }
+
+  @Test
+  public void testRandom() {
+    OffHeapMap ohm = new OffHeapMap();
+    TreeMap<Key,Value> expected = new TreeMap<>(new MemKeyComparator());
+
+    Random rand = new Random(42);
+    int kvCount = 0;
+    for (int i = 0; i < 5000; i++) {
+      Mutation m = new Mutation(String.format("r%05d", rand.nextInt(1000)));
+      int updates = 1 + rand.nextInt(3);
+      for (int j = 0; j < updates; j++) {
+        // some values are large enough to get a buffer of their own
+        byte[] val = new byte[rand.nextInt(50) == 0 ? 3000 : rand.nextInt(20)];
+        rand.nextBytes(val);
+        m.put("cf" + rand.nextInt(5), "cq", rand.nextInt(3), new Value(val));
+      }
+
+      ohm.mutate(m, kvCount);
+      for (ColumnUpdate cu : m.getUpdates()) {
+        Key key = new Key(m.getRow(), cu.getColumnFamily(), cu.getColumnQualifier(),
+            cu.getColumnVisibility(), cu.getTimestamp());
+        expected.put(new MemKey(key, kvCount++), new Value(cu.getValue()));
+      }
+    }
+
+    assertEquals(expected.size(), ohm.size());
+
+    Iterator<Entry<Key,Value>> iter = ohm.iterator();
+    for (Entry<Key,Value> entry : expected.entrySet()) {
+      assertTrue(iter.hasNext());
+      Entry<Key,Value> actual = iter.next();
+      assertEquals(entry.getKey(), actual.getKey());
+      assertEquals(((MemKey) entry.getKey()).getKVCount(),
+          ((MemKey) actual.getKey()).getKVCount());
+      assertEquals(entry.getValue(), actual.getValue());
+    }
+    assertFalse(iter.hasNext());
+
+    for (int i = 0; i < 1000; i++) {
+      Key start = new Key(String.format("r%05d", rand.nextInt(1100)));
+      Entry<Key,Value> ceiling = expected.ceilingEntry(start);
+      iter = ohm.iterator(start);
+      if (ceiling == null) {
+        assertFalse(iter.hasNext());
+      } else {
+        assertEquals(ceiling.getKey(), iter.next().getKey());
+      }
+    }
+
+    assertTrue(ohm.getMemoryUsed() > 0);
+
+    ohm.delete();
+  }
+
+  @Test
+  public void testDeleted() {
+    OffHeapMap ohm = new OffHeapMap();
+
+    insertAndVerify(ohm, 1, 10, 0);
+
+    Iterator<Entry<Key,Value>> iter = ohm.iterator();
+    iter.next();
+
+    ohm.delete();
+
+    try {
+      ohm.put(newKey(1), newValue(1));
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+
+    try {
+      ohm.get(newKey(1));
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+
+    try {
+      ohm.iterator();
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+
+    try {
+      ohm.size();
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+
+    try {
+      iter.next();
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+
+    try {
+      ohm.delete();
+      fail();
+    } catch (IllegalStateException e) {
+
+    }
+  }
+
+  @Test
+  public void testConcurrentIter() throws IOException {
+    OffHeapMap ohm = new OffHeapMap();
+
+    ohm.put(newKey(0), newValue(0));
+    ohm.put(newKey(1), newValue(1));
+    ohm.put(newKey(3), newValue(3));
+
+    SortedKeyValueIterator<Key,Value> iter = ohm.skvIterator();
+
+    // modify map after iter created
+    ohm.put(newKey(2), newValue(2));
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(iter.hasTop());
+      assertEquals(newKey(i), iter.getTopKey());
+      iter.next();
+    }
+    assertFalse(iter.hasTop());
+
+    iter.seek(new Range(newKey(1), true, newKey(2), true), null, false);
+    assertEquals(newKey(1), iter.getTopKey());
+    iter.next();
+    assertEquals(newKey(2), iter.getTopKey());
+    iter.next();
+    assertFalse(iter.hasTop());
+
+    ohm.delete();
+  }
+}
@@ -30,7 +30,10 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.accumulo.core.clientImpl.Table;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
 import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.crypto.CryptoServiceFactory;
 import org.apache.accumulo.core.data.ByteSequence;
 import org.apache.accumulo.core.data.Key;
@@ -41,6 +44,7 @@ import org.apache.accumulo.core.file.FileSKVIterator;
 import org.apache.accumulo.core.file.NoSuchMetaStoreException;
 import org.apache.accumulo.core.iterators.IteratorEnvironment;
 import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.user.AgeOffFilter;
 import org.apache.accumulo.core.metadata.schema.DataFileValue;
 import org.apache.accumulo.core.sample.impl.SamplerConfigurationImpl;
 import org.apache.accumulo.core.util.Pair;
@@ -157,15 +161,29 @@ public class DefaultCompactionStrategyTest {
 
   static final DefaultConfiguration dfault = DefaultConfiguration.getInstance();
 
+  // the largest timestamp in each file, files not listed do not record one
+  static final Map<String,Long> fakeMaxTimestamps = new HashMap<>();
+
+  static {
+    fakeMaxTimestamps.put("file0", 3000L);
+    fakeMaxTimestamps.put("file1", 3999L);
+    fakeMaxTimestamps.put("file2", 4000L);
+  }
+
   private static class TestCompactionRequest extends MajorCompactionRequest {
     @Override
     public FileSKVIterator openReader(FileRef ref) throws IOException {
       return new TestFileSKVIterator(ref.toString());
     }
 
+    @Override
+    public long getMaxTimestamp(FileRef ref) {
+      return fakeMaxTimestamps.getOrDefault(ref.path().getName(), Long.MAX_VALUE);
+    }
+
     TestCompactionRequest(KeyExtent extent, MajorCompactionReason reason,
-        Map<FileRef,DataFileValue> files) {
-      super(extent, reason, dfault, getServerContext());
+        AccumuloConfiguration conf, Map<FileRef,DataFileValue> files) {
+      super(extent, reason, conf, getServerContext());
       setFiles(files);
     }
 
@@ -173,17 +191,17 @@ public class DefaultCompactionStrategyTest {
 
   private MajorCompactionRequest createRequest(MajorCompactionReason reason, Object... objs)
       throws IOException {
-    return createRequest(new KeyExtent(Table.ID.of("0"), null, null), reason, objs);
+    return createRequest(new KeyExtent(Table.ID.of("0"), null, null), reason, dfault, objs);
   }
 
   private MajorCompactionRequest createRequest(KeyExtent extent, MajorCompactionReason reason,
-      Object... objs) throws IOException {
+      AccumuloConfiguration conf, Object... objs) throws IOException {
     Map<FileRef,DataFileValue> files = new HashMap<>();
     for (int i = 0; i < objs.length; i += 2) {
       files.put(new FileRef("hdfs://nn1/accumulo/tables/5/t-0001/" + objs[i]),
           new DataFileValue(((Number) objs[i + 1]).longValue(), 0));
     }
-    return new TestCompactionRequest(extent, reason, files);
+    return new TestCompactionRequest(extent, reason, conf, files);
   }
 
   private static Set<String> asSet(String... strings) {
@@ -237,4 +255,46 @@ public class DefaultCompactionStrategyTest {
     assertEquals(asStringSet(plan.inputFiles), asSet("file1,file2,file3".split(",")));
 
   }
+
+  @Test
+  public void testExpiredFiles() throws Exception {
+    ConfigurationCopy conf = new ConfigurationCopy(dfault);
+    conf.set(Property.TABLE_ITERATOR_MAJC_PREFIX + "ageoff", "10," + AgeOffFilter.class.getName());
+    conf.set(Property.TABLE_ITERATOR_MAJC_PREFIX + "ageoff.opt.ttl", "1000");
+    conf.set(Property.TABLE_ITERATOR_MAJC_PREFIX + "ageoff.opt.currentTime", "5000");
+    KeyExtent extent = new KeyExtent(Table.ID.of("0"), null, null);
+
+    // all keys in file0 and file1 are aged off, so they are dropped instead of compacted
+    DefaultCompactionStrategy s = new DefaultCompactionStrategy();
+    MajorCompactionRequest request = createRequest(extent, MajorCompactionReason.NORMAL, conf,
+        "file0", 100, "file1", 10, "file2", 10, "file3", 10, "file4", 10);
+    s.gatherInformation(request);
+    CompactionPlan plan = s.getCompactionPlan(request);
+    plan.validate(request.getFiles().keySet());
+    assertEquals(asSet("file0", "file1"), asStringSet(plan.deleteFiles));
+    assertEquals(asSet("file2", "file3", "file4"), asStringSet(plan.inputFiles));
+
+    // only dropping files
+    s = new DefaultCompactionStrategy();
+    request = createRequest(extent, MajorCompactionReason.NORMAL, conf, "file0", 100, "file2", 10);
+    s.gatherInformation(request);
+    plan = s.getCompactionPlan(request);
+    assertEquals(asSet("file0"), asStringSet(plan.deleteFiles));
+    assertTrue(plan.inputFiles.isEmpty());
+
+    // user compactions may run other iterators, so compact everything
+    s = new DefaultCompactionStrategy();
+    request = createRequest(extent, MajorCompactionReason.USER, conf, "file0", 100, "file2", 10);
+    s.gatherInformation(request);
+    plan = s.getCompactionPlan(request);
+    assertTrue(plan.deleteFiles.isEmpty());
+    assertEquals(2, plan.inputFiles.size());
+
+    // without an age off filter nothing is dropped
+    s = new DefaultCompactionStrategy();
+    request = createRequest(MajorCompactionReason.NORMAL, "file0", 100, "file1", 100);
+    s.gatherInformation(request);
+    plan = s.getCompactionPlan(request);
+    assertTrue(plan.deleteFiles.isEmpty());
+  }
 }
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.test.performance;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.accumulo.core.cli.Help;
+import org.apache.accumulo.core.conf.ConfigurationCopy;
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.util.LocalityGroupUtil;
+import org.apache.accumulo.tserver.InMemoryMap;
+import org.apache.accumulo.tserver.InMemoryMap.MemoryIterator;
+import org.apache.hadoop.io.Text;
+
+import com.beust.jcommander.Parameter;
+
+/**
+ * Compares the in-memory maps a tablet server can use, by writing random entries to each through
+ * {@link InMemoryMap} and then scanning and seeking them. Reports the time taken, the size the map
+ * estimates for itself, the Java heap used and the time spent in GC.
+ * <p>
+ * The native map is only tested when asked for, because the tablet server code exits when the
+ * native library can not be loaded. Set the {@code accumulo.native.lib.path} system property to
+ * the directory of the library. Run with {@code -XX:MaxDirectMemorySize} large enough for the off
+ * heap map.
+ */
+public class InMemoryMapPerformance {
+
+  static class Opts extends Help {
+    @Parameter(names = "--entries", description = "number of entries to write to each map")
+    int entries = 1_000_000;
+    @Parameter(names = "--valueSize", description = "size of the values")
+    int valueSize = 50;
+    @Parameter(names = "--seeks", description = "number of random seeks")
+    int seeks = 100_000;
+    @Parameter(names = "--trials", description = "number of times to test each map")
+    int trials = 3;
+    @Parameter(names = "--native", description = "also test the native map")
+    boolean nativeMap = false;
+  }
+
+  private static final int MUTATIONS_PER_BATCH = 100;
+
+  private static long gcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, gc.getCollectionTime());
+    }
+    return time;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static Text row(int r) {
+    return new Text(String.format("r%010d", r));
+  }
+
+  private static void test(String name, ConfigurationCopy config, Opts opts) throws Exception {
+    // the server context is only needed to dump the map to a file when it is deleted while
+    // iterators are still active, all iterators are closed here first
+    InMemoryMap imm = new InMemoryMap(config, null);
+
+    Random rand = new Random(42);
+    byte[] val = new byte[opts.valueSize];
+
+    long heapBefore = usedHeap();
+    long gcBefore = gcTime();
+
+    long t1 = System.nanoTime();
+    List<Mutation> batch = new ArrayList<>(MUTATIONS_PER_BATCH);
+    for (int i = 0; i < opts.entries; i++) {
+      rand.nextBytes(val);
+      Mutation m = new Mutation(row(rand.nextInt(opts.entries)));
+      m.put(new Text("cf"), new Text("cq" + (i % 10)), new Value(val));
+      batch.add(m);
+      if (batch.size() == MUTATIONS_PER_BATCH) {
+        imm.mutate(batch);
+        batch.clear();
+      }
+    }
+    if (batch.size() > 0) {
+      imm.mutate(batch);
+    }
+    long t2 = System.nanoTime();
+
+    long gcTime = gcTime() - gcBefore;
+    long heapUsed = usedHeap() - heapBefore;
+
+    MemoryIterator iter = imm.skvIterator(null);
+    iter.seek(new Range(), LocalityGroupUtil.EMPTY_CF_SET, false);
+    long count = 0;
+    while (iter.hasTop()) {
+      count++;
+      iter.next();
+    }
+    long t3 = System.nanoTime();
+
+    for (int i = 0; i < opts.seeks; i++) {
+      iter.seek(new Range(row(rand.nextInt(opts.entries)), null), LocalityGroupUtil.EMPTY_CF_SET,
+          false);
+      if (iter.hasTop()) {
+        iter.getTopKey();
+      }
+    }
+    long t4 = System.nanoTime();
+
+    if (count != imm.getNumEntries()) {
+      throw new IllegalStateException("Scanned " + count + " of " + imm.getNumEntries());
+    }
+
+    System.out.printf(
+        "%-10s insert %,7d ms  scan %,7d ms  seek %,7d ms  estimated size %,14d"
+            + "  heap used %,14d  insert gc %,7d ms%n",
+        name, TimeUnit.NANOSECONDS.toMillis(t2 - t1), TimeUnit.NANOSECONDS.toMillis(t3 - t2),
+        TimeUnit.NANOSECONDS.toMillis(t4 - t3), imm.estimatedSizeInBytes(), heapUsed, gcTime);
+
+    iter.close();
+    imm.delete(0);
+  }
+
+  private static ConfigurationCopy newConfig(boolean nativeMap, boolean offHeapMap) {
+    ConfigurationCopy config = new ConfigurationCopy(DefaultConfiguration.getInstance());
+    config.set(Property.TSERV_NATIVEMAP_ENABLED, "" + nativeMap);
+    config.set(Property.TSERV_OFFHEAPMAP_ENABLED, "" + offHeapMap);
+    config.set(Property.TSERV_MEMDUMP_DIR, System.getProperty("java.io.tmpdir"));
+    return config;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Opts opts = new Opts();
+    opts.parseArgs(InMemoryMapPerformance.class.getName(), args);
+
+    for (int i = 0; i < opts.trials; i++) {
+      test("DefaultMap", newConfig(false, false), opts);
+      test("OffHeapMap", newConfig(false, true), opts);
+      if (opts.nativeMap) {
+        test("NativeMap", newConfig(true, false), opts);
+      }
+    }
+  }
+}
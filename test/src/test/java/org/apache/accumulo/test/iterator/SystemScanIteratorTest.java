@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.accumulo.test.iterator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.accumulo.core.conf.DefaultConfiguration;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Column;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.IteratorUtil;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.iteratortest.IteratorTestCaseFinder;
+import org.apache.accumulo.iteratortest.IteratorTestInput;
+import org.apache.accumulo.iteratortest.IteratorTestOutput;
+import org.apache.accumulo.iteratortest.junit4.BaseJUnit4IteratorTest;
+import org.apache.accumulo.iteratortest.testcases.IteratorTestCase;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Iterator test harness tests for the system iterators set up by
+ * {@link IteratorUtil#setupSystemScanIterators}.
+ */
+public class SystemScanIteratorTest extends BaseJUnit4IteratorTest {
+
+  // fetch all of family a and column b:x
+  private static final Set<Column> COLUMNS = new HashSet<>(
+      Arrays.asList(new Column("a".getBytes(UTF_8), null, null),
+          new Column("b".getBytes(UTF_8), "x".getBytes(UTF_8), null)));
+  private static final Authorizations AUTHS = new Authorizations("A");
+
+  /**
+   * The system scan iterators as a class the harness can create.
+   */
+  public static class SystemScanIterators implements SortedKeyValueIterator<Key,Value> {
+    private SortedKeyValueIterator<Key,Value> iter;
+
+    @Override
+    public void init(SortedKeyValueIterator<Key,Value> source, Map<String,String> options,
+        IteratorEnvironment env) throws IOException {
+      iter = IteratorUtil.setupSystemScanIterators(source, COLUMNS, AUTHS, new byte[0],
+          DefaultConfiguration.getInstance());
+    }
+
+    @Override
+    public boolean hasTop() {
+      return iter.hasTop();
+    }
+
+    @Override
+    public void next() throws IOException {
+      iter.next();
+    }
+
+    @Override
+    public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive)
+        throws IOException {
+      iter.seek(range, columnFamilies, inclusive);
+    }
+
+    @Override
+    public Key getTopKey() {
+      return iter.getTopKey();
+    }
+
+    @Override
+    public Value getTopValue() {
+      return iter.getTopValue();
+    }
+
+    @Override
+    public SortedKeyValueIterator<Key,Value> deepCopy(IteratorEnvironment env) {
+      SystemScanIterators copy = new SystemScanIterators();
+      copy.iter = iter.deepCopy(env);
+      return copy;
+    }
+  }
+
+  @Parameters
+  public static Object[][] parameters() {
+    IteratorTestInput input = getIteratorInput();
+    IteratorTestOutput output = getIteratorOutput();
+    List<IteratorTestCase> tests = IteratorTestCaseFinder.findAllTestCases();
+    return BaseJUnit4IteratorTest.createParameters(input, output, tests);
+  }
+
+  private static final TreeMap<Key,Value> INPUT_DATA = new TreeMap<>();
+  private static final TreeMap<Key,Value> OUTPUT_DATA = new TreeMap<>();
+
+  static {
+    put(new Key("1", "a", "q1", "", 5), true);
+    // Dropped, deleted
+    putDelete(new Key("1", "a", "q1", "", 4));
+    put(new Key("1", "a", "q1", "", 3), false);
+    // Dropped, not visible
+    put(new Key("1", "a", "q2", "B", 1), false);
+    put(new Key("1", "a", "q3", "A|B", 1), true);
+    put(new Key("1", "b", "x", "", 1), true);
+    // Dropped, column not fetched
+    put(new Key("1", "b", "y", "", 1), false);
+    put(new Key("1", "c", "x", "", 1), false);
+
+    // Dropped, not visible
+    put(new Key("2", "a", "q1", "A&B", 1), false);
+    // a delete only hides its own visibility
+    put(new Key("2", "b", "x", "A", 2), true);
+    putDelete(new Key("2", "b", "x", "", 1));
+    put(new Key("2", "b", "x", "", 0), false);
+    // enough of a family that is not fetched to seek past it
+    for (int i = 0; i < 20; i++) {
+      put(new Key("2", "c", String.format("q%02d", i), "", 1), false);
+    }
+
+    put(new Key("3", "a", "z", "", 1), true);
+    put(new Key("3", "d", "x", "", 1), false);
+  }
+
+  private static void put(Key key, boolean expected) {
+    Value value = new Value(key.toString().getBytes(UTF_8));
+    INPUT_DATA.put(key, value);
+    if (expected) {
+      OUTPUT_DATA.put(key, value);
+    }
+  }
+
+  private static void putDelete(Key key) {
+    key.setDeleted(true);
+    put(key, false);
+  }
+
+  private static IteratorTestInput getIteratorInput() {
+    Collection<ByteSequence> families = Arrays.asList(new ArrayByteSequence("a"),
+        new ArrayByteSequence("b"));
+    return new IteratorTestInput(SystemScanIterators.class, Collections.emptyMap(), new Range(),
+        INPUT_DATA, families, true);
+  }
+
+  private static IteratorTestOutput getIteratorOutput() {
+    return new IteratorTestOutput(OUTPUT_DATA);
+  }
+
+  public SystemScanIteratorTest(IteratorTestInput input, IteratorTestOutput expectedOutput,
+      IteratorTestCase testCase) {
+    super(input, expectedOutput, testCase);
+  }
+
+}